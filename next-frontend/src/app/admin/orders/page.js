@@ -15,43 +15,54 @@ export default function AdminOrdersPage() {
   const [statusFilter, setStatusFilter] = useState('all');
   const [minAmountFilter, setMinAmountFilter] = useState('');
   const [maxAmountFilter, setMaxAmountFilter] = useState('');
+  const [totalPages, setTotalPages] = useState(0);
+  const [totalOrders, setTotalOrders] = useState(0);
+
+  useEffect(() => {
+    const fetchOrders = async () => {
+      setPageError(null);
+      try {
+        const params = new URLSearchParams({ page: currentPage, size: ordersPerPage });
+        if (searchTerm.trim()) params.append('query', searchTerm.trim());
+        if (statusFilter !== 'all') params.append('orderStatus', statusFilter);
+        if (minAmountFilter !== '') params.append('minTotal', minAmountFilter);
+        if (maxAmountFilter !== '') params.append('maxTotal', maxAmountFilter);
+
+        const response = await fetch(`${process.env.NEXT_PUBLIC_BACKEND_URL}/api/orders/admin?${params.toString()}`);
+        if (!response.ok) {
+
+          const errorData = await response.json();
+          throw new Error(`Failed to fetch orders. Status: ${response.status}. Message: ${errorData.message || 'Unknown error'}`);
+        }
+        const apiResponse = await response.json();
 
-   useEffect(() => {
-      const fetchOrders = async () => {
-        setLoading(true);
-        setPageError(null);
-        try {
-          const response = await fetch(`${process.env.NEXT_PUBLIC_BACKEND_URL}/api/orders/all`);
-          if (!response.ok) {
-
-            const errorData = await response.json();
-            throw new Error(`Failed to fetch orders. Status: ${response.status}. Message: ${errorData.message || 'Unknown error'}`);
-          }
-          const apiResponse = await response.json();
-
-
+        if (apiResponse && apiResponse.data && Array.isArray(apiResponse.data.orders)) {
+          setOrders(apiResponse.data.orders);
+          setTotalPages(apiResponse.data.totalPages);
+          setTotalOrders(apiResponse.data.totalElements);
+        } else {
 
-          if (apiResponse && Array.isArray(apiResponse.data)) {
-            setOrders(apiResponse.data);
-          } else {
+          throw new Error("Received unexpected data format from server.");
+        }
 
-            throw new Error("Received unexpected data format from server.");
-          }
 
+      } catch (err) {
+        console.error("Fetch orders error:", err);
+        setPageError(err.message);
+      } finally {
+        setLoading(false);
+      }
+    };
 
-        } catch (err) {
-          console.error("Fetch orders error:", err);
-          setPageError(err.message);
-        } finally {
-          setLoading(false);
-        }
-      };
-      fetchOrders();
-    }, []);
+    // Filtering and paging happen on the server; wait for typing to settle before asking
+    const timer = setTimeout(fetchOrders, 300);
+    return () => clearTimeout(timer);
+  }, [currentPage, ordersPerPage, searchTerm, statusFilter, minAmountFilter, maxAmountFilter]);
 
   const getStatusBadge = (status) => {
     const statusClasses = {
       PLACED: "bg-blue-500/25 text-blue-300",
+      PENDING: "bg-blue-500/25 text-blue-300",
       PROCESSING: "bg-yellow-500/25 text-yellow-300",
       SHIPPED: "bg-indigo-500/25 text-indigo-300",
       DELIVERED: "bg-green-500/25 text-green-300",
@@ -60,6 +71,7 @@ export default function AdminOrdersPage() {
     
     const statusIcons = {
       PLACED: <FiClock className="mr-1.5" />,
+      PENDING: <FiClock className="mr-1.5" />,
       PROCESSING: <FiPackage className="mr-1.5" />,
       SHIPPED: <FiTruck className="mr-1.5" />,
       DELIVERED: <FiCheckCircle className="mr-1.5" />,
@@ -73,21 +85,6 @@ export default function AdminOrdersPage() {
     );
   };
 
-  const filteredOrders = orders.filter(order => {
-    const matchesSearch = 
-      order.orderNumber.toLowerCase().includes(searchTerm.toLowerCase()) ||
-      order.customerName.toLowerCase().includes(searchTerm.toLowerCase()) ||
-      order.customerEmail.toLowerCase().includes(searchTerm.toLowerCase());
-      
-    const matchesStatus = statusFilter === 'all' || order.orderStatus === statusFilter;
-    
-    const orderAmount = order.totalAmount;
-    const matchesMinAmount = minAmountFilter === '' || orderAmount >= parseFloat(minAmountFilter);
-    const matchesMaxAmount = maxAmountFilter === '' || orderAmount <= parseFloat(maxAmountFilter);
-    
-    return matchesSearch && matchesStatus && matchesMinAmount && matchesMaxAmount;
-  });
-
   const clearFilters = () => {
     setSearchTerm('');
     setStatusFilter('all');
@@ -96,11 +93,7 @@ export default function AdminOrdersPage() {
     setCurrentPage(1);
   };
 
-  const indexOfLastOrder = currentPage * ordersPerPage;
-  const indexOfFirstOrder = indexOfLastOrder - ordersPerPage;
-  const currentOrders = filteredOrders.slice(indexOfFirstOrder, indexOfLastOrder);
-
-  const totalPages = Math.ceil(filteredOrders.length / ordersPerPage);
+  const currentOrders = orders;
 
   const paginate = (pageNumber) => setCurrentPage(pageNumber);
 
@@ -228,7 +221,7 @@ export default function AdminOrdersPage() {
             </h1>
             <div className="flex items-center gap-3">
               <div className={`text-sm px-3.5 py-1.5 rounded-lg ${darkMode ? "bg-slate-800 text-gray-400" : "bg-gray-200 text-gray-600"}`}>
-                Total: {filteredOrders.length} orders
+                Total: {totalOrders} orders
               </div>
             </div>
           </div>
@@ -281,7 +274,7 @@ export default function AdminOrdersPage() {
                   }}
                 >
                   <option value="all">All Statuses</option>
-                  <option value="PLACED">Placed</option>
+                  <option value="PENDING">Pending</option>
                   <option value="PROCESSING">Processing</option>
                   <option value="SHIPPED">Shipped</option>
                   <option value="DELIVERED">Delivered</option>
@@ -427,7 +420,7 @@ export default function AdminOrdersPage() {
               <div className="text-center py-16 px-6">
                 <FiInfo className="inline-block text-4xl text-gray-500 dark:text-gray-600 mb-3" />
                 <p className="text-lg font-semibold text-gray-600 dark:text-gray-400 mb-1">No Orders Found</p>
-                {orders.length > 0 && (searchTerm || statusFilter !== 'all' || minAmountFilter !== '' || maxAmountFilter !== '') ? (
+                {(searchTerm || statusFilter !== 'all' || minAmountFilter !== '' || maxAmountFilter !== '') ? (
                   <p className="text-sm text-gray-500 dark:text-gray-500">
                     No orders match your filters. Try adjusting them.
                   </p>
@@ -440,7 +433,7 @@ export default function AdminOrdersPage() {
             )}
 
             {/* Pagination Controls */}
-            {filteredOrders.length > ordersPerPage && (
+            {totalPages > 1 && (
               <div className={`p-4 sm:p-5 flex justify-center items-center gap-2 ${darkMode ? "bg-slate-800 border-t border-slate-700" : "bg-white border-t border-gray-200"}`}>
                 <button
                   onClick={prevPage}
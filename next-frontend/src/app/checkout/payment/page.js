@@ -257,7 +257,8 @@ export default function PaymentPage() {
             try {
               const verifyResponse = await fetch(`${process.env.NEXT_PUBLIC_BACKEND_URL}/api/payments/verify`, {
                 method: 'POST',
-                headers: { 'Content-Type': 'application/json' },
+                // Retries of this payment's verification are answered once, server side
+                headers: { 'Content-Type': 'application/json', 'Idempotency-Key': response.razorpay_payment_id },
                 body: JSON.stringify({
                   razorpayOrderId: response.razorpay_order_id,
                   razorpayPaymentId: response.razorpay_payment_id,
@@ -137,12 +137,8 @@ export default function ProductDetails() {
     }
   };
 
+  // Guests can fill a cart too; it is kept in a cookie and merged into their account at login
   const handleAddToCart = async () => {
-      if (!isLoggedIn) {
-        setShowLoginPrompt(true);
-        return;
-      }
-
       if (!selectedPack) {
         toast.warn('Please select a pack size');
         return;
@@ -0,0 +1,62 @@
+package com.spiceshop.config;
+
+import com.spiceshop.services.AccessTokenRevocationList;
+import com.spiceshop.services.AccessTokenService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Accepts {@code Authorization: Bearer <access token>} next to the session cookie. A valid
+ * token is checked with the signing key and the in-memory revocation list only, and is left on
+ * the request for AuthenticatedUserResolver; an invalid one is answered with 401 rather than
+ * silently treated as anonymous. Requests without the header pass through untouched.
+ */
+public class AccessTokenFilter extends OncePerRequestFilter {
+
+    private static final String BEARER = "Bearer ";
+
+    private final AccessTokenService accessTokenService;
+    private final AccessTokenRevocationList revocationList;
+
+    public AccessTokenFilter(AccessTokenService accessTokenService, AccessTokenRevocationList revocationList) {
+        this.accessTokenService = accessTokenService;
+        this.revocationList = revocationList;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        return !accessTokenService.isEnabled() || header == null || !header.startsWith(BEARER);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Optional<AccessTokenService.Claims> claims = accessTokenService
+                .verify(request.getHeader(HttpHeaders.AUTHORIZATION).substring(BEARER.length()).trim())
+                .filter(token -> !revocationList.isRevoked(token.jti()));
+        if (claims.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"success\":false,\"message\":\"Invalid or expired access token\"}");
+            return;
+        }
+        AccessTokenService.Claims token = claims.get();
+        request.setAttribute(AccessTokenService.REQUEST_ATTRIBUTE, token);
+        SecurityContextHolder.getContext().setAuthentication(UsernamePasswordAuthenticationToken.authenticated(
+                token.subject(), null, List.of(new SimpleGrantedAuthority("ROLE_" + token.role().name()))));
+        filterChain.doFilter(request, response);
+    }
+}
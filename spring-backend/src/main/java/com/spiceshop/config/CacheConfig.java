@@ -0,0 +1,92 @@
+package com.spiceshop.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    // Catalog snapshots served to the storefront
+    public static final String SPICE_LIST = "spiceList";
+    public static final String SPICE_BY_ID = "spiceById";
+    public static final String RELATED_SPICES = "relatedSpices";
+    public static final String QUALITY_CLASSES = "qualityClasses";
+
+    // Shipping fee tiers used by cart and order pricing
+    public static final String SHIPPING_RULES = "shippingRules";
+
+    // Per-user cart line counts behind the header badge
+    public static final String CART_COUNTS = "cartCounts";
+
+    // Settled payment verification results by idempotency key, so client retries skip the database
+    public static final String PAYMENT_VERIFICATIONS = "paymentVerifications";
+
+    // Logged-in user snapshots by user id, so authenticated calls skip the users lookup
+    public static final String AUTHENTICATED_USERS = "authenticatedUsers";
+
+    @Value("${catalog.cache.max-size:1000}")
+    private long maxSize;
+
+    @Value("${catalog.cache.ttl:10m}")
+    private Duration ttl;
+
+    @Value("${cart.count-cache.max-size:50000}")
+    private long cartCountMaxSize;
+
+    // Writes evict locally; the TTL bounds how stale another node's badge can get
+    @Value("${cart.count-cache.ttl:1m}")
+    private Duration cartCountTtl;
+
+    @Value("${payment.verification-cache.max-size:10000}")
+    private long verificationMaxSize;
+
+    @Value("${payment.verification-cache.ttl:15m}")
+    private Duration verificationTtl;
+
+    @Value("${auth.principal-cache.max-size:10000}")
+    private long principalMaxSize;
+
+    // Profile edits evict locally; the TTL bounds how long another node shows the old name
+    @Value("${auth.principal-cache.ttl:1m}")
+    private Duration principalTtl;
+
+    @Bean
+    public CacheManager cacheManager() {
+        CaffeineCacheManager caffeineCacheManager = new CaffeineCacheManager(
+                SPICE_LIST, SPICE_BY_ID, RELATED_SPICES, QUALITY_CLASSES, SHIPPING_RULES);
+        // recordStats feeds the cache.gets / cache.evictions metrics exposed by actuator
+        caffeineCacheManager.setCaffeine(Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats());
+        caffeineCacheManager.registerCustomCache(CART_COUNTS, Caffeine.newBuilder()
+                .maximumSize(cartCountMaxSize)
+                .expireAfterWrite(cartCountTtl)
+                .recordStats()
+                .build());
+        caffeineCacheManager.registerCustomCache(PAYMENT_VERIFICATIONS, Caffeine.newBuilder()
+                .maximumSize(verificationMaxSize)
+                .expireAfterWrite(verificationTtl)
+                .recordStats()
+                .build());
+        caffeineCacheManager.registerCustomCache(AUTHENTICATED_USERS, Caffeine.newBuilder()
+                .maximumSize(principalMaxSize)
+                .expireAfterWrite(principalTtl)
+                .recordStats()
+                .build());
+        caffeineCacheManager.setAllowNullValues(false);
+
+        // Evictions issued inside a transaction only apply once it commits,
+        // so a rolled-back write never drops (or re-populates) a snapshot early
+        return new TransactionAwareCacheManagerProxy(caffeineCacheManager);
+    }
+}
@@ -0,0 +1,43 @@
+package com.spiceshop.config;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * order_items ids used to come from an IDENTITY column; they now come from the pooled
+ * order_items_seq, which schema update creates starting at 1. On a database that already has
+ * order lines the sequence is moved past the highest id before the app takes traffic.
+ */
+// Runs after the EntityManagerFactory, whose schema update creates the sequence; still during
+// startup rather than on ApplicationReadyEvent, which fires once the server already accepts orders
+@Component
+@DependsOn("entityManagerFactory")
+public class OrderItemSequenceAligner {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderItemSequenceAligner.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public OrderItemSequenceAligner(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    void align() {
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) con -> con.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equals(database)) {
+            return;
+        }
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM order_items", Long.class);
+        Long lastValue = jdbcTemplate.queryForObject("SELECT last_value FROM order_items_seq", Long.class);
+        if (maxId != null && lastValue != null && lastValue < maxId) {
+            jdbcTemplate.queryForObject("SELECT setval('order_items_seq', ?)", Long.class, maxId);
+            logger.info("Moved order_items_seq from {} to {}", lastValue, maxId);
+        }
+    }
+}
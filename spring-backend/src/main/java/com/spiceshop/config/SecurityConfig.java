@@ -1,12 +1,18 @@
 package com.spiceshop.config;
 
+import com.spiceshop.services.AccessTokenRevocationList;
+import com.spiceshop.services.AccessTokenService;
+import com.spiceshop.services.AuthenticatedUserResolver;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authorization.AuthorizationDecision;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.AnonymousAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -18,15 +24,21 @@ import java.util.Arrays;
 public class SecurityConfig {
 
     private final EnvConfig envConfig;
+    private final AccessTokenService accessTokenService;
+    private final AccessTokenRevocationList revocationList;
 
     @Autowired
-    public SecurityConfig(EnvConfig envConfig) {
+    public SecurityConfig(EnvConfig envConfig, AccessTokenService accessTokenService,
+                          AccessTokenRevocationList revocationList) {
         this.envConfig = envConfig;
+        this.accessTokenService = accessTokenService;
+        this.revocationList = revocationList;
     }
 
+    // Raising the strength takes effect for stored hashes as their owners next log in (PasswordHasher)
     @Bean
-    public BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BCryptPasswordEncoder passwordEncoder(@Value("${auth.password.bcrypt-strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength);
     }
 
     @Bean
@@ -34,7 +46,14 @@ public class SecurityConfig {
         http
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .csrf(csrf -> csrf.disable())
-                .authorizeHttpRequests(auth -> auth.anyRequest().permitAll());
+                .authorizeHttpRequests(auth -> auth
+                        // Cache and metric endpoints can clear caches and expose traffic; admins only
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").access((authentication, context) ->
+                                new AuthorizationDecision(AuthenticatedUserResolver.isAdmin(context.getRequest())))
+                        .anyRequest().permitAll())
+                // Bearer tokens (auth.token.enabled) work alongside the session cookie
+                .addFilterBefore(new AccessTokenFilter(accessTokenService, revocationList), AnonymousAuthenticationFilter.class);
 
         return http.build();
     }
@@ -46,7 +65,7 @@ public class SecurityConfig {
         // Add PATCH to allowed methods
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
         // Explicitly allow needed headers
-        configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "Accept"));
+        configuration.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "Accept", "Idempotency-Key"));
         configuration.setExposedHeaders(Arrays.asList("Authorization", "Content-Type"));
         configuration.setAllowCredentials(true);
         // Set max age for preflight caching
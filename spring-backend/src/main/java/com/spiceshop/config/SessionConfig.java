@@ -0,0 +1,55 @@
+package com.spiceshop.config;
+
+import com.spiceshop.services.CoalescingSessionRepository;
+import com.spiceshop.services.ExpiredSessionSweeper;
+import com.spiceshop.services.SessionAttributeCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.session.config.SessionRepositoryCustomizer;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+
+/**
+ * Keeps the JDBC session store from writing on every request: the session filter gets the
+ * coalescing wrapper around Boot's repository, attributes are stored in the compact encoding,
+ * and expired rows are removed in batches by ExpiredSessionSweeper instead of Spring Session's
+ * cleanup cron.
+ */
+@Configuration
+public class SessionConfig {
+
+    @Value("${spring.session.jdbc.table-name:SPRING_SESSION}")
+    private String tableName;
+
+    @Value("${session.cleanup.batch-size:500}")
+    private int cleanupBatchSize;
+
+    @Bean
+    public SessionRepositoryCustomizer<JdbcIndexedSessionRepository> compactSessionAttributes() {
+        return repository -> repository.setConversionService(
+                SessionAttributeCodec.conversionService(SessionConfig.class.getClassLoader()));
+    }
+
+    // Wraps the repository Boot builds rather than declaring another SessionRepository bean,
+    // which would switch off Boot's JDBC session setup (schema, timeout, customizers)
+    @Bean
+    public static BeanPostProcessor coalescingSessionRepository(Environment environment) {
+        double flushFraction = environment.getProperty("session.access-time.flush-fraction", Double.class, 0.1);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof JdbcIndexedSessionRepository repository
+                        ? new CoalescingSessionRepository<>(repository, flushFraction)
+                        : bean;
+            }
+        };
+    }
+
+    @Bean
+    public ExpiredSessionSweeper expiredSessionSweeper(JdbcTemplate jdbcTemplate) {
+        return new ExpiredSessionSweeper(jdbcTemplate, tableName, cleanupBatchSize);
+    }
+}
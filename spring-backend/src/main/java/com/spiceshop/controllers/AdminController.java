@@ -17,8 +17,14 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.spiceshop.models.Admin;
+import com.spiceshop.models.RefreshToken;
+import com.spiceshop.services.AccessTokenService;
 import com.spiceshop.services.AdminService;
+import com.spiceshop.services.AuthenticatedUserResolver;
+import com.spiceshop.services.LoginRateLimiter;
+import com.spiceshop.services.RefreshTokenService;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 
 @RestController
@@ -29,6 +35,15 @@ public class AdminController {
     @Autowired
     private AdminService adminService;
 
+    @Autowired
+    private LoginRateLimiter loginRateLimiter;
+
+    @Autowired
+    private AccessTokenService accessTokenService;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
       
     @PostMapping("/create")
     public ResponseEntity<Admin> createAdmin(@RequestBody Admin admin) {
@@ -37,12 +52,14 @@ public class AdminController {
     }
 
     @PostMapping("/login")
-    public ResponseEntity<Map<String, String>> login(@RequestBody Admin admin, HttpSession session) {
+    public ResponseEntity<Map<String, String>> login(@RequestBody Admin admin, HttpServletRequest request, HttpSession session) {
+        // Admin buckets are keyed apart from customer accounts with the same email
+        loginRateLimiter.acquire(request.getRemoteAddr(), "admin:" + admin.getEmail());
         boolean isValid = adminService.verifyLogin(admin.getEmail(), admin.getPassword());
 
         Map<String, String> response = new HashMap<>();
         if (isValid) {
-            session.setAttribute("adminEmail", admin.getEmail());    
+            session.setAttribute(AuthenticatedUserResolver.SESSION_ADMIN_EMAIL, admin.getEmail());    
             response.put("message", "Login successful");
             return ResponseEntity.ok(response);
         }
@@ -50,6 +67,19 @@ public class AdminController {
         return ResponseEntity.status(401).body(response);
     }
 
+    // Token login for the stateless mode; refresh and revoke go through /api/auth/token/*
+    @PostMapping("/token")
+    public ResponseEntity<?> issueToken(@RequestBody Admin admin, HttpServletRequest request) {
+        if (!accessTokenService.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        loginRateLimiter.acquire(request.getRemoteAddr(), "admin:" + admin.getEmail());
+        if (!adminService.verifyLogin(admin.getEmail(), admin.getPassword())) {
+            return ResponseEntity.status(401).body(Map.of("message", "Invalid credentials"));
+        }
+        return ResponseEntity.ok(refreshTokenService.login(RefreshToken.Role.ADMIN, admin.getEmail()).body());
+    }
+
     @PostMapping("/recover")
     public ResponseEntity<Admin> recoverAdmin(@RequestParam String secretKey) {
         Admin admin = adminService.recoverAdmin(secretKey);
@@ -96,7 +126,7 @@ public class AdminController {
     }
 
     @PostMapping("/change-password")
-    public ResponseEntity<Map<String, String>> changePassword(@RequestBody ChangePasswordRequest request) {
+    public ResponseEntity<Map<String, String>> changePassword(@RequestBody ChangePasswordRequest request, HttpServletRequest httpRequest) {
         Map<String, String> response = new HashMap<>();
 
         if (request.getEmail() == null || request.getEmail().isEmpty() ||
@@ -112,6 +142,8 @@ public class AdminController {
             return ResponseEntity.badRequest().body(response);
         }
 
+        // Checks the current password without a session, so it is throttled like the login
+        loginRateLimiter.acquire(httpRequest.getRemoteAddr(), "admin:" + request.getEmail());
         boolean changed = adminService.changePassword(request.getEmail(), request.getCurrentPassword(), request.getNewPassword());
 
         if (changed) {
@@ -1,15 +1,30 @@
 package com.spiceshop.controllers;
 
+import com.spiceshop.dto.AuthenticatedUser;
+import com.spiceshop.exceptions.PasswordHashingBusyException;
+import com.spiceshop.exceptions.TooManyLoginAttemptsException;
+import com.spiceshop.exceptions.TooManyOtpRequestsException;
+import com.spiceshop.services.AccessTokenService;
+import com.spiceshop.services.AuthenticatedUserResolver;
+import com.spiceshop.services.CartService;
+import com.spiceshop.services.GuestCartTokenService;
+import com.spiceshop.services.LoginRateLimiter;
 import com.spiceshop.services.OTPService;
+import com.spiceshop.services.PasswordHasher;
+import com.spiceshop.services.RefreshTokenService;
 import com.spiceshop.services.UserService;
 import com.spiceshop.services.EmailService;
+import com.spiceshop.models.RefreshToken;
 import com.spiceshop.models.User;
 import com.spiceshop.repositorys.UserRepository;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 import java.util.Map;
 import java.util.Optional;
@@ -19,22 +34,42 @@ import java.util.Optional;
 @CrossOrigin(origins = "${FRONTEND_URL}")
 public class AuthController {
 
+    private static final Logger logger = LoggerFactory.getLogger(AuthController.class);
+
     private final UserService userService;
     private final OTPService otpService;
     private final EmailService emailService;
     private final UserRepository userRepository;
-    private final BCryptPasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
+    private final LoginRateLimiter loginRateLimiter;
+    private final CartService cartService;
+    private final GuestCartTokenService guestCartTokenService;
+    private final AuthenticatedUserResolver authenticatedUserResolver;
+    private final AccessTokenService accessTokenService;
+    private final RefreshTokenService refreshTokenService;
 
     public AuthController(UserService userService,
                           OTPService otpService,
                           EmailService emailService,
                           UserRepository userRepository,
-                          BCryptPasswordEncoder passwordEncoder) {
+                          PasswordHasher passwordHasher,
+                          LoginRateLimiter loginRateLimiter,
+                          CartService cartService,
+                          GuestCartTokenService guestCartTokenService,
+                          AuthenticatedUserResolver authenticatedUserResolver,
+                          AccessTokenService accessTokenService,
+                          RefreshTokenService refreshTokenService) {
         this.userService = userService;
         this.otpService = otpService;
         this.emailService = emailService;
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHasher = passwordHasher;
+        this.loginRateLimiter = loginRateLimiter;
+        this.cartService = cartService;
+        this.guestCartTokenService = guestCartTokenService;
+        this.authenticatedUserResolver = authenticatedUserResolver;
+        this.accessTokenService = accessTokenService;
+        this.refreshTokenService = refreshTokenService;
     }
 
     @PostMapping("/send-otp")
@@ -53,7 +88,14 @@ public class AuthController {
             );
         }
 
-        String otp = otpService.generateOTP(email);
+        String otp;
+        try {
+            otp = otpService.generateOTP(email);
+        } catch (TooManyOtpRequestsException e) {
+            return ResponseEntity.status(429).body(
+                    Map.of("success", false, "message", e.getMessage())
+            );
+        }
         emailService.sendRegistrationOTP(email, otp);
         return ResponseEntity.ok(
                 Map.of("success", true, "message", "OTP sent successfully")
@@ -91,6 +133,7 @@ public class AuthController {
     @PostMapping("/change-password")
     public ResponseEntity<?> changePassword(
             @RequestBody Map<String, String> body,
+            HttpServletRequest request,
             HttpSession session
     ) {
           
@@ -139,28 +182,34 @@ public class AuthController {
 
             User user = userOpt.get();
 
-              
-            if (!passwordEncoder.matches(currentPassword, user.getPassword())) {
+            // Guessing the current password from a hijacked session is throttled like a login
+            loginRateLimiter.acquire(request.getRemoteAddr(), user.getEmail());
+            if (!passwordHasher.verify(currentPassword, user.getPassword()).matches()) {
                 return ResponseEntity.status(401).body(
                         Map.of("success", false, "message", "Current password is incorrect")
                 );
             }
 
-              
-            if (passwordEncoder.matches(newPassword, user.getPassword())) {
+            // The current password was just confirmed, so comparing plain text saves a second hash
+            if (newPassword.equals(currentPassword)) {
                 return ResponseEntity.badRequest().body(
                         Map.of("success", false, "message", "New password must be different from current password")
                 );
             }
 
               
-            user.setPassword(passwordEncoder.encode(newPassword));
+            user.setPassword(passwordHasher.encode(newPassword));
             userRepository.save(user);
+            // Token logins made with the old password end here, access tokens included
+            refreshTokenService.revokeAll(RefreshToken.Role.USER, user.getId().toString());
+            authenticatedUserResolver.evict(user.getId());
 
             return ResponseEntity.ok(
                     Map.of("success", true, "message", "Password changed successfully")
             );
 
+        } catch (TooManyLoginAttemptsException | PasswordHashingBusyException e) {
+            throw e;
         } catch (Exception e) {
             return ResponseEntity.internalServerError().body(
                     Map.of("success", false, "message", "An error occurred while changing password")
@@ -225,6 +274,8 @@ public class AuthController {
     @PostMapping("/login")
     public ResponseEntity<?> loginUser(
             @RequestBody Map<String, String> body,
+            @CookieValue(name = GuestCartTokenService.COOKIE_NAME, required = false) String guestCart,
+            HttpServletRequest request,
             HttpSession session
     ) {
         String email = body.get("email");
@@ -243,52 +294,116 @@ public class AuthController {
             );
         }
 
-        Optional<User> userOpt = userRepository.findByEmail(email);
-
-          
+        // Throttled before any hashing; one answer for unknown email and wrong password
+        loginRateLimiter.acquire(request.getRemoteAddr(), email);
+        Optional<User> userOpt = userService.authenticate(email, password);
         if (userOpt.isEmpty()) {
             return ResponseEntity.status(401).body(
-                    Map.of("success", false, "message", "Account not found with this email")
+                    Map.of("success", false, "message", "Invalid email or password")
             );
         }
 
-          
-        if (!passwordEncoder.matches(password, userOpt.get().getPassword())) {
-            return ResponseEntity.status(401).body(
-                    Map.of("success", false, "message", "Incorrect password")
+        session.setAttribute(AuthenticatedUserResolver.SESSION_USER_ID, userOpt.get().getId());
+
+        if (guestCart == null) {
+            return ResponseEntity.ok(
+                    Map.of("success", true, "message", "Login successful")
             );
         }
-
-        session.setAttribute("userId", userOpt.get().getId());
-        return ResponseEntity.ok(
-                Map.of("success", true, "message", "Login successful")
-        );
+        // Whatever was put in the cart before logging in moves to the user's cart
+        try {
+            cartService.mergeGuestCart(userOpt.get().getId(), guestCartTokenService.decode(guestCart));
+        } catch (Exception e) {
+            // keep the cookie; the next login tries again
+            logger.error("Could not merge guest cart for user {}", userOpt.get().getId(), e);
+            return ResponseEntity.ok(
+                    Map.of("success", true, "message", "Login successful")
+            );
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.SET_COOKIE, guestCartTokenService.clearCookie(request.isSecure()).toString())
+                .body(Map.of("success", true, "message", "Login successful"));
     }
 
     @GetMapping("/check-session")
-    public ResponseEntity<?> checkSession(HttpSession session) {
-        Object userId = session.getAttribute("userId");
+    public ResponseEntity<?> checkSession(HttpServletRequest request) {
+        Long userId = AuthenticatedUserResolver.currentUserId(request);
         if (userId == null) {
             return ResponseEntity.status(401).body(
                     Map.of("success", false, "message", "Not authenticated")
             );
         }
           
-        Optional<User> userOpt = userRepository.findById((Long) userId);   
+        Optional<AuthenticatedUser> userOpt = authenticatedUserResolver.resolve(request);
         if (userOpt.isPresent()) {
-            User user = userOpt.get();
+            AuthenticatedUser user = userOpt.get();
             return ResponseEntity.ok(
-                    Map.of("success", true, "userId", userId, "email", user.getEmail(), "firstName", user.getFirstName(), "lastName", user.getLastName())
+                    Map.of("success", true, "userId", userId, "email", user.email(), "firstName", user.firstName(), "lastName", user.lastName())
             );
         } else {
               
-            session.invalidate();   
+            HttpSession session = request.getSession(false);
+            if (session != null) {
+                session.invalidate();
+            }
             return ResponseEntity.status(401).body(
                     Map.of("success", false, "message", "User not found for session")
             );
         }
     }
 
+    // Stateless mode (auth.token.enabled): a bearer access token and a rotating refresh token
+    // instead of the session cookie, for clients moving off the session one page at a time
+    @PostMapping("/token")
+    public ResponseEntity<?> issueToken(@RequestBody Map<String, String> body, HttpServletRequest request) {
+        if (!accessTokenService.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        String email = body.get("email");
+        String password = body.get("password");
+        if (email == null || email.isBlank() || password == null || password.isBlank()) {
+            return ResponseEntity.badRequest().body(
+                    Map.of("success", false, "message", "Email and password are required")
+            );
+        }
+
+        loginRateLimiter.acquire(request.getRemoteAddr(), email);
+        Optional<User> userOpt = userService.authenticate(email, password);
+        if (userOpt.isEmpty()) {
+            return ResponseEntity.status(401).body(
+                    Map.of("success", false, "message", "Invalid email or password")
+            );
+        }
+        return ResponseEntity.ok(refreshTokenService.login(RefreshToken.Role.USER, String.valueOf(userOpt.get().getId())).body());
+    }
+
+    @PostMapping("/token/refresh")
+    public ResponseEntity<?> refreshToken(@RequestBody Map<String, String> body) {
+        if (!accessTokenService.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        Optional<RefreshTokenService.TokenPair> pair = refreshTokenService.refresh(body.get("refreshToken"));
+        if (pair.isEmpty()) {
+            return ResponseEntity.status(401).body(
+                    Map.of("success", false, "message", "Invalid or expired refresh token")
+            );
+        }
+        return ResponseEntity.ok(pair.get().body());
+    }
+
+    // Revokes the bearer token of this request and the family of the given refresh token
+    @PostMapping("/token/revoke")
+    public ResponseEntity<?> revokeToken(@RequestBody(required = false) Map<String, String> body, HttpServletRequest request) {
+        if (!accessTokenService.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        refreshTokenService.logout((AccessTokenService.Claims) request.getAttribute(AccessTokenService.REQUEST_ATTRIBUTE),
+                body == null ? null : body.get("refreshToken"));
+        return ResponseEntity.ok(
+                Map.of("success", true, "message", "Logout successful")
+        );
+    }
+
     @PostMapping("/logout")
     public ResponseEntity<?> logoutUser(HttpSession session) {
         session.invalidate();
@@ -1,78 +1,105 @@
 package com.spiceshop.controllers;
 
 import com.spiceshop.dto.*;
+import com.spiceshop.services.AuthenticatedUserResolver;
 import com.spiceshop.services.CartService;
+import com.spiceshop.services.GuestCartTokenService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import jakarta.servlet.http.HttpSession;
-import java.security.Principal;
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+// Without a logged-in user the cart lives in the signed guest_cart cookie and nothing is written to the database
 @RestController
 @RequestMapping("/api/cart")
 @CrossOrigin(origins = "${FRONTEND_URL}")
 public class CartController {
 
     private final CartService cartService;
-    private final HttpSession httpSession;
+    private final GuestCartTokenService guestCartTokenService;
 
     @Autowired
-    public CartController(CartService cartService, HttpSession httpSession) {
+    public CartController(CartService cartService, GuestCartTokenService guestCartTokenService) {
         this.cartService = cartService;
-        this.httpSession = httpSession;
+        this.guestCartTokenService = guestCartTokenService;
     }
 
     @GetMapping
-    public ResponseEntity<CartDTO> getCart(Principal principal) {
-        Long userId = getUserIdFromPrincipal(principal);
+    public ResponseEntity<CartDTO> getCart(HttpServletRequest request,
+                                           @CookieValue(name = GuestCartTokenService.COOKIE_NAME, required = false) String guestCart) {
+        Long userId = AuthenticatedUserResolver.currentUserId(request);
+        if (userId == null) {
+            return ResponseEntity.ok(cartService.getGuestCart(guestCartTokenService.decode(guestCart)));
+        }
         CartDTO cart = cartService.getCartDetails(userId);
         return ResponseEntity.ok(cart);
     }
 
     @PostMapping("/items")
     public ResponseEntity<CartDTO> addToCart(
-            Principal principal,
-            @RequestBody AddToCartRequest request) {
-        Long userId = getUserIdFromPrincipal(principal);
-        cartService.addItemToCart(userId, request);
-        CartDTO cart = cartService.getCartDetails(userId);
+            HttpServletRequest request,
+            @CookieValue(name = GuestCartTokenService.COOKIE_NAME, required = false) String guestCart,
+            @RequestBody AddToCartRequest addRequest) {
+        Long userId = AuthenticatedUserResolver.currentUserId(request);
+        if (userId == null) {
+            return guestResponse(request, cartService.addGuestItem(guestCartTokenService.decode(guestCart), addRequest));
+        }
+        CartDTO cart = cartService.addItemToCart(userId, addRequest);
         return ResponseEntity.ok(cart);
     }
 
     @PutMapping("/items/{itemId}")
     public ResponseEntity<CartDTO> updateCartItem(
-            Principal principal,
+            HttpServletRequest request,
+            @CookieValue(name = GuestCartTokenService.COOKIE_NAME, required = false) String guestCart,
             @PathVariable Long itemId,
-            @RequestBody UpdateCartItemRequest request) {
-        Long userId = getUserIdFromPrincipal(principal);
-        cartService.updateCartItemQuantity(userId, itemId, request);
-        CartDTO cart = cartService.getCartDetails(userId);
+            @RequestBody UpdateCartItemRequest updateRequest) {
+        Long userId = AuthenticatedUserResolver.currentUserId(request);
+        if (userId == null) {
+            return guestResponse(request, cartService.updateGuestItem(guestCartTokenService.decode(guestCart), itemId, updateRequest));
+        }
+        CartDTO cart = cartService.updateCartItemQuantity(userId, itemId, updateRequest);
         return ResponseEntity.ok(cart);
     }
 
     @DeleteMapping("/items/{itemId}")
     public ResponseEntity<CartDTO> removeCartItem(
-            Principal principal,
+            HttpServletRequest request,
+            @CookieValue(name = GuestCartTokenService.COOKIE_NAME, required = false) String guestCart,
             @PathVariable Long itemId) {
-        Long userId = getUserIdFromPrincipal(principal);
-        cartService.removeItemFromCart(userId, itemId);
-        CartDTO cart = cartService.getCartDetails(userId);
+        Long userId = AuthenticatedUserResolver.currentUserId(request);
+        if (userId == null) {
+            return guestResponse(request, cartService.removeGuestItem(guestCartTokenService.decode(guestCart), itemId));
+        }
+        CartDTO cart = cartService.removeItemFromCart(userId, itemId);
         return ResponseEntity.ok(cart);
     }
 
-    private Long getUserIdFromPrincipal(Principal principal) {
-        Object userIdObj = httpSession.getAttribute("userId");
-        if (userIdObj instanceof Long) {
-            return (Long) userIdObj;
-        }
-
-        throw new SecurityException("User not authenticated or userId not found in session.");
+    // Re-signs the token from what was actually priced, so packs that have disappeared drop out of the cookie
+    private ResponseEntity<CartDTO> guestResponse(HttpServletRequest request, CartDTO cart) {
+        Map<Long, Integer> lines = new LinkedHashMap<>();
+        cart.getItems().forEach(item -> lines.put(item.getSpicePackId(), item.getQuantity()));
+        return ResponseEntity.ok()
+                .header(HttpHeaders.SET_COOKIE, guestCartTokenService.cookie(lines, request.isSecure()).toString())
+                .body(cart);
     }
 
+    // The ETag is the count itself, so a badge that has not changed revalidates to a 304
     @GetMapping("/count")
-    public ResponseEntity<Integer> getCartItemCount(Principal principal) {
-        Long userId = getUserIdFromPrincipal(principal);
-        int count = cartService.getCartItemCount(userId);
-        return ResponseEntity.ok(count);
+    public ResponseEntity<Integer> getCartItemCount(HttpServletRequest request,
+                                                    @CookieValue(name = GuestCartTokenService.COOKIE_NAME, required = false) String guestCart) {
+        Long userId = AuthenticatedUserResolver.currentUserId(request);
+        // Guests are counted straight from the token
+        int count = userId == null
+                ? guestCartTokenService.decode(guestCart).size()
+                : cartService.getCartItemCount(userId);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .eTag("W/\"cart-count-" + count + "\"")
+                .body(count);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,67 @@
+package com.spiceshop.controllers;
+
+import com.spiceshop.services.ImageStorageService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Optional;
+
+/**
+ * Serves uploaded images and their renditions, the origin behind images.base-url (a CDN can
+ * sit in front). Names are content hashes, so responses are cacheable for a year and the name
+ * doubles as the ETag. The body goes out through Tomcat's sendfile where the connector offers
+ * it, so the bytes are never copied through the JVM.
+ */
+@RestController
+public class ImageController {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    // The original standing in for a rendition still being built; caches come back soon
+    private static final String SHORT_LIVED = "public, max-age=60";
+
+    private final ImageStorageService imageStorageService;
+
+    public ImageController(ImageStorageService imageStorageService) {
+        this.imageStorageService = imageStorageService;
+    }
+
+    @GetMapping("/images/{fileName:.+}")
+    public void image(@PathVariable String fileName, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<ImageStorageService.StoredImage> found = imageStorageService.resolve(fileName);
+        if (found.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        ImageStorageService.StoredImage image = found.get();
+        response.setHeader(HttpHeaders.CACHE_CONTROL, image.fallback() ? SHORT_LIVED : IMMUTABLE);
+        if (new ServletWebRequest(request, response).checkNotModified("\"" + image.path().getFileName() + "\"")) {
+            return;
+        }
+
+        long length = Files.size(image.path());
+        response.setContentType(image.contentType());
+        response.setContentLengthLong(length);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, image.path().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, length);
+            return;
+        }
+        Files.copy(image.path(), response.getOutputStream());
+    }
+}
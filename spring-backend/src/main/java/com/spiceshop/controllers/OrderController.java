@@ -1,21 +1,28 @@
 package com.spiceshop.controllers;
 
-import com.razorpay.RazorpayException;
 import com.spiceshop.dto.*;
 import com.spiceshop.exceptions.CustomException;
-import com.spiceshop.models.User;
-import com.spiceshop.repositorys.UserRepository;
+import com.spiceshop.services.AuthenticatedUserResolver;
+import com.spiceshop.services.CheckoutService;
+import com.spiceshop.services.OrderExportService;
 import com.spiceshop.services.OrderService;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 @RestController
@@ -24,48 +31,42 @@ import java.util.List;
 public class OrderController {
 
     private final OrderService orderService;
-    private final UserRepository userRepository;
+    private final CheckoutService checkoutService;
+    private final OrderExportService orderExportService;
+    private final AuthenticatedUserResolver authenticatedUserResolver;
 
     private static final Logger logger = LoggerFactory.getLogger(OrderController.class);
 
-    public OrderController(OrderService orderService, UserRepository userRepository) {
+    public OrderController(OrderService orderService, CheckoutService checkoutService,
+                           OrderExportService orderExportService, AuthenticatedUserResolver authenticatedUserResolver) {
         this.orderService = orderService;
-        this.userRepository = userRepository;
+        this.checkoutService = checkoutService;
+        this.orderExportService = orderExportService;
+        this.authenticatedUserResolver = authenticatedUserResolver;
     }
 
     @PostMapping("/place")
     public ResponseEntity<ApiResponse<OrderResponse>> placeOrder(@RequestBody OrderRequest orderRequest,
-                                                                 HttpSession session) {   
-
-        User currentUser = null;
-        Object userId = session.getAttribute("userId");   
-
-        if (userId != null) {
-            currentUser = userRepository.findById((Long) userId)   
-                    .orElse(null);
-            if (currentUser != null) {
-                logger.info("OrderController: Received request for user: {}", currentUser.getEmail());
-            } else {
-                logger.warn("OrderController: User ID found in session ({}), but User entity not found in DB.", userId);
-                  
-                session.invalidate();
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(ApiResponse.error("User session invalid. Please log in again."));
-            }
-        } else {
-            logger.warn("OrderController: No userId found in session for placeOrder request. User not authenticated.");
-              
+                                                                 HttpServletRequest request) {
+
+        if (AuthenticatedUserResolver.currentUserId(request) == null) {
+            logger.warn("OrderController: No session user or access token for placeOrder request. User not authenticated.");
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(ApiResponse.error("User not authenticated. Please log in."));
         }
+        AuthenticatedUser currentUser = authenticatedUserResolver.resolve(request).orElse(null);
+        if (currentUser == null) {
+            logger.warn("OrderController: Authenticated user id not found in DB.");
+            invalidateSession(request);
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(ApiResponse.error("User session invalid. Please log in again."));
+        }
+        logger.info("OrderController: Received request for user: {}", currentUser.email());
 
         try {
-            OrderResponse response = orderService.placeOrder(orderRequest, currentUser);
+            OrderResponse response = checkoutService.placeOrder(orderRequest, currentUser);
             return ResponseEntity.ok(ApiResponse.success(response.getMessage(), response));
         } catch (CustomException e) {
             logger.error("OrderController: CustomException during placeOrder: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.error(e.getMessage()));
-        } catch (RazorpayException e) {
-            logger.error("OrderController: RazorpayException during placeOrder: {}", e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ApiResponse.error("Payment initiation failed: " + e.getMessage()));
         } catch (Exception e) {
             logger.error("OrderController: Unexpected error during placeOrder: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ApiResponse.error("An unexpected error occurred while placing the order."));
@@ -73,23 +74,44 @@ public class OrderController {
     }
 
     @GetMapping("/history")
-    public ResponseEntity<ApiResponse<List<OrderHistoryDto>>> getUserOrders(HttpSession session) {
-        User currentUser = null;
-        Object userId = session.getAttribute("userId");
-
-        if (userId != null) {
-            currentUser = userRepository.findById((Long) userId)
-                    .orElse(null);
-            if (currentUser == null) {
-                session.invalidate();
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(ApiResponse.error("User session invalid. Please log in again."));
-            }
-        } else {
+    public ResponseEntity<ApiResponse<List<OrderHistoryDto>>> getUserOrders(HttpServletRequest request) {
+        if (AuthenticatedUserResolver.currentUserId(request) == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(ApiResponse.error("User not authenticated. Please log in."));
         }
+        AuthenticatedUser currentUser = authenticatedUserResolver.resolve(request).orElse(null);
+        if (currentUser == null) {
+            invalidateSession(request);
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(ApiResponse.error("User session invalid. Please log in again."));
+        }
 
         try {
-            List<OrderHistoryDto> orders = orderService.getUserOrderHistory(currentUser);
+            List<OrderHistoryDto> orders = orderService.getUserOrderHistory(currentUser.id());
+            return ResponseEntity.ok(ApiResponse.success("User order history fetched successfully.", orders));
+        } catch (CustomException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("OrderController: Unexpected error fetching order history: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ApiResponse.error("An unexpected error occurred while fetching order history."));
+        }
+    }
+
+    @GetMapping(value = "/history", params = "cursor")
+    public ResponseEntity<ApiResponse<CursorPage<OrderHistoryDto>>> getUserOrdersByCursor(
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            HttpServletRequest request) {
+        if (AuthenticatedUserResolver.currentUserId(request) == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(ApiResponse.error("User not authenticated. Please log in."));
+        }
+        AuthenticatedUser currentUser = authenticatedUserResolver.resolve(request).orElse(null);
+        if (currentUser == null) {
+            invalidateSession(request);
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(ApiResponse.error("User session invalid. Please log in again."));
+        }
+
+        try {
+            CursorPage<OrderHistoryDto> orders = orderService.getUserOrderHistoryWindow(currentUser.id(), cursor, clampLimit(limit), includeTotal);
             return ResponseEntity.ok(ApiResponse.success("User order history fetched successfully.", orders));
         } catch (CustomException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.error(e.getMessage()));
@@ -100,23 +122,18 @@ public class OrderController {
     }
 
     @GetMapping("/{orderId}")
-    public ResponseEntity<ApiResponse<OrderDetailsDto>> getOrderDetails(@PathVariable Long orderId, HttpSession session) {
-        User currentUser = null;
-        Object userId = session.getAttribute("userId");
-
-        if (userId != null) {
-            currentUser = userRepository.findById((Long) userId)
-                    .orElse(null);
-            if (currentUser == null) {
-                session.invalidate();
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(ApiResponse.error("User session invalid. Please log in again."));
-            }
-        } else {
+    public ResponseEntity<ApiResponse<OrderDetailsDto>> getOrderDetails(@PathVariable Long orderId, HttpServletRequest request) {
+        if (AuthenticatedUserResolver.currentUserId(request) == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(ApiResponse.error("User not authenticated. Please log in."));
         }
+        AuthenticatedUser currentUser = authenticatedUserResolver.resolve(request).orElse(null);
+        if (currentUser == null) {
+            invalidateSession(request);
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(ApiResponse.error("User session invalid. Please log in again."));
+        }
 
         try {
-            OrderDetailsDto orderDetails = orderService.getOrderDetailByIdAndUser(orderId, currentUser);
+            OrderDetailsDto orderDetails = orderService.getOrderDetailByIdAndUser(orderId, currentUser.id());
             return ResponseEntity.ok(ApiResponse.success("Order details fetched successfully.", orderDetails));
         } catch (CustomException e) {
             logger.error("OrderController: CustomException fetching order details: {}", e.getMessage());
@@ -143,6 +160,89 @@ public class OrderController {
         }
     }
 
+    // Cursor mode of /all; the plain endpoint keeps returning the full list the admin panel expects
+    @GetMapping(value = "/all", params = "cursor")
+    public ResponseEntity<ApiResponse<CursorPage<OrderHistoryDto>>> getAllOrdersByCursor(
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        try {
+            CursorPage<OrderHistoryDto> orders = orderService.getAllOrdersWindow(cursor, clampLimit(limit), includeTotal);
+            return ResponseEntity.ok(ApiResponse.success("All orders fetched successfully.", orders));
+        } catch (CustomException e) {
+            logger.error("OrderController: CustomException fetching orders by cursor: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("OrderController: Unexpected error fetching orders by cursor: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ApiResponse.error("An unexpected error occurred while fetching all orders."));
+        }
+    }
+
+    // A stale session cookie is dropped; token callers never had a session to drop
+    private static void invalidateSession(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            session.invalidate();
+        }
+    }
+
+    private static int clampLimit(int limit) {
+        return Math.max(1, Math.min(limit, 100));
+    }
+
+    // Paginated, filterable admin feed; /all stays as the unfiltered full list for older clients
+    @GetMapping("/admin")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getOrderFeedForAdmin(
+            @RequestParam(defaultValue = "1") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @ModelAttribute OrderFeedFilter filter,
+            HttpServletRequest request) {
+        if (!AuthenticatedUserResolver.isAdmin(request)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(ApiResponse.error("Admin login required."));
+        }
+        try {
+            Page<OrderHistoryDto> feed = orderService.getOrderFeed(filter, Math.max(page, 1), clampLimit(size));
+
+            Map<String, Object> data = new HashMap<>();
+            data.put("orders", feed.getContent());
+            data.put("page", feed.getNumber() + 1);
+            data.put("totalPages", feed.getTotalPages());
+            data.put("totalElements", feed.getTotalElements());
+            return ResponseEntity.ok(ApiResponse.success("Orders fetched successfully.", data));
+        } catch (CustomException e) {
+            logger.error("OrderController: CustomException fetching admin order feed: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("OrderController: Unexpected error fetching admin order feed: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ApiResponse.error("An unexpected error occurred while fetching orders."));
+        }
+    }
+
+    // Streams every matching order as NDJSON or CSV without building the result in memory;
+    // rows carry customer contact details, so admins only
+    @GetMapping("/admin/export")
+    public ResponseEntity<StreamingResponseBody> exportOrdersForAdmin(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @ModelAttribute OrderFeedFilter filter,
+            HttpServletRequest request) {
+        if (!AuthenticatedUserResolver.isAdmin(request)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        OrderExportService.Format exportFormat;
+        try {
+            exportFormat = OrderExportService.Format.valueOf(format.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        logger.info("OrderController: Admin exporting orders as {}", exportFormat);
+        StreamingResponseBody body = out -> orderExportService.export(filter, exportFormat, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"orders." + exportFormat.getExtension() + "\"")
+                .body(body);
+    }
+
     @GetMapping("/admin/{orderId}")
     public ResponseEntity<ApiResponse<OrderDetailsDto>> getOrderDetailsForAdmin(@PathVariable Long orderId) {
         logger.info("OrderController: Admin accessing order details for orderId: {}", orderId);
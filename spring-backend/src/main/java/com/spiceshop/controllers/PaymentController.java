@@ -4,31 +4,82 @@ import com.spiceshop.dto.PaymentVerificationRequest;
 import com.spiceshop.dto.ApiResponse;
 import com.spiceshop.dto.PaymentVerificationResponse;
 import com.spiceshop.exceptions.CustomException;
+import com.spiceshop.exceptions.PaymentConflictException;
+import com.spiceshop.services.AuthenticatedUserResolver;
 import com.spiceshop.services.PaymentService;
+import com.spiceshop.services.PaymentWebhookService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/payments")
 @CrossOrigin(origins = "${FRONTEND_URL}")
 public class PaymentController {
 
+    private static final Logger logger = LoggerFactory.getLogger(PaymentController.class);
+
     private final PaymentService paymentService;
+    private final PaymentWebhookService paymentWebhookService;
 
-    public PaymentController(PaymentService paymentService) {
+    public PaymentController(PaymentService paymentService, PaymentWebhookService paymentWebhookService) {
         this.paymentService = paymentService;
+        this.paymentWebhookService = paymentWebhookService;
     }
 
     @PostMapping("/verify")
-    public ResponseEntity<ApiResponse<PaymentVerificationResponse>> verifyPayment(@RequestBody PaymentVerificationRequest request) {
+    public ResponseEntity<ApiResponse<PaymentVerificationResponse>> verifyPayment(@RequestBody PaymentVerificationRequest request,
+                                                                          @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         try {
-            PaymentVerificationResponse response = paymentService.verifyRazorpayPayment(request);
+            PaymentVerificationResponse response = paymentService.verifyRazorpayPayment(request, idempotencyKey);
+            if (!response.isSuccess()) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.error(response.getMessage(), response));
+            }
             return ResponseEntity.ok(ApiResponse.success(response.getMessage(), response));
+        } catch (PaymentConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ApiResponse.error(e.getMessage()));
         } catch (CustomException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.error(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ApiResponse.error("An unexpected error occurred during payment verification."));
         }
     }
-}
\ No newline at end of file
+
+    // Razorpay retries anything but a 2xx, so every signed delivery is acked once it is stored
+    @PostMapping("/webhook")
+    public ResponseEntity<Void> receiveWebhook(@RequestBody String payload,
+                                               @RequestHeader(value = "X-Razorpay-Signature", required = false) String signature,
+                                               @RequestHeader(value = "X-Razorpay-Event-Id", required = false) String eventId) {
+        PaymentWebhookService.Outcome outcome = paymentWebhookService.receive(payload, signature, eventId);
+        if (outcome == PaymentWebhookService.Outcome.REJECTED) {
+            logger.warn("PaymentController: rejected webhook {} with a bad signature", eventId);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        return ResponseEntity.ok().build();
+    }
+
+    // Requeues stored webhook events by id, or every DEAD one when no ids are given; admins only
+    @PostMapping("/admin/webhooks/replay")
+    public ResponseEntity<ApiResponse<Map<String, Integer>>> replayWebhooks(@RequestParam(required = false) List<Long> ids,
+                                                                            HttpServletRequest request) {
+        if (!AuthenticatedUserResolver.isAdmin(request)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(ApiResponse.error("Admin login required."));
+        }
+        try {
+            int requeued = ids == null || ids.isEmpty()
+                    ? paymentWebhookService.replayDead()
+                    : paymentWebhookService.replay(ids);
+            logger.info("PaymentController: requeued {} webhook event(s)", requeued);
+            return ResponseEntity.ok(ApiResponse.success("Webhook events requeued.", Map.of("requeued", requeued)));
+        } catch (Exception e) {
+            logger.error("PaymentController: failed to requeue webhook events: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ApiResponse.error("An unexpected error occurred while requeueing webhook events."));
+        }
+    }
+}
@@ -3,15 +3,20 @@ package com.spiceshop.controllers;
 
 import com.spiceshop.dto.*;
 import com.spiceshop.models.*;
+import com.spiceshop.services.ImageStorageService;
+import com.spiceshop.services.ImageUrls;
 import com.spiceshop.services.SpiceService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 import com.spiceshop.exceptions.DuplicateSpiceNameException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
-import java.nio.file.*;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,7 +30,29 @@ public class SpiceController {
     @Autowired
     private SpiceService spiceService;
 
-    private final Path uploadDir = Paths.get("uploads/spices").toAbsolutePath().normalize();
+    @Autowired
+    private ImageStorageService imageStorageService;
+
+    // The returned imageUrl goes into SpiceRequest.imageUrls like a pasted link; the multipart
+    // body is spooled to disk by the container and streamed from there into the store
+    @PostMapping(value = "/spices/images", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> uploadImage(@RequestParam("file") MultipartFile file) {
+        if (file.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "No image uploaded"));
+        }
+        try (InputStream in = file.getInputStream()) {
+            String imageUrl = imageStorageService.store(in);
+            return ResponseEntity.ok(Map.of(
+                    "imageUrl", imageUrl,
+                    "thumbnailUrl", ImageUrls.thumbnail(imageUrl),
+                    "fullUrl", ImageUrls.full(imageUrl)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Error storing image: " + e.getMessage()));
+        }
+    }
 
     @PostMapping("/spices")
     public ResponseEntity<?> createSpice(@RequestBody SpiceRequest req) {
@@ -83,18 +110,13 @@ public class SpiceController {
 
     @GetMapping("/spices")
     public ResponseEntity<List<SpiceDto>> getAllSpices() {
-        List<Spice> spices = spiceService.getAllSpices();
-        List<SpiceDto> dtos = spices.stream()
-                .map(spiceService::toDto)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(dtos);
+        return ResponseEntity.ok(spiceService.getAllSpiceDtos());
     }
 
     @GetMapping("/spices/{id}")
     public ResponseEntity<SpiceDto> getSpiceById(@PathVariable Long id) {
         try {
-            Spice spice = spiceService.getSpiceById(id);
-            return ResponseEntity.ok(spiceService.toDto(spice));
+            return ResponseEntity.ok(spiceService.getSpiceDtoById(id));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
         }
@@ -137,6 +159,48 @@ public class SpiceController {
         Map<String, Object> response = new HashMap<>();
         response.put("products", dtos);
         response.put("totalPages", spicePage.getTotalPages());
+        if (search != null && !search.isBlank()) {
+            response.put("highlights", spiceService.getSearchHighlights(search, spicePage.getContent()));
+        }
+
+        return ResponseEntity.ok(response);
+    }
+
+    // Opt-in keyset mode: any request carrying a cursor parameter (empty for the first window)
+    @GetMapping(value = "/products", params = "cursor")
+    public ResponseEntity<Map<String, Object>> getProductsByCursor(
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "12") int limit,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(required = false) List<String> origin,
+            @RequestParam(required = false) List<String> qualityClass,
+            @RequestParam(required = false) Boolean inStock) {
+
+        CursorPage<Spice> window;
+        try {
+            window = spiceService.getFilteredSpicesAfter(
+                    cursor, Math.max(1, Math.min(limit, 100)), includeTotal,
+                    search, minPrice, maxPrice, origin, qualityClass, inStock
+            );
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("products", window.getItems().stream()
+                .map(spiceService::toDto)
+                .collect(Collectors.toList()));
+        response.put("nextCursor", window.getNextCursor());
+        response.put("hasMore", window.isHasMore());
+        if (window.getTotalElements() != null) {
+            response.put("totalElements", window.getTotalElements());
+        }
+        if (search != null && !search.isBlank()) {
+            response.put("highlights", spiceService.getSearchHighlights(search, window.getItems()));
+        }
 
         return ResponseEntity.ok(response);
     }
@@ -220,12 +284,7 @@ public class SpiceController {
     @GetMapping("/spices/{id}/related")
     public ResponseEntity<List<SpiceDto>> getRelatedSpices(@PathVariable Long id) {
         try {
-            Spice spice = spiceService.getSpiceById(id);
-            List<Spice> related = spiceService.getRelatedSpices(id, spice.getOrigin());
-            List<SpiceDto> dtos = related.stream()
-                    .map(spiceService::toDto)
-                    .collect(Collectors.toList());
-            return ResponseEntity.ok(dtos);
+            return ResponseEntity.ok(spiceService.getRelatedSpiceDtos(id));
         } catch (Exception e) {
             return ResponseEntity.ok(List.of());
         }
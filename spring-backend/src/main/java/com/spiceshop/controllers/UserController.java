@@ -1,5 +1,6 @@
 package com.spiceshop.controllers;
 
+import com.spiceshop.dto.AuthenticatedUser;
 import com.spiceshop.models.User;
 import com.spiceshop.repositorys.UserRepository;
 import org.springframework.http.HttpStatus;
@@ -8,6 +9,7 @@ import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 
 import java.util.List;
@@ -15,6 +17,7 @@ import java.util.Map;
 import java.util.Optional;
 import jakarta.validation.Valid;
 import org.springframework.web.bind.annotation.*;
+import com.spiceshop.services.AuthenticatedUserResolver;
 import com.spiceshop.services.UserService;
 import com.spiceshop.models.DeliveryAddress;
 import java.util.HashMap;
@@ -26,30 +29,31 @@ public class UserController {
 
     private final UserRepository userRepository;
     private final UserService userService;
+    private final AuthenticatedUserResolver authenticatedUserResolver;
 
-    public UserController(UserRepository userRepository, UserService userService) {
+    public UserController(UserRepository userRepository, UserService userService,
+                          AuthenticatedUserResolver authenticatedUserResolver) {
         this.userRepository = userRepository;
         this.userService = userService;
+        this.authenticatedUserResolver = authenticatedUserResolver;
     }
 
     @GetMapping("/me")
-    public ResponseEntity<?> getCurrentUser(HttpSession session) {
-        Object userIdObj = session.getAttribute("userId");
-        if (userIdObj == null) {
+    public ResponseEntity<?> getCurrentUser(HttpServletRequest request) {
+        if (AuthenticatedUserResolver.currentUserId(request) == null) {
             return ResponseEntity.status(401).body(Map.of("success", false, "message", "Not authenticated"));
         }
-        Long userId = (Long) userIdObj;
-        Optional<User> userOpt = userRepository.findById(userId);
+        Optional<AuthenticatedUser> userOpt = authenticatedUserResolver.resolve(request);
         if (userOpt.isEmpty()) {
             return ResponseEntity.status(404).body(Map.of("success", false, "message", "User not found"));
         }
-        User user = userOpt.get();
+        AuthenticatedUser user = userOpt.get();
         return ResponseEntity.ok(Map.of(
                 "success", true,
                 "user", Map.of(
-                        "firstName", user.getFirstName(),
-                        "lastName", user.getLastName(),
-                        "email", user.getEmail()
+                        "firstName", user.firstName(),
+                        "lastName", user.lastName(),
+                        "email", user.email()
                 )
         ));
     }
@@ -85,6 +89,7 @@ public class UserController {
 
         try {
             userRepository.save(user);
+            authenticatedUserResolver.evict(userId);
             return ResponseEntity.ok(Map.of(
                     "success", true,
                     "message", "Profile updated successfully",
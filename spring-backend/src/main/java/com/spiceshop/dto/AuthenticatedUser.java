@@ -0,0 +1,8 @@
+package com.spiceshop.dto;
+
+/**
+ * Immutable snapshot of the logged-in customer, enough for logging, greetings and scoping
+ * queries by user id without loading the User entity.
+ */
+public record AuthenticatedUser(Long id, String email, String firstName, String lastName, String displayName) {
+}
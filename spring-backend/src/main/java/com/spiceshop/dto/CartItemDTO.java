@@ -1,6 +1,8 @@
 // CartItemDTO.java
 package com.spiceshop.dto;
 
+import com.spiceshop.services.ImageUrls;
+
 import java.math.BigDecimal;
 
 public class CartItemDTO {
@@ -14,6 +16,23 @@ public class CartItemDTO {
     private BigDecimal totalPrice;
     private String imageUrl;
 
+    public CartItemDTO() {
+    }
+
+    // Built from a CartLineView read by CartItemRepository.findCartLines
+    public CartItemDTO(Long id, Long spicePackId, String spiceName, String qualityClass, Integer packWeightInGrams,
+                       BigDecimal price, Integer quantity, String imageUrl) {
+        this.id = id;
+        this.spicePackId = spicePackId;
+        this.spiceName = spiceName;
+        this.qualityClass = qualityClass;
+        this.packWeightInGrams = packWeightInGrams != null ? packWeightInGrams : 0;
+        this.price = price;
+        this.quantity = quantity != null ? quantity : 0;
+        this.totalPrice = price.multiply(BigDecimal.valueOf(this.quantity));
+        this.imageUrl = imageUrl;
+    }
+
     // Getters and Setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -33,4 +52,5 @@ public class CartItemDTO {
     public void setTotalPrice(BigDecimal totalPrice) { this.totalPrice = totalPrice; }
     public String getImageUrl() { return imageUrl; }
     public void setImageUrl(String imageUrl) { this.imageUrl = imageUrl; }
+    public String getThumbnailUrl() { return ImageUrls.thumbnail(imageUrl); }
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.spiceshop.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * One cart line as read by CartItemRepository.findCartLines: the current pack price next to
+ * the unit price the cart subtotal was built from, so stale lines can be spotted.
+ */
+public record CartLineView(
+        Long itemId,
+        Long spicePackId,
+        String spiceName,
+        String qualityClass,
+        Integer packWeightInGrams,
+        BigDecimal price,
+        Integer quantity,
+        String imageUrl,
+        Long unitPricePaise
+) {
+    // Guest lines are read without a quantity; it comes from the guest cart token
+    public CartLineView withQuantity(int quantity) {
+        return new CartLineView(itemId, spicePackId, spiceName, qualityClass, packWeightInGrams, price, quantity, imageUrl, unitPricePaise);
+    }
+
+    public CartItemDTO toDto() {
+        return new CartItemDTO(itemId, spicePackId, spiceName, qualityClass, packWeightInGrams, price, quantity, imageUrl);
+    }
+}
@@ -0,0 +1,16 @@
+package com.spiceshop.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public record OrderConfirmationEmailModel(
+        Long orderId,
+        String orderStatus,
+        List<Line> lines,
+        BigDecimal subtotal,
+        BigDecimal shippingCost,
+        BigDecimal total
+) {
+    public record Line(String spiceName, String qualityClass, String packSize, int quantity, BigDecimal lineTotal) {
+    }
+}
@@ -1,6 +1,8 @@
 // com.spiceshop.dto.OrderDetailsDto
 package com.spiceshop.dto;
 
+import com.spiceshop.services.ImageUrls;
+
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -123,6 +125,10 @@ public class OrderDetailsDto {
         public String getImageUrl() {
             return imageUrl;
         }
+
+        public String getThumbnailUrl() {
+            return ImageUrls.thumbnail(imageUrl);
+        }
     }
 
     // Nested DTO for Shipping Address
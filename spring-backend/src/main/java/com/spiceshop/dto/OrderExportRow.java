@@ -0,0 +1,25 @@
+package com.spiceshop.dto;
+
+import com.spiceshop.models.Order;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Flat, entity-free row streamed by the admin order export
+public record OrderExportRow(
+        Long id,
+        String orderNumber,
+        LocalDateTime orderDate,
+        Order.OrderStatus orderStatus,
+        Order.PaymentStatus paymentStatus,
+        Order.PaymentMethod paymentMethod,
+        BigDecimal subtotal,
+        BigDecimal shippingCost,
+        BigDecimal totalAmount,
+        String customerFirstName,
+        String customerLastName,
+        String customerEmail,
+        String shippingCity,
+        String shippingState,
+        String shippingPinCode) {
+}
@@ -0,0 +1,30 @@
+package com.spiceshop.dto;
+
+import com.spiceshop.models.Order;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Admin order feed/export filters; every field is optional and null means "any"
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrderFeedFilter {
+    private Order.OrderStatus orderStatus;
+    private Order.PaymentStatus paymentStatus;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate from;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate to;
+    private String email;
+    // free text over order number, customer name and email
+    private String query;
+    private BigDecimal minTotal;
+    private BigDecimal maxTotal;
+}
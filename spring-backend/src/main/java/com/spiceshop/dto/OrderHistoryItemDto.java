@@ -1,6 +1,7 @@
 
 package com.spiceshop.dto;
 
+import com.spiceshop.services.ImageUrls;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -20,4 +21,8 @@ public class OrderHistoryItemDto {
     private BigDecimal unitPrice;
     private int quantity;
     private String imageUrl;
+
+    public String getThumbnailUrl() {
+        return ImageUrls.thumbnail(imageUrl);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,4 @@
+package com.spiceshop.dto;
+
+public record OtpEmailModel(String otp) {
+}
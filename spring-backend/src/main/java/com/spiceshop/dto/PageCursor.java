@@ -0,0 +1,29 @@
+package com.spiceshop.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position after the last row of a keyset page: the row's sort key and its id as tie-breaker.
+ * Clients only ever see the opaque URL-safe token produced by {@link #encode()}.
+ */
+public record PageCursor(String sortKey, long id) {
+
+    public String encode() {
+        String raw = id + ":" + sortKey;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PageCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            if (separator < 1) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            return new PageCursor(raw.substring(separator + 1), Long.parseLong(raw.substring(0, separator)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 // com.spiceshop.dto.SpiceDto.java
 package com.spiceshop.dto;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.spiceshop.services.ImageUrls;
 import lombok.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -19,4 +21,15 @@ public class SpiceDto {
     private LocalDateTime updatedAt;
     private List<String> imageUrls;
     private List<VariantDto> variants;
+
+    // Renditions of imageUrls, which stay the stored links the admin form edits
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public List<String> getThumbnailUrls() {
+        return imageUrls == null ? null : imageUrls.stream().map(ImageUrls::thumbnail).toList();
+    }
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public List<String> getFullImageUrls() {
+        return imageUrls == null ? null : imageUrls.stream().map(ImageUrls::full).toList();
+    }
 }
\ No newline at end of file
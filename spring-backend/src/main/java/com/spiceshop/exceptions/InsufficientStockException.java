@@ -5,7 +5,20 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(HttpStatus.BAD_REQUEST)
 public class InsufficientStockException extends RuntimeException {
+
+    private final Long packId;
+
     public InsufficientStockException(String message) {
+        this(message, null);
+    }
+
+    public InsufficientStockException(String message, Long packId) {
         super(message);
+        this.packId = packId;
+    }
+
+    // The pack that could not be decremented, when raised by the stock ledger
+    public Long getPackId() {
+        return packId;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,8 @@
+package com.spiceshop.exceptions;
+
+// The verification would attach a Razorpay payment that already settled a different order
+public class PaymentConflictException extends CustomException {
+    public PaymentConflictException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,12 @@
+package com.spiceshop.exceptions;
+
+// The gateway could not be reached, timed out, refused the call, or its circuit is open
+public class PaymentGatewayException extends RuntimeException {
+    public PaymentGatewayException(String message) {
+        super(message);
+    }
+
+    public PaymentGatewayException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
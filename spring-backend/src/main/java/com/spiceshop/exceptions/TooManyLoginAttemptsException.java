@@ -0,0 +1,20 @@
+package com.spiceshop.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// A login limiter bucket (client address or account) is empty; no password was checked
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class TooManyLoginAttemptsException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public TooManyLoginAttemptsException(String message, long retryAfterSeconds) {
+        // Thrown for every request of a flood, so no stack trace is captured
+        super(message, null, false, false);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
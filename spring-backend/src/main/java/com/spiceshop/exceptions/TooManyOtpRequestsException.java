@@ -0,0 +1,11 @@
+package com.spiceshop.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class TooManyOtpRequestsException extends RuntimeException {
+    public TooManyOtpRequestsException(String message) {
+        super(message);
+    }
+}
@@ -19,7 +19,7 @@ public class Cart {
     private Long id;
 
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
@@ -32,6 +32,11 @@ public class Cart {
 
     private BigDecimal total = BigDecimal.ZERO;
 
+    // Authoritative subtotal kept by CartPricingEngine; null on carts created before it existed
+    @Column(name = "subtotal_paise")
+    @Builder.Default
+    private Long subtotalPaise = 0L;
+
     public Long getId() {
         return id;
     }
@@ -79,11 +84,4 @@ public class Cart {
     public void setTotal(BigDecimal total) {
         this.total = total;
     }
-
-    public void calculateTotals() {
-        this.subtotal = items.stream()
-                .map(CartItem::getTotalPrice)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        this.total = subtotal.add(shippingCost);
-    }
 }
@@ -26,6 +26,10 @@ public class CartItem {
 
     private Integer quantity;
 
+    // Pack price the cart subtotal was built from; compared with the live price to detect repricing
+    @Column(name = "unit_price_paise")
+    private Long unitPricePaise;
+
     public Long getId() {
         return id;
     }
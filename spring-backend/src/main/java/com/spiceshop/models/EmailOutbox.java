@@ -0,0 +1,63 @@
+package com.spiceshop.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+// A rendered email waiting to be sent; written in the transaction of whatever triggered it
+@Entity
+@Table(name = "email_outbox", indexes = {
+        @Index(name = "ix_email_outbox_due", columnList = "status, next_attempt_at"),
+        @Index(name = "ix_email_outbox_claim", columnList = "claim_token")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EmailOutbox {
+
+    public enum Status {
+        PENDING,  // waiting for its next attempt
+        SENDING,  // claimed by a dispatcher
+        SENT,
+        DEAD      // gave up after the maximum number of attempts
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    @Column(nullable = false)
+    private String subject;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String body;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    @Column(nullable = false)
+    private Integer attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "claim_token")
+    private String claimToken;
+
+    private LocalDateTime claimedAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    private LocalDateTime sentAt;
+}
@@ -15,8 +15,13 @@ import java.math.BigDecimal;
 @Builder
 public class OrderItem {
 
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // Pooled sequence rather than IDENTITY so the lines of an order go out as one JDBC batch;
+    // OrderItemSequenceAligner moves the sequence past rows written under the old IDENTITY column
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_items_seq")
+    @SequenceGenerator(name = "order_items_seq", sequenceName = "order_items_seq", allocationSize = OrderItem.ID_ALLOCATION_SIZE)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
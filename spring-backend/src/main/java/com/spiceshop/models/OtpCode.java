@@ -0,0 +1,28 @@
+package com.spiceshop.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Outstanding registration OTP per email; only read and written by JdbcOtpStore (otp.store=jdbc)
+@Entity
+@Table(name = "otp_codes", indexes = @Index(name = "ix_otp_codes_expires", columnList = "expires_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OtpCode {
+
+    @Id
+    @Column(length = 320)
+    private String email;
+
+    @Column(nullable = false, length = 16)
+    private String code;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "failed_attempts", nullable = false)
+    private Integer failedAttempts;
+}
@@ -0,0 +1,25 @@
+package com.spiceshop.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// OTP send counter per email for the current rate-limit window; used by JdbcOtpStore
+@Entity
+@Table(name = "otp_request_windows", indexes = @Index(name = "ix_otp_request_windows_start", columnList = "window_start"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OtpRequestWindow {
+
+    @Id
+    @Column(length = 320)
+    private String email;
+
+    @Column(name = "window_start", nullable = false)
+    private LocalDateTime windowStart;
+
+    @Column(name = "request_count", nullable = false)
+    private Integer requestCount;
+}
@@ -13,7 +13,9 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "payments")
+@Table(name = "payments", indexes = {
+        @Index(name = "ix_payments_gateway_order_id", columnList = "gatewayOrderId")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -39,8 +41,14 @@ public class Payment {
     @Enumerated(EnumType.STRING)
     private Order.PaymentStatus status;
 
+    // Razorpay payment id; unique so one captured payment can never settle two orders
+    @Column(unique = true)
     private String transactionId;
     private String gatewayOrderId;
+
+    // Key of the verification request that settled this payment; client-chosen, so only
+    // meaningful together with the payment
+    private String idempotencyKey;
     private String signature;
 
     private String failureCode;
@@ -97,6 +105,14 @@ public class Payment {
         this.transactionId = transactionId;
     }
 
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
     public String getGatewayOrderId() {
         return gatewayOrderId;
     }
@@ -0,0 +1,71 @@
+package com.spiceshop.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+// A verified Razorpay webhook delivery, stored before it is acknowledged and processed later
+@Entity
+@Table(name = "payment_webhook_inbox", indexes = {
+        @Index(name = "ix_payment_webhook_inbox_due", columnList = "status, next_attempt_at"),
+        @Index(name = "ix_payment_webhook_inbox_order", columnList = "gateway_order_id, id"),
+        @Index(name = "ix_payment_webhook_inbox_claim", columnList = "claim_token")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentWebhookEvent {
+
+    public enum Status {
+        RECEIVED,    // waiting for its next attempt
+        PROCESSING,  // claimed by a worker
+        PROCESSED,
+        DEAD         // gave up after the maximum number of attempts
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // X-Razorpay-Event-Id; redeliveries of the same event are dropped at insert
+    @Column(name = "event_id", nullable = false, unique = true)
+    private String eventId;
+
+    @Column(name = "event_type", nullable = false)
+    private String eventType;
+
+    @Column(name = "gateway_order_id", nullable = false)
+    private String gatewayOrderId;
+
+    @Column(name = "payment_id")
+    private String paymentId;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    @Column(nullable = false)
+    private Integer attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "claim_token")
+    private String claimToken;
+
+    private LocalDateTime claimedAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    @CreationTimestamp
+    private LocalDateTime receivedAt;
+
+    private LocalDateTime processedAt;
+}
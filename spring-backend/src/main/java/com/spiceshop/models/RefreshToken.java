@@ -0,0 +1,59 @@
+package com.spiceshop.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// One refresh token of a token login. Only the SHA-256 of the token is stored; each refresh
+// marks the token used and issues the next one in the same family
+@Entity
+@Table(name = "refresh_tokens", indexes = {
+        @Index(name = "ix_refresh_tokens_family", columnList = "family_id"),
+        @Index(name = "ix_refresh_tokens_subject", columnList = "subject, role")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RefreshToken {
+
+    public enum Role {
+        USER,   // subject is the user id
+        ADMIN   // subject is the admin email
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "token_hash", nullable = false, unique = true, length = 64)
+    private String tokenHash;
+
+    // Shared by every token rotated from the same login; presenting a used token revokes it whole
+    @Column(name = "family_id", nullable = false, length = 36)
+    private String familyId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Role role;
+
+    @Column(nullable = false, length = 320)
+    private String subject;
+
+    // jti of the access token issued together with this refresh token
+    @Column(name = "access_jti", length = 36)
+    private String accessJti;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "used_at")
+    private LocalDateTime usedAt;
+
+    @Column(name = "revoked_at")
+    private LocalDateTime revokedAt;
+}
@@ -0,0 +1,22 @@
+package com.spiceshop.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Access token withdrawn before it expired (logout); kept only until then, see AccessTokenRevocationList
+@Entity
+@Table(name = "revoked_access_tokens", indexes = @Index(name = "ix_revoked_access_tokens_expires", columnList = "expires_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevokedAccessToken {
+
+    @Id
+    @Column(length = 36)
+    private String jti;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
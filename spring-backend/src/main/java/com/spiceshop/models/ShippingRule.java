@@ -0,0 +1,31 @@
+package com.spiceshop.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+// Shipping fee tier: carts whose subtotal reaches minSubtotalPaise pay feePaise (highest matching tier wins).
+// With no active rows ShippingRuleService falls back to free shipping from ₹500, ₹50 below that.
+@Entity
+@Table(name = "shipping_rules")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ShippingRule {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "min_subtotal_paise", nullable = false)
+    private Long minSubtotalPaise;
+
+    @Column(name = "fee_paise", nullable = false)
+    private Long feePaise;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Boolean active = true;
+
+    private String description;
+}
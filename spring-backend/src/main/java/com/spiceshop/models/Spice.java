@@ -2,6 +2,9 @@ package com.spiceshop.models;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -10,12 +13,16 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@NamedEntityGraph(name = Spice.CATALOG_GRAPH, attributeNodes = @NamedAttributeNode("images"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class Spice {
 
+    // Fetch plan for catalog listings: images are joined in, variants and packs follow by subselect
+    public static final String CATALOG_GRAPH = "Spice.catalog";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -24,7 +31,9 @@ public class Spice {
 
     private String description;
 
+    // Outside the catalog graph (e.g. order item thumbnails) images load in batches, not per spice
     @OneToMany(mappedBy = "spice", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 50)
     private List<SpiceImage> images = new ArrayList<>();
 
     private String origin;
@@ -39,6 +48,7 @@ public class Spice {
 
     // Variants: different quality classes
     @OneToMany(mappedBy = "spice", cascade = CascadeType.ALL, orphanRemoval = true)
+    @Fetch(FetchMode.SUBSELECT)
     private List<SpiceVariant> variants = new ArrayList<>();
 
     public Long getId() {
@@ -0,0 +1,73 @@
+package com.spiceshop.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.BatchSize;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+// Denormalized, one-row-per-spice projection that /api/products filters, sorts and counts on
+// without joining variants and packs. Maintained by SpiceFacetService on spice writes; nothing
+// in it depends on stock, so checkouts never touch these rows.
+@Entity
+@Table(name = "spice_facets", indexes = {
+        @Index(name = "ix_spice_facets_name", columnList = "name, spice_id"),
+        @Index(name = "ix_spice_facets_origin", columnList = "origin"),
+        @Index(name = "ix_spice_facets_min_price", columnList = "min_price"),
+        @Index(name = "ix_spice_facets_max_price", columnList = "max_price")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SpiceFacet {
+
+    @Id
+    @Column(name = "spice_id")
+    private Long spiceId;
+
+    @Column(name = "name")
+    private String name;
+
+    @Column(name = "origin")
+    private String origin;
+
+    @Column(name = "available")
+    private Boolean available;
+
+    // Cheapest and dearest pack across all variants; null when the spice has no packs
+    @Column(name = "min_price")
+    private BigDecimal minPrice;
+
+    @Column(name = "max_price")
+    private BigDecimal maxPrice;
+
+    // Every distinct pack price, so the price filter can ask for one pack inside the range
+    // through the (price, spice_id) index
+    @ElementCollection
+    @CollectionTable(name = "spice_facet_prices", joinColumns = @JoinColumn(name = "spice_id"),
+            indexes = @Index(name = "ix_spice_facet_prices_price", columnList = "price, spice_id"))
+    @Column(name = "price", nullable = false)
+    @BatchSize(size = 100)
+    @Builder.Default
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Set<BigDecimal> packPrices = new HashSet<>();
+
+    // Normalized (trimmed, lower-case) quality classes, indexed by class
+    @ElementCollection
+    @CollectionTable(name = "spice_facet_quality_classes", joinColumns = @JoinColumn(name = "spice_id"),
+            indexes = @Index(name = "ix_spice_facet_quality_classes_class", columnList = "quality_class, spice_id"))
+    @Column(name = "quality_class", nullable = false)
+    @BatchSize(size = 100)
+    @Builder.Default
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Set<String> qualityClasses = new HashSet<>();
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,51 @@
+package com.spiceshop.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+// Units of one pack held for a pending online-payment order until it is paid or the hold lapses
+@Entity
+@Table(name = "stock_reservations", indexes = {
+        @Index(name = "ix_stock_reservations_order", columnList = "order_id"),
+        @Index(name = "ix_stock_reservations_status_expiry", columnList = "status, expires_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockReservation {
+
+    public enum Status {
+        HELD,       // units taken out of stock, waiting for payment
+        CONVERTED,  // payment verified, the units are sold
+        RELEASED    // payment failed or the hold expired, units returned to stock
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Column(name = "pack_id", nullable = false)
+    private Long packId;
+
+    @Column(nullable = false)
+    private Integer quantity;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+}
@@ -2,10 +2,20 @@ package com.spiceshop.repositorys;
 
 import com.spiceshop.models.Admin;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface AdminRepository extends JpaRepository<Admin, Long> {
 
     Admin findByEmail(String email);
 
     Admin findBySecretKey(String secretKey);
+
+    // Rehash after a login at an outdated BCrypt cost; a no-op if the password changed meanwhile
+    @Modifying
+    @Transactional
+    @Query("UPDATE Admin a SET a.password = :newHash WHERE a.id = :id AND a.password = :oldHash")
+    int updatePasswordHash(@Param("id") Long id, @Param("oldHash") String oldHash, @Param("newHash") String newHash);
 }
@@ -4,12 +4,35 @@ package com.spiceshop.repositorys;
 import com.spiceshop.models.Cart;
 import com.spiceshop.models.CartItem;
 import com.spiceshop.models.SpicePack;
+import com.spiceshop.dto.CartLineView;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     Optional<CartItem> findByCartAndSpicePack(Cart cart, SpicePack spicePack);
+
+    // Whole cart in one statement; the thumbnail is the spice's first (lowest id) image
+    @Query("SELECT new com.spiceshop.dto.CartLineView(ci.id, p.id, s.name, v.qualityClass, p.packWeightInGrams, p.price, ci.quantity, " +
+            "(SELECT i.imageUrl FROM SpiceImage i WHERE i.id = (SELECT MIN(i2.id) FROM SpiceImage i2 WHERE i2.spice = s)), ci.unitPricePaise) " +
+            "FROM CartItem ci JOIN ci.spicePack p LEFT JOIN p.variant v LEFT JOIN v.spice s " +
+            "WHERE ci.cart.id = :cartId ORDER BY ci.id")
+    List<CartLineView> findCartLines(@Param("cartId") Long cartId);
+
+    @Modifying
+    @Query("UPDATE CartItem ci SET ci.unitPricePaise = :unitPricePaise WHERE ci.id = :id")
+    int updateUnitPricePaise(@Param("id") Long id, @Param("unitPricePaise") long unitPricePaise);
+
+    @Modifying
+    @Query("DELETE FROM CartItem ci WHERE ci.cart.id IN (SELECT c.id FROM Cart c WHERE c.user.id = :userId)")
+    int deleteByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT COUNT(ci) FROM CartItem ci WHERE ci.cart.user.id = :userId")
+    long countByUserId(@Param("userId") Long userId);
 }
\ No newline at end of file
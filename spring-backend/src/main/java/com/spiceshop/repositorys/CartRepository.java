@@ -1,13 +1,22 @@
 package com.spiceshop.repositorys;
 
 import com.spiceshop.models.Cart;
-import com.spiceshop.models.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
 
 @Repository
 public interface CartRepository extends JpaRepository<Cart, Long> {
-    Optional<Cart> findByUser(User user);
+    // Cart.user is lazy, so this is a single select on carts
+    @Query("SELECT c FROM Cart c WHERE c.user.id = :userId")
+    Optional<Cart> findByUserId(@Param("userId") Long userId);
+
+    // Bulk delete; run CartItemRepository.deleteByUserId first
+    @Modifying
+    @Query("DELETE FROM Cart c WHERE c.user.id = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
 }
\ No newline at end of file
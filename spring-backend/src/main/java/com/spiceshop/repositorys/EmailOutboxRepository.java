@@ -0,0 +1,37 @@
+package com.spiceshop.repositorys;
+
+import com.spiceshop.models.EmailOutbox;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+    // Due mails, plus ones whose dispatcher died mid-send (claimed before staleBefore)
+    @Query("SELECT e.id FROM EmailOutbox e WHERE (e.status = com.spiceshop.models.EmailOutbox.Status.PENDING AND e.nextAttemptAt <= :now) " +
+            "OR (e.status = com.spiceshop.models.EmailOutbox.Status.SENDING AND e.claimedAt < :staleBefore) ORDER BY e.id")
+    List<Long> findDueIds(@Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore, Limit limit);
+
+    // Claims rows that are still claimable; concurrent dispatchers each get a disjoint set. Taking
+    // over a stale claim counts the send that hung or died as an attempt.
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET " +
+            "e.attempts = e.attempts + CASE WHEN e.status = com.spiceshop.models.EmailOutbox.Status.SENDING THEN 1 ELSE 0 END, " +
+            "e.lastError = CASE WHEN e.status = com.spiceshop.models.EmailOutbox.Status.SENDING " +
+            "THEN 'Send did not finish within the claim timeout' ELSE e.lastError END, " +
+            "e.status = com.spiceshop.models.EmailOutbox.Status.SENDING, e.claimToken = :token, e.claimedAt = :now " +
+            "WHERE e.id IN :ids AND ((e.status = com.spiceshop.models.EmailOutbox.Status.PENDING AND e.nextAttemptAt <= :now) " +
+            "OR (e.status = com.spiceshop.models.EmailOutbox.Status.SENDING AND e.claimedAt < :staleBefore))")
+    int claim(@Param("ids") Collection<Long> ids, @Param("token") String token,
+              @Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore);
+
+    List<EmailOutbox> findByClaimToken(String claimToken);
+
+    long countByStatus(EmailOutbox.Status status);
+}
@@ -1,18 +1,59 @@
 package com.spiceshop.repositorys;
 
 import com.spiceshop.models.Order;
-import com.spiceshop.models.User;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface OrderRepository extends JpaRepository<Order, Long> {
+public interface OrderRepository extends JpaRepository<Order, Long>, OrderRepositoryCustom {
     Optional<Order> findByOrderNumber(String orderNumber);
     Optional<Order> findByRazorpayOrderId(String razorpayOrderId);
-    List<Order> findByUserOrderByCreatedAtDesc(User user);
-    Optional<Order> findByIdAndUser(Long id, User user);
+    // Scoped by user id so callers never need the User entity loaded
+    @Query("SELECT o FROM Order o WHERE o.user.id = :userId ORDER BY o.createdAt DESC")
+    List<Order> findByUserIdOrderByCreatedAtDesc(@Param("userId") Long userId);
+
+    @Query("SELECT o FROM Order o WHERE o.id = :id AND o.user.id = :userId")
+    Optional<Order> findByIdAndUserId(@Param("id") Long id, @Param("userId") Long userId);
+
+    @EntityGraph(attributePaths = {"user", "items", "items.spicePack.variant.spice"})
     List<Order> findAllByOrderByCreatedAtDesc();
+
+    // Second phase of an admin feed page: everything mapToOrderHistoryDto touches except spice images
+    @EntityGraph(attributePaths = {"user", "items", "items.spicePack.variant.spice"})
+    List<Order> findAllForFeedByIdIn(Collection<Long> ids);
+    // Cancels an order nobody paid for; a no-op once a payment has settled it either way
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Order o SET o.orderStatus = com.spiceshop.models.Order.OrderStatus.CANCELLED, " +
+            "o.paymentStatus = com.spiceshop.models.Order.PaymentStatus.FAILED, o.cancelledDate = :now, o.updatedAt = :now " +
+            "WHERE o.id = :id AND o.paymentStatus = com.spiceshop.models.Order.PaymentStatus.PENDING")
+    int cancelUnpaid(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    @Query("SELECT COUNT(o) FROM Order o WHERE o.user.id = :userId")
+    long countByUserId(@Param("userId") Long userId);
+
+    // Keyset windows, newest first with id as tie-breaker; the "After" variants continue past a cursor
+    @Query("SELECT o FROM Order o WHERE o.user.id = :userId ORDER BY o.createdAt DESC, o.id DESC")
+    List<Order> findWindowByUser(@Param("userId") Long userId, Limit limit);
+
+    @Query("SELECT o FROM Order o WHERE o.user.id = :userId AND (o.createdAt < :createdAt OR (o.createdAt = :createdAt AND o.id < :id)) " +
+            "ORDER BY o.createdAt DESC, o.id DESC")
+    List<Order> findWindowByUserAfter(@Param("userId") Long userId, @Param("createdAt") LocalDateTime createdAt,
+                                      @Param("id") Long id, Limit limit);
+
+    @Query("SELECT o FROM Order o ORDER BY o.createdAt DESC, o.id DESC")
+    List<Order> findWindow(Limit limit);
+
+    @Query("SELECT o FROM Order o WHERE o.createdAt < :createdAt OR (o.createdAt = :createdAt AND o.id < :id) " +
+            "ORDER BY o.createdAt DESC, o.id DESC")
+    List<Order> findWindowAfter(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Limit limit);
 }
\ No newline at end of file
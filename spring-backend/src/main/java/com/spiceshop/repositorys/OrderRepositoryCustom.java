@@ -0,0 +1,18 @@
+package com.spiceshop.repositorys;
+
+import com.spiceshop.dto.OrderExportRow;
+import com.spiceshop.models.Order;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.stream.Stream;
+
+public interface OrderRepositoryCustom {
+
+    // Matching order ids, newest first, so a page can be hydrated with one fetch plan afterwards
+    Page<Long> findIdPage(Specification<Order> spec, Pageable pageable);
+
+    // Forward-only cursor over flat rows; must be consumed and closed inside a transaction
+    Stream<OrderExportRow> streamExportRows(Specification<Order> spec);
+}
@@ -0,0 +1,98 @@
+package com.spiceshop.repositorys;
+
+import com.spiceshop.dto.OrderExportRow;
+import com.spiceshop.models.Order;
+import com.spiceshop.models.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+public class OrderRepositoryCustomImpl implements OrderRepositoryCustom {
+
+    private static final int EXPORT_FETCH_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<Long> findIdPage(Specification<Order> spec, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Order> root = query.from(Order.class);
+        where(query, root, cb, spec);
+        query.select(root.get("id"))
+                .orderBy(cb.desc(root.get("createdAt")), cb.desc(root.get("id")));
+
+        List<Long> ids = entityManager.createQuery(query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+
+        if (pageable.getOffset() == 0 && ids.size() < pageable.getPageSize()) {
+            return new PageImpl<>(ids, pageable, ids.size());
+        }
+        return new PageImpl<>(ids, pageable, count(spec));
+    }
+
+    @Override
+    public Stream<OrderExportRow> streamExportRows(Specification<Order> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<OrderExportRow> query = cb.createQuery(OrderExportRow.class);
+        Root<Order> root = query.from(Order.class);
+        Join<Order, User> user = root.join("user", JoinType.INNER);
+        where(query, root, cb, spec);
+        query.select(cb.construct(OrderExportRow.class,
+                        root.get("id"),
+                        root.get("orderNumber"),
+                        root.get("createdAt"),
+                        root.get("orderStatus"),
+                        root.get("paymentStatus"),
+                        root.get("paymentMethod"),
+                        root.get("subtotal"),
+                        root.get("shippingCost"),
+                        root.get("total"),
+                        user.get("firstName"),
+                        user.get("lastName"),
+                        user.get("email"),
+                        root.get("shippingCity"),
+                        root.get("shippingState"),
+                        root.get("shippingPinCode")))
+                .orderBy(cb.desc(root.get("createdAt")), cb.desc(root.get("id")));
+
+        // Rows are plain records, so nothing accumulates in the persistence context while streaming
+        TypedQuery<OrderExportRow> typedQuery = entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, EXPORT_FETCH_SIZE)
+                .setHint(HibernateHints.HINT_READ_ONLY, true);
+        return typedQuery.getResultStream();
+    }
+
+    private long count(Specification<Order> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Order> root = query.from(Order.class);
+        where(query, root, cb, spec);
+        query.select(cb.count(root));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private static void where(CriteriaQuery<?> query, Root<Order> root, CriteriaBuilder cb, Specification<Order> spec) {
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+    }
+}
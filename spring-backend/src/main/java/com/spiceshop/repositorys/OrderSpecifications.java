@@ -0,0 +1,80 @@
+package com.spiceshop.repositorys;
+
+import com.spiceshop.dto.OrderFeedFilter;
+import com.spiceshop.models.Order;
+import com.spiceshop.models.User;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class OrderSpecifications {
+
+    private static final char ESCAPE = '\\';
+
+    private OrderSpecifications() {
+    }
+
+    public static Specification<Order> matching(OrderFeedFilter filter) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+
+            if (filter.getOrderStatus() != null) {
+                predicates.add(cb.equal(root.get("orderStatus"), filter.getOrderStatus()));
+            }
+            if (filter.getPaymentStatus() != null) {
+                predicates.add(cb.equal(root.get("paymentStatus"), filter.getPaymentStatus()));
+            }
+            // Date range is inclusive on both ends
+            if (filter.getFrom() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("createdAt"), filter.getFrom().atStartOfDay()));
+            }
+            if (filter.getTo() != null) {
+                predicates.add(cb.lessThan(root.get("createdAt"), filter.getTo().plusDays(1).atStartOfDay()));
+            }
+            if (filter.getMinTotal() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("total"), filter.getMinTotal()));
+            }
+            if (filter.getMaxTotal() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("total"), filter.getMaxTotal()));
+            }
+            if (StringUtils.hasText(filter.getEmail())) {
+                predicates.add(cb.like(cb.lower(userJoin(root).get("email")), contains(filter.getEmail()), ESCAPE));
+            }
+            if (StringUtils.hasText(filter.getQuery())) {
+                Join<Order, User> user = userJoin(root);
+                String pattern = contains(filter.getQuery());
+                predicates.add(cb.or(
+                        cb.like(cb.lower(root.get("orderNumber")), pattern, ESCAPE),
+                        cb.like(cb.lower(user.get("email")), pattern, ESCAPE),
+                        cb.like(cb.lower(cb.concat(cb.concat(user.get("firstName"), " "), user.get("lastName"))), pattern, ESCAPE)
+                ));
+            }
+
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    // Reuses a user join the query already has (e.g. the export projection) instead of adding a second one
+    @SuppressWarnings("unchecked")
+    private static Join<Order, User> userJoin(Root<Order> root) {
+        return root.getJoins().stream()
+                .filter(join -> join.getAttribute().getName().equals("user"))
+                .map(join -> (Join<Order, User>) join)
+                .findFirst()
+                .orElseGet(() -> root.join("user", JoinType.INNER));
+    }
+
+    private static String contains(String text) {
+        String escaped = text.trim().toLowerCase()
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+}
@@ -1,13 +1,55 @@
 package com.spiceshop.repositorys;
 
+import com.spiceshop.models.Order;
 import com.spiceshop.models.Payment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
     Optional<Payment> findByGatewayOrderId(String gatewayOrderId);
     Optional<Payment> findByTransactionId(String transactionId);
-}
\ No newline at end of file
+
+    // Payment and its order in one round trip for verification
+    @Query("SELECT p FROM Payment p JOIN FETCH p.order WHERE p.gatewayOrderId = :gatewayOrderId")
+    Optional<Payment> findWithOrderByGatewayOrderId(@Param("gatewayOrderId") String gatewayOrderId);
+
+    @Query("SELECT p.status FROM Payment p WHERE p.id = :id")
+    Order.PaymentStatus findStatusById(@Param("id") Long id);
+
+    // Settles a payment only while it is still PENDING; the caller that sees 1 owns the side
+    // effects (stock, cart, email), concurrent duplicates see 0 and just report the outcome
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Payment p SET p.status = :to, p.transactionId = :transactionId, p.signature = :signature, " +
+            "p.idempotencyKey = :idempotencyKey, p.failureReason = :failureReason, p.paymentDate = :now " +
+            "WHERE p.id = :id AND p.status = com.spiceshop.models.Order.PaymentStatus.PENDING")
+    int settle(@Param("id") Long id,
+               @Param("to") Order.PaymentStatus to,
+               @Param("transactionId") String transactionId,
+               @Param("signature") String signature,
+               @Param("idempotencyKey") String idempotencyKey,
+               @Param("failureReason") String failureReason,
+               @Param("now") LocalDateTime now);
+
+    // Fails whatever is still unpaid on an order, e.g. once its stock hold has lapsed
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Payment p SET p.status = com.spiceshop.models.Order.PaymentStatus.FAILED, " +
+            "p.failureReason = :reason, p.paymentDate = :now " +
+            "WHERE p.order.id = :orderId AND p.status = com.spiceshop.models.Order.PaymentStatus.PENDING")
+    int failPendingByOrderId(@Param("orderId") Long orderId,
+                             @Param("reason") String reason,
+                             @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE Payment p SET p.failureCode = :code, p.failureReason = :reason " +
+            "WHERE p.gatewayOrderId = :gatewayOrderId AND p.status = com.spiceshop.models.Order.PaymentStatus.PENDING")
+    int recordFailedAttempt(@Param("gatewayOrderId") String gatewayOrderId,
+                            @Param("code") String code,
+                            @Param("reason") String reason);
+}
@@ -0,0 +1,50 @@
+package com.spiceshop.repositorys;
+
+import com.spiceshop.models.PaymentWebhookEvent;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface PaymentWebhookEventRepository extends JpaRepository<PaymentWebhookEvent, Long> {
+
+    // Due events (plus ones whose worker died mid-event) that are the oldest unfinished event of
+    // their order, so a batch holds at most one event per order and orders are worked in sequence
+    @Query("SELECT e.id FROM PaymentWebhookEvent e WHERE ((e.status = com.spiceshop.models.PaymentWebhookEvent.Status.RECEIVED AND e.nextAttemptAt <= :now) " +
+            "OR (e.status = com.spiceshop.models.PaymentWebhookEvent.Status.PROCESSING AND e.claimedAt < :staleBefore)) " +
+            "AND NOT EXISTS (SELECT 1 FROM PaymentWebhookEvent p WHERE p.gatewayOrderId = e.gatewayOrderId AND p.id < e.id " +
+            "AND p.status IN (com.spiceshop.models.PaymentWebhookEvent.Status.RECEIVED, com.spiceshop.models.PaymentWebhookEvent.Status.PROCESSING)) " +
+            "ORDER BY e.id")
+    List<Long> findDueIds(@Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore, Limit limit);
+
+    // Claims rows that are still claimable; concurrent workers each get a disjoint set
+    @Modifying
+    @Query("UPDATE PaymentWebhookEvent e SET e.status = com.spiceshop.models.PaymentWebhookEvent.Status.PROCESSING, e.claimToken = :token, e.claimedAt = :now " +
+            "WHERE e.id IN :ids AND ((e.status = com.spiceshop.models.PaymentWebhookEvent.Status.RECEIVED AND e.nextAttemptAt <= :now) " +
+            "OR (e.status = com.spiceshop.models.PaymentWebhookEvent.Status.PROCESSING AND e.claimedAt < :staleBefore))")
+    int claim(@Param("ids") Collection<Long> ids, @Param("token") String token,
+              @Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore);
+
+    List<PaymentWebhookEvent> findByClaimToken(String claimToken);
+
+    // Replay: puts finished or dead events back in the queue; processing them again is a no-op
+    // for payments that are already settled
+    @Modifying
+    @Query("UPDATE PaymentWebhookEvent e SET e.status = com.spiceshop.models.PaymentWebhookEvent.Status.RECEIVED, e.attempts = 0, " +
+            "e.nextAttemptAt = :now, e.claimToken = NULL, e.lastError = NULL " +
+            "WHERE e.id IN :ids AND e.status <> com.spiceshop.models.PaymentWebhookEvent.Status.PROCESSING")
+    int requeue(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE PaymentWebhookEvent e SET e.status = com.spiceshop.models.PaymentWebhookEvent.Status.RECEIVED, e.attempts = 0, " +
+            "e.nextAttemptAt = :now, e.claimToken = NULL, e.lastError = NULL " +
+            "WHERE e.status = com.spiceshop.models.PaymentWebhookEvent.Status.DEAD")
+    int requeueDead(@Param("now") LocalDateTime now);
+
+    long countByStatus(PaymentWebhookEvent.Status status);
+}
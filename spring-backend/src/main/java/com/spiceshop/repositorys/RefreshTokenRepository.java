@@ -0,0 +1,37 @@
+package com.spiceshop.repositorys;
+
+import com.spiceshop.models.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+    // Spends a token; of two refreshes racing on one token only one sees 1
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE RefreshToken t SET t.usedAt = :now " +
+            "WHERE t.id = :id AND t.usedAt IS NULL AND t.revokedAt IS NULL AND t.expiresAt > :now")
+    int markUsed(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE RefreshToken t SET t.revokedAt = :now WHERE t.familyId = :familyId AND t.revokedAt IS NULL")
+    int revokeFamily(@Param("familyId") String familyId, @Param("now") LocalDateTime now);
+
+    // Issued since the given time, i.e. rows whose access tokens may still be live
+    List<RefreshToken> findByRoleAndSubjectAndCreatedAtAfter(RefreshToken.Role role, String subject, LocalDateTime since);
+
+    @Modifying
+    @Query("UPDATE RefreshToken t SET t.revokedAt = :now WHERE t.role = :role AND t.subject = :subject AND t.revokedAt IS NULL")
+    int revokeSubject(@Param("role") RefreshToken.Role role, @Param("subject") String subject, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM RefreshToken t WHERE t.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
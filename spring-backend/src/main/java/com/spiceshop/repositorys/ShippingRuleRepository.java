@@ -0,0 +1,12 @@
+package com.spiceshop.repositorys;
+
+import com.spiceshop.models.ShippingRule;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ShippingRuleRepository extends JpaRepository<ShippingRule, Long> {
+    List<ShippingRule> findByActiveTrueOrderByMinSubtotalPaiseDesc();
+}
@@ -0,0 +1,34 @@
+package com.spiceshop.repositorys;
+
+import com.spiceshop.models.SpiceFacet;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface SpiceFacetRepository extends JpaRepository<SpiceFacet, Long>, JpaSpecificationExecutor<SpiceFacet> {
+
+    // [spiceId, name, origin, isAvailable]
+    @Query("SELECT s.id, s.name, s.origin, s.isAvailable FROM Spice s WHERE s.id IN :ids")
+    List<Object[]> findSpiceColumns(@Param("ids") Collection<Long> ids);
+
+    // [spiceId, min price, max price]
+    @Query("SELECT v.spice.id, MIN(p.price), MAX(p.price) FROM SpicePack p JOIN p.variant v " +
+            "WHERE v.spice.id IN :ids GROUP BY v.spice.id")
+    List<Object[]> aggregatePacks(@Param("ids") Collection<Long> ids);
+
+    // [spiceId, pack price]
+    @Query("SELECT DISTINCT v.spice.id, p.price FROM SpicePack p JOIN p.variant v " +
+            "WHERE v.spice.id IN :ids AND p.price IS NOT NULL")
+    List<Object[]> findPackPrices(@Param("ids") Collection<Long> ids);
+
+    // [spiceId, normalized quality class]
+    @Query("SELECT DISTINCT v.spice.id, LOWER(TRIM(v.qualityClass)) FROM SpiceVariant v WHERE v.spice.id IN :ids")
+    List<Object[]> findQualityClasses(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT s.id FROM Spice s ORDER BY s.id")
+    List<Long> findAllSpiceIds();
+}
@@ -1,7 +1,30 @@
 package com.spiceshop.repositorys;
 
+import com.spiceshop.dto.CartLineView;
 import com.spiceshop.models.SpicePack;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 
 public interface SpicePackRepository extends JpaRepository<SpicePack, Long> {
-}
\ No newline at end of file
+
+    // Packs with their variant and spice in one select, for order lines that snapshot the names
+    @EntityGraph(attributePaths = {"variant", "variant.spice"})
+    List<SpicePack> findWithSpiceByIdIn(Collection<Long> ids);
+
+    @Query("SELECT DISTINCT p.variant.spice.id FROM SpicePack p WHERE p.id IN :packIds")
+    Set<Long> findSpiceIdsByPackIds(@Param("packIds") Collection<Long> packIds);
+
+    // Guest cart lines in one statement, shaped like CartItemRepository.findCartLines; the pack id
+    // doubles as the line id and the quantity is filled in from the guest token
+    @Query("SELECT new com.spiceshop.dto.CartLineView(p.id, p.id, s.name, v.qualityClass, p.packWeightInGrams, p.price, 0, " +
+            "(SELECT i.imageUrl FROM SpiceImage i WHERE i.id = (SELECT MIN(i2.id) FROM SpiceImage i2 WHERE i2.spice = s)), CAST(NULL AS Long)) " +
+            "FROM SpicePack p LEFT JOIN p.variant v LEFT JOIN v.spice s " +
+            "WHERE p.id IN :packIds")
+    List<CartLineView> findGuestCartLines(@Param("packIds") Collection<Long> packIds);
+}
@@ -1,24 +1,48 @@
 package com.spiceshop.repositorys;
 
 import com.spiceshop.models.Spice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface SpiceRepository extends JpaRepository<Spice, Long>, JpaSpecificationExecutor<Spice> {
 
+    // Text columns only, for building the search index
+    interface SearchRow {
+        Long getId();
+        String getName();
+        String getDescription();
+    }
+
     @Query("SELECT s FROM Spice s WHERE LOWER(TRIM(s.name)) = LOWER(TRIM(:name))")
     Optional<Spice> findByNormalizedName(@Param("name") String name);
 
     @Query("SELECT LOWER(TRIM(v.qualityClass)) FROM SpiceVariant v GROUP BY LOWER(TRIM(v.qualityClass))")
     List<String> findDistinctQualityClasses();
 
+    @EntityGraph(Spice.CATALOG_GRAPH)
     @Query("SELECT s FROM Spice s WHERE s.origin = :origin AND s.id != :id AND s.isAvailable = true")
     List<Spice> findRelatedByOrigin(@Param("id") Long id, @Param("origin") String origin);
 
+    // Catalog fetch plan: images come back in the same statement, variants/packs by subselect
+    @EntityGraph(Spice.CATALOG_GRAPH)
+    @Query("SELECT s FROM Spice s")
+    List<Spice> findAllForCatalog();
+
+    @EntityGraph(Spice.CATALOG_GRAPH)
+    @Query("SELECT s FROM Spice s WHERE s.id IN :ids")
+    List<Spice> findAllForCatalogByIdIn(@Param("ids") Collection<Long> ids);
+
+    @EntityGraph(Spice.CATALOG_GRAPH)
+    @Query("SELECT s FROM Spice s WHERE s.id = :id")
+    Optional<Spice> findForCatalogById(@Param("id") Long id);
 
+    @Query("SELECT s.id AS id, s.name AS name, s.description AS description FROM Spice s")
+    List<SearchRow> findAllSearchRows();
 }
@@ -0,0 +1,33 @@
+package com.spiceshop.repositorys;
+
+import com.spiceshop.models.StockReservation;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+
+    List<StockReservation> findByOrderIdAndStatus(Long orderId, StockReservation.Status status);
+
+    // Moves all of an order's holds in one statement; only the caller that sees a non-zero
+    // count owns the transition, so a hold is never converted and released twice
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE StockReservation r SET r.status = :to, r.updatedAt = :now " +
+            "WHERE r.orderId = :orderId AND r.status = :from")
+    int transition(@Param("orderId") Long orderId,
+                   @Param("from") StockReservation.Status from,
+                   @Param("to") StockReservation.Status to,
+                   @Param("now") LocalDateTime now);
+
+    // Keyset over order ids, so an order that keeps failing is passed over instead of refetched
+    @Query("SELECT DISTINCT r.orderId FROM StockReservation r " +
+            "WHERE r.status = :status AND r.expiresAt < :now AND r.orderId > :afterOrderId ORDER BY r.orderId")
+    List<Long> findOrderIdsExpiredBefore(@Param("status") StockReservation.Status status,
+                                         @Param("now") LocalDateTime now,
+                                         @Param("afterOrderId") Long afterOrderId, Limit limit);
+}
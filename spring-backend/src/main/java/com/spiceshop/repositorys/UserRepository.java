@@ -1,8 +1,13 @@
 package com.spiceshop.repositorys;
 
+import com.spiceshop.dto.AuthenticatedUser;
 import com.spiceshop.models.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -10,4 +15,15 @@ import java.util.Optional;
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     boolean existsByEmail(String email);
+
+    // Password hash and addresses stay behind; see AuthenticatedUserResolver
+    @Query("SELECT new com.spiceshop.dto.AuthenticatedUser(u.id, u.email, u.firstName, u.lastName, u.displayName) " +
+            "FROM User u WHERE u.id = :id")
+    Optional<AuthenticatedUser> findPrincipalById(@Param("id") Long id);
+
+    // Rehash after a login at an outdated BCrypt cost; a no-op if the password changed meanwhile
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.password = :newHash WHERE u.id = :id AND u.password = :oldHash")
+    int updatePasswordHash(@Param("id") Long id, @Param("oldHash") String oldHash, @Param("newHash") String newHash);
 }
\ No newline at end of file
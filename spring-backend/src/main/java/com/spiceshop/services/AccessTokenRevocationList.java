@@ -0,0 +1,61 @@
+package com.spiceshop.services;
+
+import com.spiceshop.models.RevokedAccessToken;
+import com.spiceshop.repositorys.RevokedAccessTokenRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Access tokens withdrawn before they expire. The bearer filter checks a node-local copy, so
+ * verification stays free of database reads; revocations are written to revoked_access_tokens
+ * and picked up by other nodes on the next sync. Entries drop out once the token would have
+ * expired anyway, which keeps the list as small as the number of logouts in one token lifetime.
+ */
+@Component
+public class AccessTokenRevocationList {
+
+    private final RevokedAccessTokenRepository revokedAccessTokenRepository;
+    private final boolean enabled;
+    private final Map<String, Instant> revoked = new ConcurrentHashMap<>();
+
+    public AccessTokenRevocationList(RevokedAccessTokenRepository revokedAccessTokenRepository,
+                                     @Value("${auth.token.enabled:false}") boolean enabled) {
+        this.revokedAccessTokenRepository = revokedAccessTokenRepository;
+        this.enabled = enabled;
+    }
+
+    public boolean isRevoked(String jti) {
+        return revoked.containsKey(jti);
+    }
+
+    @Transactional
+    public void revoke(String jti, Instant expiresAt) {
+        revoked.put(jti, expiresAt);
+        revokedAccessTokenRepository.save(new RevokedAccessToken(jti, LocalDateTime.ofInstant(expiresAt, ZoneId.systemDefault())));
+    }
+
+    // Other nodes' revocations arrive here; the sync interval is how long a revoked token can
+    // still pass on a node that did not revoke it. Without token mode nothing reads the list.
+    @Scheduled(initialDelay = 0, fixedDelayString = "${auth.token.revocation-sync-interval:PT15S}")
+    @Transactional
+    public void sync() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        revokedAccessTokenRepository.deleteExpired(now);
+        for (RevokedAccessToken token : revokedAccessTokenRepository.findByExpiresAtAfter(now)) {
+            revoked.putIfAbsent(token.getJti(), token.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant());
+        }
+        Instant cutoff = Instant.now();
+        revoked.values().removeIf(expiresAt -> !expiresAt.isAfter(cutoff));
+    }
+}
@@ -0,0 +1,153 @@
+package com.spiceshop.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spiceshop.models.RefreshToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Short-lived access tokens for the stateless auth mode: compact HS256 JWTs carrying the
+ * subject, role, id and expiry, checked with the key alone so a request needs no session or
+ * database lookup. Only the fixed header this class writes is accepted, so a token cannot
+ * pick its own algorithm.
+ */
+@Component
+public class AccessTokenService {
+
+    // Set by AccessTokenFilter on requests that carried a valid bearer token
+    public static final String REQUEST_ATTRIBUTE = AccessTokenService.class.getName() + ".token";
+
+    private static final Logger logger = LoggerFactory.getLogger(AccessTokenService.class);
+    private static final String HMAC = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final String HEADER = ENCODER.encodeToString("{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+
+    public record Claims(String subject, RefreshToken.Role role, String jti, Instant expiresAt) {
+
+        /** The user id for a user token, null for an admin token. */
+        public Long userId() {
+            return role == RefreshToken.Role.USER ? Long.valueOf(subject) : null;
+        }
+    }
+
+    private final SecretKeySpec key;
+    private final Duration ttl;
+    private final boolean enabled;
+    private final ObjectMapper objectMapper;
+
+    public AccessTokenService(@Value("${auth.token.secret:}") String secret,
+                              @Value("${auth.token.access-ttl:PT15M}") Duration ttl,
+                              @Value("${auth.token.enabled:false}") boolean enabled,
+                              ObjectMapper objectMapper) {
+        byte[] keyBytes;
+        if (secret == null || secret.isBlank()) {
+            if (enabled) {
+                // Tokens then only verify on the node that issued them, and not after a restart
+                logger.warn("auth.token.secret is not set, signing access tokens with a random per-process key");
+            }
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(keyBytes, HMAC);
+        this.ttl = ttl;
+        this.enabled = enabled;
+        this.objectMapper = objectMapper;
+    }
+
+    /** Whether the token endpoints and the bearer filter are switched on (auth.token.enabled). */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public String issue(RefreshToken.Role role, String subject) {
+        return issue(role, subject, Instant.now());
+    }
+
+    String issue(RefreshToken.Role role, String subject, Instant now) {
+        return issue(role, subject, UUID.randomUUID().toString(), now);
+    }
+
+    // RefreshTokenService picks the jti so it can revoke the token later without holding it
+    String issue(RefreshToken.Role role, String subject, String jti, Instant now) {
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("sub", subject);
+        claims.put("role", role.name());
+        claims.put("jti", jti);
+        claims.put("iat", now.getEpochSecond());
+        claims.put("exp", now.plus(ttl).getEpochSecond());
+        try {
+            String signingInput = HEADER + "." + ENCODER.encodeToString(objectMapper.writeValueAsBytes(claims));
+            return signingInput + "." + ENCODER.encodeToString(sign(signingInput));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not write access token claims", e);
+        }
+    }
+
+    /** Never throws; a malformed, tampered or expired token is empty. */
+    public Optional<Claims> verify(String token) {
+        return verify(token, Instant.now());
+    }
+
+    Optional<Claims> verify(String token, Instant now) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        int firstDot = token.indexOf('.');
+        int lastDot = token.lastIndexOf('.');
+        if (firstDot < 0 || firstDot == lastDot || !token.substring(0, firstDot).equals(HEADER)) {
+            return Optional.empty();
+        }
+        try {
+            String signingInput = token.substring(0, lastDot);
+            if (!MessageDigest.isEqual(sign(signingInput), DECODER.decode(token.substring(lastDot + 1)))) {
+                logger.debug("Rejected access token with a bad signature");
+                return Optional.empty();
+            }
+            JsonNode claims = objectMapper.readTree(DECODER.decode(token.substring(firstDot + 1, lastDot)));
+            Instant expiresAt = Instant.ofEpochSecond(claims.path("exp").asLong());
+            if (!now.isBefore(expiresAt)) {
+                return Optional.empty();
+            }
+            return Optional.of(new Claims(claims.path("sub").asText(), RefreshToken.Role.valueOf(claims.path("role").asText()),
+                    claims.path("jti").asText(), expiresAt));
+        } catch (IOException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private byte[] sign(String signingInput) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(key);
+            return mac.doFinal(signingInput.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+}
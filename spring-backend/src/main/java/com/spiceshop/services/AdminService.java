@@ -3,7 +3,6 @@ package com.spiceshop.services;
 import com.spiceshop.models.Admin;
 import com.spiceshop.repositorys.AdminRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -16,12 +15,13 @@ public class AdminService {
     @Autowired
     private AdminRepository adminRepository;
 
-    private BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    @Autowired
+    private PasswordHasher passwordHasher;
 
     // Method to create an admin
     public Admin createAdmin(Admin admin) {
         // Hash the password before saving it
-        String hashedPassword = passwordEncoder.encode(admin.getPassword());
+        String hashedPassword = passwordHasher.encode(admin.getPassword());
         admin.setPassword(hashedPassword);
 
         // Generate secret key if not already generated
@@ -37,13 +37,17 @@ public class AdminService {
         return new String(java.util.Base64.getEncoder().encode(java.util.UUID.randomUUID().toString().getBytes()));
     }
 
-    // Method to verify admin login using email and password
+    // Method to verify admin login using email and password; an unknown email costs the same hash
     public boolean verifyLogin(String email, String password) {
         Admin admin = adminRepository.findByEmail(email);
-        if (admin != null && passwordEncoder.matches(password, admin.getPassword())) {
-            return true;
+        PasswordHasher.Verification result = passwordHasher.verify(password, admin == null ? null : admin.getPassword());
+        if (!result.matches()) {
+            return false;
+        }
+        if (result.upgradedHash() != null) {
+            adminRepository.updatePasswordHash(admin.getId(), admin.getPassword(), result.upgradedHash());
         }
-        return false;
+        return true;
     }
 
     public Admin getAnyAdminProfile() {
@@ -71,12 +75,12 @@ public class AdminService {
         }
 
         // Verify the current password
-        if (!passwordEncoder.matches(currentPassword, admin.getPassword())) {
+        if (!passwordHasher.verify(currentPassword, admin.getPassword()).matches()) {
             return false; // Current password does not match
         }
 
         // Hash and set the new password
-        String hashedPassword = passwordEncoder.encode(newPassword);
+        String hashedPassword = passwordHasher.encode(newPassword);
         admin.setPassword(hashedPassword);
         adminRepository.save(admin); // Save the updated admin
         return true;
@@ -117,7 +121,7 @@ public class AdminService {
             return false; // Secret key does not match for this admin
         }
 
-        String hashedPassword = passwordEncoder.encode(newPassword);
+        String hashedPassword = passwordHasher.encode(newPassword);
         admin.setPassword(hashedPassword);
         adminRepository.save(admin);
         return true;
@@ -0,0 +1,108 @@
+package com.spiceshop.services;
+
+import com.spiceshop.config.CacheConfig;
+import com.spiceshop.dto.AuthenticatedUser;
+import com.spiceshop.models.RefreshToken;
+import com.spiceshop.repositorys.UserRepository;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Optional;
+
+/**
+ * Turns the session's userId, or a bearer token's subject, into an AuthenticatedUser. The
+ * snapshot is kept on the request, so one request resolves at most once, and in a short-lived
+ * node-local cache, so most requests do not query users at all. Deleted users fall out of the cache within its TTL.
+ */
+@Component
+public class AuthenticatedUserResolver {
+
+    public static final String SESSION_USER_ID = "userId";
+    // Set by AdminController on login
+    public static final String SESSION_ADMIN_EMAIL = "adminEmail";
+
+    private static final String REQUEST_ATTRIBUTE = AuthenticatedUserResolver.class.getName();
+
+    private final UserRepository userRepository;
+    private final CacheManager cacheManager;
+
+    public AuthenticatedUserResolver(UserRepository userRepository, CacheManager cacheManager) {
+        this.userRepository = userRepository;
+        this.cacheManager = cacheManager;
+    }
+
+    /** The logged-in user's id, or null when the session is anonymous. */
+    public static Long sessionUserId(HttpSession session) {
+        return session != null && session.getAttribute(SESSION_USER_ID) instanceof Long userId ? userId : null;
+    }
+
+    /**
+     * The caller's user id from a verified bearer token, else from an existing session, or null.
+     * Never creates a session, so token clients stay stateless.
+     */
+    public static Long currentUserId(HttpServletRequest request) {
+        if (request.getAttribute(AccessTokenService.REQUEST_ATTRIBUTE) instanceof AccessTokenService.Claims token) {
+            return token.userId();
+        }
+        return sessionUserId(request.getSession(false));
+    }
+
+    /** Whether the caller has an admin session or a verified admin bearer token. Never creates a session. */
+    public static boolean isAdmin(HttpServletRequest request) {
+        if (request.getAttribute(AccessTokenService.REQUEST_ATTRIBUTE) instanceof AccessTokenService.Claims token) {
+            return token.role() == RefreshToken.Role.ADMIN;
+        }
+        HttpSession session = request.getSession(false);
+        return session != null && session.getAttribute(SESSION_ADMIN_EMAIL) != null;
+    }
+
+    /** Empty for an anonymous caller or a user that no longer exists. */
+    public Optional<AuthenticatedUser> resolve(HttpServletRequest request) {
+        return resolve(currentUserId(request));
+    }
+
+    /** Empty for an anonymous session or a user that no longer exists. */
+    public Optional<AuthenticatedUser> resolve(HttpSession session) {
+        return resolve(sessionUserId(session));
+    }
+
+    private Optional<AuthenticatedUser> resolve(Long userId) {
+        if (userId == null) {
+            return Optional.empty();
+        }
+
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null && request.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof AuthenticatedUser user
+                && user.id().equals(userId)) {
+            return Optional.of(user);
+        }
+
+        Cache cache = cacheManager.getCache(CacheConfig.AUTHENTICATED_USERS);
+        AuthenticatedUser user = cache.get(userId, AuthenticatedUser.class);
+        if (user == null) {
+            user = userRepository.findPrincipalById(userId).orElse(null);
+            if (user == null) {
+                return Optional.empty();
+            }
+            cache.put(userId, user);
+        }
+        if (request != null) {
+            request.setAttribute(REQUEST_ATTRIBUTE, user, RequestAttributes.SCOPE_REQUEST);
+        }
+        return Optional.of(user);
+    }
+
+    /** Call after changing a user's name or email so this node stops serving the old snapshot. */
+    public void evict(Long userId) {
+        cacheManager.getCache(CacheConfig.AUTHENTICATED_USERS).evict(userId);
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null) {
+            request.removeAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.spiceshop.services;
+
+import com.spiceshop.dto.CartLineView;
+import com.spiceshop.models.Cart;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+/**
+ * Cart totals in paise. Mutations move the stored subtotal by the delta of the line they
+ * touch; the full sum over the lines is only taken when a pack price has changed since a
+ * line was priced, or when an older cart has no paise subtotal yet.
+ */
+@Component
+public class CartPricingEngine {
+
+    private final ShippingRuleService shippingRuleService;
+
+    public CartPricingEngine(ShippingRuleService shippingRuleService) {
+        this.shippingRuleService = shippingRuleService;
+    }
+
+    public static long toPaise(BigDecimal amount) {
+        return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    public static BigDecimal toRupees(long paise) {
+        return BigDecimal.valueOf(paise, 2);
+    }
+
+    public static long lineTotal(long unitPricePaise, int quantity) {
+        return Math.multiplyExact(unitPricePaise, (long) quantity);
+    }
+
+    /** Moves the subtotal by {@code deltaPaise}. A cart without a paise subtotal is left for the next full recompute. */
+    public void applyDelta(Cart cart, long deltaPaise) {
+        if (cart.getSubtotalPaise() != null) {
+            setSubtotal(cart, Math.addExact(cart.getSubtotalPaise(), deltaPaise));
+        }
+    }
+
+    /** Forces the next {@link #reconcile} to sum the lines, e.g. after touching a line priced before paise were stored. */
+    public void invalidate(Cart cart) {
+        cart.setSubtotalPaise(null);
+    }
+
+    public static boolean isStale(CartLineView line) {
+        return line.unitPricePaise() == null || line.unitPricePaise() != toPaise(line.price());
+    }
+
+    /**
+     * Checks the stored subtotal against current prices. When nothing is stale this is a
+     * comparison per line; otherwise the subtotal is rebuilt from current prices.
+     *
+     * @return the lines whose stored unit price has to be brought up to date
+     */
+    public List<CartLineView> reconcile(Cart cart, List<CartLineView> lines) {
+        List<CartLineView> stale = lines.stream().filter(CartPricingEngine::isStale).toList();
+        if (cart.getSubtotalPaise() == null || !stale.isEmpty()) {
+            setSubtotal(cart, fullSubtotal(lines));
+        }
+        return stale;
+    }
+
+    public static long fullSubtotal(List<CartLineView> lines) {
+        long subtotal = 0;
+        for (CartLineView line : lines) {
+            subtotal = Math.addExact(subtotal, lineTotal(toPaise(line.price()), line.quantity()));
+        }
+        return subtotal;
+    }
+
+    private void setSubtotal(Cart cart, long subtotalPaise) {
+        long shippingPaise = shippingRuleService.shippingFor(subtotalPaise);
+        cart.setSubtotalPaise(subtotalPaise);
+        cart.setSubtotal(toRupees(subtotalPaise));
+        cart.setShippingCost(toRupees(shippingPaise));
+        cart.setTotal(toRupees(subtotalPaise + shippingPaise));
+    }
+}
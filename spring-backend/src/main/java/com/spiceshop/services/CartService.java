@@ -2,22 +2,32 @@ package com.spiceshop.services;
 
 import com.spiceshop.dto.AddToCartRequest;
 import com.spiceshop.dto.CartDTO;
-import com.spiceshop.dto.CartItemDTO;
+import com.spiceshop.dto.CartLineView;
 import com.spiceshop.dto.UpdateCartItemRequest;
+import com.spiceshop.exceptions.CustomException;
 import com.spiceshop.exceptions.NotFoundException;
 import com.spiceshop.models.*;
 import com.spiceshop.repositorys.CartItemRepository;
 import com.spiceshop.repositorys.CartRepository;
 import com.spiceshop.repositorys.SpicePackRepository;
 import com.spiceshop.repositorys.UserRepository;
+import com.spiceshop.config.CacheConfig;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import com.spiceshop.exceptions.InsufficientStockException;
-import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 public class CartService {
@@ -26,36 +36,57 @@ public class CartService {
     private final CartItemRepository cartItemRepository;
     private final SpicePackRepository spicePackRepository;
     private final UserRepository userRepository;
+    private final CartPricingEngine cartPricingEngine;
+    private final GuestCartTokenService guestCartTokenService;
+    private final JdbcTemplate jdbcTemplate;
+
+    // Guest lines are folded in with two batched statements: bump the lines the user already has,
+    // then insert the rest. The NOT EXISTS guard makes the insert skip lines the update just hit.
+    private static final String MERGE_UPDATE_SQL =
+            "UPDATE cart_item SET quantity = quantity + ? WHERE cart_id = ? AND spice_pack_id = ?";
+
+    private static final String MERGE_INSERT_SQL =
+            "INSERT INTO cart_item (cart_id, spice_pack_id, quantity) " +
+            "SELECT ?, p.id, ? FROM spice_pack p WHERE p.id = ? " +
+            "AND NOT EXISTS (SELECT 1 FROM cart_item ci WHERE ci.cart_id = ? AND ci.spice_pack_id = p.id)";
 
     @Autowired
     public CartService(CartRepository cartRepository,
                        CartItemRepository cartItemRepository,
                        SpicePackRepository spicePackRepository,
-                       UserRepository userRepository) {
+                       UserRepository userRepository,
+                       CartPricingEngine cartPricingEngine,
+                       GuestCartTokenService guestCartTokenService,
+                       JdbcTemplate jdbcTemplate) {
         this.cartRepository = cartRepository;
         this.cartItemRepository = cartItemRepository;
         this.spicePackRepository = spicePackRepository;
         this.userRepository = userRepository;
+        this.cartPricingEngine = cartPricingEngine;
+        this.guestCartTokenService = guestCartTokenService;
+        this.jdbcTemplate = jdbcTemplate;
     }
 
     @Transactional
     public Cart getOrCreateCart(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new NotFoundException("User not found"));
-
-        return cartRepository.findByUser(user)
+        return cartRepository.findByUserId(userId)
                 .orElseGet(() -> {
+                    // The session can outlive its user; fail cleanly instead of on the foreign key.
+                    // Only a first cart pays for the check, a reference is enough after it
+                    if (!userRepository.existsById(userId)) {
+                        throw new NotFoundException("User not found");
+                    }
                     Cart newCart = new Cart();
-                    newCart.setUser(user);
-                    newCart.setSubtotal(BigDecimal.ZERO);
-                    newCart.setShippingCost(BigDecimal.valueOf(50));
-                    newCart.setTotal(BigDecimal.ZERO);
+                    newCart.setUser(userRepository.getReferenceById(userId));
+                    newCart.setSubtotalPaise(0L);
+                    cartPricingEngine.applyDelta(newCart, 0);
                     return cartRepository.save(newCart);
                 });
     }
 
     @Transactional
-    public CartItem addItemToCart(Long userId, AddToCartRequest request) {
+    @CacheEvict(cacheNames = CacheConfig.CART_COUNTS, key = "#userId")
+    public CartDTO addItemToCart(Long userId, AddToCartRequest request) {
         Cart cart = getOrCreateCart(userId);
         SpicePack spicePack = spicePackRepository.findById(request.getSpicePackId())
                 .orElseThrow(() -> new NotFoundException("Spice pack not found"));
@@ -67,40 +98,33 @@ public class CartService {
             // Update quantity if exists
             CartItem item = existingItem.get();
             item.setQuantity(item.getQuantity() + request.getQuantity());
-            cartItemRepository.save(item);
-            recalculateCartTotals(cart);
-            return item;
+            applyLineDelta(cart, item, request.getQuantity());
         } else {
-            // Create new cart item
+            // Create new cart item; cart.items is left unloaded, the DTO is read back below
             CartItem newItem = new CartItem();
             newItem.setCart(cart);
             newItem.setSpicePack(spicePack);
             newItem.setQuantity(request.getQuantity());
+            newItem.setUnitPricePaise(CartPricingEngine.toPaise(spicePack.getPrice()));
             cartItemRepository.save(newItem);
-            cart.getItems().add(newItem);
-            recalculateCartTotals(cart);
-            return newItem;
+            applyLineDelta(cart, newItem, request.getQuantity());
         }
+        return toCartDTO(cart);
     }
 
     @Transactional
-    public void updateCartItemQuantity(Long userId, Long itemId, UpdateCartItemRequest request) {
+    @CacheEvict(cacheNames = CacheConfig.CART_COUNTS, key = "#userId")
+    public CartDTO updateCartItemQuantity(Long userId, Long itemId, UpdateCartItemRequest request) {
         Cart cart = getOrCreateCart(userId);
-        CartItem item = cartItemRepository.findById(itemId)
-                .orElseThrow(() -> new NotFoundException("Cart item not found"));
-
-
-        if (!item.getCart().getId().equals(cart.getId())) {
-            throw new SecurityException("Cart item does not belong to user");
-        }
+        CartItem item = findOwnedItem(cart, itemId);
 
         SpicePack spicePack = item.getSpicePack();
         int newDesiredQuantity = request.getQuantity();
 
 
         if (newDesiredQuantity < 1) {
-            removeItemFromCart(userId, itemId);
-            return;
+            deleteItem(cart, item);
+            return toCartDTO(cart);
         }
         if (newDesiredQuantity > spicePack.getStockQuantity()) {
             throw new InsufficientStockException("Not enough stock available for " + spicePack.getVariant().getSpice().getName() +
@@ -108,100 +132,210 @@ public class CartService {
         }
 
         // Proceed with updating if stock is sufficient
+        applyLineDelta(cart, item, newDesiredQuantity - item.getQuantity());
         item.setQuantity(newDesiredQuantity);
-        cartItemRepository.save(item);
-        recalculateCartTotals(cart);
+        return toCartDTO(cart);
     }
 
     @Transactional
-    public void removeItemFromCart(Long userId, Long itemId) {
+    @CacheEvict(cacheNames = CacheConfig.CART_COUNTS, key = "#userId")
+    public CartDTO removeItemFromCart(Long userId, Long itemId) {
         Cart cart = getOrCreateCart(userId);
-        CartItem item = cartItemRepository.findById(itemId)
-                .orElseThrow(() -> new NotFoundException("Cart item not found"));
-
-        // Verify item belongs to user's cart
-        if (!item.getCart().getId().equals(cart.getId())) {
-            throw new SecurityException("Cart item does not belong to user");
-        }
+        CartItem item = findOwnedItem(cart, itemId);
 
-        cartItemRepository.delete(item);
-        cart.getItems().remove(item);
-        recalculateCartTotals(cart);
+        deleteItem(cart, item);
+        return toCartDTO(cart);
     }
 
+    // Viewing the cart never creates one; the row appears with the first item
     @Transactional
     public CartDTO getCartDetails(Long userId) {
-        Cart cart = getOrCreateCart(userId);
-        return convertToDTO(cart);
+        return cartRepository.findByUserId(userId)
+                .map(this::toCartDTO)
+                .orElseGet(() -> toCartDTO(null, List.of()));
     }
 
-    private void recalculateCartTotals(Cart cart) {
-        BigDecimal subtotal = cart.getItems().stream()
-                .map(CartItem::getTotalPrice)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    /**
+     * Prices an anonymous cart (pack id -> quantity, as carried by the guest token) with one
+     * read and no writes. Packs that no longer exist are left out, so the caller re-signs the
+     * token from the returned items.
+     */
+    @Transactional(readOnly = true)
+    public CartDTO getGuestCart(Map<Long, Integer> lines) {
+        if (lines.isEmpty()) {
+            return toCartDTO(null, List.of());
+        }
+        List<Long> order = new ArrayList<>(lines.keySet());
+        List<CartLineView> views = spicePackRepository.findGuestCartLines(lines.keySet()).stream()
+                .sorted(Comparator.comparingInt(line -> order.indexOf(line.spicePackId())))
+                .map(line -> line.withQuantity(lines.get(line.spicePackId())))
+                .toList();
+        return toCartDTO(null, views);
+    }
 
-        cart.setSubtotal(subtotal);
+    @Transactional(readOnly = true)
+    public CartDTO addGuestItem(Map<Long, Integer> lines, AddToCartRequest request) {
+        Long packId = request.getSpicePackId();
+        if (!lines.containsKey(packId) && lines.size() >= guestCartTokenService.getMaxLines()) {
+            throw new CustomException("Your cart is full. Please log in to add more items.");
+        }
+        lines.merge(packId, request.getQuantity(), (a, b) -> Math.min(a + b, guestCartTokenService.getMaxQuantity()));
 
-        // Free shipping for orders above 500
-        BigDecimal shippingCost = subtotal.compareTo(BigDecimal.valueOf(500)) >= 0 ?
-                BigDecimal.ZERO : BigDecimal.valueOf(50);
+        CartDTO cart = getGuestCart(lines);
+        if (cart.getItems().stream().noneMatch(item -> item.getSpicePackId().equals(packId))) {
+            throw new NotFoundException("Spice pack not found");
+        }
+        return cart;
+    }
 
-        cart.setShippingCost(shippingCost);
-        cart.setTotal(subtotal.add(shippingCost));
+    // For guests the item id is the pack id
+    @Transactional(readOnly = true)
+    public CartDTO updateGuestItem(Map<Long, Integer> lines, Long packId, UpdateCartItemRequest request) {
+        if (!lines.containsKey(packId)) {
+            throw new NotFoundException("Cart item not found");
+        }
+        int newDesiredQuantity = request.getQuantity();
+        if (newDesiredQuantity < 1) {
+            lines.remove(packId);
+            return getGuestCart(lines);
+        }
 
-        cartRepository.save(cart);
+        SpicePack spicePack = spicePackRepository.findById(packId)
+                .orElseThrow(() -> new NotFoundException("Spice pack not found"));
+        if (newDesiredQuantity > spicePack.getStockQuantity()) {
+            throw new InsufficientStockException("Not enough stock available for " + spicePack.getVariant().getSpice().getName() +
+                    " (" + spicePack.getPackWeightInGrams() + "g). Max available: " + spicePack.getStockQuantity());
+        }
+        lines.put(packId, Math.min(newDesiredQuantity, guestCartTokenService.getMaxQuantity()));
+        return getGuestCart(lines);
     }
 
-    private CartDTO convertToDTO(Cart cart) {
-        CartDTO dto = new CartDTO();
-        dto.setId(cart.getId());
-        dto.setSubtotal(cart.getSubtotal());
-        dto.setShippingCost(cart.getShippingCost());
-        dto.setTotal(cart.getTotal());
+    @Transactional(readOnly = true)
+    public CartDTO removeGuestItem(Map<Long, Integer> lines, Long packId) {
+        if (lines.remove(packId) == null) {
+            throw new NotFoundException("Cart item not found");
+        }
+        return getGuestCart(lines);
+    }
+
+    /**
+     * Folds a guest cart into the user's persistent cart at login: two JDBC batches whatever
+     * the number of lines. Merged lines carry no unit price yet, so the subtotal is invalidated
+     * and the next read reprices the cart once.
+     */
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.CART_COUNTS, key = "#userId")
+    public void mergeGuestCart(Long userId, Map<Long, Integer> lines) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        Cart cart = getOrCreateCart(userId);
+        List<Map.Entry<Long, Integer>> entries = new ArrayList<>(lines.entrySet());
+
+        jdbcTemplate.batchUpdate(MERGE_UPDATE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setInt(1, entries.get(i).getValue());
+                ps.setLong(2, cart.getId());
+                ps.setLong(3, entries.get(i).getKey());
+            }
 
-        List<CartItemDTO> itemDTOs = cart.getItems().stream()
-                .map(this::convertItemToDTO)
-                .collect(Collectors.toList());
+            @Override
+            public int getBatchSize() {
+                return entries.size();
+            }
+        });
+        jdbcTemplate.batchUpdate(MERGE_INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setLong(1, cart.getId());
+                ps.setInt(2, entries.get(i).getValue());
+                ps.setLong(3, entries.get(i).getKey());
+                ps.setLong(4, cart.getId());
+            }
 
-        dto.setItems(itemDTOs);
-        return dto;
+            @Override
+            public int getBatchSize() {
+                return entries.size();
+            }
+        });
+        cartPricingEngine.invalidate(cart);
     }
 
-    private CartItemDTO convertItemToDTO(CartItem item) {
-        CartItemDTO dto = new CartItemDTO();
-        SpicePack spicePack = item.getSpicePack();
-        SpiceVariant variant = spicePack.getVariant();
-        Spice spice = variant != null ? variant.getSpice() : null;
+    private CartItem findOwnedItem(Cart cart, Long itemId) {
+        CartItem item = cartItemRepository.findById(itemId)
+                .orElseThrow(() -> new NotFoundException("Cart item not found"));
 
-        dto.setId(item.getId());
-        dto.setSpicePackId(spicePack.getId());
+        // Verify item belongs to user's cart
+        if (!item.getCart().getId().equals(cart.getId())) {
+            throw new SecurityException("Cart item does not belong to user");
+        }
+        return item;
+    }
 
-        if (spice != null) {
-            dto.setSpiceName(spice.getName());
+    // Lines priced before unit prices were stored cannot be moved by a delta; sum the cart instead
+    private void applyLineDelta(Cart cart, CartItem item, int quantityDelta) {
+        if (item.getUnitPricePaise() == null) {
+            cartPricingEngine.invalidate(cart);
+        } else {
+            cartPricingEngine.applyDelta(cart, CartPricingEngine.lineTotal(item.getUnitPricePaise(), quantityDelta));
+        }
+    }
 
-            // Get first image as thumbnail
-            if (!spice.getImages().isEmpty()) {
-                SpiceImage firstImage = spice.getImages().get(0);
-                dto.setImageUrl(firstImage.getImageUrl());
-            }
+    private void deleteItem(Cart cart, CartItem item) {
+        applyLineDelta(cart, item, -item.getQuantity());
+        // only touch cart.items if something already loaded it, otherwise cascade would re-save the item
+        if (Hibernate.isInitialized(cart.getItems())) {
+            cart.getItems().remove(item);
         }
+        cartItemRepository.delete(item);
+    }
 
-        if (variant != null) {
-            dto.setQualityClass(variant.getQualityClass());
+    /**
+     * Reads the cart back with one projection query (after flushing pending item changes).
+     * Totals come from the incrementally maintained paise subtotal; lines whose pack price
+     * moved since they were priced trigger a full recompute and get their unit price updated.
+     */
+    private CartDTO toCartDTO(Cart cart) {
+        cartItemRepository.flush();
+        List<CartLineView> lines = cartItemRepository.findCartLines(cart.getId());
+
+        for (CartLineView stale : cartPricingEngine.reconcile(cart, lines)) {
+            cartItemRepository.updateUnitPricePaise(stale.itemId(), CartPricingEngine.toPaise(stale.price()));
         }
+        return toCartDTO(cart, lines);
+    }
 
-        dto.setPackWeightInGrams(spicePack.getPackWeightInGrams());
-        dto.setPrice(spicePack.getPrice());
-        dto.setQuantity(item.getQuantity());
-        dto.setTotalPrice(item.getTotalPrice());
+    // A null cart is one that is not persisted (guest or empty); it is priced from the lines on a scratch entity
+    private CartDTO toCartDTO(Cart cart, List<CartLineView> lines) {
+        if (cart == null) {
+            cart = new Cart();
+            cartPricingEngine.invalidate(cart);
+            cartPricingEngine.reconcile(cart, lines);
+        }
 
+        CartDTO dto = new CartDTO();
+        dto.setId(cart.getId());
+        dto.setSubtotal(cart.getSubtotal());
+        dto.setShippingCost(cart.getShippingCost());
+        dto.setTotal(cart.getTotal());
+        dto.setItems(lines.stream().map(CartLineView::toDto).toList());
         return dto;
     }
 
 
+    // One COUNT per cache miss and never creates a cart; the header polls this on every page
     @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.CART_COUNTS, key = "#userId")
     public int getCartItemCount(Long userId) {
-        Cart cart = getOrCreateCart(userId);
-        return cart.getItems().size();
+        return (int) cartItemRepository.countByUserId(userId);
+    }
+
+    /** Drops the user's cart once it has become an order: two bulk deletes, nothing loaded. */
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.CART_COUNTS, key = "#userId")
+    public void clearCart(Long userId) {
+        cartItemRepository.deleteByUserId(userId);
+        cartRepository.deleteByUserId(userId);
     }
 }
\ No newline at end of file
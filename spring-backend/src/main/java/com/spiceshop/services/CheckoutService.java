@@ -0,0 +1,58 @@
+package com.spiceshop.services;
+
+import com.spiceshop.dto.AuthenticatedUser;
+import com.spiceshop.dto.OrderRequest;
+import com.spiceshop.dto.OrderResponse;
+import com.spiceshop.exceptions.CustomException;
+import com.spiceshop.exceptions.PaymentGatewayException;
+import com.spiceshop.models.Order;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+
+/**
+ * Checkout in phases so no database connection or row lock is held across the gateway round
+ * trip: the PENDING order is committed first (OrderService.placeOrder), the gateway is called
+ * with no transaction open, and the gateway id is attached in a second short transaction.
+ * Deliberately not @Transactional.
+ */
+@Service
+public class CheckoutService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CheckoutService.class);
+
+    private final OrderService orderService;
+    private final PaymentGateway paymentGateway;
+
+    public CheckoutService(OrderService orderService, PaymentGateway paymentGateway) {
+        this.orderService = orderService;
+        this.paymentGateway = paymentGateway;
+    }
+
+    public OrderResponse placeOrder(OrderRequest orderRequest, AuthenticatedUser currentUser) {
+        OrderResponse response = orderService.placeOrder(orderRequest, currentUser);
+        if (!Order.PaymentMethod.RAZORPAY.name().equals(response.getPaymentMethod())) {
+            return response;
+        }
+
+        String gatewayOrderId;
+        try {
+            gatewayOrderId = paymentGateway.createOrder(
+                    CartPricingEngine.toPaise(response.getTotalAmount()),
+                    "INR",
+                    response.getOrderNumber(),
+                    Map.of("order_id", response.getOrderId()));
+        } catch (PaymentGatewayException e) {
+            logger.error("CheckoutService: gateway order for {} failed: {}", response.getOrderNumber(), e.getMessage());
+            orderService.abandonGatewayOrder(response.getOrderId(), e.getMessage());
+            throw new CustomException("Failed to initiate Razorpay payment. Please try again later.");
+        }
+
+        // If this fails the gateway order is simply never paid; the stock hold lapses on its own
+        orderService.attachGatewayOrder(response.getOrderId(), gatewayOrderId);
+        response.setRazorpayOrderId(gatewayOrderId);
+        return response;
+    }
+}
@@ -0,0 +1,162 @@
+package com.spiceshop.services;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.Session;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Wraps the JDBC session repository so that a request which only reads the session does not
+ * write it. The session filter bumps the last-access time on every request; that bump is held
+ * back until a {@code flushFraction} of the session's timeout has passed since the stored value,
+ * or until the request changes the session anyway. The stored expiry can therefore lag real
+ * activity by up to that fraction, and a session may end that much earlier than its timeout.
+ * Lookups by principal name and the delegate's shutdown are passed through, since the wrapper
+ * takes the delegate's place as a bean.
+ */
+public class CoalescingSessionRepository<S extends Session>
+        implements FindByIndexNameSessionRepository<CoalescingSessionRepository.CoalescedSession<S>>, DisposableBean {
+
+    private final FindByIndexNameSessionRepository<S> delegate;
+    private final double flushFraction;
+
+    public CoalescingSessionRepository(FindByIndexNameSessionRepository<S> delegate, double flushFraction) {
+        if (flushFraction < 0 || flushFraction >= 1) {
+            throw new IllegalArgumentException("flushFraction must be in [0, 1): " + flushFraction);
+        }
+        this.delegate = delegate;
+        this.flushFraction = flushFraction;
+    }
+
+    @Override
+    public CoalescedSession<S> createSession() {
+        return new CoalescedSession<>(delegate.createSession(), true);
+    }
+
+    @Override
+    public void save(CoalescedSession<S> session) {
+        Instant accessed = session.pendingAccess;
+        if (accessed != null && (session.isNew || session.dirty || isDue(session.delegate, accessed))) {
+            session.delegate.setLastAccessedTime(accessed);
+        }
+        delegate.save(session.delegate);
+        session.pendingAccess = null;
+        session.isNew = false;
+        session.dirty = false;
+    }
+
+    @Override
+    public CoalescedSession<S> findById(String id) {
+        S session = delegate.findById(id);
+        return session == null ? null : new CoalescedSession<>(session, false);
+    }
+
+    @Override
+    public void deleteById(String id) {
+        delegate.deleteById(id);
+    }
+
+    @Override
+    public Map<String, CoalescedSession<S>> findByIndexNameAndIndexValue(String indexName, String indexValue) {
+        Map<String, CoalescedSession<S>> sessions = new LinkedHashMap<>();
+        delegate.findByIndexNameAndIndexValue(indexName, indexValue)
+                .forEach((id, session) -> sessions.put(id, new CoalescedSession<>(session, false)));
+        return sessions;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (delegate instanceof DisposableBean disposable) {
+            disposable.destroy();
+        }
+    }
+
+    private boolean isDue(S stored, Instant accessed) {
+        Duration threshold = Duration.ofMillis((long) (stored.getMaxInactiveInterval().toMillis() * flushFraction));
+        return !accessed.isBefore(stored.getLastAccessedTime().plus(threshold));
+    }
+
+    /** Forwards everything to the stored session except the last-access bump. */
+    public static final class CoalescedSession<S extends Session> implements Session {
+
+        private final S delegate;
+        private boolean isNew;
+        private boolean dirty;
+        private Instant pendingAccess;
+
+        CoalescedSession(S delegate, boolean isNew) {
+            this.delegate = delegate;
+            this.isNew = isNew;
+        }
+
+        @Override
+        public String getId() {
+            return delegate.getId();
+        }
+
+        @Override
+        public String changeSessionId() {
+            dirty = true;
+            return delegate.changeSessionId();
+        }
+
+        @Override
+        public <T> T getAttribute(String attributeName) {
+            return delegate.getAttribute(attributeName);
+        }
+
+        @Override
+        public Set<String> getAttributeNames() {
+            return delegate.getAttributeNames();
+        }
+
+        @Override
+        public void setAttribute(String attributeName, Object attributeValue) {
+            dirty = true;
+            delegate.setAttribute(attributeName, attributeValue);
+        }
+
+        @Override
+        public void removeAttribute(String attributeName) {
+            dirty = true;
+            delegate.removeAttribute(attributeName);
+        }
+
+        @Override
+        public Instant getCreationTime() {
+            return delegate.getCreationTime();
+        }
+
+        @Override
+        public void setLastAccessedTime(Instant lastAccessedTime) {
+            pendingAccess = lastAccessedTime;
+        }
+
+        @Override
+        public Instant getLastAccessedTime() {
+            return pendingAccess != null ? pendingAccess : delegate.getLastAccessedTime();
+        }
+
+        @Override
+        public void setMaxInactiveInterval(Duration interval) {
+            dirty = true;
+            delegate.setMaxInactiveInterval(interval);
+        }
+
+        @Override
+        public Duration getMaxInactiveInterval() {
+            return delegate.getMaxInactiveInterval();
+        }
+
+        // Judged on what is stored, which is what the cleanup and other nodes see
+        @Override
+        public boolean isExpired() {
+            return delegate.isExpired();
+        }
+    }
+}
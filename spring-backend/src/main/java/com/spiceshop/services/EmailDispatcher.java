@@ -0,0 +1,222 @@
+package com.spiceshop.services;
+
+import com.spiceshop.models.EmailOutbox;
+import com.spiceshop.repositorys.EmailOutboxRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Drains the email outbox off the request path. Each poll claims a batch of due mails,
+ * splits it across a small fixed pool of virtual-thread workers, and every worker sends
+ * its share over a single SMTP connection. Failures are retried with exponential backoff
+ * until the attempt limit, then parked as DEAD. A batch waits at most mail.outbox.send-timeout
+ * for its workers, so a hung SMTP server cannot hold the scheduler thread; a mail left hanging
+ * is reclaimed after mail.outbox.claim-timeout, and that counts as a failed attempt.
+ */
+@Component
+public class EmailDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailDispatcher.class);
+
+    private static final Duration MAX_BACKOFF = Duration.ofHours(6);
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final JavaMailSender mailSender;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService workers;
+    private final int workerCount;
+
+    @Value("${spring.mail.username}")
+    private String fromEmail;
+
+    @Value("${mail.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${mail.outbox.max-attempts:6}")
+    private int maxAttempts;
+
+    @Value("${mail.outbox.retry-base:PT30S}")
+    private Duration retryBase;
+
+    @Value("${mail.outbox.claim-timeout:PT10M}")
+    private Duration claimTimeout;
+
+    @Value("${mail.outbox.send-timeout:PT2M}")
+    private Duration sendTimeout;
+
+    public EmailDispatcher(EmailOutboxRepository emailOutboxRepository, JavaMailSender mailSender,
+                           TransactionTemplate transactionTemplate,
+                           @Value("${mail.outbox.workers:4}") int workerCount) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.mailSender = mailSender;
+        this.transactionTemplate = transactionTemplate;
+        this.workerCount = workerCount;
+        this.workers = Executors.newFixedThreadPool(workerCount, Thread.ofVirtual().name("email-worker-", 0).factory());
+    }
+
+    @Scheduled(initialDelayString = "${mail.outbox.poll-interval:PT2S}",
+            fixedDelayString = "${mail.outbox.poll-interval:PT2S}")
+    public void dispatch() {
+        int claimed;
+        do {
+            claimed = dispatchBatch();
+        } while (claimed == batchSize);
+    }
+
+    int dispatchBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime staleBefore = now.minus(claimTimeout);
+        String token = UUID.randomUUID().toString();
+
+        List<EmailOutbox> batch = transactionTemplate.execute(status -> {
+            List<Long> ids = emailOutboxRepository.findDueIds(now, staleBefore, Limit.of(batchSize));
+            if (ids.isEmpty() || emailOutboxRepository.claim(ids, token, now, staleBefore) == 0) {
+                return List.<EmailOutbox>of();
+            }
+            List<EmailOutbox> sendable = new ArrayList<>();
+            for (EmailOutbox mail : emailOutboxRepository.findByClaimToken(token)) {
+                // only a reclaimed mail can be at the limit here: it hung on its last attempt
+                if (mail.getAttempts() >= maxAttempts) {
+                    mail.setStatus(EmailOutbox.Status.DEAD);
+                    mail.setClaimToken(null);
+                    logger.error("EmailDispatcher: giving up on email {} to {} after {} attempts: {}",
+                            mail.getId(), mail.getRecipient(), mail.getAttempts(), mail.getLastError());
+                } else {
+                    sendable.add(mail);
+                }
+            }
+            return sendable;
+        });
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+
+        Map<Future<?>, List<EmailOutbox>> running = new LinkedHashMap<>();
+        int chunkSize = (batch.size() + workerCount - 1) / workerCount;
+        for (int from = 0; from < batch.size(); from += chunkSize) {
+            List<EmailOutbox> chunk = batch.subList(from, Math.min(from + chunkSize, batch.size()));
+            running.put(workers.submit(() -> sendChunk(chunk)), chunk);
+        }
+        List<EmailOutbox> finished = new ArrayList<>();
+        long deadline = System.nanoTime() + sendTimeout.toNanos();
+        for (Map.Entry<Future<?>, List<EmailOutbox>> worker : running.entrySet()) {
+            try {
+                worker.getKey().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return 0;
+            } catch (ExecutionException e) {
+                logger.error("EmailDispatcher: worker failed: {}", e.getCause().getMessage(), e.getCause());
+            } catch (TimeoutException e) {
+                // the worker may still touch these rows, so they are left SENDING as claimed
+                worker.getKey().cancel(true);
+                logger.warn("EmailDispatcher: gave up on {} email(s) after {}, retried after the claim timeout",
+                        worker.getValue().size(), sendTimeout);
+                continue;
+            }
+            finished.addAll(worker.getValue());
+        }
+
+        // unsent rows whose worker blew up or hung stay SENDING and are reclaimed after the claim timeout
+        transactionTemplate.executeWithoutResult(status -> emailOutboxRepository.saveAll(finished));
+        return batch.size();
+    }
+
+    private void sendChunk(List<EmailOutbox> chunk) {
+        Map<MimeMessage, EmailOutbox> messages = new LinkedHashMap<>();
+        for (EmailOutbox mail : chunk) {
+            try {
+                messages.put(toMimeMessage(mail), mail);
+            } catch (MessagingException e) {
+                markFailed(mail, e);
+            }
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        try {
+            // one Transport connection for the whole array
+            mailSender.send(messages.keySet().toArray(new MimeMessage[0]));
+            messages.values().forEach(this::markSent);
+        } catch (MailSendException e) {
+            Map<Object, Exception> failed = e.getFailedMessages();
+            messages.forEach((message, mail) -> {
+                if (failed.containsKey(message)) {
+                    markFailed(mail, failed.get(message));
+                } else {
+                    markSent(mail);
+                }
+            });
+        } catch (MailException e) {
+            messages.values().forEach(mail -> markFailed(mail, e));
+        }
+    }
+
+    private MimeMessage toMimeMessage(EmailOutbox mail) throws MessagingException {
+        MimeMessage mimeMessage = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+        helper.setFrom("Aroglin Spice Farms <" + fromEmail + ">");
+        helper.setTo(mail.getRecipient());
+        helper.setSubject(mail.getSubject());
+        helper.setText(mail.getBody(), true);
+        return mimeMessage;
+    }
+
+    private void markSent(EmailOutbox mail) {
+        mail.setAttempts(mail.getAttempts() + 1);
+        mail.setStatus(EmailOutbox.Status.SENT);
+        mail.setSentAt(LocalDateTime.now());
+        mail.setClaimToken(null);
+        mail.setLastError(null);
+    }
+
+    private void markFailed(EmailOutbox mail, Exception e) {
+        int attempts = mail.getAttempts() + 1;
+        mail.setAttempts(attempts);
+        mail.setClaimToken(null);
+        String error = String.valueOf(e.getMessage());
+        mail.setLastError(error.length() > 1000 ? error.substring(0, 1000) : error);
+
+        if (attempts >= maxAttempts) {
+            mail.setStatus(EmailOutbox.Status.DEAD);
+            logger.error("EmailDispatcher: giving up on email {} to {} after {} attempts: {}", mail.getId(), mail.getRecipient(), attempts, error);
+            return;
+        }
+        Duration backoff = retryBase.multipliedBy(1L << Math.min(attempts - 1, 20));
+        mail.setStatus(EmailOutbox.Status.PENDING);
+        mail.setNextAttemptAt(LocalDateTime.now().plus(backoff.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : backoff));
+        logger.warn("EmailDispatcher: email {} to {} failed (attempt {}), retrying: {}", mail.getId(), mail.getRecipient(), attempts, error);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,34 @@
+package com.spiceshop.services;
+
+import com.spiceshop.models.EmailOutbox;
+import com.spiceshop.repositorys.EmailOutboxRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Service
+public class EmailOutboxService {
+
+    private final EmailOutboxRepository emailOutboxRepository;
+
+    public EmailOutboxService(EmailOutboxRepository emailOutboxRepository) {
+        this.emailOutboxRepository = emailOutboxRepository;
+    }
+
+    /**
+     * Queues a rendered email. Joins the caller's transaction when there is one, so the
+     * mail only goes out if the order/registration that produced it commits.
+     */
+    @Transactional
+    public EmailOutbox enqueue(String recipient, String subject, String html) {
+        return emailOutboxRepository.save(EmailOutbox.builder()
+                .recipient(recipient)
+                .subject(subject)
+                .body(html)
+                .status(EmailOutbox.Status.PENDING)
+                .attempts(0)
+                .nextAttemptAt(LocalDateTime.now())
+                .build());
+    }
+}
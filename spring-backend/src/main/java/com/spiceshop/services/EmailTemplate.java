@@ -0,0 +1,132 @@
+package com.spiceshop.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A template parsed once into literal and slot segments. {@code {{name}}} is HTML-escaped,
+ * {@code {{{name}}}} is written raw. Placeholders found in the constants map are folded into
+ * the neighbouring literals at compile time, so rendering only walks the per-send slots.
+ */
+public final class EmailTemplate {
+
+    /** Writes nested markup straight into the caller's buffer. */
+    @FunctionalInterface
+    public interface Fragment {
+        void writeTo(StringBuilder out);
+    }
+
+    private final String[] literals;
+    private final int[] slots;
+    private final boolean[] raw;
+    private final int literalLength;
+
+    private EmailTemplate(String[] literals, int[] slots, boolean[] raw) {
+        this.literals = literals;
+        this.slots = slots;
+        this.raw = raw;
+        this.literalLength = Arrays.stream(literals).mapToInt(String::length).sum();
+    }
+
+    /**
+     * @param params names of the per-render arguments, in the order {@link #render} takes them
+     * @throws IllegalArgumentException on an unterminated tag or a name that is neither a param nor a constant
+     */
+    public static EmailTemplate compile(String source, Map<String, String> constants, String... params) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        List<Boolean> raw = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+
+        int pos = 0;
+        while (true) {
+            int open = source.indexOf("{{", pos);
+            if (open < 0) {
+                literal.append(source, pos, source.length());
+                break;
+            }
+            literal.append(source, pos, open);
+            boolean triple = source.startsWith("{{{", open);
+            String close = triple ? "}}}" : "}}";
+            int start = open + (triple ? 3 : 2);
+            int end = source.indexOf(close, start);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unterminated tag at offset " + open);
+            }
+            String name = source.substring(start, end).trim();
+            pos = end + close.length();
+
+            String constant = constants.get(name);
+            if (constant != null) {
+                if (triple) {
+                    literal.append(constant);
+                } else {
+                    escape(constant, literal);
+                }
+                continue;
+            }
+            int index = Arrays.asList(params).indexOf(name);
+            if (index < 0) {
+                throw new IllegalArgumentException("Unknown template variable: " + name);
+            }
+            literals.add(literal.toString());
+            literal.setLength(0);
+            slots.add(index);
+            raw.add(triple);
+        }
+        literals.add(literal.toString());
+
+        boolean[] rawFlags = new boolean[raw.size()];
+        for (int i = 0; i < rawFlags.length; i++) {
+            rawFlags[i] = raw.get(i);
+        }
+        return new EmailTemplate(literals.toArray(String[]::new),
+                slots.stream().mapToInt(Integer::intValue).toArray(), rawFlags);
+    }
+
+    /** Total length of the fixed text, used by callers to presize their buffer. */
+    public int literalLength() {
+        return literalLength;
+    }
+
+    /** Arguments may be a {@link Fragment}, a CharSequence or anything with a sensible toString. */
+    public void render(StringBuilder out, Object... args) {
+        for (int i = 0; i < slots.length; i++) {
+            out.append(literals[i]);
+            Object value = args[slots[i]];
+            if (value instanceof Fragment fragment) {
+                fragment.writeTo(out);
+            } else if (value != null) {
+                CharSequence text = value instanceof CharSequence cs ? cs : value.toString();
+                if (raw[i]) {
+                    out.append(text);
+                } else {
+                    escape(text, out);
+                }
+            }
+        }
+        out.append(literals[slots.length]);
+    }
+
+    public String render(Object... args) {
+        StringBuilder out = new StringBuilder(literalLength + 64);
+        render(out, args);
+        return out.toString();
+    }
+
+    static void escape(CharSequence text, StringBuilder out) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&' -> out.append("&amp;");
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                case '"' -> out.append("&quot;");
+                case '\'' -> out.append("&#39;");
+                default -> out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.spiceshop.services;
+
+import com.spiceshop.dto.OrderConfirmationEmailModel;
+import com.spiceshop.dto.OtpEmailModel;
+import com.spiceshop.dto.WelcomeEmailModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Email bodies compiled once from classpath:email/*.html. The layout and anything that only
+ * depends on configuration (logo, support address, frontend URL) is folded in at startup;
+ * a send only fills the per-message slots into a single presized buffer.
+ */
+@Component
+public class EmailTemplates {
+
+    private static final String LOGO_URL = "https://i.imgur.com/7sup17XF.png";
+    private static final String SUPPORT_EMAIL = "support@aroglinspicefarms.com";
+
+    private final EmailTemplate layout;
+    private final EmailTemplate otp;
+    private final EmailTemplate welcome;
+    private final EmailTemplate orderConfirmation;
+    private final EmailTemplate orderItemRow;
+
+    public EmailTemplates(@Value("${FRONTEND_URL}") String frontendUrl) {
+        Map<String, String> constants = Map.of(
+                "logoUrl", LOGO_URL,
+                "supportEmail", SUPPORT_EMAIL,
+                "socialLinks", load("social-links.html"),
+                "frontendUrl", frontendUrl);
+
+        this.layout = EmailTemplate.compile(load("layout.html"), constants, "content");
+        this.otp = EmailTemplate.compile(load("otp.html"), constants, "otp");
+        this.welcome = EmailTemplate.compile(load("welcome.html"), constants, "firstName", "email");
+        this.orderConfirmation = EmailTemplate.compile(load("order-confirmation.html"), constants,
+                "itemRows", "subtotal", "shippingCost", "total", "orderId", "orderStatus");
+        this.orderItemRow = EmailTemplate.compile(load("order-item-row.html"), constants,
+                "spiceName", "qualityClass", "packSize", "quantity", "lineTotal");
+    }
+
+    public String otp(OtpEmailModel model) {
+        return page(otp, 0, model.otp());
+    }
+
+    public String welcome(WelcomeEmailModel model) {
+        return page(welcome, 0, model.firstName(), model.email());
+    }
+
+    public String orderConfirmation(OrderConfirmationEmailModel model) {
+        EmailTemplate.Fragment rows = out -> {
+            for (OrderConfirmationEmailModel.Line line : model.lines()) {
+                orderItemRow.render(out, line.spiceName(), line.qualityClass(), line.packSize(),
+                        line.quantity(), money(line.lineTotal()));
+            }
+        };
+        return page(orderConfirmation, model.lines().size() * orderItemRow.literalLength(),
+                rows, money(model.subtotal()), money(model.shippingCost()), money(model.total()),
+                model.orderId(), model.orderStatus());
+    }
+
+    private String page(EmailTemplate body, int extraCapacity, Object... args) {
+        StringBuilder out = new StringBuilder(layout.literalLength() + body.literalLength() + extraCapacity + 256);
+        layout.render(out, (EmailTemplate.Fragment) content -> body.render(content, args));
+        return out.toString();
+    }
+
+    private static String money(BigDecimal amount) {
+        return (amount != null ? amount : BigDecimal.ZERO).setScale(2, RoundingMode.HALF_UP).toPlainString();
+    }
+
+    private static String load(String name) {
+        try (InputStream in = new ClassPathResource("email/" + name).getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Missing email template " + name, e);
+        }
+    }
+}
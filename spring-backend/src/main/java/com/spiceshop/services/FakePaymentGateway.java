@@ -0,0 +1,78 @@
+package com.spiceshop.services;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory gateway for offline development and tests ({@code payment.gateway=fake}). Orders
+ * are kept in a map and payments are signed the way Razorpay signs them, with a fixed secret,
+ * so {@link #signPayment} stands in for the checkout widget.
+ */
+@Component
+@ConditionalOnProperty(name = "payment.gateway", havingValue = "fake")
+public class FakePaymentGateway implements PaymentGateway {
+
+    public record FakeOrder(String id, long amountPaise, String currency, String receipt, Map<String, Object> notes) {
+    }
+
+    static final String SECRET = "fake-gateway-secret";
+
+    private final Map<String, FakeOrder> orders = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Override
+    public String createOrder(long amountPaise, String currency, String receipt, Map<String, Object> notes) {
+        String id = "order_fake_" + sequence.incrementAndGet();
+        orders.put(id, new FakeOrder(id, amountPaise, currency, receipt, Map.copyOf(notes)));
+        return id;
+    }
+
+    @Override
+    public boolean verifyPaymentSignature(String gatewayOrderId, String paymentId, String signature) {
+        if (!orders.containsKey(gatewayOrderId) || signature == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(signPayment(gatewayOrderId, paymentId).getBytes(StandardCharsets.US_ASCII),
+                signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public boolean verifyWebhookSignature(String payload, String signature) {
+        return signature != null && MessageDigest.isEqual(signWebhook(payload).getBytes(StandardCharsets.US_ASCII),
+                signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /** The X-Razorpay-Signature header Razorpay would send with {@code payload}. */
+    public String signWebhook(String payload) {
+        return hmac(payload);
+    }
+
+    /** The signature a successful checkout of {@code paymentId} against the order would return. */
+    public String signPayment(String gatewayOrderId, String paymentId) {
+        return hmac(gatewayOrderId + "|" + paymentId);
+    }
+
+    private static String hmac(String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+
+    public FakeOrder order(String gatewayOrderId) {
+        return orders.get(gatewayOrderId);
+    }
+}
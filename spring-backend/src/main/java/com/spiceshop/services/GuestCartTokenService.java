@@ -0,0 +1,148 @@
+package com.spiceshop.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Anonymous carts live in a signed cookie instead of the database, so browsing never writes
+ * a cart row. The token is {@code base64url("packId:qty,packId:qty") + "." + base64url(hmac)};
+ * anything that fails the signature or the size limits reads as an empty cart.
+ */
+@Component
+public class GuestCartTokenService {
+
+    public static final String COOKIE_NAME = "guest_cart";
+
+    private static final Logger logger = LoggerFactory.getLogger(GuestCartTokenService.class);
+    private static final String HMAC = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final int maxLines;
+    private final int maxQuantity;
+    private final Duration maxAge;
+
+    public GuestCartTokenService(@Value("${cart.guest-token.secret:}") String secret,
+                                 @Value("${cart.guest-token.max-lines:50}") int maxLines,
+                                 @Value("${cart.guest-token.max-quantity:99}") int maxQuantity,
+                                 @Value("${cart.guest-token.max-age:P30D}") Duration maxAge) {
+        byte[] keyBytes;
+        if (secret == null || secret.isBlank()) {
+            // Fine for a single node; guest carts just do not survive a restart
+            logger.warn("cart.guest-token.secret is not set, signing guest carts with a random per-process key");
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(keyBytes, HMAC);
+        this.maxLines = maxLines;
+        this.maxQuantity = maxQuantity;
+        this.maxAge = maxAge;
+    }
+
+    public int getMaxLines() {
+        return maxLines;
+    }
+
+    public int getMaxQuantity() {
+        return maxQuantity;
+    }
+
+    /** Pack id to quantity, in the order the lines were added. Non-positive quantities are dropped. */
+    public String encode(Map<Long, Integer> lines) {
+        StringBuilder payload = new StringBuilder();
+        int written = 0;
+        for (Map.Entry<Long, Integer> line : lines.entrySet()) {
+            if (line.getValue() == null || line.getValue() < 1 || written == maxLines) {
+                continue;
+            }
+            written++;
+            if (!payload.isEmpty()) {
+                payload.append(',');
+            }
+            payload.append(line.getKey()).append(':').append(Math.min(line.getValue(), maxQuantity));
+        }
+        byte[] body = payload.toString().getBytes(StandardCharsets.US_ASCII);
+        return ENCODER.encodeToString(body) + "." + ENCODER.encodeToString(sign(body));
+    }
+
+    /** The cookie carrying {@code lines}; an empty cart clears it. */
+    public ResponseCookie cookie(Map<Long, Integer> lines, boolean secure) {
+        if (lines.isEmpty()) {
+            return clearCookie(secure);
+        }
+        return baseCookie(encode(lines), secure).maxAge(maxAge).build();
+    }
+
+    public ResponseCookie clearCookie(boolean secure) {
+        return baseCookie("", secure).maxAge(0).build();
+    }
+
+    private ResponseCookie.ResponseCookieBuilder baseCookie(String value, boolean secure) {
+        return ResponseCookie.from(COOKIE_NAME, value).httpOnly(true).secure(secure).sameSite("Lax").path("/");
+    }
+
+    /** Never throws; a missing, tampered or malformed token is an empty cart. */
+    public Map<Long, Integer> decode(String token) {
+        if (token == null || token.isBlank()) {
+            return new LinkedHashMap<>();
+        }
+        try {
+            int dot = token.indexOf('.');
+            if (dot < 0) {
+                return new LinkedHashMap<>();
+            }
+            byte[] body = DECODER.decode(token.substring(0, dot));
+            byte[] signature = DECODER.decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(sign(body), signature)) {
+                logger.debug("Rejected guest cart token with a bad signature");
+                return new LinkedHashMap<>();
+            }
+            return parse(new String(body, StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            return new LinkedHashMap<>();
+        }
+    }
+
+    private Map<Long, Integer> parse(String payload) {
+        Map<Long, Integer> lines = new LinkedHashMap<>();
+        if (payload.isEmpty()) {
+            return lines;
+        }
+        for (String pair : payload.split(",")) {
+            int colon = pair.indexOf(':');
+            long packId = Long.parseLong(pair.substring(0, colon));
+            int quantity = Integer.parseInt(pair.substring(colon + 1));
+            if (quantity > 0 && lines.size() < maxLines) {
+                lines.merge(packId, Math.min(quantity, maxQuantity), (a, b) -> Math.min(a + b, maxQuantity));
+            }
+        }
+        return lines;
+    }
+
+    private byte[] sign(byte[] body) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(key);
+            return mac.doFinal(body);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+}
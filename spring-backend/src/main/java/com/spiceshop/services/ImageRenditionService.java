@@ -0,0 +1,146 @@
+package com.spiceshop.services;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the resized renditions of an upload (see ImageUrls) off the request thread. Decoding
+ * and scaling are CPU and memory heavy, so they run on a small fixed pool with a bounded
+ * queue; a rendition that was dropped or lost in a restart is queued again the first time it
+ * is requested. Renditions are progressive JPEG, with transparency flattened onto white.
+ */
+@Service
+public class ImageRenditionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageRenditionService.class);
+
+    private final ThreadPoolExecutor executor;
+    private final float jpegQuality;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    public ImageRenditionService(@Value("${images.rendition.threads:1}") int threads,
+                                 @Value("${images.rendition.queue:100}") int queueCapacity,
+                                 @Value("${images.rendition.jpeg-quality:0.82}") float jpegQuality) {
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("image-rendition-", 0).daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.jpegQuality = jpegQuality;
+    }
+
+    /** Queues the missing renditions of {@code original}; repeated calls for one image are merged. */
+    public void submit(Path original, String hash) {
+        if (isComplete(original, hash) || !inFlight.add(hash)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    render(original, hash);
+                } catch (Exception e) {
+                    logger.error("ImageRenditionService: could not render {}", original.getFileName(), e);
+                } finally {
+                    inFlight.remove(hash);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(hash);
+            logger.warn("ImageRenditionService: queue full, {} is rendered on first request instead", original.getFileName());
+        }
+    }
+
+    boolean isComplete(Path original, String hash) {
+        return ImageUrls.RENDITION_WIDTHS.stream()
+                .allMatch(width -> Files.exists(original.resolveSibling(ImageUrls.renditionName(hash, width))));
+    }
+
+    void render(Path original, String hash) throws IOException {
+        BufferedImage source = ImageIO.read(original.toFile());
+        if (source == null) {
+            throw new IOException("No image reader for " + original.getFileName());
+        }
+        for (int width : ImageUrls.RENDITION_WIDTHS) {
+            Path target = original.resolveSibling(ImageUrls.renditionName(hash, width));
+            if (Files.exists(target)) {
+                continue;
+            }
+            // Never upscale; a small upload still gets every rendition name
+            int targetWidth = Math.min(width, source.getWidth());
+            int targetHeight = Math.max(1, Math.round((float) source.getHeight() * targetWidth / source.getWidth()));
+            Path tmp = Files.createTempFile(original.getParent(), "rendition-", ".tmp");
+            try {
+                writeJpeg(scale(source, targetWidth, targetHeight), tmp);
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        }
+    }
+
+    // Halves with bilinear filtering until close to the target, which keeps detail that a
+    // single large bilinear step would alias away
+    static BufferedImage scale(BufferedImage source, int width, int height) {
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage step = new BufferedImage(currentWidth, currentHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = step.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, currentWidth, currentHeight);
+                g.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                g.dispose();
+            }
+            current = step;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private void writeJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(jpegQuality);
+        param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
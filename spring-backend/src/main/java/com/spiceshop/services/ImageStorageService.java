@@ -0,0 +1,181 @@
+package com.spiceshop.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Uploaded spice images on local disk, named by the SHA-256 of their content. The upload is
+ * streamed to a temporary file while it is hashed, so it never sits in the heap, and only then
+ * moved to its final name; the same picture uploaded twice is stored once. Because a name
+ * always means the same bytes, everything under it can be cached forever.
+ */
+@Service
+public class ImageStorageService {
+
+    // What ImageIO can decode for the renditions
+    private enum Format {
+        JPG("image/jpeg"), PNG("image/png"), GIF("image/gif");
+
+        final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        String extension() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /** A file to send; {@code fallback} when it is the original standing in for a missing rendition. */
+    public record StoredImage(Path path, String contentType, boolean fallback) {
+    }
+
+    // An original, <hash>.<ext>, or a rendition, <hash>-<width>.jpg
+    private static final Pattern FILE_NAME = Pattern.compile("([0-9a-f]{64})(?:-(\\d{1,4}))?\\.(jpg|png|gif)");
+
+    private final Path root;
+    private final String baseUrl;
+    private final long maxPixels;
+    private final ImageRenditionService renditionService;
+
+    public ImageStorageService(@Value("${file.upload-dir:uploads/spices}") String uploadDir,
+                               @Value("${images.base-url:/images}") String baseUrl,
+                               @Value("${images.max-pixels:40000000}") long maxPixels,
+                               ImageRenditionService renditionService) {
+        this.root = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.maxPixels = maxPixels;
+        this.renditionService = renditionService;
+        try {
+            Files.createDirectories(root);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create image directory " + root, e);
+        }
+    }
+
+    /**
+     * Stores an upload and queues its renditions; returns the public URL of the original.
+     * Throws IllegalArgumentException for anything that is not a JPEG, PNG or GIF of sane size.
+     */
+    public String store(InputStream upload) throws IOException {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+        Path tmp = Files.createTempFile(root, "upload-", ".tmp");
+        try {
+            try (InputStream in = new DigestInputStream(upload, sha256); OutputStream out = Files.newOutputStream(tmp)) {
+                in.transferTo(out);
+            }
+            Format format = checkImage(tmp);
+            String hash = HexFormat.of().formatHex(sha256.digest());
+            Path target = root.resolve(hash + "." + format.extension());
+            // Already there means the same content was uploaded before; two concurrent uploads
+            // of it at worst replace the file with identical bytes
+            if (!Files.exists(target)) {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            renditionService.submit(target, hash);
+            return baseUrl + "/" + target.getFileName();
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * The file behind a public image name. A rendition that is not there yet is queued and
+     * answered with its original in the meantime; only the widths ImageUrls hands out count as
+     * renditions, so made-up names cannot be used to fetch the original.
+     */
+    public Optional<StoredImage> resolve(String fileName) {
+        Matcher name = FILE_NAME.matcher(fileName);
+        if (!name.matches()) {
+            return Optional.empty();
+        }
+        if (name.group(2) != null && (!name.group(3).equals("jpg")
+                || !ImageUrls.RENDITION_WIDTHS.contains(Integer.parseInt(name.group(2))))) {
+            return Optional.empty();
+        }
+        Path path = root.resolve(fileName);
+        Format format = Format.valueOf(name.group(3).toUpperCase(Locale.ROOT));
+        if (Files.isRegularFile(path)) {
+            return Optional.of(new StoredImage(path, format.contentType, false));
+        }
+        if (name.group(2) == null) {
+            return Optional.empty();
+        }
+        String hash = name.group(1);
+        for (Format original : Format.values()) {
+            Path originalPath = root.resolve(hash + "." + original.extension());
+            if (Files.isRegularFile(originalPath)) {
+                renditionService.submit(originalPath, hash);
+                return Optional.of(new StoredImage(originalPath, original.contentType, true));
+            }
+        }
+        return Optional.empty();
+    }
+
+    // Reads the header only: the format from the magic bytes, the size from the decoder, so an
+    // image that would decode to gigabytes is refused before any rendition tries
+    private Format checkImage(Path file) throws IOException {
+        byte[] head = new byte[8];
+        int read;
+        try (InputStream in = Files.newInputStream(file)) {
+            read = in.readNBytes(head, 0, head.length);
+        }
+        Format format;
+        if (read >= 3 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xD8 && (head[2] & 0xFF) == 0xFF) {
+            format = Format.JPG;
+        } else if (read == 8 && (head[0] & 0xFF) == 0x89 && head[1] == 'P' && head[2] == 'N' && head[3] == 'G') {
+            format = Format.PNG;
+        } else if (read >= 4 && head[0] == 'G' && head[1] == 'I' && head[2] == 'F' && head[3] == '8') {
+            format = Format.GIF;
+        } else {
+            throw new IllegalArgumentException("Only JPEG, PNG and GIF images can be uploaded");
+        }
+
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IllegalArgumentException("Image could not be read");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    throw new IllegalArgumentException("Image is too large (" + reader.getWidth(0) + "x" + reader.getHeight(0) + ")");
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Image could not be read", e);
+            } finally {
+                reader.dispose();
+            }
+        }
+        return format;
+    }
+}
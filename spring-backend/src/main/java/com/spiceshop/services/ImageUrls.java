@@ -0,0 +1,49 @@
+package com.spiceshop.services;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Naming of uploaded images. An upload is stored as {@code <sha256>.<ext>} and served at
+ * {@code <images.base-url>/<sha256>.<ext>}; its renditions sit next to it as
+ * {@code <sha256>-<width>.jpg}, so a rendition URL can be derived from the stored one without a
+ * lookup. URLs that are not uploads (links entered by hand) have no renditions and come back
+ * unchanged.
+ */
+public final class ImageUrls {
+
+    public static final int THUMBNAIL_WIDTH = 320;
+    public static final int FULL_WIDTH = 1280;
+    static final List<Integer> RENDITION_WIDTHS = List.of(THUMBNAIL_WIDTH, FULL_WIDTH);
+
+    private static final Pattern UPLOAD = Pattern.compile("/([0-9a-f]{64})\\.(?:jpg|png|gif)$");
+
+    private ImageUrls() {
+    }
+
+    /** Small rendition for listings, cart and order lines. */
+    public static String thumbnail(String url) {
+        return rendition(url, THUMBNAIL_WIDTH);
+    }
+
+    /** Page-sized rendition, so product pages do not ship the uploaded original. */
+    public static String full(String url) {
+        return rendition(url, FULL_WIDTH);
+    }
+
+    static String rendition(String url, int width) {
+        if (url == null) {
+            return null;
+        }
+        Matcher upload = UPLOAD.matcher(url);
+        if (!upload.find()) {
+            return url;
+        }
+        return url.substring(0, upload.start() + 1) + renditionName(upload.group(1), width);
+    }
+
+    static String renditionName(String hash, int width) {
+        return hash + "-" + width + ".jpg";
+    }
+}
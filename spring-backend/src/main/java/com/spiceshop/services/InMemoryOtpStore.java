@@ -0,0 +1,117 @@
+package com.spiceshop.services;
+
+import com.spiceshop.exceptions.TooManyOtpRequestsException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Single-node store. Entries are immutable and swapped with {@code compute}, which makes each
+ * update atomic per email without locks of our own. Both maps are capped so a signup flood
+ * cannot grow the heap without bound; expired entries are removed by {@link OTPService}'s sweeper.
+ */
+@Component
+@ConditionalOnProperty(name = "otp.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryOtpStore implements OtpStore {
+
+    private record Code(String code, long expiresAt, int failures) {
+    }
+
+    private record Window(long start, int count) {
+    }
+
+    private final ConcurrentHashMap<String, Code> codes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+    private final int maxEntries;
+
+    public InMemoryOtpStore(@Value("${otp.memory.max-entries:100000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public int recordRequest(String email, Instant now, Duration window) {
+        long nowMillis = now.toEpochMilli();
+        ensureCapacity(windows, email, () -> purgeWindows(nowMillis, window));
+        return windows.compute(email, (key, current) ->
+                current == null || current.start() + window.toMillis() <= nowMillis
+                        ? new Window(nowMillis, 1)
+                        : new Window(current.start(), current.count() + 1)).count();
+    }
+
+    @Override
+    public int requestCount(String email, Instant now, Duration window) {
+        Window current = windows.get(email);
+        return current == null || current.start() + window.toMillis() <= now.toEpochMilli() ? 0 : current.count();
+    }
+
+    @Override
+    public void saveCode(String email, String code, Instant expiresAt) {
+        ensureCapacity(codes, email, () -> purgeCodes(System.currentTimeMillis()));
+        codes.put(email, new Code(code, expiresAt.toEpochMilli(), 0));
+    }
+
+    @Override
+    public boolean verifyCode(String email, String code, Instant now, int maxFailures) {
+        boolean[] matched = {false};
+        codes.computeIfPresent(email, (key, current) -> {
+            if (current.expiresAt() <= now.toEpochMilli()) {
+                return null;
+            }
+            if (matches(current.code(), code)) {
+                matched[0] = true;
+                return current;
+            }
+            int failures = current.failures() + 1;
+            return failures >= maxFailures ? null : new Code(current.code(), current.expiresAt(), failures);
+        });
+        return matched[0];
+    }
+
+    @Override
+    public void removeCode(String email) {
+        codes.remove(email);
+    }
+
+    @Override
+    public int purgeExpired(Instant now, Duration window) {
+        return purgeCodes(now.toEpochMilli()) + purgeWindows(now.toEpochMilli(), window);
+    }
+
+    private int purgeCodes(long nowMillis) {
+        int before = codes.size();
+        codes.values().removeIf(code -> code.expiresAt() <= nowMillis);
+        return Math.max(0, before - codes.size());
+    }
+
+    private int purgeWindows(long nowMillis, Duration window) {
+        int before = windows.size();
+        windows.values().removeIf(w -> w.start() + window.toMillis() <= nowMillis);
+        return Math.max(0, before - windows.size());
+    }
+
+    int size() {
+        return codes.size() + windows.size();
+    }
+
+    // Only a new key can push a map past the cap; try an early sweep before refusing
+    private void ensureCapacity(ConcurrentHashMap<String, ?> map, String email, Runnable purge) {
+        if (map.size() < maxEntries || map.containsKey(email)) {
+            return;
+        }
+        purge.run();
+        if (map.size() >= maxEntries) {
+            throw new TooManyOtpRequestsException("OTP service is busy. Please try again later.");
+        }
+    }
+
+    static boolean matches(String expected, String given) {
+        return given != null && MessageDigest.isEqual(
+                expected.getBytes(StandardCharsets.UTF_8), given.getBytes(StandardCharsets.UTF_8));
+    }
+}
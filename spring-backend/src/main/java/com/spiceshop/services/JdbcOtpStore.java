@@ -0,0 +1,130 @@
+package com.spiceshop.services;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Shared store for multi-node deployments, on the otp_codes and otp_request_windows tables.
+ * Counters move with single conditional UPDATEs, so the row lock serialises concurrent
+ * requests for one email across nodes. Inserts that lose a race fall back to the UPDATE; they
+ * run under a savepoint, since on PostgreSQL a failed statement aborts the whole transaction.
+ */
+@Component
+@ConditionalOnProperty(name = "otp.store", havingValue = "jdbc")
+public class JdbcOtpStore implements OtpStore {
+
+    private static final String BUMP_WINDOW_SQL =
+            "UPDATE otp_request_windows SET " +
+            "request_count = CASE WHEN window_start <= ? THEN 1 ELSE request_count + 1 END, " +
+            "window_start = CASE WHEN window_start <= ? THEN ? ELSE window_start END " +
+            "WHERE email = ?";
+
+    private static final String SAVE_CODE_SQL =
+            "UPDATE otp_codes SET code = ?, expires_at = ?, failed_attempts = 0 WHERE email = ?";
+
+    // Only a live code that does not match gets a strike
+    private static final String COUNT_FAILURE_SQL =
+            "UPDATE otp_codes SET failed_attempts = failed_attempts + 1 " +
+            "WHERE email = ? AND code <> ? AND expires_at > ? AND failed_attempts < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JdbcOtpStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public int recordRequest(String email, Instant now, Duration window) {
+        Timestamp nowTs = ts(now);
+        Timestamp closedBefore = ts(now.minus(window));
+        if (jdbcTemplate.update(BUMP_WINDOW_SQL, closedBefore, closedBefore, nowTs, email) == 0) {
+            if (insertIfAbsent("INSERT INTO otp_request_windows (email, window_start, request_count) VALUES (?, ?, 1)",
+                    email, nowTs)) {
+                return 1;
+            }
+            jdbcTemplate.update(BUMP_WINDOW_SQL, closedBefore, closedBefore, nowTs, email);
+        }
+        // the row stays locked by our UPDATE until commit, so this reads our own increment
+        return jdbcTemplate.queryForObject("SELECT request_count FROM otp_request_windows WHERE email = ?",
+                Integer.class, email);
+    }
+
+    @Override
+    public int requestCount(String email, Instant now, Duration window) {
+        List<Integer> counts = jdbcTemplate.queryForList(
+                "SELECT request_count FROM otp_request_windows WHERE email = ? AND window_start > ?",
+                Integer.class, email, ts(now.minus(window)));
+        return counts.isEmpty() ? 0 : counts.get(0);
+    }
+
+    @Override
+    @Transactional
+    public void saveCode(String email, String code, Instant expiresAt) {
+        Timestamp expires = ts(expiresAt);
+        if (jdbcTemplate.update(SAVE_CODE_SQL, code, expires, email) == 0
+                && !insertIfAbsent("INSERT INTO otp_codes (email, code, expires_at, failed_attempts) VALUES (?, ?, ?, 0)",
+                        email, code, expires)) {
+            jdbcTemplate.update(SAVE_CODE_SQL, code, expires, email);
+        }
+    }
+
+    @Override
+    @Transactional
+    public boolean verifyCode(String email, String code, Instant now, int maxFailures) {
+        Timestamp nowTs = ts(now);
+        if (code == null || jdbcTemplate.update(COUNT_FAILURE_SQL, email, code, nowTs, maxFailures) > 0) {
+            jdbcTemplate.update("DELETE FROM otp_codes WHERE email = ? AND failed_attempts >= ?", email, maxFailures);
+            return false;
+        }
+        Integer live = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM otp_codes WHERE email = ? AND code = ? AND expires_at > ? AND failed_attempts < ?",
+                Integer.class, email, code, nowTs, maxFailures);
+        return live != null && live > 0;
+    }
+
+    @Override
+    public void removeCode(String email) {
+        jdbcTemplate.update("DELETE FROM otp_codes WHERE email = ?", email);
+    }
+
+    @Override
+    @Transactional
+    public int purgeExpired(Instant now, Duration window) {
+        return jdbcTemplate.update("DELETE FROM otp_codes WHERE expires_at <= ?", ts(now))
+                + jdbcTemplate.update("DELETE FROM otp_request_windows WHERE window_start <= ?",
+                ts(now.minus(window)));
+    }
+
+    // False when another request inserted the row first. Rolling back to the savepoint keeps the
+    // surrounding transaction usable for the fallback UPDATE.
+    private boolean insertIfAbsent(String sql, Object... args) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            Savepoint savepoint = connection.setSavepoint();
+            try {
+                jdbcTemplate.update(sql, args);
+                connection.releaseSavepoint(savepoint);
+                return true;
+            } catch (DuplicateKeyException e) {
+                connection.rollback(savepoint);
+                return false;
+            }
+        }));
+    }
+
+    // Columns hold microseconds; rounding a nanosecond instant up would shift window edges
+    private static Timestamp ts(Instant instant) {
+        return Timestamp.from(instant.truncatedTo(ChronoUnit.MICROS));
+    }
+}
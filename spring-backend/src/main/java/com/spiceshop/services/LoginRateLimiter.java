@@ -0,0 +1,98 @@
+package com.spiceshop.services;
+
+import com.spiceshop.exceptions.TooManyLoginAttemptsException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Token buckets in front of every password check, one per client address and one per account,
+ * so a credential-stuffing burst is turned away before it costs a BCrypt hash. The address
+ * bucket is taken first: a client that is already throttled cannot drain other people's
+ * account buckets. Buckets are immutable and swapped with {@code compute}, as in
+ * InMemoryOtpStore; a bucket that has refilled completely is the same as no bucket, which is
+ * what lets both maps be trimmed when they reach their cap.
+ */
+@Component
+public class LoginRateLimiter {
+
+    private record Bucket(double tokens, long updatedAt) {
+    }
+
+    private record Limit(int capacity, long nanosPerToken) {
+
+        Bucket refill(Bucket current, long now) {
+            if (current == null) {
+                return new Bucket(capacity, now);
+            }
+            double tokens = Math.min(capacity, current.tokens() + (double) (now - current.updatedAt()) / nanosPerToken);
+            return new Bucket(tokens, now);
+        }
+
+        boolean isFull(Bucket bucket, long now) {
+            return bucket.tokens() + (double) (now - bucket.updatedAt()) / nanosPerToken >= capacity;
+        }
+
+        long secondsUntilNextToken(Bucket bucket) {
+            return Math.max(1, (long) Math.ceil((1 - bucket.tokens()) * nanosPerToken / 1e9));
+        }
+    }
+
+    private final ConcurrentHashMap<String, Bucket> addresses = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Bucket> accounts = new ConcurrentHashMap<>();
+    private final Limit addressLimit;
+    private final Limit accountLimit;
+    private final int maxEntries;
+
+    public LoginRateLimiter(@Value("${auth.login.address.capacity:20}") int addressCapacity,
+                            @Value("${auth.login.address.refill:PT3S}") Duration addressRefill,
+                            @Value("${auth.login.account.capacity:5}") int accountCapacity,
+                            @Value("${auth.login.account.refill:PT30S}") Duration accountRefill,
+                            @Value("${auth.login.max-entries:100000}") int maxEntries) {
+        this.addressLimit = new Limit(addressCapacity, addressRefill.toNanos());
+        this.accountLimit = new Limit(accountCapacity, accountRefill.toNanos());
+        this.maxEntries = maxEntries;
+    }
+
+    /** Takes one attempt from both buckets or throws without taking any from the account. */
+    public void acquire(String clientAddress, String account) {
+        acquire(clientAddress, account, System.nanoTime());
+    }
+
+    void acquire(String clientAddress, String account, long now) {
+        long wait = take(addresses, addressLimit, clientAddress, now);
+        if (wait == 0 && account != null) {
+            wait = take(accounts, accountLimit, account.trim().toLowerCase(Locale.ROOT), now);
+        }
+        if (wait > 0) {
+            throw new TooManyLoginAttemptsException("Too many login attempts. Please try again later.", wait);
+        }
+    }
+
+    // 0 when a token was taken, otherwise the seconds until the bucket has one again
+    private long take(ConcurrentHashMap<String, Bucket> buckets, Limit limit, String key, long now) {
+        if (buckets.size() >= maxEntries && !buckets.containsKey(key)) {
+            buckets.values().removeIf(bucket -> limit.isFull(bucket, now));
+            if (buckets.size() >= maxEntries) {
+                return limit.secondsUntilNextToken(new Bucket(0, now));
+            }
+        }
+        long[] wait = {0};
+        buckets.compute(key, (k, current) -> {
+            Bucket refilled = limit.refill(current, now);
+            if (refilled.tokens() < 1) {
+                wait[0] = limit.secondsUntilNextToken(refilled);
+                return refilled;
+            }
+            return new Bucket(refilled.tokens() - 1, now);
+        });
+        return wait[0];
+    }
+
+    int size() {
+        return addresses.size() + accounts.size();
+    }
+}
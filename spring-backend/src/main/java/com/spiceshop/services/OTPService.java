@@ -1,71 +1,63 @@
 package com.spiceshop.services;
 
+import com.spiceshop.exceptions.TooManyOtpRequestsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
-import java.util.Random;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.ConcurrentHashMap;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
 
 @Service
 public class OTPService {
 
-    private final Map<String, String> otpStorage = new ConcurrentHashMap<>();
-    private final Map<String, Long> otpExpiry = new ConcurrentHashMap<>();
-    private static final long OTP_VALID_DURATION = 5 * 60 * 1000; // 5 minutes
-    private final Map<String, Integer> otpAttempts = new ConcurrentHashMap<>();
-    private static final int MAX_ATTEMPTS = 5;
-    private static final int BLOCK_TIME_MINUTES = 15;
+    private static final Logger logger = LoggerFactory.getLogger(OTPService.class);
+
+    private static final Duration OTP_VALID_DURATION = Duration.ofMinutes(5);
+    private static final int MAX_ATTEMPTS = 5;              // OTP sends per email per block window
+    private static final Duration BLOCK_WINDOW = Duration.ofMinutes(15);
+    private static final int MAX_VERIFY_FAILURES = 5;       // wrong guesses before the code is burned
+
+    private final OtpStore otpStore;
+    private final SecureRandom random = new SecureRandom();
+
+    public OTPService(OtpStore otpStore) {
+        this.otpStore = otpStore;
+    }
 
     public boolean isOTPRequestBlocked(String email) {
-        String key = "OTP_REQ_" + email;
-        Integer attempts = otpAttempts.getOrDefault(key, 0);
-        return attempts >= MAX_ATTEMPTS;
+        return otpStore.requestCount(email, Instant.now(), BLOCK_WINDOW) >= MAX_ATTEMPTS;
     }
 
     public String generateOTP(String email) {
-        otpAttempts.remove("OTP_REQ_" + email);
+        Instant now = Instant.now();
 
-        // OTP generation logic
-        String otp = String.format("%06d", new Random().nextInt(1000000));
-
-        // Store the OTP and attempt count
-        otpStorage.put(email, otp);
-        otpExpiry.put(email, System.currentTimeMillis() + OTP_VALID_DURATION);
-        String key = "OTP_REQ_" + email;
-        otpAttempts.put(key, otpAttempts.getOrDefault(key, 0) + 1);
-
-        // Schedule cleanup for blocked OTP requests after BLOCK_TIME_MINUTES
-        new Timer().schedule(new TimerTask() {
-            @Override
-            public void run() {
-                otpAttempts.remove(key);
-            }
-        }, BLOCK_TIME_MINUTES * 60 * 1000);
+        // counted atomically, so concurrent sends cannot all slip past isOTPRequestBlocked
+        if (otpStore.recordRequest(email, now, BLOCK_WINDOW) > MAX_ATTEMPTS) {
+            throw new TooManyOtpRequestsException("Too many requests. Please try again later.");
+        }
 
+        String otp = String.format("%06d", random.nextInt(1000000));
+        otpStore.saveCode(email, otp, now.plus(OTP_VALID_DURATION));
         return otp;
     }
 
     public boolean validateOTP(String email, String otp) {
-        String storedOtp = otpStorage.get(email);
-        Long expiryTime = otpExpiry.get(email);
-
-        if (storedOtp == null || expiryTime == null) {
-            return false;
-        }
-
-        // Check if the OTP has expired
-        if (System.currentTimeMillis() > expiryTime) {
-            clearOTP(email);
-            return false;
-        }
-
-        return storedOtp.equals(otp);
+        return otpStore.verifyCode(email, otp, Instant.now(), MAX_VERIFY_FAILURES);
     }
 
     public void clearOTP(String email) {
-        otpStorage.remove(email);
-        otpExpiry.remove(email);
+        otpStore.removeCode(email);
+    }
+
+    // One sweeper for the whole store instead of a timer per request
+    @Scheduled(initialDelayString = "${otp.sweep-interval:PT1M}", fixedDelayString = "${otp.sweep-interval:PT1M}")
+    public void purgeExpired() {
+        int purged = otpStore.purgeExpired(Instant.now(), BLOCK_WINDOW);
+        if (purged > 0) {
+            logger.debug("OTPService: purged {} expired OTP entries", purged);
+        }
     }
 }
@@ -0,0 +1,121 @@
+package com.spiceshop.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spiceshop.dto.OrderExportRow;
+import com.spiceshop.dto.OrderFeedFilter;
+import com.spiceshop.repositorys.OrderRepository;
+import com.spiceshop.repositorys.OrderSpecifications;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Service
+public class OrderExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderExportService.class);
+
+    private static final String CSV_HEADER = "id,orderNumber,orderDate,orderStatus,paymentStatus,paymentMethod," +
+            "subtotal,shippingCost,totalAmount,customerName,customerEmail,shippingCity,shippingState,shippingPinCode";
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private final OrderRepository orderRepository;
+    private final ObjectMapper objectMapper;
+
+    public OrderExportService(OrderRepository orderRepository, ObjectMapper objectMapper) {
+        this.orderRepository = orderRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Writes every matching order as one line straight from a database cursor, so memory
+     * stays flat however many orders match. The transaction spans the whole write.
+     */
+    @Transactional(readOnly = true)
+    public long export(OrderFeedFilter filter, Format format, OutputStream out) {
+        long rows = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        try (Stream<OrderExportRow> stream = orderRepository.streamExportRows(OrderSpecifications.matching(filter))) {
+            if (format == Format.CSV) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+            }
+            Iterator<OrderExportRow> it = stream.iterator();
+            while (it.hasNext()) {
+                OrderExportRow row = it.next();
+                writer.write(format == Format.CSV ? toCsv(row) : objectMapper.writeValueAsString(row));
+                writer.write('\n');
+                rows++;
+            }
+            writer.flush();
+        } catch (IOException e) {
+            // typically the client went away mid-download
+            throw new UncheckedIOException(e);
+        }
+        logger.info("OrderExportService: exported {} orders as {}", rows, format);
+        return rows;
+    }
+
+    private static String toCsv(OrderExportRow row) {
+        return String.join(",",
+                csv(row.id()),
+                csv(row.orderNumber()),
+                csv(row.orderDate()),
+                csv(row.orderStatus()),
+                csv(row.paymentStatus()),
+                csv(row.paymentMethod()),
+                csv(row.subtotal()),
+                csv(row.shippingCost()),
+                csv(row.totalAmount()),
+                csv(row.customerFirstName() + " " + row.customerLastName()),
+                csv(row.customerEmail()),
+                csv(row.shippingCity()),
+                csv(row.shippingState()),
+                csv(row.shippingPinCode()));
+    }
+
+    static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        // keep spreadsheet apps from evaluating customer-supplied text as a formula
+        if (value instanceof String && !text.isEmpty() && "=+-@".indexOf(text.charAt(0)) >= 0) {
+            text = "'" + text;
+        }
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+}
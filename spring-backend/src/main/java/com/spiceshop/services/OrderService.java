@@ -1,21 +1,27 @@
 package com.spiceshop.services;
 
-import com.razorpay.RazorpayClient;
-import com.razorpay.RazorpayException;
 import com.spiceshop.dto.*;
 import com.spiceshop.exceptions.CustomException;
+import com.spiceshop.exceptions.InsufficientStockException;
 import com.spiceshop.models.*;
 import com.spiceshop.repositorys.*;
 import jakarta.transaction.Transactional;
-import org.json.JSONObject;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 
@@ -27,50 +33,70 @@ public class OrderService {
     private final PaymentRepository paymentRepository;
     private final UserRepository userRepository;
     private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
     private final SpicePackRepository spicePackRepository;
 
-    @Value("${razorpay.key_id}")
-    private String razorpayKeyId;
-
-    @Value("${razorpay.key_secret}")
-    private String razorpayKeySecret;
-
     private final EmailService emailService;
+    private final SpiceService spiceService;
+    private final StockLedgerService stockLedgerService;
+    private final StockReservationService stockReservationService;
+    private final ShippingRuleService shippingRuleService;
+    private final CartService cartService;
 
     private static final Logger logger = LoggerFactory.getLogger(OrderService.class);
 
 
     public OrderService(OrderRepository orderRepository, OrderItemRepository orderItemRepository,
                         PaymentRepository paymentRepository, UserRepository userRepository,
-                        CartRepository cartRepository, SpicePackRepository spicePackRepository, EmailService emailService) {
+                        CartRepository cartRepository, CartItemRepository cartItemRepository,
+                        SpicePackRepository spicePackRepository, EmailService emailService,
+                        SpiceService spiceService, StockLedgerService stockLedgerService,
+                        StockReservationService stockReservationService, ShippingRuleService shippingRuleService,
+                        CartService cartService) {
         this.orderRepository = orderRepository;
         this.orderItemRepository = orderItemRepository;
         this.paymentRepository = paymentRepository;
         this.userRepository = userRepository;
         this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
         this.spicePackRepository = spicePackRepository;
 
         this.emailService = emailService;
+        this.spiceService = spiceService;
+        this.stockLedgerService = stockLedgerService;
+        this.stockReservationService = stockReservationService;
+        this.shippingRuleService = shippingRuleService;
+        this.cartService = cartService;
     }
 
+    /**
+     * First checkout phase: prices the cart and writes the order with its lines and a PENDING
+     * payment. COD orders are complete here; Razorpay orders get their stock held and are
+     * finished by {@link #attachGatewayOrder} or {@link #abandonGatewayOrder}.
+     */
     @Transactional
-    public OrderResponse placeOrder(OrderRequest orderRequest, User currentUser) throws RazorpayException {
+    public OrderResponse placeOrder(OrderRequest orderRequest, AuthenticatedUser currentUser) {
         logger.info("OrderService: Attempting to place order.");
         if (currentUser == null) {
             logger.error("OrderService: currentUser is null. Cannot place order for unauthenticated user.");
             throw new CustomException("User not authenticated.");
         }
-        logger.info("OrderService: Authenticated user: {}", currentUser.getEmail());
+        logger.info("OrderService: Authenticated user: {}", currentUser.email());
 
-        Cart userCart = cartRepository.findByUser(currentUser)
-                .orElseThrow(() -> new CustomException("Your cart is empty. Please add items before placing an order."));
-
-        if (userCart.getItems().isEmpty()) {
+        // Cart lines as a projection and every pack (with variant and spice) in one more query
+        List<CartLineView> cartLines = cartRepository.findByUserId(currentUser.id())
+                .map(cart -> cartItemRepository.findCartLines(cart.getId()))
+                .orElse(List.of());
+        if (cartLines.isEmpty()) {
             throw new CustomException("Your cart is empty. Please add items before placing an order.");
         }
+        Map<Long, SpicePack> packs = spicePackRepository.findWithSpiceByIdIn(
+                        cartLines.stream().map(CartLineView::spicePackId).toList()).stream()
+                .collect(Collectors.toMap(SpicePack::getId, Function.identity()));
 
         Order order = new Order();
-        order.setUser(currentUser);
+        // A reference is enough for the foreign key; the snapshot already proved the user exists
+        order.setUser(userRepository.getReferenceById(currentUser.id()));
         order.setOrderNumber("ORD-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase());
         // Initial status is PENDING for all orders until further processing
         order.setOrderStatus(Order.OrderStatus.PENDING);
@@ -86,39 +112,36 @@ public class OrderService {
         order.setShippingPinCode(orderRequest.getShippingAddress().getPinCode());
         order.setShippingPhone(orderRequest.getShippingAddress().getPhone());
 
-        List<OrderItem> orderItems = userCart.getItems().stream().map(cartItem -> {
-            SpicePack spicePack = spicePackRepository.findById(cartItem.getSpicePack().getId())
-                    .orElseThrow(() -> new CustomException("Product not found: " + cartItem.getSpicePack().getId()));
+        List<OrderItem> orderItems = cartLines.stream().map(line -> {
+            SpicePack spicePack = packs.get(line.spicePackId());
+            if (spicePack == null) {
+                throw new CustomException("Product not found: " + line.spicePackId());
+            }
+            String spiceName = spicePack.getVariant().getSpice().getName();
 
-            if (cartItem.getQuantity() > spicePack.getStockQuantity()) {
-                throw new CustomException("Insufficient stock for " + spicePack.getVariant().getSpice().getName() + " (" + spicePack.getPackWeightInGrams() + "g). Available: " + spicePack.getStockQuantity());
+            if (line.quantity() > spicePack.getStockQuantity()) {
+                throw new CustomException("Insufficient stock for " + spiceName + " (" + spicePack.getPackWeightInGrams() + "g). Available: " + spicePack.getStockQuantity());
             }
 
-            OrderItem orderItem = OrderItem.builder()
+            return OrderItem.builder()
                     .order(order)
                     .spicePack(spicePack)
-                    .spiceName(spicePack.getVariant().getSpice().getName())
+                    .spiceName(spiceName)
                     .qualityClass(spicePack.getVariant().getQualityClass())
                     .packWeightInGrams(spicePack.getPackWeightInGrams())
                     .unitPrice(spicePack.getPrice())
-                    .quantity(cartItem.getQuantity())
+                    .quantity(line.quantity())
                     .build();
-            return orderItem;
         }).collect(Collectors.toList());
 
         order.setItems(orderItems);
         order.calculateTotals(); // Calculate subtotal based on items
 
-        // Calculate shipping cost conditionally
-        if (order.getSubtotal().compareTo(new BigDecimal("500")) >= 0) {
-            order.setShippingCost(BigDecimal.ZERO); // Free shipping if subtotal is 500 or more
-        } else {
-            order.setShippingCost(BigDecimal.valueOf(50.00)); // Otherwise, 50
-        }
+        // Same shipping tiers as the cart
+        long shippingPaise = shippingRuleService.shippingFor(CartPricingEngine.toPaise(order.getSubtotal()));
+        order.setShippingCost(CartPricingEngine.toRupees(shippingPaise));
         order.calculateTotals(); // Recalculate total after setting shipping cost
 
-        String razorpayOrderId = null;
-
         if (order.getPaymentMethod() == Order.PaymentMethod.COD) {
             // For COD, the order is considered "placed" immediately.
             // Stock is reduced and cart cleared here.
@@ -128,71 +151,56 @@ public class OrderService {
             order.setPaymentStatus(Order.PaymentStatus.PENDING); // Payment is pending on delivery
             order.setOrderStatus(Order.OrderStatus.PROCESSING); // Order is immediately processing
 
-            // Reduce stock
-            for (OrderItem item : orderItems) {
-                SpicePack pack = item.getSpicePack();
-                pack.setStockQuantity(pack.getStockQuantity() - item.getQuantity());
-                spicePackRepository.save(pack);
+            // Reduce stock: one conditional update per line, all in one batch
+            try {
+                stockLedgerService.decrement(orderItems.stream()
+                        .collect(Collectors.toMap(item -> item.getSpicePack().getId(), OrderItem::getQuantity, Integer::sum)));
+            } catch (InsufficientStockException e) {
+                throw new CustomException(insufficientStockMessage(orderItems, e.getPackId()));
             }
+            spiceService.onStockChanged(orderItems.stream()
+                    .map(item -> item.getSpicePack().getVariant().getSpice().getId())
+                    .collect(Collectors.toSet()));
             // Clear cart
-            cartRepository.delete(userCart);
+            cartService.clearCart(currentUser.id());
 
         } else if (order.getPaymentMethod() == Order.PaymentMethod.RAZORPAY) {
             // For Razorpay, order is pending until payment is confirmed.
-            // Stock reduction and cart clearing happen ONLY AFTER successful payment verification.
+            // Stock is held now; cart clearing happens ONLY AFTER successful payment verification.
             order.setPaymentStatus(Order.PaymentStatus.PENDING); // Payment is pending gateway interaction
             order.setOrderStatus(Order.OrderStatus.PENDING); // Order status remains pending payment
 
+            // Hold the units until the payment is verified or the hold lapses. The hold needs the
+            // order id, so the aggregate is saved here; the payment below joins it on flush
+            orderRepository.save(order);
             try {
-                RazorpayClient razorpay = new RazorpayClient(razorpayKeyId, razorpayKeySecret);
-                JSONObject orderRequestJson = new JSONObject();
-                orderRequestJson.put("amount", order.getTotal().multiply(new BigDecimal("100")).intValue());
-                orderRequestJson.put("currency", "INR");
-                orderRequestJson.put("receipt", order.getOrderNumber());
-                JSONObject notes = new JSONObject();
-                notes.put("order_id", order.getId());
-                orderRequestJson.put("notes", notes);
-
-                com.razorpay.Order razorpayOrder = razorpay.orders.create(orderRequestJson);
-                razorpayOrderId = razorpayOrder.get("id");
-                order.setRazorpayOrderId(razorpayOrderId);
-
-            } catch (RazorpayException e) {
-                logger.error("Razorpay exception while creating order: {}", e.getMessage(), e);
-                // If Razorpay order creation fails, set order/payment status to failed immediately
-                order.setPaymentStatus(Order.PaymentStatus.FAILED);
-                order.setOrderStatus(Order.OrderStatus.CANCELLED);
-                orderRepository.save(order); // Save updated status
-                throw new CustomException("Failed to initiate Razorpay payment. Please try again later.");
+                stockReservationService.hold(order);
+            } catch (InsufficientStockException e) {
+                throw new CustomException(insufficientStockMessage(orderItems, e.getPackId()));
             }
+            // The Razorpay order is created by CheckoutService once this transaction has committed
         }
 
-        orderRepository.save(order);
-
-        if (order.getPaymentMethod() == Order.PaymentMethod.COD) {
-            emailService.sendOrderConfirmationEmail(order);
-        }
-
+        // The payment rides on the order's cascade, so order, lines and payment go out in one save
         Payment payment = Payment.builder()
                 .order(order)
                 .paymentMethod(order.getPaymentMethod())
                 .amount(order.getTotal())
                 .status(order.getPaymentStatus())
                 .paymentDate(LocalDateTime.now())
-                .gatewayOrderId(razorpayOrderId)
                 .build();
-        paymentRepository.save(payment);
-        order.getPayments().add(payment); 
-
-        // Re-save order after linking payment
+        order.getPayments().add(payment);
         orderRepository.save(order);
 
+        if (order.getPaymentMethod() == Order.PaymentMethod.COD) {
+            emailService.sendOrderConfirmationEmail(order);
+        }
+
         return OrderResponse.builder()
                 .orderId(order.getId())
                 .orderNumber(order.getOrderNumber())
                 .totalAmount(order.getTotal())
                 .paymentMethod(order.getPaymentMethod().name())
-                .razorpayOrderId(razorpayOrderId)
                 .message("Order placed successfully. Proceeding to payment.")
                 .success(true)
                 .build();
@@ -200,12 +208,45 @@ public class OrderService {
 
 
 
-    public List<OrderHistoryDto> getUserOrderHistory(User currentUser) {
-        if (currentUser == null) {
+    // Last checkout phase for Razorpay, after the gateway call: a short transaction of its own
+    @Transactional
+    public void attachGatewayOrder(Long orderId, String gatewayOrderId) {
+        Order order = orderRepository.findById(orderId)
+                .orElseThrow(() -> new CustomException("Order not found with ID: " + orderId));
+        order.setRazorpayOrderId(gatewayOrderId);
+        order.getPayments().stream()
+                .filter(payment -> payment.getGatewayOrderId() == null)
+                .forEach(payment -> payment.setGatewayOrderId(gatewayOrderId));
+    }
+
+    // The gateway order could not be created: cancel the pending order and give the held units back
+    @Transactional
+    public void abandonGatewayOrder(Long orderId, String reason) {
+        Order order = orderRepository.findById(orderId)
+                .orElseThrow(() -> new CustomException("Order not found with ID: " + orderId));
+        order.setPaymentStatus(Order.PaymentStatus.FAILED);
+        order.setOrderStatus(Order.OrderStatus.CANCELLED);
+        order.getPayments().forEach(payment -> {
+            payment.setStatus(Order.PaymentStatus.FAILED);
+            payment.setFailureReason(reason);
+        });
+        stockReservationService.release(orderId);
+    }
+
+    private static String insufficientStockMessage(List<OrderItem> items, Long packId) {
+        return items.stream()
+                .filter(item -> item.getSpicePack().getId().equals(packId))
+                .findFirst()
+                .map(item -> "Insufficient stock for " + item.getSpiceName() + " (" + item.getPackWeightInGrams() + "g).")
+                .orElse("Insufficient stock for one of the items in your cart.");
+    }
+
+    public List<OrderHistoryDto> getUserOrderHistory(Long userId) {
+        if (userId == null) {
             throw new CustomException("User not authenticated.");
         }
 
-        List<Order> orders = orderRepository.findByUserOrderByCreatedAtDesc(currentUser);
+        List<Order> orders = orderRepository.findByUserIdOrderByCreatedAtDesc(userId);
 
         return orders.stream()
                 .map(this::mapToOrderHistoryDto)
@@ -270,9 +311,75 @@ public class OrderService {
                 .collect(Collectors.toList());
     }
 
-    public OrderDetailsDto getOrderDetailByIdAndUser(Long orderId, User user) {
-        logger.info("OrderService: Fetching order details for orderId: {} and user: {}", orderId, user.getEmail());
-        Order order = orderRepository.findByIdAndUser(orderId, user)
+    // Keyset counterparts of getUserOrderHistory/getAllOrders for the cursor mode of the listings
+    public CursorPage<OrderHistoryDto> getUserOrderHistoryWindow(Long userId, String cursor, int limit, boolean includeTotal) {
+        if (userId == null) {
+            throw new CustomException("User not authenticated.");
+        }
+        PageCursor after = decodeOrderCursor(cursor);
+        List<Order> orders = after == null
+                ? orderRepository.findWindowByUser(userId, Limit.of(limit + 1))
+                : orderRepository.findWindowByUserAfter(userId, LocalDateTime.parse(after.sortKey()), after.id(), Limit.of(limit + 1));
+        return toOrderWindow(orders, limit, includeTotal ? orderRepository.countByUserId(userId) : null);
+    }
+
+    public CursorPage<OrderHistoryDto> getAllOrdersWindow(String cursor, int limit, boolean includeTotal) {
+        PageCursor after = decodeOrderCursor(cursor);
+        List<Order> orders = after == null
+                ? orderRepository.findWindow(Limit.of(limit + 1))
+                : orderRepository.findWindowAfter(LocalDateTime.parse(after.sortKey()), after.id(), Limit.of(limit + 1));
+        return toOrderWindow(orders, limit, includeTotal ? orderRepository.count() : null);
+    }
+
+    private PageCursor decodeOrderCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            PageCursor after = PageCursor.decode(cursor);
+            LocalDateTime.parse(after.sortKey());
+            return after;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new CustomException("Invalid cursor.");
+        }
+    }
+
+    // Windows are fetched with one extra row, which only signals that another window follows
+    private CursorPage<OrderHistoryDto> toOrderWindow(List<Order> orders, int limit, Long total) {
+        boolean hasMore = orders.size() > limit;
+        List<Order> window = hasMore ? orders.subList(0, limit) : orders;
+        String nextCursor = null;
+        if (hasMore) {
+            Order last = window.get(window.size() - 1);
+            nextCursor = new PageCursor(last.getCreatedAt().toString(), last.getId()).encode();
+        }
+        List<OrderHistoryDto> items = window.stream()
+                .map(this::mapToOrderHistoryDto)
+                .collect(Collectors.toList());
+        return new CursorPage<>(items, nextCursor, hasMore, total);
+    }
+
+    // Admin feed: one page of matching ids, then a single fetch-planned load of those orders
+    public Page<OrderHistoryDto> getOrderFeed(OrderFeedFilter filter, int page, int size) {
+        Pageable pageable = PageRequest.of(page - 1, size);
+        Page<Long> idPage = orderRepository.findIdPage(OrderSpecifications.matching(filter), pageable);
+        if (idPage.isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, idPage.getTotalElements());
+        }
+
+        Map<Long, Order> byId = orderRepository.findAllForFeedByIdIn(idPage.getContent()).stream()
+                .collect(Collectors.toMap(Order::getId, Function.identity()));
+        List<OrderHistoryDto> orders = idPage.getContent().stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .map(this::mapToOrderHistoryDto)
+                .collect(Collectors.toList());
+        return new PageImpl<>(orders, pageable, idPage.getTotalElements());
+    }
+
+    public OrderDetailsDto getOrderDetailByIdAndUser(Long orderId, Long userId) {
+        logger.info("OrderService: Fetching order details for orderId: {} and user: {}", orderId, userId);
+        Order order = orderRepository.findByIdAndUserId(orderId, userId)
                 .orElseThrow(() -> new CustomException("Order not found or you don't have permission to view it"));
 
         return mapOrderToOrderDetailsDto(order);
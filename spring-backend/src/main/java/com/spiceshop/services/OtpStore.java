@@ -0,0 +1,37 @@
+package com.spiceshop.services;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Backing store for registration OTPs and the per-email send counter. Every method is atomic
+ * per email, so concurrent requests for the same address cannot lose an increment or both
+ * pass a limit check. Selected with {@code otp.store} ({@code memory} or {@code jdbc}).
+ */
+public interface OtpStore {
+
+    /**
+     * Counts one OTP send for the email. A fresh window starts when the previous one is older
+     * than {@code window}.
+     *
+     * @return sends in the current window, including this one
+     */
+    int recordRequest(String email, Instant now, Duration window);
+
+    /** Sends in the window that is still open at {@code now}, 0 if none. */
+    int requestCount(String email, Instant now, Duration window);
+
+    /** Replaces any outstanding code for the email. */
+    void saveCode(String email, String code, Instant expiresAt);
+
+    /**
+     * Checks a code. A wrong guess counts as a failure, and the code is dropped once
+     * {@code maxFailures} is reached or it has expired.
+     */
+    boolean verifyCode(String email, String code, Instant now, int maxFailures);
+
+    void removeCode(String email);
+
+    /** Drops expired codes and closed windows; returns how many entries went. */
+    int purgeExpired(Instant now, Duration window);
+}
@@ -0,0 +1,127 @@
+package com.spiceshop.services;
+
+import com.spiceshop.exceptions.PasswordHashingBusyException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Every BCrypt hash and check runs here instead of on the request thread. The pool is fixed
+ * (half the cores by default) with a short queue, so a login flood costs at most that many
+ * cores; once the queue is full, callers get PasswordHashingBusyException straight away rather
+ * than piling up behind each other. A login for an unknown account is checked against a dummy
+ * hash, so it takes as long as a real one, and a correct password stored at a lower cost than
+ * configured is handed back rehashed.
+ */
+@Service
+public class PasswordHasher {
+
+    static final String METRIC = "auth.password.hashing";
+
+    /** Outcome of a check; {@code upgradedHash} is set when the stored hash should be replaced. */
+    public record Verification(boolean matches, String upgradedHash) {
+    }
+
+    private final BCryptPasswordEncoder encoder;
+    private final ThreadPoolExecutor executor;
+    private final Duration timeout;
+    private final MeterRegistry meterRegistry;
+    private final String dummyHash;
+
+    public PasswordHasher(BCryptPasswordEncoder encoder,
+                          @Value("${auth.password.hash-threads:0}") int threads,
+                          @Value("${auth.password.hash-queue:32}") int queueCapacity,
+                          @Value("${auth.password.hash-timeout:PT5S}") Duration timeout,
+                          MeterRegistry meterRegistry) {
+        // 0 leaves the other half of the cores to everything that is not a login
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.encoder = encoder;
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("password-hash-", 0).daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.timeout = timeout;
+        this.meterRegistry = meterRegistry;
+        this.dummyHash = encoder.encode(UUID.randomUUID().toString());
+    }
+
+    /** Checks {@code raw} against {@code encoded}, which may be null when there is no such account. */
+    public Verification verify(String raw, String encoded) {
+        return submit("verify", () -> {
+            if (encoded == null || encoded.isEmpty()) {
+                encoder.matches(raw, dummyHash);
+                return new Verification(false, null);
+            }
+            if (!encoder.matches(raw, encoded)) {
+                return new Verification(false, null);
+            }
+            return new Verification(true, encoder.upgradeEncoding(encoded) ? encoder.encode(raw) : null);
+        });
+    }
+
+    public String encode(String raw) {
+        return submit("encode", () -> encoder.encode(raw));
+    }
+
+    private <T> T submit(String operation, Callable<T> task) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            record(operation, "rejected", sample);
+            throw new PasswordHashingBusyException("Login is busy. Please try again shortly.", e);
+        }
+        try {
+            T result = future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            record(operation, "ok", sample);
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            record(operation, "timeout", sample);
+            throw new PasswordHashingBusyException("Login is busy. Please try again shortly.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new PasswordHashingBusyException("Interrupted while waiting for password hashing", e);
+        } catch (ExecutionException e) {
+            record(operation, "error", sample);
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    int queued() {
+        return executor.getQueue().size();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void record(String operation, String outcome, Timer.Sample sample) {
+        sample.stop(Timer.builder(METRIC)
+                .description("Time from submitting a password hash to its result, queueing included")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+}
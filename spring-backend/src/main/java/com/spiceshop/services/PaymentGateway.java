@@ -0,0 +1,26 @@
+package com.spiceshop.services;
+
+import java.util.Map;
+
+/**
+ * Remote payment provider. Calls go over the network and can be slow, so they must never be
+ * made while a database transaction is open; see CheckoutService. Selected with
+ * {@code payment.gateway} ({@code razorpay} or {@code fake} for offline runs).
+ */
+public interface PaymentGateway {
+
+    /**
+     * Creates the provider-side order a checkout pays against.
+     *
+     * @return the provider's order id
+     * @throws com.spiceshop.exceptions.PaymentGatewayException when the call fails, times out
+     *         or is short-circuited
+     */
+    String createOrder(long amountPaise, String currency, String receipt, Map<String, Object> notes);
+
+    /** Checks the signature the checkout widget returns for a payment; local, no network call. */
+    boolean verifyPaymentSignature(String gatewayOrderId, String paymentId, String signature);
+
+    /** Checks the signature header of a webhook delivery against its raw body; local, no network call. */
+    boolean verifyWebhookSignature(String payload, String signature);
+}
@@ -1,125 +1,203 @@
 package com.spiceshop.services;
 
-import com.razorpay.RazorpayClient;
-import com.razorpay.RazorpayException;
-import com.razorpay.Utils;
+import com.spiceshop.config.CacheConfig;
 import com.spiceshop.dto.PaymentVerificationRequest;
 import com.spiceshop.dto.PaymentVerificationResponse;
 import com.spiceshop.exceptions.CustomException;
+import com.spiceshop.exceptions.InsufficientStockException;
+import com.spiceshop.exceptions.PaymentConflictException;
 import com.spiceshop.models.Order;
 import com.spiceshop.models.OrderItem;
 import com.spiceshop.models.Payment;
-import com.spiceshop.models.SpicePack;
 import com.spiceshop.repositorys.OrderRepository;
 import com.spiceshop.repositorys.PaymentRepository;
-import com.spiceshop.repositorys.CartRepository;
-import com.spiceshop.repositorys.SpicePackRepository;
 import jakarta.transaction.Transactional;
-import org.json.JSONObject;
-import org.springframework.beans.factory.annotation.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.stream.Collectors;
 
 @Service
 public class PaymentService {
 
+    private static final Logger logger = LoggerFactory.getLogger(PaymentService.class);
+
     private final OrderRepository orderRepository;
     private final PaymentRepository paymentRepository;
-    private final CartRepository cartRepository;
-    private final SpicePackRepository spicePackRepository;
+    private final StockLedgerService stockLedgerService;
+    private final StockReservationService stockReservationService;
     private final EmailService emailService;
-
-    @Value("${razorpay.key_id}")
-    private String razorpayKeyId;
-
-    @Value("${razorpay.key_secret}")
-    private String razorpayKeySecret;
+    private final SpiceService spiceService;
+    private final CartService cartService;
+    private final PaymentGateway paymentGateway;
+    private final CacheManager cacheManager;
 
     public PaymentService(OrderRepository orderRepository, PaymentRepository paymentRepository,
-                          CartRepository cartRepository, SpicePackRepository spicePackRepository, EmailService emailService) {
+                          StockLedgerService stockLedgerService, EmailService emailService,
+                          SpiceService spiceService, StockReservationService stockReservationService,
+                          CartService cartService, PaymentGateway paymentGateway,
+                          CacheManager cacheManager) {
         this.orderRepository = orderRepository;
         this.paymentRepository = paymentRepository;
-        this.cartRepository = cartRepository;
-        this.spicePackRepository = spicePackRepository; // Initialize SpicePackRepository
+        this.stockLedgerService = stockLedgerService;
+        this.stockReservationService = stockReservationService;
         this.emailService = emailService;
+        this.spiceService = spiceService;
+        this.cartService = cartService;
+        this.paymentGateway = paymentGateway;
+        this.cacheManager = cacheManager;
     }
 
+    /**
+     * Settles the order's payment at most once. Duplicates (double clicks, client retries,
+     * replays) never touch stock, the cart or email again: a key seen before is answered from
+     * the verification cache, and otherwise the state of the already settled payment is reported.
+     * {@code idempotencyKey} defaults to the Razorpay payment id and is scoped to the order, so
+     * a client reusing one for another checkout cannot collide with it.
+     */
     @Transactional
-    public PaymentVerificationResponse verifyRazorpayPayment(PaymentVerificationRequest request) {
+    public PaymentVerificationResponse verifyRazorpayPayment(PaymentVerificationRequest request, String idempotencyKey) {
+        String key = idempotencyKey != null && !idempotencyKey.isBlank() ? idempotencyKey : request.getRazorpayPaymentId();
+        String cacheKey = key == null ? null : request.getOrderId() + ":" + key;
+        Cache verifications = cacheManager.getCache(CacheConfig.PAYMENT_VERIFICATIONS);
+        PaymentVerificationResponse cached = cacheKey == null ? null : verifications.get(cacheKey, PaymentVerificationResponse.class);
+        if (cached != null) {
+            return cached;
+        }
         try {
-            RazorpayClient razorpay = new RazorpayClient(razorpayKeyId, razorpayKeySecret);
-
-            JSONObject options = new JSONObject();
-            options.put("razorpay_order_id", request.getRazorpayOrderId());
-            options.put("razorpay_payment_id", request.getRazorpayPaymentId());
-            options.put("razorpay_signature", request.getRazorpaySignature());
-
-            Order order = orderRepository.findById(request.getOrderId())
-                    .orElseThrow(() -> new CustomException("Order not found with ID: " + request.getOrderId()));
-
-            Payment payment = paymentRepository.findByGatewayOrderId(request.getRazorpayOrderId())
+            Payment payment = paymentRepository.findWithOrderByGatewayOrderId(request.getRazorpayOrderId())
                     .orElseThrow(() -> new CustomException("Payment record not found for Razorpay Order ID: " + request.getRazorpayOrderId()));
+            Order order = payment.getOrder();
+            if (!order.getId().equals(request.getOrderId())) {
+                throw new CustomException("Order not found with ID: " + request.getOrderId());
+            }
 
-            boolean isVerified = Utils.verifyPaymentSignature(options, razorpayKeySecret);
+            boolean isVerified = paymentGateway.verifyPaymentSignature(
+                    request.getRazorpayOrderId(), request.getRazorpayPaymentId(), request.getRazorpaySignature());
 
-            if (isVerified) {
-                // Payment successful
-                payment.setStatus(Order.PaymentStatus.COMPLETED);
-                payment.setTransactionId(request.getRazorpayPaymentId()); // Store payment ID
-                payment.setPaymentDate(LocalDateTime.now());
-                paymentRepository.save(payment);
+            PaymentVerificationResponse response;
+            if (payment.getStatus() != Order.PaymentStatus.PENDING) {
+                if (isVerified && payment.getStatus() == Order.PaymentStatus.FAILED) {
+                    // e.g. paid after the stock hold expired and the order was cancelled
+                    logger.error("PaymentService: payment {} verified for order {} whose payment is FAILED, refund needed",
+                            request.getRazorpayPaymentId(), order.getOrderNumber());
+                }
+                // Already settled; a bad signature must not undo that
+                response = isVerified ? resultFor(order, payment.getStatus()) : resultFor(order, Order.PaymentStatus.FAILED);
+            } else if (isVerified) {
+                response = complete(order, payment, request.getRazorpayPaymentId(), request.getRazorpaySignature(), key);
+            } else {
+                response = rejectSignature(order, request);
+            }
+            if (cacheKey != null && isVerified) {
+                // Applied once the transaction commits
+                verifications.put(cacheKey, response);
+            }
+            return response;
 
-                order.setPaymentStatus(Order.PaymentStatus.COMPLETED);
-                order.setOrderStatus(Order.OrderStatus.PROCESSING); // Order moves to processing after payment
-                order.setPaymentDate(LocalDateTime.now()); // Set payment date on order
-                orderRepository.save(order);
+        } catch (CustomException e) {
+            throw e;
+        } catch (DataIntegrityViolationException e) {
+            // transaction_id is unique: this Razorpay payment already settled another order
+            logger.warn("PaymentService: payment {} for order {} is already attached to another order",
+                    request.getRazorpayPaymentId(), request.getOrderId());
+            throw new PaymentConflictException("This payment has already been applied to another order.", e);
+        } catch (Exception e) {
+            logger.error("PaymentService: unexpected error verifying payment for order {}: {}", request.getOrderId(), e.getMessage(), e);
+            throw new CustomException("An unexpected error occurred during payment verification.");
+        }
+    }
 
+    /**
+     * Applies a payment.captured webhook through the same one-way settlement as browser
+     * verification, so whichever of the two arrives second changes nothing.
+     */
+    @Transactional
+    public void applyCapturedPayment(String gatewayOrderId, String paymentId, String eventId) {
+        Payment payment = paymentRepository.findWithOrderByGatewayOrderId(gatewayOrderId).orElse(null);
+        if (payment == null) {
+            // Another integration on the same Razorpay account
+            logger.warn("PaymentService: captured payment {} for unknown gateway order {}", paymentId, gatewayOrderId);
+            return;
+        }
+        if (payment.getStatus() == Order.PaymentStatus.PENDING) {
+            complete(payment.getOrder(), payment, paymentId, null, "webhook:" + eventId);
+        } else if (payment.getStatus() != Order.PaymentStatus.COMPLETED) {
+            logger.error("PaymentService: payment {} captured for order {} whose payment is {}, refund needed",
+                    paymentId, payment.getOrder().getOrderNumber(), payment.getStatus());
+        }
+    }
 
-                for (OrderItem item : order.getItems()) {
-                    SpicePack pack = item.getSpicePack();
-                    if (pack.getStockQuantity() < item.getQuantity()) {
+    /**
+     * Notes a payment.failed webhook. One failed attempt does not fail the order, the buyer can
+     * retry against the same gateway order; an abandoned checkout is released by the hold sweep.
+     */
+    @Transactional
+    public void recordFailedAttempt(String gatewayOrderId, String errorCode, String errorDescription) {
+        paymentRepository.recordFailedAttempt(gatewayOrderId, errorCode, errorDescription);
+    }
 
-                        throw new CustomException("Insufficient stock for " + item.getSpiceName() + " during payment verification.");
-                    }
-                    pack.setStockQuantity(pack.getStockQuantity() - item.getQuantity());
-                    spicePackRepository.save(pack);
-                }
+    private PaymentVerificationResponse complete(Order order, Payment payment, String paymentId, String signature, String key) {
+        LocalDateTime now = LocalDateTime.now();
+        if (paymentRepository.settle(payment.getId(), Order.PaymentStatus.COMPLETED, paymentId, signature, key, null, now) == 0) {
+            // A concurrent duplicate settled it first; report what it decided
+            return resultFor(order, paymentRepository.findStatusById(payment.getId()));
+        }
 
-                cartRepository.findByUser(order.getUser()).ifPresent(cartRepository::delete);
+        order.setPaymentStatus(Order.PaymentStatus.COMPLETED);
+        order.setOrderStatus(Order.OrderStatus.PROCESSING); // Order moves to processing after payment
+        order.setPaymentDate(now); // Set payment date on order
+        orderRepository.save(order);
 
-                emailService.sendOrderConfirmationEmail(order);
+        // Units were held at checkout; only a lapsed hold means taking stock again here
+        try {
+            if (!stockReservationService.convert(order.getId())) {
+                stockLedgerService.decrement(order.getItems().stream()
+                        .collect(Collectors.toMap(item -> item.getSpicePack().getId(), OrderItem::getQuantity, Integer::sum)));
+            }
+        } catch (InsufficientStockException e) {
+            String spiceName = order.getItems().stream()
+                    .filter(item -> item.getSpicePack().getId().equals(e.getPackId()))
+                    .map(OrderItem::getSpiceName)
+                    .findFirst()
+                    .orElse("an item");
+            throw new CustomException("Insufficient stock for " + spiceName + " during payment verification.");
+        }
+        spiceService.onStockChanged(order.getItems().stream()
+                .map(item -> item.getSpicePack().getVariant().getSpice().getId())
+                .collect(Collectors.toSet()));
 
-                return PaymentVerificationResponse.builder()
-                        .orderId(order.getId())
-                        .orderNumber(order.getOrderNumber())
-                        .paymentStatus(Order.PaymentStatus.COMPLETED.name())
-                        .message("Payment successfully verified and order is being processed.")
-                        .success(true)
-                        .build();
+        cartService.clearCart(order.getUser().getId());
 
-            } else {
-                // Payment verification failed
-                payment.setStatus(Order.PaymentStatus.FAILED);
-                payment.setFailureReason("Signature verification failed.");
-                paymentRepository.save(payment);
+        emailService.sendOrderConfirmationEmail(order);
 
-                order.setPaymentStatus(Order.PaymentStatus.FAILED);
-                order.setOrderStatus(Order.OrderStatus.CANCELLED); // Order is cancelled if payment fails
-                orderRepository.save(order);
+        return resultFor(order, Order.PaymentStatus.COMPLETED);
+    }
 
-                // Stock is NOT reduced, cart is NOT cleared
-                throw new CustomException("Payment verification failed. Please try again or contact support.");
-            }
+    // A bad signature proves nothing about the payment (a forged or replayed call, or a client
+    // bug), so the order keeps its PENDING payment and its stock hold; a valid verification, the
+    // payment.captured webhook or the hold sweep settles it
+    private PaymentVerificationResponse rejectSignature(Order order, PaymentVerificationRequest request) {
+        logger.warn("PaymentService: signature mismatch verifying payment {} for order {}",
+                request.getRazorpayPaymentId(), order.getOrderNumber());
+        paymentRepository.recordFailedAttempt(request.getRazorpayOrderId(), "SIGNATURE_MISMATCH", "Signature verification failed.");
+        return resultFor(order, Order.PaymentStatus.PENDING);
+    }
 
-        } catch (RazorpayException e) {
-            System.err.println("Razorpay exception during payment verification: " + e.getMessage());
-            throw new CustomException("Error verifying payment with Razorpay: " + e.getMessage());
-        } catch (CustomException e) {
-            throw e;
-        } catch (Exception e) {
-            System.err.println("Unexpected error during payment verification: " + e.getMessage());
-            throw new CustomException("An unexpected error occurred during payment verification.");
-        }
+    private static PaymentVerificationResponse resultFor(Order order, Order.PaymentStatus status) {
+        boolean completed = status == Order.PaymentStatus.COMPLETED;
+        return PaymentVerificationResponse.builder()
+                .orderId(order.getId())
+                .orderNumber(order.getOrderNumber())
+                .paymentStatus(status.name())
+                .message(completed ? "Payment successfully verified and order is being processed."
+                        : "Payment verification failed. Please try again or contact support.")
+                .success(completed)
+                .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,161 @@
+package com.spiceshop.services;
+
+import com.spiceshop.models.PaymentWebhookEvent;
+import com.spiceshop.repositorys.PaymentWebhookEventRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Drains the webhook inbox. A claimed batch holds at most one event per gateway order (see
+ * PaymentWebhookEventRepository#findDueIds), so its events run in parallel on a small worker
+ * pool while each order still sees its events one at a time, in arrival order. Every event
+ * goes through PaymentService's one-way settlement, so replays and events racing the browser's
+ * own verification are harmless. Failures back off exponentially and end up DEAD.
+ */
+@Component
+public class PaymentWebhookProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentWebhookProcessor.class);
+
+    private static final Duration MAX_BACKOFF = Duration.ofHours(1);
+
+    private final PaymentWebhookEventRepository eventRepository;
+    private final PaymentWebhookService webhookService;
+    private final PaymentService paymentService;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService workers;
+
+    @Value("${payment.webhook.batch-size:100}")
+    private int batchSize;
+
+    @Value("${payment.webhook.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${payment.webhook.retry-base:PT10S}")
+    private Duration retryBase;
+
+    @Value("${payment.webhook.claim-timeout:PT5M}")
+    private Duration claimTimeout;
+
+    public PaymentWebhookProcessor(PaymentWebhookEventRepository eventRepository, PaymentWebhookService webhookService,
+                                   PaymentService paymentService, TransactionTemplate transactionTemplate,
+                                   @Value("${payment.webhook.workers:4}") int workerCount) {
+        this.eventRepository = eventRepository;
+        this.webhookService = webhookService;
+        this.paymentService = paymentService;
+        this.transactionTemplate = transactionTemplate;
+        this.workers = Executors.newFixedThreadPool(workerCount, Thread.ofVirtual().name("webhook-worker-", 0).factory());
+    }
+
+    @Scheduled(initialDelayString = "${payment.webhook.poll-interval:PT1S}",
+            fixedDelayString = "${payment.webhook.poll-interval:PT1S}")
+    public void drain() {
+        int claimed;
+        do {
+            claimed = processBatch();
+        } while (claimed > 0);
+    }
+
+    int processBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime staleBefore = now.minus(claimTimeout);
+        String token = UUID.randomUUID().toString();
+
+        List<PaymentWebhookEvent> batch = transactionTemplate.execute(status -> {
+            List<Long> ids = eventRepository.findDueIds(now, staleBefore, Limit.of(batchSize));
+            if (ids.isEmpty() || eventRepository.claim(ids, token, now, staleBefore) == 0) {
+                return List.<PaymentWebhookEvent>of();
+            }
+            return eventRepository.findByClaimToken(token);
+        });
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+
+        List<Future<?>> running = new ArrayList<>();
+        for (PaymentWebhookEvent event : batch) {
+            running.add(workers.submit(() -> process(event)));
+        }
+        for (Future<?> future : running) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return 0;
+            } catch (ExecutionException e) {
+                logger.error("PaymentWebhookProcessor: worker failed: {}", e.getCause().getMessage(), e.getCause());
+            }
+        }
+
+        // events whose worker blew up stay PROCESSING and are reclaimed after the claim timeout
+        transactionTemplate.executeWithoutResult(status -> eventRepository.saveAll(batch));
+        return batch.size();
+    }
+
+    private void process(PaymentWebhookEvent event) {
+        try {
+            PaymentWebhookService.Envelope envelope = webhookService.read(event.getPayload());
+            if (envelope == null) {
+                throw new IllegalStateException("Unreadable payload");
+            }
+            if (PaymentWebhookService.CAPTURED.equals(event.getEventType())) {
+                paymentService.applyCapturedPayment(event.getGatewayOrderId(), envelope.paymentId(), event.getEventId());
+            } else if (PaymentWebhookService.FAILED.equals(event.getEventType())) {
+                paymentService.recordFailedAttempt(event.getGatewayOrderId(), envelope.errorCode(),
+                        truncate(envelope.errorDescription(), 255));
+            }
+            event.setAttempts(event.getAttempts() + 1);
+            event.setStatus(PaymentWebhookEvent.Status.PROCESSED);
+            event.setProcessedAt(LocalDateTime.now());
+            event.setClaimToken(null);
+            event.setLastError(null);
+        } catch (RuntimeException e) {
+            markFailed(event, e);
+        }
+    }
+
+    private void markFailed(PaymentWebhookEvent event, Exception e) {
+        int attempts = event.getAttempts() + 1;
+        event.setAttempts(attempts);
+        event.setClaimToken(null);
+        String error = truncate(String.valueOf(e.getMessage()), 1000);
+        event.setLastError(error);
+
+        if (attempts >= maxAttempts) {
+            event.setStatus(PaymentWebhookEvent.Status.DEAD);
+            logger.error("PaymentWebhookProcessor: giving up on {} event {} for {} after {} attempts: {}",
+                    event.getEventType(), event.getEventId(), event.getGatewayOrderId(), attempts, error);
+            return;
+        }
+        Duration backoff = retryBase.multipliedBy(1L << Math.min(attempts - 1, 20));
+        event.setStatus(PaymentWebhookEvent.Status.RECEIVED);
+        event.setNextAttemptAt(LocalDateTime.now().plus(backoff.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : backoff));
+        logger.warn("PaymentWebhookProcessor: {} event {} for {} failed (attempt {}), retrying: {}",
+                event.getEventType(), event.getEventId(), event.getGatewayOrderId(), attempts, error);
+    }
+
+    private static String truncate(String value, int length) {
+        return value == null || value.length() <= length ? value : value.substring(0, length);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,118 @@
+package com.spiceshop.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spiceshop.models.PaymentWebhookEvent;
+import com.spiceshop.repositorys.PaymentWebhookEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.Set;
+
+/**
+ * Front half of the Razorpay webhook: checks the signature, pulls out the few fields the
+ * worker needs and appends the delivery to the inbox in one insert. Nothing else happens on
+ * the request path; PaymentWebhookProcessor settles payments from the inbox.
+ */
+@Service
+public class PaymentWebhookService {
+
+    public enum Outcome {
+        ACCEPTED,   // stored for processing
+        DUPLICATE,  // a redelivery of an event already in the inbox
+        IGNORED,    // signed, but not an event we act on
+        REJECTED    // bad signature
+    }
+
+    // What the inbox needs from a delivery, read without binding the whole payload
+    public record Envelope(String eventType, String gatewayOrderId, String paymentId,
+                           String errorCode, String errorDescription) {
+    }
+
+    public static final String CAPTURED = "payment.captured";
+    public static final String FAILED = "payment.failed";
+    private static final Set<String> HANDLED_EVENTS = Set.of(CAPTURED, FAILED);
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentWebhookService.class);
+
+    private final PaymentWebhookEventRepository eventRepository;
+    private final PaymentGateway paymentGateway;
+    private final ObjectMapper objectMapper;
+
+    public PaymentWebhookService(PaymentWebhookEventRepository eventRepository, PaymentGateway paymentGateway,
+                                 ObjectMapper objectMapper) {
+        this.eventRepository = eventRepository;
+        this.paymentGateway = paymentGateway;
+        this.objectMapper = objectMapper;
+    }
+
+    /** {@code eventId} is the X-Razorpay-Event-Id header; without it the payload hash dedupes. */
+    public Outcome receive(String payload, String signature, String eventId) {
+        if (payload == null || !paymentGateway.verifyWebhookSignature(payload, signature)) {
+            return Outcome.REJECTED;
+        }
+        Envelope envelope = read(payload);
+        if (envelope == null || !HANDLED_EVENTS.contains(envelope.eventType()) || envelope.gatewayOrderId() == null) {
+            return Outcome.IGNORED;
+        }
+
+        try {
+            eventRepository.save(PaymentWebhookEvent.builder()
+                    .eventId(eventId != null && !eventId.isBlank() ? eventId : "sha256:" + sha256(payload))
+                    .eventType(envelope.eventType())
+                    .gatewayOrderId(envelope.gatewayOrderId())
+                    .paymentId(envelope.paymentId())
+                    .payload(payload)
+                    .status(PaymentWebhookEvent.Status.RECEIVED)
+                    .attempts(0)
+                    .nextAttemptAt(LocalDateTime.now())
+                    .build());
+            return Outcome.ACCEPTED;
+        } catch (DataIntegrityViolationException e) {
+            return Outcome.DUPLICATE;
+        }
+    }
+
+    /** Null when the payload is not the JSON shape Razorpay sends. */
+    public Envelope read(String payload) {
+        try {
+            JsonNode root = objectMapper.readTree(payload);
+            JsonNode payment = root.path("payload").path("payment").path("entity");
+            return new Envelope(root.path("event").asText(null), payment.path("order_id").asText(null),
+                    payment.path("id").asText(null), payment.path("error_code").asText(null),
+                    payment.path("error_description").asText(null));
+        } catch (JsonProcessingException e) {
+            logger.warn("PaymentWebhookService: signed webhook with an unreadable body: {}", e.getOriginalMessage());
+            return null;
+        }
+    }
+
+    /** Puts the given events back in the queue, e.g. after fixing whatever made them fail. */
+    @Transactional
+    public int replay(Collection<Long> eventIds) {
+        return eventRepository.requeue(eventIds, LocalDateTime.now());
+    }
+
+    @Transactional
+    public int replayDead() {
+        return eventRepository.requeueDead(LocalDateTime.now());
+    }
+
+    private static String sha256(String payload) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(payload.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.spiceshop.services;
+
+import com.razorpay.RazorpayException;
+import com.razorpay.Utils;
+import com.spiceshop.exceptions.PaymentGatewayException;
+import jakarta.annotation.PreDestroy;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.BufferingClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.net.ConnectException;
+import java.net.http.HttpClient;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Razorpay over its REST API through one shared JDK HttpClient, which keeps connections to
+ * api.razorpay.com alive and reuses them across checkouts. (The SDK's client rebuilds its HTTP
+ * stack per construction and has fixed timeouts, so it is only used for signature checks.)
+ * <p>
+ * Calls have connect and read timeouts, are retried when the request provably did not reach
+ * Razorpay or it answered 429/502/503/504, sit behind a circuit breaker, and are timed into
+ * the {@code payment.gateway.requests} histogram per operation and outcome.
+ */
+@Component
+@ConditionalOnProperty(name = "payment.gateway", havingValue = "razorpay", matchIfMissing = true)
+public class RazorpayPaymentGateway implements PaymentGateway {
+
+    private static final Logger logger = LoggerFactory.getLogger(RazorpayPaymentGateway.class);
+    static final String METRIC = "payment.gateway.requests";
+
+    private final String keySecret;
+    private final HttpClient httpClient;
+    private final RestClient restClient;
+    private final int maxRetries;
+    private final Duration retryBackoff;
+    private final CircuitBreaker circuitBreaker;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${razorpay.webhook_secret:}")
+    private String webhookSecret;
+
+    public RazorpayPaymentGateway(@Value("${razorpay.key_id}") String keyId,
+                                  @Value("${razorpay.key_secret}") String keySecret,
+                                  @Value("${payment.gateway.razorpay.base-url:https://api.razorpay.com/v1}") String baseUrl,
+                                  @Value("${payment.gateway.connect-timeout:PT3S}") Duration connectTimeout,
+                                  @Value("${payment.gateway.timeout:PT10S}") Duration readTimeout,
+                                  @Value("${payment.gateway.max-retries:2}") int maxRetries,
+                                  @Value("${payment.gateway.retry-backoff:PT0.2S}") Duration retryBackoff,
+                                  @Value("${payment.gateway.circuit.failure-threshold:5}") int failureThreshold,
+                                  @Value("${payment.gateway.circuit.open-duration:PT30S}") Duration openDuration,
+                                  MeterRegistry meterRegistry) {
+        this.keySecret = keySecret;
+        this.maxRetries = maxRetries;
+        this.retryBackoff = retryBackoff;
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openDuration, Clock.systemUTC());
+        this.meterRegistry = meterRegistry;
+
+        // HTTP/1.1 keep-alive: idle connections are pooled by the client and reused
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+        this.restClient = RestClient.builder()
+                // order bodies are tiny; buffering sends them with a Content-Length instead of chunked
+                .requestFactory(new BufferingClientHttpRequestFactory(requestFactory))
+                .baseUrl(baseUrl)
+                .defaultHeaders(headers -> headers.setBasicAuth(keyId, keySecret))
+                .build();
+    }
+
+    @Override
+    public String createOrder(long amountPaise, String currency, String receipt, Map<String, Object> notes) {
+        Map<String, Object> body = Map.of("amount", amountPaise, "currency", currency, "receipt", receipt, "notes", notes);
+        Map<?, ?> order = call("orders.create", () -> restClient.post()
+                .uri("/orders")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body)
+                .retrieve()
+                .body(Map.class));
+        if (order == null || !(order.get("id") instanceof String id)) {
+            throw new PaymentGatewayException("Razorpay returned an order without an id");
+        }
+        return id;
+    }
+
+    @Override
+    public boolean verifyPaymentSignature(String gatewayOrderId, String paymentId, String signature) {
+        JSONObject attributes = new JSONObject();
+        attributes.put("razorpay_order_id", gatewayOrderId);
+        attributes.put("razorpay_payment_id", paymentId);
+        attributes.put("razorpay_signature", signature);
+        try {
+            return Utils.verifyPaymentSignature(attributes, keySecret);
+        } catch (RazorpayException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean verifyWebhookSignature(String payload, String signature) {
+        if (webhookSecret == null || webhookSecret.isBlank() || signature == null) {
+            return false;
+        }
+        try {
+            return Utils.verifyWebhookSignature(payload, signature, webhookSecret);
+        } catch (RazorpayException e) {
+            return false;
+        }
+    }
+
+    private <T> T call(String operation, Supplier<T> request) {
+        if (!circuitBreaker.tryAcquire()) {
+            record(operation, "short_circuited", Timer.start(meterRegistry));
+            throw new PaymentGatewayException("Payment gateway is unavailable, circuit open");
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        for (int attempt = 0; ; attempt++) {
+            try {
+                T result = request.get();
+                circuitBreaker.onSuccess();
+                record(operation, "success", sample);
+                return result;
+            } catch (RestClientException e) {
+                if (attempt < maxRetries && isRetryable(e)) {
+                    logger.warn("Razorpay {} attempt {} failed, retrying: {}", operation, attempt + 1, e.getMessage());
+                    backOff(attempt);
+                    continue;
+                }
+                if (e instanceof RestClientResponseException response && response.getStatusCode().is4xxClientError()
+                        && response.getStatusCode().value() != 429) {
+                    // Razorpay is up and refused the request; not an outage
+                    circuitBreaker.onSuccess();
+                    record(operation, "rejected", sample);
+                } else {
+                    circuitBreaker.onFailure();
+                    record(operation, e instanceof ResourceAccessException ? "io_error" : "server_error", sample);
+                }
+                logger.error("Razorpay {} failed after {} attempt(s): {}", operation, attempt + 1, e.getMessage());
+                throw new PaymentGatewayException("Payment gateway call failed", e);
+            }
+        }
+    }
+
+    // Only where a retry is unlikely to leave a second order behind: the connection never opened,
+    // or Razorpay (or its edge) said to come back. An unpaid duplicate order is harmless anyway.
+    private static boolean isRetryable(RestClientException e) {
+        if (e instanceof ResourceAccessException) {
+            return e.getCause() instanceof ConnectException;
+        }
+        if (e instanceof RestClientResponseException response) {
+            HttpStatusCode status = response.getStatusCode();
+            return status.value() == 429 || status.value() == 502 || status.value() == 503 || status.value() == 504;
+        }
+        return false;
+    }
+
+    private void backOff(int attempt) {
+        try {
+            Thread.sleep(retryBackoff.toMillis() << attempt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PaymentGatewayException("Interrupted while retrying the payment gateway", e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        httpClient.close();
+    }
+
+    private void record(String operation, String outcome, Timer.Sample sample) {
+        sample.stop(Timer.builder(METRIC)
+                .description("Latency of calls to the payment gateway")
+                .tag("gateway", "razorpay")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+}
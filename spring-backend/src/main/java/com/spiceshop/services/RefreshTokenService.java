@@ -0,0 +1,155 @@
+package com.spiceshop.services;
+
+import com.spiceshop.models.RefreshToken;
+import com.spiceshop.repositorys.RefreshTokenRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Token logins: an access token from AccessTokenService plus an opaque refresh token that is
+ * good for exactly one refresh. Every refresh spends the presented token and hands out the
+ * next one of the same family; a spent token coming back means it was copied, and the whole
+ * family is revoked so neither copy can refresh again.
+ */
+@Service
+public class RefreshTokenService {
+
+    public record TokenPair(String accessToken, long expiresIn, String refreshToken) {
+
+        /** Response body of the token endpoints. */
+        public Map<String, Object> body() {
+            return Map.of("success", true, "tokenType", "Bearer", "accessToken", accessToken,
+                    "expiresIn", expiresIn, "refreshToken", refreshToken);
+        }
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenService.class);
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final AccessTokenService accessTokenService;
+    private final AccessTokenRevocationList revocationList;
+    private final Duration refreshTtl;
+
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository, AccessTokenService accessTokenService,
+                               AccessTokenRevocationList revocationList,
+                               @Value("${auth.token.refresh-ttl:P14D}") Duration refreshTtl) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.accessTokenService = accessTokenService;
+        this.revocationList = revocationList;
+        this.refreshTtl = refreshTtl;
+    }
+
+    /** Starts a new family, after the caller has checked the credentials. */
+    @Transactional
+    public TokenPair login(RefreshToken.Role role, String subject) {
+        return issue(role, subject, UUID.randomUUID().toString(), LocalDateTime.now());
+    }
+
+    /** The next pair for a live, unspent refresh token; empty for anything else. */
+    @Transactional
+    public Optional<TokenPair> refresh(String refreshToken) {
+        if (refreshToken == null || refreshToken.isBlank()) {
+            return Optional.empty();
+        }
+        RefreshToken current = refreshTokenRepository.findByTokenHash(hash(refreshToken)).orElse(null);
+        if (current == null) {
+            return Optional.empty();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (refreshTokenRepository.markUsed(current.getId(), now) == 0) {
+            if (current.getUsedAt() != null && current.getRevokedAt() == null) {
+                logger.warn("RefreshTokenService: spent refresh token presented again, revoking family {}", current.getFamilyId());
+                refreshTokenRepository.revokeFamily(current.getFamilyId(), now);
+            }
+            return Optional.empty();
+        }
+        return Optional.of(issue(current.getRole(), current.getSubject(), current.getFamilyId(), now));
+    }
+
+    /**
+     * Logout: the access token stops passing the bearer filter and the refresh token's family
+     * can no longer refresh. Either argument may be null.
+     */
+    @Transactional
+    public void logout(AccessTokenService.Claims accessToken, String refreshToken) {
+        if (accessToken != null) {
+            revocationList.revoke(accessToken.jti(), accessToken.expiresAt());
+        }
+        if (refreshToken != null && !refreshToken.isBlank()) {
+            refreshTokenRepository.findByTokenHash(hash(refreshToken))
+                    .ifPresent(token -> refreshTokenRepository.revokeFamily(token.getFamilyId(), LocalDateTime.now()));
+        }
+    }
+
+    /**
+     * Ends every token login of the subject, e.g. after a password change: all refresh families
+     * are revoked and the access tokens issued within one access-token lifetime are put on the
+     * revocation list.
+     */
+    @Transactional
+    public void revokeAll(RefreshToken.Role role, String subject) {
+        LocalDateTime now = LocalDateTime.now();
+        Duration accessTtl = accessTokenService.getTtl();
+        for (RefreshToken token : refreshTokenRepository.findByRoleAndSubjectAndCreatedAtAfter(role, subject, now.minus(accessTtl))) {
+            if (token.getAccessJti() != null) {
+                revocationList.revoke(token.getAccessJti(), token.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().plus(accessTtl));
+            }
+        }
+        int revoked = refreshTokenRepository.revokeSubject(role, subject, now);
+        logger.info("RefreshTokenService: revoked {} refresh token(s) of {} {}", revoked, role, subject);
+    }
+
+    @Scheduled(initialDelayString = "${auth.token.sweep-interval:PT1H}", fixedDelayString = "${auth.token.sweep-interval:PT1H}")
+    @Transactional
+    public void purgeExpired() {
+        int purged = refreshTokenRepository.deleteExpired(LocalDateTime.now());
+        if (purged > 0) {
+            logger.debug("RefreshTokenService: purged {} expired refresh tokens", purged);
+        }
+    }
+
+    private TokenPair issue(RefreshToken.Role role, String subject, String familyId, LocalDateTime now) {
+        byte[] secret = new byte[32];
+        RANDOM.nextBytes(secret);
+        String refreshToken = Base64.getUrlEncoder().withoutPadding().encodeToString(secret);
+        String accessJti = UUID.randomUUID().toString();
+        refreshTokenRepository.save(RefreshToken.builder()
+                .tokenHash(hash(refreshToken))
+                .familyId(familyId)
+                .role(role)
+                .subject(subject)
+                .accessJti(accessJti)
+                .createdAt(now)
+                .expiresAt(now.plus(refreshTtl))
+                .build());
+        Instant issuedAt = now.atZone(ZoneId.systemDefault()).toInstant();
+        return new TokenPair(accessTokenService.issue(role, subject, accessJti, issuedAt), accessTokenService.getTtl().toSeconds(), refreshToken);
+    }
+
+    private static String hash(String token) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.spiceshop.services;
+
+import org.springframework.core.convert.TypeDescriptor;
+import org.springframework.core.convert.converter.GenericConverter;
+import org.springframework.core.convert.support.GenericConversionService;
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Attribute encoding for the JDBC session table. The values this app keeps in the session
+ * (the user id, the admin email) are written as one tag byte plus the raw value instead of a
+ * Java serialization stream, e.g. 9 bytes for a Long rather than about 80. Anything else, and
+ * every row written before this codec, still goes through Java serialization; such rows start
+ * with the stream magic 0xACED, which no tag uses.
+ */
+public final class SessionAttributeCodec implements GenericConverter {
+
+    private static final byte STRING = 1;
+    private static final byte LONG = 2;
+    private static final byte INTEGER = 3;
+    private static final byte BOOLEAN = 4;
+
+    private static final TypeDescriptor BYTES = TypeDescriptor.valueOf(byte[].class);
+
+    private final SerializingConverter serializer = new SerializingConverter();
+    private final DeserializingConverter deserializer;
+
+    public SessionAttributeCodec(ClassLoader classLoader) {
+        this.deserializer = new DeserializingConverter(classLoader);
+    }
+
+    /** Conversion service for {@code JdbcIndexedSessionRepository#setConversionService}. */
+    public static GenericConversionService conversionService(ClassLoader classLoader) {
+        GenericConversionService conversionService = new GenericConversionService();
+        conversionService.addConverter(new SessionAttributeCodec(classLoader));
+        return conversionService;
+    }
+
+    @Override
+    public Set<ConvertiblePair> getConvertibleTypes() {
+        return Set.of(new ConvertiblePair(Object.class, byte[].class), new ConvertiblePair(byte[].class, Object.class));
+    }
+
+    @Override
+    public Object convert(Object source, TypeDescriptor sourceType, TypeDescriptor targetType) {
+        if (source == null) {
+            return null;
+        }
+        return BYTES.equals(targetType) ? encode(source) : decode((byte[]) source);
+    }
+
+    public byte[] encode(Object value) {
+        if (value instanceof String s) {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            return ByteBuffer.allocate(1 + utf8.length).put(STRING).put(utf8).array();
+        }
+        if (value instanceof Long l) {
+            return ByteBuffer.allocate(9).put(LONG).putLong(l).array();
+        }
+        if (value instanceof Integer i) {
+            return ByteBuffer.allocate(5).put(INTEGER).putInt(i).array();
+        }
+        if (value instanceof Boolean b) {
+            return new byte[]{BOOLEAN, (byte) (b ? 1 : 0)};
+        }
+        return serializer.convert(value);
+    }
+
+    public Object decode(byte[] bytes) {
+        if (bytes.length == 0) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+        return switch (bytes[0]) {
+            case STRING -> new String(bytes, 1, bytes.length - 1, StandardCharsets.UTF_8);
+            case LONG -> buffer.getLong();
+            case INTEGER -> buffer.getInt();
+            case BOOLEAN -> bytes[1] != 0;
+            default -> deserializer.convert(bytes);
+        };
+    }
+}
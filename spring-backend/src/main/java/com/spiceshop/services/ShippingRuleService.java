@@ -0,0 +1,52 @@
+package com.spiceshop.services;
+
+import com.spiceshop.config.CacheConfig;
+import com.spiceshop.models.ShippingRule;
+import com.spiceshop.repositorys.ShippingRuleRepository;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+@Service
+public class ShippingRuleService {
+
+    // Used until someone adds rows to shipping_rules
+    static final List<ShippingRule> DEFAULT_RULES = List.of(
+            ShippingRule.builder().minSubtotalPaise(50_000L).feePaise(0L).active(true).description("Free shipping from ₹500").build(),
+            ShippingRule.builder().minSubtotalPaise(0L).feePaise(5_000L).active(true).description("Flat ₹50").build());
+
+    private final ShippingRuleRepository shippingRuleRepository;
+    private final Cache cache;
+
+    public ShippingRuleService(ShippingRuleRepository shippingRuleRepository, CacheManager cacheManager) {
+        this.shippingRuleRepository = shippingRuleRepository;
+        this.cache = cacheManager.getCache(CacheConfig.SHIPPING_RULES);
+    }
+
+    /**
+     * Active tiers, highest threshold first. Cached; edits to the table show up within the cache TTL.
+     * Read through the cache directly rather than @Cacheable, which shippingFor's self-call would bypass.
+     */
+    @SuppressWarnings("unchecked")
+    public List<ShippingRule> activeRules() {
+        return cache.get("active", () -> {
+            List<ShippingRule> rules = shippingRuleRepository.findByActiveTrueOrderByMinSubtotalPaiseDesc();
+            return rules.isEmpty() ? DEFAULT_RULES : List.copyOf(rules);
+        });
+    }
+
+    public long shippingFor(long subtotalPaise) {
+        return shippingFor(subtotalPaise, activeRules());
+    }
+
+    static long shippingFor(long subtotalPaise, List<ShippingRule> rulesByThresholdDesc) {
+        for (ShippingRule rule : rulesByThresholdDesc) {
+            if (subtotalPaise >= rule.getMinSubtotalPaise()) {
+                return rule.getFeePaise();
+            }
+        }
+        return 0L;
+    }
+}
@@ -0,0 +1,114 @@
+package com.spiceshop.services;
+
+import com.spiceshop.models.SpiceFacet;
+import com.spiceshop.repositorys.SpiceFacetRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+public class SpiceFacetService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpiceFacetService.class);
+
+    private static final int REBUILD_CHUNK_SIZE = 500;
+
+    private final SpiceFacetRepository spiceFacetRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public SpiceFacetService(SpiceFacetRepository spiceFacetRepository, TransactionTemplate transactionTemplate) {
+        this.spiceFacetRepository = spiceFacetRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    // Existing catalogs get their facet rows on first start; afterwards this only corrects drift
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildAll() {
+        List<Long> ids = spiceFacetRepository.findAllSpiceIds();
+        for (int from = 0; from < ids.size(); from += REBUILD_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + REBUILD_CHUNK_SIZE, ids.size()));
+            transactionTemplate.executeWithoutResult(status -> refresh(chunk));
+        }
+        logger.info("SpiceFacetService: refreshed facets for {} spices", ids.size());
+    }
+
+    /**
+     * Recomputes the facet rows of the given spices from the current state of the
+     * spice, variant and pack tables; rows of spices that no longer exist are removed.
+     * Runs in the caller's transaction so the projection commits with the write.
+     */
+    @Transactional
+    public void refresh(Collection<Long> spiceIds) {
+        if (spiceIds.isEmpty()) {
+            return;
+        }
+        Set<Long> ids = new TreeSet<>(spiceIds);
+
+        Map<Long, Object[]> packAggregates = spiceFacetRepository.aggregatePacks(ids).stream()
+                .collect(Collectors.toMap(row -> (Long) row[0], Function.identity()));
+        Map<Long, Set<BigDecimal>> packPrices = new HashMap<>();
+        for (Object[] row : spiceFacetRepository.findPackPrices(ids)) {
+            packPrices.computeIfAbsent((Long) row[0], id -> new HashSet<>()).add((BigDecimal) row[1]);
+        }
+        Map<Long, Set<String>> qualityClasses = new HashMap<>();
+        for (Object[] row : spiceFacetRepository.findQualityClasses(ids)) {
+            if (row[1] != null) {
+                qualityClasses.computeIfAbsent((Long) row[0], id -> new TreeSet<>()).add((String) row[1]);
+            }
+        }
+        Map<Long, SpiceFacet> existing = spiceFacetRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(SpiceFacet::getSpiceId, Function.identity()));
+
+        List<SpiceFacet> facets = new ArrayList<>();
+        for (Object[] spice : spiceFacetRepository.findSpiceColumns(ids)) {
+            Long spiceId = (Long) spice[0];
+            SpiceFacet facet = existing.remove(spiceId);
+            if (facet == null) {
+                facet = new SpiceFacet();
+                facet.setSpiceId(spiceId);
+            }
+            facet.setName((String) spice[1]);
+            facet.setOrigin((String) spice[2]);
+            facet.setAvailable((Boolean) spice[3]);
+
+            Object[] packs = packAggregates.get(spiceId);
+            facet.setMinPrice(packs != null ? (BigDecimal) packs[1] : null);
+            facet.setMaxPrice(packs != null ? (BigDecimal) packs[2] : null);
+            replace(facet.getPackPrices(), packPrices.getOrDefault(spiceId, Set.of()));
+            replace(facet.getQualityClasses(), qualityClasses.getOrDefault(spiceId, Set.of()));
+            facet.setUpdatedAt(LocalDateTime.now());
+            facets.add(facet);
+        }
+        spiceFacetRepository.saveAll(facets);
+
+        // whatever is left has no spice row any more
+        spiceFacetRepository.deleteAll(existing.values());
+    }
+
+    // In place, so Hibernate only writes the rows that changed
+    private static <T> void replace(Set<T> current, Set<T> fresh) {
+        current.retainAll(fresh);
+        current.addAll(fresh);
+    }
+
+    static String normalizeQualityClass(String qualityClass) {
+        return qualityClass.trim().toLowerCase();
+    }
+}
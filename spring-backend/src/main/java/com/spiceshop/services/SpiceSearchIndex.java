@@ -0,0 +1,434 @@
+package com.spiceshop.services;
+
+import com.spiceshop.repositorys.SpiceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.util.HtmlUtils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process inverted index over spice names and descriptions, used by /api/products
+ * instead of a LIKE '%term%' scan. Every query term must match a spice, either exactly,
+ * as a prefix, or within a small edit distance; hits are ranked by a tf-idf score with
+ * name matches weighted above description matches.
+ *
+ * The index is rebuilt from the database at startup and periodically (so writes made by
+ * other nodes show up), and updated in place after each local spice write commits. Updates
+ * arriving while a rebuild reads the catalog are replayed onto the rebuilt index, since the
+ * read may have missed them.
+ */
+@Component
+public class SpiceSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpiceSearchIndex.class);
+
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private static final double NAME_WEIGHT = 3.0;
+    private static final double DESCRIPTION_WEIGHT = 1.0;
+    private static final double PREFIX_PENALTY = 0.7;
+    private static final double FUZZY_PENALTY = 0.5;
+    private static final int MAX_PREFIX_EXPANSIONS = 50;
+
+    public record Hit(Long spiceId, double score) {
+    }
+
+    private record Document(String name, String description, Map<String, Double> termWeights) {
+    }
+
+    private final SpiceRepository spiceRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Document> documents = new HashMap<>();
+    // term -> (spice id -> weighted term frequency); sorted so prefix lookups are a range scan
+    private final NavigableMap<String, Map<Long, Double>> postings = new TreeMap<>();
+    // term length -> bigram -> indexed terms of that length containing it, so the typo step
+    // only compares words of a nearby length that share enough bigrams with the query
+    private final Map<Integer, Map<String, Set<String>>> bigrams = new HashMap<>();
+    // Local updates since the running rebuild started (empty = removed); null outside a rebuild
+    private Map<Long, Optional<Document>> updatesDuringRebuild;
+
+    @Value("${catalog.search.max-results:500}")
+    private int maxResults;
+
+    public SpiceSearchIndex(SpiceRepository spiceRepository) {
+        this.spiceRepository = spiceRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${catalog.search.refresh-interval:PT10M}",
+            fixedDelayString = "${catalog.search.refresh-interval:PT10M}")
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            updatesDuringRebuild = new HashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        List<SpiceRepository.SearchRow> rows;
+        try {
+            rows = spiceRepository.findAllSearchRows();
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                updatesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        Map<Long, Document> freshDocuments = new HashMap<>();
+        NavigableMap<String, Map<Long, Double>> freshPostings = new TreeMap<>();
+        Map<Integer, Map<String, Set<String>>> freshBigrams = new HashMap<>();
+        for (SpiceRepository.SearchRow row : rows) {
+            Document document = analyze(row.getName(), row.getDescription());
+            freshDocuments.put(row.getId(), document);
+            addPostings(freshPostings, freshBigrams, row.getId(), document);
+        }
+
+        lock.writeLock().lock();
+        try {
+            documents.clear();
+            documents.putAll(freshDocuments);
+            postings.clear();
+            postings.putAll(freshPostings);
+            bigrams.clear();
+            bigrams.putAll(freshBigrams);
+            updatesDuringRebuild.forEach((spiceId, document) -> {
+                removePostings(spiceId);
+                document.ifPresent(update -> {
+                    documents.put(spiceId, update);
+                    addPostings(postings, bigrams, spiceId, update);
+                });
+            });
+            updatesDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("SpiceSearchIndex: indexed {} spices ({} terms)", freshDocuments.size(), freshPostings.size());
+    }
+
+    // Applied once the surrounding transaction commits, so rolled-back writes never reach the index
+    public void indexAfterCommit(Long spiceId, String name, String description) {
+        afterCommit(() -> put(spiceId, name, description));
+    }
+
+    public void removeAfterCommit(Long spiceId) {
+        afterCommit(() -> remove(spiceId));
+    }
+
+    public void put(Long spiceId, String name, String description) {
+        Document document = analyze(name, description);
+        lock.writeLock().lock();
+        try {
+            removePostings(spiceId);
+            documents.put(spiceId, document);
+            addPostings(postings, bigrams, spiceId, document);
+            if (updatesDuringRebuild != null) {
+                updatesDuringRebuild.put(spiceId, Optional.of(document));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long spiceId) {
+        lock.writeLock().lock();
+        try {
+            removePostings(spiceId);
+            if (updatesDuringRebuild != null) {
+                updatesDuringRebuild.put(spiceId, Optional.empty());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns matching spice ids, best first, capped at catalog.search.max-results.
+     */
+    public List<Hit> search(String query) {
+        List<String> queryTerms = tokenize(query);
+        if (queryTerms.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            int total = Math.max(documents.size(), 1);
+            Map<Long, Double> scores = null;
+            for (String queryTerm : queryTerms) {
+                // best score each spice gets for this query term across its expansions
+                Map<Long, Double> termScores = new HashMap<>();
+                expand(queryTerm).forEach((term, penalty) -> {
+                    Map<Long, Double> posting = postings.get(term);
+                    double idf = Math.log(1.0 + (double) total / posting.size());
+                    posting.forEach((spiceId, weight) ->
+                            termScores.merge(spiceId, penalty * idf * weight, Math::max));
+                });
+
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    // every query term has to match
+                    scores.keySet().retainAll(termScores.keySet());
+                    scores.replaceAll((spiceId, score) -> score + termScores.get(spiceId));
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+
+            return scores.entrySet().stream()
+                    .map(entry -> new Hit(entry.getKey(), entry.getValue()))
+                    .sorted(Comparator.comparingDouble(Hit::score).reversed().thenComparing(Hit::spiceId))
+                    .limit(maxResults)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * HTML-escaped name and description of an indexed spice with the words matching
+     * {@code query} wrapped in &lt;mark&gt; tags.
+     */
+    public Map<String, String> highlight(Long spiceId, String query) {
+        lock.readLock().lock();
+        try {
+            Document document = documents.get(spiceId);
+            if (document == null) {
+                return Map.of();
+            }
+            Set<String> matched = new HashSet<>();
+            for (String queryTerm : tokenize(query)) {
+                matched.addAll(expand(queryTerm).keySet());
+            }
+            Map<String, String> highlights = new HashMap<>();
+            highlights.put("name", mark(document.name(), matched));
+            highlights.put("description", mark(document.description(), matched));
+            return highlights;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Indexed terms a query term can stand for, with the penalty applied to each
+    private Map<String, Double> expand(String queryTerm) {
+        Map<String, Double> expansions = new HashMap<>();
+        if (postings.containsKey(queryTerm)) {
+            expansions.put(queryTerm, 1.0);
+        }
+
+        if (queryTerm.length() >= 2) {
+            int taken = 0;
+            for (String term : postings.subMap(queryTerm, false, queryTerm + Character.MAX_VALUE, false).keySet()) {
+                if (taken++ >= MAX_PREFIX_EXPANSIONS) {
+                    break;
+                }
+                expansions.putIfAbsent(term, PREFIX_PENALTY);
+            }
+        }
+
+        int maxEdits = queryTerm.length() >= 8 ? 2 : queryTerm.length() >= 4 ? 1 : 0;
+        if (maxEdits > 0) {
+            for (String term : fuzzyCandidates(queryTerm, maxEdits)) {
+                if (!expansions.containsKey(term) && withinEditDistance(queryTerm, term, maxEdits)) {
+                    expansions.put(term, FUZZY_PENALTY);
+                }
+            }
+        }
+        return expansions;
+    }
+
+    // Terms that can be within maxEdits of the query: a length within maxEdits, and since one
+    // edit destroys at most two bigrams, all but 2 * maxEdits of the query's bigrams in common
+    private Set<String> fuzzyCandidates(String queryTerm, int maxEdits) {
+        Set<String> queryBigrams = bigramsOf(queryTerm);
+        int minShared = queryBigrams.size() - 2 * maxEdits;
+        Map<String, Integer> shared = new HashMap<>();
+        for (int length = queryTerm.length() - maxEdits; length <= queryTerm.length() + maxEdits; length++) {
+            Map<String, Set<String>> byBigram = bigrams.getOrDefault(length, Map.of());
+            // a repetitive query has too few distinct bigrams to filter on
+            Iterable<String> grams = minShared > 0 ? queryBigrams : byBigram.keySet();
+            for (String gram : grams) {
+                for (String term : byBigram.getOrDefault(gram, Set.of())) {
+                    shared.merge(term, 1, Integer::sum);
+                }
+            }
+        }
+        Set<String> candidates = new HashSet<>();
+        shared.forEach((term, count) -> {
+            if (count >= minShared) {
+                candidates.add(term);
+            }
+        });
+        return candidates;
+    }
+
+    private static void addPostings(Map<String, Map<Long, Double>> postingsTarget,
+                                    Map<Integer, Map<String, Set<String>>> bigramsTarget,
+                                    Long spiceId, Document document) {
+        document.termWeights().forEach((term, weight) ->
+                postingsTarget.computeIfAbsent(term, t -> {
+                    Map<String, Set<String>> byBigram = bigramsTarget.computeIfAbsent(t.length(), length -> new HashMap<>());
+                    for (String gram : bigramsOf(t)) {
+                        byBigram.computeIfAbsent(gram, g -> new HashSet<>()).add(t);
+                    }
+                    return new HashMap<>();
+                }).put(spiceId, weight));
+    }
+
+    private void removePostings(Long spiceId) {
+        Document previous = documents.remove(spiceId);
+        if (previous == null) {
+            return;
+        }
+        for (String term : previous.termWeights().keySet()) {
+            Map<Long, Double> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(spiceId);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                    removeBigrams(term);
+                }
+            }
+        }
+    }
+
+    private void removeBigrams(String term) {
+        Map<String, Set<String>> byBigram = bigrams.get(term.length());
+        if (byBigram == null) {
+            return;
+        }
+        for (String gram : bigramsOf(term)) {
+            Set<String> terms = byBigram.get(gram);
+            if (terms != null) {
+                terms.remove(term);
+                if (terms.isEmpty()) {
+                    byBigram.remove(gram);
+                }
+            }
+        }
+    }
+
+    // Distinct bigrams of the term padded with boundary marks, so first and last letters count too
+    static Set<String> bigramsOf(String term) {
+        String padded = "^" + term + "$";
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + 2 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 2));
+        }
+        return grams;
+    }
+
+    private Document analyze(String name, String description) {
+        Map<String, Double> termWeights = new HashMap<>();
+        for (String term : tokenize(name)) {
+            termWeights.merge(term, NAME_WEIGHT, Double::sum);
+        }
+        for (String term : tokenize(description)) {
+            termWeights.merge(term, DESCRIPTION_WEIGHT, Double::sum);
+        }
+        // dampen long descriptions repeating the same word
+        termWeights.replaceAll((term, weight) -> 1.0 + Math.log(weight));
+        return new Document(name != null ? name : "", description != null ? description : "", termWeights);
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return terms;
+        }
+        Matcher matcher = WORD.matcher(normalize(text));
+        while (matcher.find()) {
+            terms.add(matcher.group());
+        }
+        return terms;
+    }
+
+    private static String normalize(String text) {
+        return MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase();
+    }
+
+    private static String mark(String text, Set<String> matched) {
+        StringBuilder out = new StringBuilder(text.length() + 16);
+        Matcher matcher = WORD.matcher(text);
+        int last = 0;
+        while (matcher.find()) {
+            out.append(HtmlUtils.htmlEscape(text.substring(last, matcher.start())));
+            String word = matcher.group();
+            if (matched.contains(normalize(word))) {
+                out.append("<mark>").append(HtmlUtils.htmlEscape(word)).append("</mark>");
+            } else {
+                out.append(HtmlUtils.htmlEscape(word));
+            }
+            last = matcher.end();
+        }
+        out.append(HtmlUtils.htmlEscape(text.substring(last)));
+        return out.toString();
+    }
+
+    // Bounded Levenshtein: gives up as soon as a whole row exceeds maxEdits
+    static boolean withinEditDistance(String a, String b, int maxEdits) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxEdits) {
+                return false;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()] <= maxEdits;
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
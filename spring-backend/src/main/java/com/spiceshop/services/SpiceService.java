@@ -1,14 +1,24 @@
 // com.spiceshop.services.SpiceService.java
 package com.spiceshop.services;
 
+import com.spiceshop.config.CacheConfig;
 import com.spiceshop.exceptions.DuplicateSpiceNameException;
 import com.spiceshop.dto.*;
 import com.spiceshop.models.*;
+import com.spiceshop.repositorys.SpiceFacetRepository;
 import com.spiceshop.repositorys.SpiceRepository;
 import jakarta.persistence.criteria.Join;
 import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -19,7 +29,14 @@ import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,7 +45,21 @@ public class SpiceService {
     @Autowired
     private SpiceRepository spiceRepository;
 
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private SpiceSearchIndex searchIndex;
+
+    @Autowired
+    private SpiceFacetRepository spiceFacetRepository;
+
+    @Autowired
+    private SpiceFacetService spiceFacetService;
+
+    // A new spice can't be in spiceById yet, but it changes every listing
     @Transactional
+    @CacheEvict(cacheNames = {CacheConfig.SPICE_LIST, CacheConfig.RELATED_SPICES, CacheConfig.QUALITY_CLASSES}, allEntries = true)
     public Spice createSpice(Spice spice) {
 
         String normalizedName = spice.getName().trim().toLowerCase();
@@ -51,30 +82,90 @@ public class SpiceService {
         if (spice.getImages() != null) {
             spice.getImages().forEach(i -> i.setSpice(spice)); // Link image to spice
         }
-        return spiceRepository.save(spice);
+        Spice saved = spiceRepository.save(spice);
+        spiceFacetService.refresh(List.of(saved.getId()));
+        searchIndex.indexAfterCommit(saved.getId(), saved.getName(), saved.getDescription());
+        return saved;
     }
 
     public List<Spice> getAllSpices() {
-        return spiceRepository.findAll();
+        return spiceRepository.findAllForCatalog();
+    }
+
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.SPICE_LIST, key = "'all'")
+    public List<SpiceDto> getAllSpiceDtos() {
+        return Collections.unmodifiableList(getAllSpices().stream()
+                .map(this::toDto)
+                .collect(Collectors.toList()));
+    }
+
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.SPICE_BY_ID, key = "#id")
+    public SpiceDto getSpiceDtoById(Long id) {
+        return toDto(getSpiceById(id));
+    }
+
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.RELATED_SPICES, key = "#id")
+    public List<SpiceDto> getRelatedSpiceDtos(Long id) {
+        Spice spice = getSpiceById(id);
+        return Collections.unmodifiableList(getRelatedSpices(id, spice.getOrigin()).stream()
+                .map(this::toDto)
+                .collect(Collectors.toList()));
+    }
+
+    // Stock moved on some packs: only those spices' snapshots and the listings embedding them are
+    // stale. Facet rows hold no stock, so the checkout transaction does not rewrite them.
+    public void onStockChanged(Collection<Long> spiceIds) {
+        if (spiceIds.isEmpty()) {
+            return;
+        }
+        Cache byId = cacheManager.getCache(CacheConfig.SPICE_BY_ID);
+        if (byId != null) {
+            spiceIds.forEach(byId::evict);
+        }
+        clearCache(CacheConfig.SPICE_LIST);
+        clearCache(CacheConfig.RELATED_SPICES);
+    }
+
+    private void clearCache(String name) {
+        Cache cache = cacheManager.getCache(name);
+        if (cache != null) {
+            cache.clear();
+        }
     }
 
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.SPICE_BY_ID, key = "#id"),
+            @CacheEvict(cacheNames = {CacheConfig.SPICE_LIST, CacheConfig.RELATED_SPICES, CacheConfig.QUALITY_CLASSES}, allEntries = true)
+    })
     public void deleteSpice(Long id) {
         Spice spice = spiceRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Spice not found"));
 
         // Cascade delete will handle variants and images if properly configured
         spiceRepository.delete(spice);
+        spiceFacetService.refresh(List.of(id));
+        searchIndex.removeAfterCommit(id);
     }
 
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.SPICE_BY_ID, key = "#id"),
+            @CacheEvict(cacheNames = {CacheConfig.SPICE_LIST, CacheConfig.RELATED_SPICES}, allEntries = true)
+    })
     public Spice updateAvailability(Long id, Boolean available) {
         Spice spice = spiceRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Spice not found"));
         spice.setAvailable(available);
-        return spiceRepository.save(spice);
+        Spice saved = spiceRepository.save(spice);
+        spiceFacetService.refresh(List.of(id));
+        return saved;
     }
 
+    // Snapshots may be shared through the catalog cache, so their collections are read-only
     public SpiceDto toDto(Spice s) {
         SpiceDto dto = new SpiceDto();
         dto.setId(s.getId());
@@ -87,7 +178,7 @@ public class SpiceService {
         dto.setImageUrls(
                 s.getImages().stream()
                         .map(SpiceImage::getImageUrl)
-                        .collect(Collectors.toList())
+                        .collect(Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList))
         );
         dto.setVariants(
                 s.getVariants().stream()
@@ -101,86 +192,186 @@ public class SpiceService {
                                                 p.getPrice(),
                                                 p.getStockQuantity()
                                         ))
-                                        .collect(Collectors.toList())
+                                        .collect(Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList))
                         ))
-                        .collect(Collectors.toList())
+                        .collect(Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList))
         );
         return dto;
     }
 
 
+    // Filtering, sorting and counting run on the narrow spice_facets table; only the
+    // resulting page of ids is hydrated with the catalog fetch plan
     public Page<Spice> getFilteredSpices(
             int page, int limit, String search,
             BigDecimal minPrice, BigDecimal maxPrice,
             List<String> origins, List<String> qualityClasses,
             Boolean inStock) {
 
-        Specification<Spice> spec = buildSpecification(
-                search, minPrice, maxPrice, origins, qualityClasses, inStock
+        Specification<SpiceFacet> spec = buildSpecification(
+                minPrice, maxPrice, origins, qualityClasses, inStock
         );
 
-        Pageable pageable = PageRequest.of(page - 1, limit, Sort.by("name"));
-        return spiceRepository.findAll(spec, pageable);
+        Pageable pageable = PageRequest.of(page - 1, limit, Sort.by("name", "spiceId"));
+
+        Page<Long> idPage = StringUtils.hasText(search)
+                ? searchIdPage(search, spec, pageable)
+                : spiceFacetRepository.findAll(spec, pageable).map(SpiceFacet::getSpiceId);
+        if (idPage.isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, idPage.getTotalElements());
+        }
+
+        return new PageImpl<>(hydrate(idPage.getContent()), pageable, idPage.getTotalElements());
     }
 
-    private Specification<Spice> buildSpecification(
-            String search, BigDecimal minPrice, BigDecimal maxPrice,
+    // Keyset variant of getFilteredSpices: continues after the cursor's (name, id) instead of
+    // skipping OFFSET rows, and only counts when asked. Search hits are narrowed, not ranked, here.
+    public CursorPage<Spice> getFilteredSpicesAfter(
+            String cursor, int limit, boolean includeTotal, String search,
+            BigDecimal minPrice, BigDecimal maxPrice,
+            List<String> origins, List<String> qualityClasses,
+            Boolean inStock) {
+
+        Specification<SpiceFacet> spec = buildSpecification(
+                minPrice, maxPrice, origins, qualityClasses, inStock
+        );
+        if (StringUtils.hasText(search)) {
+            List<Long> hitIds = searchIndex.search(search).stream()
+                    .map(SpiceSearchIndex.Hit::spiceId)
+                    .collect(Collectors.toList());
+            if (hitIds.isEmpty()) {
+                return new CursorPage<>(List.of(), null, false, includeTotal ? 0L : null);
+            }
+            spec = spec.and((root, query, cb) -> root.get("spiceId").in(hitIds));
+        }
+
+        Specification<SpiceFacet> window = spec;
+        if (StringUtils.hasText(cursor)) {
+            PageCursor after = PageCursor.decode(cursor);
+            window = spec.and((root, query, cb) -> cb.or(
+                    cb.greaterThan(root.get("name"), after.sortKey()),
+                    cb.and(cb.equal(root.get("name"), after.sortKey()), cb.greaterThan(root.get("spiceId"), after.id()))
+            ));
+        }
+
+        // One extra row tells whether another window follows
+        List<SpiceFacet> facets = spiceFacetRepository.findBy(window,
+                q -> q.sortBy(Sort.by("name", "spiceId")).limit(limit + 1).all());
+        boolean hasMore = facets.size() > limit;
+        if (hasMore) {
+            facets = facets.subList(0, limit);
+        }
+
+        String nextCursor = null;
+        if (hasMore) {
+            SpiceFacet last = facets.get(facets.size() - 1);
+            nextCursor = new PageCursor(last.getName(), last.getSpiceId()).encode();
+        }
+        List<Spice> spices = facets.isEmpty()
+                ? List.of()
+                : hydrate(facets.stream().map(SpiceFacet::getSpiceId).collect(Collectors.toList()));
+        Long total = includeTotal ? spiceFacetRepository.count(spec) : null;
+        return new CursorPage<>(spices, nextCursor, hasMore, total);
+    }
+
+    // Loads the given ids through the catalog fetch plan, keeping their order
+    private List<Spice> hydrate(List<Long> ids) {
+        Map<Long, Spice> byId = spiceRepository.findAllForCatalogByIdIn(ids).stream()
+                .collect(Collectors.toMap(Spice::getId, Function.identity()));
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    // Search hits come back ranked by relevance; the remaining filters only narrow that (capped) list
+    private Page<Long> searchIdPage(String search, Specification<SpiceFacet> spec, Pageable pageable) {
+        List<Long> hitIds = searchIndex.search(search).stream()
+                .map(SpiceSearchIndex.Hit::spiceId)
+                .collect(Collectors.toList());
+        if (hitIds.isEmpty()) {
+            return Page.empty(pageable);
+        }
+
+        Specification<SpiceFacet> withinHits = spec.and((root, query, cb) -> root.get("spiceId").in(hitIds));
+        Set<Long> matching = spiceFacetRepository.findAll(withinHits).stream()
+                .map(SpiceFacet::getSpiceId)
+                .collect(Collectors.toSet());
+        List<Long> ranked = hitIds.stream()
+                .filter(matching::contains)
+                .collect(Collectors.toList());
+
+        int from = (int) Math.min(pageable.getOffset(), ranked.size());
+        int to = Math.min(from + pageable.getPageSize(), ranked.size());
+        return new PageImpl<>(ranked.subList(from, to), pageable, ranked.size());
+    }
+
+    public Map<Long, Map<String, String>> getSearchHighlights(String search, List<Spice> spices) {
+        Map<Long, Map<String, String>> highlights = new HashMap<>();
+        for (Spice spice : spices) {
+            highlights.put(spice.getId(), searchIndex.highlight(spice.getId(), search));
+        }
+        return highlights;
+    }
+
+    private Specification<SpiceFacet> buildSpecification(
+            BigDecimal minPrice, BigDecimal maxPrice,
             List<String> origins, List<String> qualityClasses, Boolean inStock) {
 
         return (root, query, cb) -> {
             List<Predicate> predicates = new ArrayList<>();
 
-            if (StringUtils.hasText(search)) {
-                predicates.add(cb.or(
-                        cb.like(cb.lower(root.get("name")), "%" + search.toLowerCase() + "%"),
-                        cb.like(cb.lower(root.get("description")), "%" + search.toLowerCase() + "%")
-                ));
-            }
-
             if (origins != null && !origins.isEmpty()) {
                 predicates.add(root.get("origin").in(origins));
             }
 
             if (inStock != null) {
-                predicates.add(cb.equal(root.get("isAvailable"), inStock));
+                predicates.add(cb.equal(root.get("available"), inStock));
             }
 
             if (qualityClasses != null && !qualityClasses.isEmpty()) {
-                Join<Spice, SpiceVariant> variantJoin = root.join("variants");
-                List<Predicate> qualityClassPredicates = new ArrayList<>();
-                for (String qc : qualityClasses) {
-                    // Normalize the incoming filter value
-                    String normalizedQc = qc.trim().toLowerCase();
-                    // Create a predicate to compare the normalized DB value with the normalized filter value
-                    qualityClassPredicates.add(cb.equal(cb.lower(cb.trim(variantJoin.get("qualityClass"))), normalizedQc));
-                }
-                // Combine all quality class predicates with an OR (match any of the selected classes)
-                predicates.add(cb.or(qualityClassPredicates.toArray(new Predicate[0])));
+                // Match any of the selected classes, looked up by the class index
+                List<String> normalized = qualityClasses.stream()
+                        .map(SpiceFacetService::normalizeQualityClass)
+                        .collect(Collectors.toList());
+                Subquery<Long> classified = query.subquery(Long.class);
+                Root<SpiceFacet> facet = classified.from(SpiceFacet.class);
+                Join<SpiceFacet, String> qualityClass = facet.join("qualityClasses");
+                classified.select(facet.get("spiceId")).where(qualityClass.in(normalized));
+                predicates.add(root.get("spiceId").in(classified));
             }
 
+            // A spice matches when one of its packs is priced inside the range
             if (minPrice != null || maxPrice != null) {
-                Join<Spice, SpiceVariant> variantJoin = root.join("variants");
-                Join<SpiceVariant, SpicePack> packJoin = variantJoin.join("packs");
+                Subquery<Long> priced = query.subquery(Long.class);
+                Root<SpiceFacet> facet = priced.from(SpiceFacet.class);
+                Join<SpiceFacet, BigDecimal> price = facet.join("packPrices");
+                List<Predicate> bounds = new ArrayList<>();
                 if (minPrice != null) {
-                    predicates.add(cb.ge(packJoin.get("price"), minPrice));
+                    bounds.add(cb.ge(price, minPrice));
                 }
                 if (maxPrice != null) {
-                    predicates.add(cb.le(packJoin.get("price"), maxPrice));
+                    bounds.add(cb.le(price, maxPrice));
                 }
+                priced.select(facet.get("spiceId")).where(bounds.toArray(new Predicate[0]));
+                predicates.add(root.get("spiceId").in(priced));
             }
 
-            query.distinct(true);
             return cb.and(predicates.toArray(new Predicate[0]));
         };
     }
 
     public Spice getSpiceById(Long id) {
-        return spiceRepository.findById(id)
+        return spiceRepository.findForCatalogById(id)
                 .orElseThrow(() -> new RuntimeException("Spice not found"));
     }
 
 
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.SPICE_BY_ID, key = "#updatedSpice.id"),
+            @CacheEvict(cacheNames = {CacheConfig.SPICE_LIST, CacheConfig.RELATED_SPICES, CacheConfig.QUALITY_CLASSES}, allEntries = true)
+    })
     public Spice updateSpice(Spice updatedSpice) {
         Spice existingSpice = spiceRepository.findById(updatedSpice.getId())
                 .orElseThrow(() -> new RuntimeException("Spice not found"));
@@ -211,14 +402,18 @@ public class SpiceService {
             updatedSpice.getImages().forEach(i -> i.setSpice(updatedSpice));
         }
 
-        return spiceRepository.save(updatedSpice);
+        Spice saved = spiceRepository.save(updatedSpice);
+        spiceFacetService.refresh(List.of(saved.getId()));
+        searchIndex.indexAfterCommit(saved.getId(), saved.getName(), saved.getDescription());
+        return saved;
     }
 
+    @Cacheable(cacheNames = CacheConfig.QUALITY_CLASSES, key = "'all'")
     public List<String> getUniqueQualityClasses() {
         return spiceRepository.findDistinctQualityClasses().stream()
                 .map(String::trim)
                 .distinct()
-                .collect(Collectors.toList());
+                .collect(Collectors.toUnmodifiableList());
     }
 
     public List<Spice> getRelatedSpices(Long id, String origin) {
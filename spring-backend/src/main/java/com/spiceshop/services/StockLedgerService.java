@@ -0,0 +1,90 @@
+package com.spiceshop.services;
+
+import com.spiceshop.exceptions.InsufficientStockException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Single source of truth for pack stock movements. Every decrement is one conditional
+ * UPDATE, so two buyers can never both take the last unit, and all lines of an order go
+ * to the database in one JDBC batch.
+ */
+@Service
+public class StockLedgerService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockLedgerService.class);
+
+    private static final String DECREMENT_SQL =
+            "UPDATE spice_pack SET stock_quantity = stock_quantity - ? WHERE id = ? AND stock_quantity >= ?";
+
+    private static final String INCREMENT_SQL =
+            "UPDATE spice_pack SET stock_quantity = stock_quantity + ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public StockLedgerService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Takes the given quantities (pack id -> units) out of stock, all or nothing.
+     * Must run inside the caller's transaction: when any pack is short an
+     * InsufficientStockException is thrown and the rollback undoes the other lines.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void decrement(Map<Long, Integer> quantitiesByPack) {
+        // Same lock order for every order, so two multi-line checkouts can't deadlock
+        List<Map.Entry<Long, Integer>> lines = new ArrayList<>(new TreeMap<>(quantitiesByPack).entrySet());
+        if (lines.isEmpty()) {
+            return;
+        }
+
+        int[] updated = jdbcTemplate.batchUpdate(DECREMENT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Map.Entry<Long, Integer> line = lines.get(i);
+                ps.setInt(1, line.getValue());
+                ps.setLong(2, line.getKey());
+                ps.setInt(3, line.getValue());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return lines.size();
+            }
+        });
+
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                Long packId = lines.get(i).getKey();
+                logger.warn("StockLedgerService: insufficient stock for pack {} (requested {})", packId, lines.get(i).getValue());
+                throw new InsufficientStockException("Insufficient stock for pack " + packId, packId);
+            }
+        }
+    }
+
+    // Puts units back, e.g. when a stock hold is released; never fails for lack of stock
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void increment(Map<Long, Integer> quantitiesByPack) {
+        List<Map.Entry<Long, Integer>> lines = new ArrayList<>(new TreeMap<>(quantitiesByPack).entrySet());
+        if (lines.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INCREMENT_SQL, lines, lines.size(), (ps, line) -> {
+            ps.setInt(1, line.getValue());
+            ps.setLong(2, line.getKey());
+        });
+    }
+}
@@ -0,0 +1,152 @@
+package com.spiceshop.services;
+
+import com.spiceshop.models.Order;
+import com.spiceshop.models.OrderItem;
+import com.spiceshop.models.StockReservation;
+import com.spiceshop.repositorys.OrderRepository;
+import com.spiceshop.repositorys.PaymentRepository;
+import com.spiceshop.repositorys.SpicePackRepository;
+import com.spiceshop.repositorys.StockReservationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Time-limited stock holds for online-payment orders. Holding takes the units out of stock
+ * right away, so buyers racing for the last units are turned away at checkout rather than
+ * after paying; a verified payment converts the hold, anything else gives the units back.
+ * A hold that lapses unpaid cancels its order, so a late payment is flagged for refund.
+ */
+@Service
+public class StockReservationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockReservationService.class);
+
+    private static final int SWEEP_BATCH_SIZE = 100;
+    private static final String EXPIRED_REASON = "Checkout expired before payment.";
+
+    private final StockReservationRepository reservationRepository;
+    private final SpicePackRepository spicePackRepository;
+    private final OrderRepository orderRepository;
+    private final PaymentRepository paymentRepository;
+    private final StockLedgerService stockLedgerService;
+    private final SpiceService spiceService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${stock.reservation.ttl:PT15M}")
+    private Duration holdTtl;
+
+    public StockReservationService(StockReservationRepository reservationRepository, SpicePackRepository spicePackRepository,
+                                   OrderRepository orderRepository, PaymentRepository paymentRepository,
+                                   StockLedgerService stockLedgerService, SpiceService spiceService,
+                                   TransactionTemplate transactionTemplate) {
+        this.reservationRepository = reservationRepository;
+        this.spicePackRepository = spicePackRepository;
+        this.orderRepository = orderRepository;
+        this.paymentRepository = paymentRepository;
+        this.stockLedgerService = stockLedgerService;
+        this.spiceService = spiceService;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Takes the order's units out of stock and records the holds. Throws
+     * InsufficientStockException (rolling back the caller) when any pack is short.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void hold(Order order) {
+        Map<Long, Integer> quantities = order.getItems().stream()
+                .collect(Collectors.toMap(item -> item.getSpicePack().getId(), OrderItem::getQuantity, Integer::sum));
+        stockLedgerService.decrement(quantities);
+
+        LocalDateTime expiresAt = LocalDateTime.now().plus(holdTtl);
+        reservationRepository.saveAll(quantities.entrySet().stream()
+                .map(line -> StockReservation.builder()
+                        .orderId(order.getId())
+                        .packId(line.getKey())
+                        .quantity(line.getValue())
+                        .status(StockReservation.Status.HELD)
+                        .expiresAt(expiresAt)
+                        .build())
+                .collect(Collectors.toList()));
+        spiceService.onStockChanged(spicePackRepository.findSpiceIdsByPackIds(quantities.keySet()));
+    }
+
+    /**
+     * Marks the order's holds as sold. Returns false when there was nothing held any more
+     * (the hold lapsed or the order predates reservations); the caller must then take the
+     * stock itself.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean convert(Long orderId) {
+        return reservationRepository.transition(orderId, StockReservation.Status.HELD,
+                StockReservation.Status.CONVERTED, LocalDateTime.now()) > 0;
+    }
+
+    // Returns held units to stock; a no-op when the holds were already converted or released
+    @Transactional
+    public boolean release(Long orderId) {
+        int released = reservationRepository.transition(orderId, StockReservation.Status.HELD,
+                StockReservation.Status.RELEASED, LocalDateTime.now());
+        if (released == 0) {
+            return false;
+        }
+
+        Map<Long, Integer> quantities = reservationRepository.findByOrderIdAndStatus(orderId, StockReservation.Status.RELEASED).stream()
+                .collect(Collectors.toMap(StockReservation::getPackId, StockReservation::getQuantity, Integer::sum));
+        stockLedgerService.increment(quantities);
+        spiceService.onStockChanged(spicePackRepository.findSpiceIdsByPackIds(quantities.keySet()));
+        logger.info("StockReservationService: released {} held pack(s) for order {}", quantities.size(), orderId);
+        return true;
+    }
+
+    /**
+     * Ends a checkout whose hold lapsed: the units go back and, unless a payment settled it
+     * in the meantime, the order is cancelled with its payment failed. A capture arriving
+     * after that is logged for refund by PaymentService.
+     */
+    @Transactional
+    public void expire(Long orderId) {
+        if (!release(orderId)) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        paymentRepository.failPendingByOrderId(orderId, EXPIRED_REASON, now);
+        if (orderRepository.cancelUnpaid(orderId, now) > 0) {
+            logger.info("StockReservationService: cancelled unpaid order {} after its hold expired", orderId);
+        }
+    }
+
+    // Gives back units of checkouts that were abandoned before payment
+    @Scheduled(fixedDelayString = "${stock.reservation.sweep-interval:PT1M}")
+    public void releaseExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        long afterOrderId = 0;
+        List<Long> orderIds;
+        do {
+            orderIds = reservationRepository.findOrderIdsExpiredBefore(
+                    StockReservation.Status.HELD, now, afterOrderId, Limit.of(SWEEP_BATCH_SIZE));
+            for (Long orderId : orderIds) {
+                afterOrderId = orderId;
+                // one transaction per order so a failure doesn't hold back the rest
+                try {
+                    transactionTemplate.executeWithoutResult(status -> expire(orderId));
+                } catch (RuntimeException e) {
+                    logger.error("StockReservationService: failed to release holds of order {}: {}", orderId, e.getMessage(), e);
+                }
+            }
+        } while (orderIds.size() == SWEEP_BATCH_SIZE);
+    }
+}
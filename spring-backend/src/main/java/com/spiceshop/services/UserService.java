@@ -4,7 +4,6 @@ import com.spiceshop.models.User;
 import com.spiceshop.models.DeliveryAddress;
 import com.spiceshop.repositorys.DeliveryAddressRepository;
 import com.spiceshop.repositorys.UserRepository;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -16,12 +15,12 @@ import java.util.Optional;
 public class UserService {
 
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
     private final DeliveryAddressRepository deliveryAddressRepository;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, DeliveryAddressRepository deliveryAddressRepository) {
+    public UserService(UserRepository userRepository, PasswordHasher passwordHasher, DeliveryAddressRepository deliveryAddressRepository) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHasher = passwordHasher;
         this.deliveryAddressRepository = deliveryAddressRepository;
     }
 
@@ -35,11 +34,27 @@ public class UserService {
         user.setLastName(lastName);
         user.setEmail(email);
         user.setDisplayName(generateDisplayName(email));
-        user.setPassword(passwordEncoder.encode(password));
+        user.setPassword(passwordHasher.encode(password));
 
         return userRepository.save(user);
     }
 
+    /**
+     * The user for a correct email and password, empty otherwise. An unknown email costs the
+     * same hash as a known one. Not transactional: no connection is held while hashing.
+     */
+    public Optional<User> authenticate(String email, String password) {
+        Optional<User> userOpt = userRepository.findByEmail(email);
+        PasswordHasher.Verification result = passwordHasher.verify(password, userOpt.map(User::getPassword).orElse(null));
+        if (!result.matches()) {
+            return Optional.empty();
+        }
+        if (result.upgradedHash() != null) {
+            userRepository.updatePasswordHash(userOpt.get().getId(), userOpt.get().getPassword(), result.upgradedHash());
+        }
+        return userOpt;
+    }
+
     private String generateDisplayName(String email) {
         return email.split("@")[0];
     }
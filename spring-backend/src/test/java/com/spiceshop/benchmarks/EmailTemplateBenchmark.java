@@ -0,0 +1,65 @@
+package com.spiceshop.benchmarks;
+
+import com.spiceshop.dto.OrderConfirmationEmailModel;
+import com.spiceshop.dto.OtpEmailModel;
+import com.spiceshop.services.EmailTemplates;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Render throughput for the bulk-mail path. Not part of the surefire run; start it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.spiceshop.benchmarks.EmailTemplateBenchmark}
+ * or from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmailTemplateBenchmark {
+
+    private EmailTemplates templates;
+    private OrderConfirmationEmailModel order;
+
+    @Setup
+    public void setUp() {
+        templates = new EmailTemplates("https://shop.example.com");
+        List<OrderConfirmationEmailModel.Line> lines = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            lines.add(new OrderConfirmationEmailModel.Line("Cardamom " + i, "Class 1", "100g", 2, new BigDecimal("240.00")));
+        }
+        order = new OrderConfirmationEmailModel(42L, "PROCESSING", lines,
+                new BigDecimal("1920.00"), new BigDecimal("60.00"), new BigDecimal("1980.00"));
+    }
+
+    @Benchmark
+    public String orderConfirmation() {
+        return templates.orderConfirmation(order);
+    }
+
+    @Benchmark
+    public String otp() {
+        return templates.otp(new OtpEmailModel("482913"));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EmailTemplateBenchmark.class.getSimpleName()).build()).run();
+    }
+}
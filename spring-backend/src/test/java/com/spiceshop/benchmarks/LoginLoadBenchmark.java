@@ -0,0 +1,131 @@
+package com.spiceshop.benchmarks;
+
+import com.spiceshop.exceptions.PasswordHashingBusyException;
+import com.spiceshop.exceptions.TooManyLoginAttemptsException;
+import com.spiceshop.services.LoginRateLimiter;
+import com.spiceshop.services.PasswordHasher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Login latency for real customers while a credential-stuffing run is going on: 63 threads send
+ * leaked-list guesses for existing accounts from {@code attackAddresses} client addresses (a few
+ * hosts, or a botnet), each pausing 10 ms between requests the way a client paced by its network
+ * would, and one thread logs real customers in, each from their own address. Look at
+ * the p0.99 line of {@code attack:customer}, and at {@code loggedIn} against {@code rejected}:
+ * under a botnet the hashing queue stays full and most customers get an immediate refusal rather
+ * than a long wait. The warmup is long enough for the few-hosts attack to use up its address bursts.
+ * {@code direct} is the old path (BCrypt on the request thread, nothing in front of it),
+ * {@code guarded} is LoginRateLimiter plus PasswordHasher with the shipped defaults.
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.spiceshop.benchmarks.LoginLoadBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 15)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class LoginLoadBenchmark {
+
+    private static final String PASSWORD = "Secret#123";
+    private static final int CUSTOMERS = 10_000;
+
+    @Param({"direct", "guarded"})
+    public String pipeline;
+
+    @Param({"4", "4096"})
+    public int attackAddresses;
+
+    private BCryptPasswordEncoder encoder;
+    private PasswordHasher hasher;
+    private LoginRateLimiter limiter;
+    private String storedHash;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcomes {
+        public long loggedIn;
+        public long rejected;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            loggedIn = 0;
+            rejected = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        encoder = new BCryptPasswordEncoder(10);
+        storedHash = encoder.encode(PASSWORD);
+        if (pipeline.equals("guarded")) {
+            // pool threads are daemons, nothing to shut down between trials
+            hasher = new PasswordHasher(encoder, 0, 32, Duration.ofSeconds(5), new SimpleMeterRegistry());
+            limiter = new LoginRateLimiter(20, Duration.ofSeconds(3), 5, Duration.ofSeconds(30), 100_000);
+        }
+    }
+
+    @Benchmark
+    @Group("attack")
+    @GroupThreads(63)
+    public boolean attacker() throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Thread.sleep(10);
+        try {
+            return login("10.66." + random.nextInt(attackAddresses), "customer" + random.nextInt(CUSTOMERS) + "@example.com",
+                    "guess" + random.nextInt());
+        } catch (TooManyLoginAttemptsException | PasswordHashingBusyException e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    @Group("attack")
+    @GroupThreads(1)
+    public boolean customer(Outcomes outcomes) {
+        int customer = ThreadLocalRandom.current().nextInt(CUSTOMERS);
+        try {
+            boolean matched = login("192.168." + customer / 256 + "." + customer % 256, "customer" + customer + "@example.com", PASSWORD);
+            outcomes.loggedIn++;
+            return matched;
+        } catch (TooManyLoginAttemptsException | PasswordHashingBusyException e) {
+            outcomes.rejected++;
+            return false;
+        }
+    }
+
+    // What AuthController.loginUser does before touching the session
+    private boolean login(String clientAddress, String email, String password) {
+        if (pipeline.equals("direct")) {
+            return encoder.matches(password, storedHash);
+        }
+        limiter.acquire(clientAddress, email);
+        return hasher.verify(password, storedHash).matches();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LoginLoadBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,75 @@
+package com.spiceshop.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spiceshop.services.FakePaymentGateway;
+import com.spiceshop.services.PaymentWebhookService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU cost of the webhook request path before the inbox insert (signature check and envelope
+ * read), over the recorded deliveries in src/test/resources/webhooks. Not part of the surefire
+ * run; start it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.spiceshop.benchmarks.PaymentWebhookIngestBenchmark}
+ * or from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class PaymentWebhookIngestBenchmark {
+
+    @Param({"payment_captured", "payment_failed"})
+    public String recording;
+
+    private FakePaymentGateway gateway;
+    private PaymentWebhookService webhookService;
+    private String payload;
+    private String signature;
+
+    @Setup
+    public void setUp() throws IOException {
+        gateway = new FakePaymentGateway();
+        // the envelope read never touches the repository
+        webhookService = new PaymentWebhookService(null, gateway, new ObjectMapper());
+        try (InputStream in = PaymentWebhookIngestBenchmark.class.getResourceAsStream("/webhooks/" + recording + ".json")) {
+            payload = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        signature = gateway.signWebhook(payload);
+    }
+
+    @Benchmark
+    public boolean verifySignature() {
+        return gateway.verifyWebhookSignature(payload, signature);
+    }
+
+    @Benchmark
+    public PaymentWebhookService.Envelope verifyAndRead() {
+        return gateway.verifyWebhookSignature(payload, signature) ? webhookService.read(payload) : null;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PaymentWebhookIngestBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,117 @@
+package com.spiceshop.benchmarks;
+
+import com.spiceshop.services.CoalescingSessionRepository;
+import com.spiceshop.services.SessionAttributeCodec;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session requests per second (load, bump the access time, save) spread over {@code users}
+ * logged-in sessions, with the stock JDBC repository against the coalescing one. Runs on
+ * in-memory H2 unless pointed at a database, e.g. a local Postgres:
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.spiceshop.benchmarks.SessionStoreBenchmark
+ * -Dbench.jdbc.url=jdbc:postgresql://localhost:5432/spice-shop -Dbench.jdbc.user=postgres -Dbench.jdbc.password=...}
+ * The SPRING_SESSION tables there are dropped and recreated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(16)
+public class SessionStoreBenchmark {
+
+    @Param({"jdbc", "coalesced"})
+    public String store;
+
+    @Param({"10000"})
+    public int users;
+
+    private HikariDataSource dataSource;
+    private SessionRepository<Session> repository;
+    private String[] sessionIds;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        String url = System.getProperty("bench.jdbc.url", "jdbc:h2:mem:sessions;DB_CLOSE_DELAY=-1");
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(System.getProperty("bench.jdbc.user", "sa"));
+        dataSource.setPassword(System.getProperty("bench.jdbc.password", ""));
+        dataSource.setMaximumPoolSize(16);
+
+        String platform = url.startsWith("jdbc:postgresql:") ? "postgresql" : "h2";
+        ResourceDatabasePopulator schema = new ResourceDatabasePopulator(
+                new ClassPathResource("org/springframework/session/jdbc/schema-drop-" + platform + ".sql"),
+                new ClassPathResource("org/springframework/session/jdbc/schema-" + platform + ".sql"));
+        schema.setContinueOnError(true);
+        schema.execute(dataSource);
+
+        JdbcIndexedSessionRepository jdbcRepository = new JdbcIndexedSessionRepository(
+                new JdbcTemplate(dataSource), new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        jdbcRepository.setDefaultMaxInactiveInterval(Duration.ofMinutes(60));
+        if (store.equals("coalesced")) {
+            jdbcRepository.setConversionService(SessionAttributeCodec.conversionService(getClass().getClassLoader()));
+            repository = (SessionRepository<Session>) (SessionRepository<?>) new CoalescingSessionRepository<>(jdbcRepository, 0.1);
+        } else {
+            repository = (SessionRepository<Session>) (SessionRepository<?>) jdbcRepository;
+        }
+
+        sessionIds = new String[users];
+        for (int i = 0; i < users; i++) {
+            Session session = repository.createSession();
+            session.setLastAccessedTime(Instant.now());
+            session.setAttribute("userId", (long) i);
+            repository.save(session);
+            sessionIds[i] = session.getId();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    // One authenticated request as SessionRepositoryFilter runs it
+    @Benchmark
+    public Long request() {
+        Session session = repository.findById(sessionIds[ThreadLocalRandom.current().nextInt(users)]);
+        session.setLastAccessedTime(Instant.now());
+        repository.save(session);
+        return session.getAttribute("userId");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SessionStoreBenchmark.class.getSimpleName()).build()).run();
+    }
+}
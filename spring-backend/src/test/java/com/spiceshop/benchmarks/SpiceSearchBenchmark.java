@@ -0,0 +1,141 @@
+package com.spiceshop.benchmarks;
+
+import com.spiceshop.repositorys.SpiceRepository;
+import com.spiceshop.services.SpiceSearchIndex;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Search latency over a synthetic {@code spices}-row catalog: {@code like} is the old
+ * lower(name|description) LIKE '%term%' filter on in-memory H2, {@code index} is
+ * SpiceSearchIndex. Queries mix exact words, prefixes and typos; compare the p0.99 lines.
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.spiceshop.benchmarks.SpiceSearchBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SpiceSearchBenchmark {
+
+    private static final String[] SPICES = {"pepper", "cardamom", "cinnamon", "clove", "nutmeg", "turmeric",
+            "ginger", "chilli", "cumin", "fenugreek", "mace", "vanilla", "coriander", "fennel", "saffron"};
+    private static final String[] QUERIES = {"pepper", "cardamom green", "cinna", "turmerik", "malabar pepper",
+            "nutmg", "vanila", "ginger", "saffron kashmiri", "corriander"};
+
+    @Param({"like", "index"})
+    public String engine;
+
+    @Param({"100000"})
+    public int spices;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private SpiceSearchIndex index;
+
+    @Setup
+    public void setUp() {
+        // A vocabulary of made-up estate and village names, so the term count grows with the catalog
+        Random random = new Random(42);
+        List<String> words = new ArrayList<>(List.of("malabar", "kashmiri", "green", "bold", "organic", "aromatic",
+                "whole", "ground", "sun", "dried", "estate", "hand", "picked", "idukki", "wayanad", "ceylon"));
+        for (int i = 0; i < spices / 4; i++) {
+            words.add(pseudoWord(random));
+        }
+
+        List<Object[]> rows = new ArrayList<>(spices);
+        for (long id = 1; id <= spices; id++) {
+            String name = word(random, words) + " " + SPICES[random.nextInt(SPICES.length)];
+            StringBuilder description = new StringBuilder();
+            for (int w = 0; w < 15; w++) {
+                description.append(w == 0 ? "" : " ").append(w % 5 == 0 ? SPICES[random.nextInt(SPICES.length)] : word(random, words));
+            }
+            rows.add(new Object[]{id, name, description.toString()});
+        }
+
+        if (engine.equals("like")) {
+            dataSource = new HikariDataSource();
+            dataSource.setJdbcUrl("jdbc:h2:mem:search;DB_CLOSE_DELAY=-1");
+            dataSource.setUsername("sa");
+            jdbc = new JdbcTemplate(dataSource);
+            jdbc.execute("DROP TABLE IF EXISTS spices");
+            jdbc.execute("CREATE TABLE spices (id BIGINT PRIMARY KEY, name VARCHAR(255), description VARCHAR(2000))");
+            jdbc.batchUpdate("INSERT INTO spices (id, name, description) VALUES (?, ?, ?)", rows);
+        } else {
+            index = new SpiceSearchIndex(mock(SpiceRepository.class));
+            ReflectionTestUtils.setField(index, "maxResults", 500);
+            for (Object[] row : rows) {
+                index.put((Long) row[0], (String) row[1], (String) row[2]);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+
+    @Benchmark
+    public int search() {
+        String query = QUERIES[ThreadLocalRandom.current().nextInt(QUERIES.length)];
+        if (engine.equals("index")) {
+            return index.search(query).size();
+        }
+        // What SpiceService.buildSpecification did: every word anywhere in name or description
+        StringBuilder sql = new StringBuilder("SELECT id FROM spices WHERE 1 = 1");
+        List<Object> args = new ArrayList<>();
+        for (String term : query.split(" ")) {
+            sql.append(" AND (LOWER(name) LIKE ? OR LOWER(description) LIKE ?)");
+            args.add("%" + term + "%");
+            args.add("%" + term + "%");
+        }
+        return jdbc.queryForList(sql.toString(), Long.class, args.toArray()).size();
+    }
+
+    private static String word(Random random, List<String> words) {
+        // skewed towards the front so a few words are common and most are rare
+        return words.get((int) (Math.pow(random.nextDouble(), 3) * words.size()));
+    }
+
+    private static String pseudoWord(Random random) {
+        String consonants = "bdgkmnprstvy";
+        String vowels = "aeiou";
+        StringBuilder word = new StringBuilder();
+        int syllables = 2 + random.nextInt(3);
+        for (int s = 0; s < syllables; s++) {
+            word.append(consonants.charAt(random.nextInt(consonants.length()))).append(vowels.charAt(random.nextInt(vowels.length())));
+        }
+        return word.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SpiceSearchBenchmark.class.getSimpleName()).build()).run();
+    }
+}
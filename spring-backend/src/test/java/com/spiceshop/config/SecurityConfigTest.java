@@ -0,0 +1,64 @@
+package com.spiceshop.config;
+
+import com.spiceshop.models.Admin;
+import com.spiceshop.services.AdminService;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The filter chain as Boot builds it, on H2: actuator endpoints other than health need an admin.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:security-config;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "EMAIL_USERNAME=test", "EMAIL_PASSWORD=test",
+        "RAZORPAY_KEY_ID=test", "RAZORPAY_KEY_SECRET=test",
+        "FRONTEND_URL=http://localhost:3000", "BACKEND_URL=http://localhost:8080",
+        "payment.webhook.poll-interval=PT1H",
+        "mail.outbox.poll-interval=PT1H"
+})
+@AutoConfigureMockMvc
+class SecurityConfigTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AdminService adminService;
+
+    @Test
+    void cacheAndMetricEndpointsNeedAnAdmin() throws Exception {
+        mockMvc.perform(delete("/actuator/caches")).andExpect(status().isForbidden());
+        mockMvc.perform(get("/actuator/metrics")).andExpect(status().isForbidden());
+
+        adminService.createAdmin(Admin.builder().name("Admin").email("admin@example.com").password("Secret#123").build());
+        Cookie session = mockMvc.perform(post("/api/admin/login").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"admin@example.com\",\"password\":\"Secret#123\"}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getCookie("SESSION");
+
+        mockMvc.perform(get("/actuator/metrics").cookie(session)).andExpect(status().isOk());
+        mockMvc.perform(delete("/actuator/caches").cookie(session)).andExpect(status().is2xxSuccessful());
+    }
+
+    @Test
+    void healthStaysPublic() throws Exception {
+        mockMvc.perform(get("/actuator/health")).andExpect(status().is(not(HttpStatus.FORBIDDEN.value())));
+    }
+}
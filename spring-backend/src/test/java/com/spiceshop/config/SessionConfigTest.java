@@ -0,0 +1,69 @@
+package com.spiceshop.config;
+
+import com.spiceshop.services.CoalescingSessionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.Session;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+import org.springframework.session.web.http.SessionRepositoryFilter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The session wiring as Boot builds it, on H2: the filter talks to the coalescing wrapper, the
+ * JDBC repository behind it uses the compact attribute codec, and its cleanup cron is off.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:session-config;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "EMAIL_USERNAME=test", "EMAIL_PASSWORD=test",
+        "RAZORPAY_KEY_ID=test", "RAZORPAY_KEY_SECRET=test",
+        "FRONTEND_URL=http://localhost:3000", "BACKEND_URL=http://localhost:8080",
+        "payment.webhook.poll-interval=PT1H",
+        "mail.outbox.poll-interval=PT1H"
+})
+class SessionConfigTest {
+
+    @Autowired
+    private SessionRepositoryFilter<?> springSessionRepositoryFilter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sessionFilterUsesTheCoalescingRepositoryOverTheCompactJdbcStore() {
+        Object repository = ReflectionTestUtils.getField(springSessionRepositoryFilter, "sessionRepository");
+        assertThat(repository).isInstanceOf(CoalescingSessionRepository.class)
+                .isInstanceOf(FindByIndexNameSessionRepository.class)
+                .isInstanceOf(DisposableBean.class);
+
+        Object jdbcRepository = ReflectionTestUtils.getField(repository, "delegate");
+        assertThat(jdbcRepository).isInstanceOf(JdbcIndexedSessionRepository.class);
+        assertThat(ReflectionTestUtils.getField(jdbcRepository, "cleanupCron")).isEqualTo("-");
+
+        CoalescingSessionRepository<Session> sessions = (CoalescingSessionRepository<Session>) repository;
+        CoalescingSessionRepository.CoalescedSession<Session> session = sessions.createSession();
+        session.setAttribute("userId", 7L);
+        session.setAttribute(FindByIndexNameSessionRepository.PRINCIPAL_NAME_INDEX_NAME, "admin@example.com");
+        sessions.save(session);
+
+        // tag byte plus the long, not a Java serialization stream
+        byte[] stored = jdbcTemplate.queryForObject(
+                "SELECT a.ATTRIBUTE_BYTES FROM SPRING_SESSION_ATTRIBUTES a JOIN SPRING_SESSION s ON s.PRIMARY_ID = a.SESSION_PRIMARY_ID"
+                        + " WHERE s.SESSION_ID = ? AND a.ATTRIBUTE_NAME = 'userId'", byte[].class, session.getId());
+        assertThat(stored).hasSize(9);
+        assertThat(sessions.findByPrincipalName("admin@example.com")).containsOnlyKeys(session.getId());
+
+        sessions.deleteById(session.getId());
+    }
+}
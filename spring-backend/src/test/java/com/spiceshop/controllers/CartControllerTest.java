@@ -0,0 +1,126 @@
+package com.spiceshop.controllers;
+
+import com.spiceshop.dto.AddToCartRequest;
+import com.spiceshop.dto.CartDTO;
+import com.spiceshop.dto.CartItemDTO;
+import com.spiceshop.models.RefreshToken;
+import com.spiceshop.services.AccessTokenService;
+import com.spiceshop.services.CartService;
+import com.spiceshop.services.GuestCartTokenService;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class CartControllerTest {
+
+    private final CartService cartService = mock(CartService.class);
+    private final GuestCartTokenService guestCartTokenService = new GuestCartTokenService("test-secret", 50, 99, Duration.ofDays(30));
+    private final MockHttpSession session = new MockHttpSession();
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        session.setAttribute("userId", 7L);
+        mockMvc = MockMvcBuilders.standaloneSetup(new CartController(cartService, guestCartTokenService))
+                .addPlaceholderValue("FRONTEND_URL", "http://localhost:3000")
+                .build();
+    }
+
+    @Test
+    void unchangedBadgeRevalidatesToNotModified() throws Exception {
+        when(cartService.getCartItemCount(7L)).thenReturn(3);
+
+        MvcResult first = mockMvc.perform(get("/api/cart/count").session(session))
+                .andExpect(status().isOk())
+                .andExpect(content().string("3"))
+                .andExpect(header().string("Cache-Control", "no-cache, private"))
+                .andReturn();
+        String etag = first.getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/cart/count").session(session).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        when(cartService.getCartItemCount(7L)).thenReturn(4);
+        mockMvc.perform(get("/api/cart/count").session(session).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(content().string("4"));
+    }
+
+    @Test
+    void guestsCountFromTheTokenAndGetNoSession() throws Exception {
+        String token = guestCartTokenService.encode(Map.of(11L, 2, 12L, 1));
+
+        MvcResult result = mockMvc.perform(get("/api/cart/count").cookie(new Cookie(GuestCartTokenService.COOKIE_NAME, token)))
+                .andExpect(status().isOk())
+                .andExpect(content().string("2"))
+                .andReturn();
+
+        assertThat(result.getRequest().getSession(false)).isNull();
+        verify(cartService, never()).getCartItemCount(anyLong());
+    }
+
+    @Test
+    void guestAddReturnsAResignedCookie() throws Exception {
+        CartDTO cart = new CartDTO();
+        cart.setItems(List.of(new CartItemDTO(11L, 11L, "Cardamom", "Class 1", 100, new BigDecimal("40"), 3, null)));
+        when(cartService.addGuestItem(anyMap(), any(AddToCartRequest.class))).thenReturn(cart);
+
+        MvcResult result = mockMvc.perform(post("/api/cart/items")
+                        .contentType("application/json")
+                        .content("{\"spicePackId\":11,\"quantity\":3}"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        Cookie cookie = result.getResponse().getCookie(GuestCartTokenService.COOKIE_NAME);
+        assertThat(cookie).isNotNull();
+        assertThat(cookie.isHttpOnly()).isTrue();
+        assertThat(guestCartTokenService.decode(cookie.getValue())).containsExactly(Map.entry(11L, 3));
+        assertThat(result.getRequest().getSession(false)).isNull();
+        verify(cartService, never()).addItemToCart(anyLong(), any());
+    }
+
+    @Test
+    void bearerTokenCallersUseTheirAccountCart() throws Exception {
+        AccessTokenService.Claims claims = new AccessTokenService.Claims("7", RefreshToken.Role.USER, "jti", Instant.now().plusSeconds(60));
+        CartDTO cart = new CartDTO();
+        cart.setItems(List.of());
+        when(cartService.addItemToCart(anyLong(), any(AddToCartRequest.class))).thenReturn(cart);
+
+        MvcResult result = mockMvc.perform(post("/api/cart/items")
+                        .requestAttr(AccessTokenService.REQUEST_ATTRIBUTE, claims)
+                        .contentType("application/json")
+                        .content("{\"spicePackId\":11,\"quantity\":3}"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Set-Cookie"))
+                .andReturn();
+
+        assertThat(result.getRequest().getSession(false)).isNull();
+        verify(cartService).addItemToCart(eq(7L), any(AddToCartRequest.class));
+        verify(cartService, never()).addGuestItem(anyMap(), any());
+    }
+}
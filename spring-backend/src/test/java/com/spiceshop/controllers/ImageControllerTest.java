@@ -0,0 +1,78 @@
+package com.spiceshop.controllers;
+
+import com.spiceshop.services.ImageRenditionService;
+import com.spiceshop.services.ImageStorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ImageControllerTest {
+
+    private static final String HASH = "ab".repeat(32);
+
+    @TempDir
+    private Path dir;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.write(dir.resolve(HASH + ".png"), new byte[]{1, 2, 3});
+        Files.write(dir.resolve(HASH + "-320.jpg"), new byte[]{4, 5});
+        ImageStorageService storage = new ImageStorageService(dir.toString(), "/images", 40_000_000, mock(ImageRenditionService.class));
+        mockMvc = MockMvcBuilders.standaloneSetup(new ImageController(storage)).build();
+    }
+
+    @Test
+    void renditionIsCachedForeverAndRevalidatesByName() throws Exception {
+        mockMvc.perform(get("/images/" + HASH + "-320.jpg"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "public, max-age=31536000, immutable"))
+                .andExpect(header().string("ETag", "\"" + HASH + "-320.jpg\""))
+                .andExpect(header().string("Content-Type", "image/jpeg"))
+                .andExpect(content().bytes(new byte[]{4, 5}));
+
+        mockMvc.perform(get("/images/" + HASH + "-320.jpg").header("If-None-Match", "\"" + HASH + "-320.jpg\""))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void missingRenditionServesTheOriginalBriefly() throws Exception {
+        mockMvc.perform(get("/images/" + HASH + "-1280.jpg"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "public, max-age=60"))
+                .andExpect(header().string("Content-Type", "image/png"))
+                .andExpect(content().bytes(new byte[]{1, 2, 3}));
+
+        mockMvc.perform(get("/images/not-an-upload.jpg")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/images/" + HASH + "-999.jpg")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/images/" + HASH + "-1280.gif")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void sendfileIsHandedToTheContainerWhenOffered() throws Exception {
+        MvcResult result = mockMvc.perform(get("/images/" + HASH + ".png").requestAttr("org.apache.tomcat.sendfile.support", true))
+                .andExpect(status().isOk())
+                .andExpect(header().longValue("Content-Length", 3))
+                .andReturn();
+
+        assertThat(result.getResponse().getContentAsByteArray()).isEmpty();
+        assertThat(result.getRequest().getAttribute("org.apache.tomcat.sendfile.filename"))
+                .isEqualTo(dir.resolve(HASH + ".png").toAbsolutePath().toString());
+        assertThat(result.getRequest().getAttribute("org.apache.tomcat.sendfile.end")).isEqualTo(3L);
+    }
+}
@@ -0,0 +1,57 @@
+package com.spiceshop.controllers;
+
+import com.spiceshop.services.AuthenticatedUserResolver;
+import com.spiceshop.services.CheckoutService;
+import com.spiceshop.services.OrderExportService;
+import com.spiceshop.services.OrderService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class OrderControllerTest {
+
+    private final OrderService orderService = mock(OrderService.class);
+    private final OrderExportService orderExportService = mock(OrderExportService.class);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(new OrderController(orderService, mock(CheckoutService.class),
+                        orderExportService, mock(AuthenticatedUserResolver.class)))
+                .addPlaceholderValue("FRONTEND_URL", "http://localhost:3000")
+                .build();
+    }
+
+    @Test
+    void feedAndExportNeedAnAdmin() throws Exception {
+        MockHttpSession customer = new MockHttpSession();
+        customer.setAttribute(AuthenticatedUserResolver.SESSION_USER_ID, 7L);
+
+        mockMvc.perform(get("/api/orders/admin")).andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/orders/admin").session(customer)).andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/orders/admin/export").param("format", "csv")).andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/orders/admin/export").param("format", "csv").session(customer)).andExpect(status().isUnauthorized());
+
+        verifyNoInteractions(orderService, orderExportService);
+    }
+
+    @Test
+    void adminGetsTheFeed() throws Exception {
+        when(orderService.getOrderFeed(any(), anyInt(), anyInt())).thenReturn(Page.empty());
+        MockHttpSession admin = new MockHttpSession();
+        admin.setAttribute(AuthenticatedUserResolver.SESSION_ADMIN_EMAIL, "admin@example.com");
+
+        mockMvc.perform(get("/api/orders/admin").session(admin)).andExpect(status().isOk());
+    }
+}
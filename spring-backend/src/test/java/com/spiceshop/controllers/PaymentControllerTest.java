@@ -0,0 +1,70 @@
+package com.spiceshop.controllers;
+
+import com.spiceshop.models.RefreshToken;
+import com.spiceshop.services.AccessTokenService;
+import com.spiceshop.services.PaymentService;
+import com.spiceshop.services.PaymentWebhookService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Instant;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class PaymentControllerTest {
+
+    private final PaymentWebhookService paymentWebhookService = mock(PaymentWebhookService.class);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(new PaymentController(mock(PaymentService.class), paymentWebhookService))
+                .addPlaceholderValue("FRONTEND_URL", "http://localhost:3000")
+                .build();
+    }
+
+    @Test
+    void anonymousAndCustomerCallersCannotReplayWebhooks() throws Exception {
+        mockMvc.perform(post("/api/payments/admin/webhooks/replay"))
+                .andExpect(status().isUnauthorized());
+
+        MockHttpSession customer = new MockHttpSession();
+        customer.setAttribute("userId", 7L);
+        mockMvc.perform(post("/api/payments/admin/webhooks/replay").param("ids", "1").session(customer))
+                .andExpect(status().isUnauthorized());
+
+        AccessTokenService.Claims userToken = new AccessTokenService.Claims("7", RefreshToken.Role.USER, "jti-1", Instant.now().plusSeconds(60));
+        mockMvc.perform(post("/api/payments/admin/webhooks/replay").requestAttr(AccessTokenService.REQUEST_ATTRIBUTE, userToken))
+                .andExpect(status().isUnauthorized());
+
+        verifyNoInteractions(paymentWebhookService);
+    }
+
+    @Test
+    void adminSessionOrTokenReplays() throws Exception {
+        when(paymentWebhookService.replayDead()).thenReturn(3);
+        MockHttpSession admin = new MockHttpSession();
+        admin.setAttribute("adminEmail", "admin@example.com");
+
+        mockMvc.perform(post("/api/payments/admin/webhooks/replay").session(admin))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.requeued").value(3));
+
+        AccessTokenService.Claims adminToken = new AccessTokenService.Claims("admin@example.com", RefreshToken.Role.ADMIN, "jti-2", Instant.now().plusSeconds(60));
+        mockMvc.perform(post("/api/payments/admin/webhooks/replay").requestAttr(AccessTokenService.REQUEST_ATTRIBUTE, adminToken))
+                .andExpect(status().isOk());
+
+        verify(paymentWebhookService, never()).replay(anyList());
+    }
+}
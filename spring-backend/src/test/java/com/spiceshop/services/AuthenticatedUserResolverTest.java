@@ -0,0 +1,122 @@
+package com.spiceshop.services;
+
+import com.spiceshop.config.CacheConfig;
+import com.spiceshop.dto.AuthenticatedUser;
+import com.spiceshop.models.User;
+import com.spiceshop.repositorys.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The logged-in user is read once per node and TTL, not once per request. Runs without a test
+ * transaction so cache puts are not deferred.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({AuthenticatedUserResolver.class, CacheConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AuthenticatedUserResolverTest {
+
+    @Autowired
+    private AuthenticatedUserResolver resolver;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        user = new User();
+        user.setFirstName("Asha");
+        user.setLastName("Menon");
+        user.setEmail("asha@example.com");
+        user.setPassword("password123");
+        userRepository.save(user);
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        resolver.evict(user.getId());
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void readsTheUserOnceAndServesRepeatsFromTheCache() {
+        MockHttpSession session = sessionOf(user.getId());
+
+        statistics.clear();
+        AuthenticatedUser first = resolver.resolve(session).orElseThrow();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        statistics.clear();
+        assertThat(resolver.resolve(sessionOf(user.getId()))).contains(first);
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(first.email()).isEqualTo("asha@example.com");
+        assertThat(first.firstName()).isEqualTo("Asha");
+    }
+
+    @Test
+    void keepsTheSnapshotOnTheRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        MockHttpSession session = sessionOf(user.getId());
+        AuthenticatedUser first = resolver.resolve(session).orElseThrow();
+
+        // gone from the cache, still known to this request
+        cacheManager.getCache(CacheConfig.AUTHENTICATED_USERS).clear();
+        statistics.clear();
+        assertThat(resolver.resolve(session)).contains(first);
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    @Test
+    void evictionServesTheUpdatedName() {
+        MockHttpSession session = sessionOf(user.getId());
+        resolver.resolve(session);
+
+        user.setFirstName("Asha Rani");
+        userRepository.save(user);
+        resolver.evict(user.getId());
+
+        assertThat(resolver.resolve(session).orElseThrow().firstName()).isEqualTo("Asha Rani");
+    }
+
+    @Test
+    void anonymousOrDeletedUsersResolveToEmpty() {
+        assertThat(resolver.resolve(new MockHttpSession())).isEmpty();
+        assertThat(resolver.resolve(sessionOf(user.getId() + 1000))).isEmpty();
+    }
+
+    private static MockHttpSession sessionOf(Long userId) {
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute(AuthenticatedUserResolver.SESSION_USER_ID, userId);
+        return session;
+    }
+}
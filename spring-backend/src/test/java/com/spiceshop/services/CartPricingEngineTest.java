@@ -0,0 +1,155 @@
+package com.spiceshop.services;
+
+import com.spiceshop.dto.CartLineView;
+import com.spiceshop.models.Cart;
+import com.spiceshop.models.ShippingRule;
+import com.spiceshop.repositorys.ShippingRuleRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Property check: for random sequences of add / update / remove / reprice, the incrementally
+ * maintained subtotal always equals a full recompute over current prices.
+ */
+class CartPricingEngineTest {
+
+    private static final int SEEDS = 300;
+    private static final int OPS_PER_SEED = 200;
+
+    private final ShippingRuleRepository ruleRepository = mock(ShippingRuleRepository.class);
+    private final CartPricingEngine engine = new CartPricingEngine(new ShippingRuleService(ruleRepository, new ConcurrentMapCacheManager()));
+
+    private static final class Line {
+        final long id;
+        final int pack;
+        int quantity;
+        Long unitPricePaise;
+
+        Line(long id, int pack, int quantity, Long unitPricePaise) {
+            this.id = id;
+            this.pack = pack;
+            this.quantity = quantity;
+            this.unitPricePaise = unitPricePaise;
+        }
+    }
+
+    @Test
+    void incrementalTotalsMatchFullRecompute() {
+        for (int seed = 0; seed < SEEDS; seed++) {
+            Random random = new Random(seed);
+            BigDecimal[] prices = new BigDecimal[8];
+            for (int p = 0; p < prices.length; p++) {
+                prices[p] = randomPrice(random);
+            }
+            Map<Integer, Line> lines = new LinkedHashMap<>();
+            Cart cart = new Cart();
+            cart.setSubtotalPaise(0L);
+            engine.applyDelta(cart, 0);
+            long nextId = 1;
+
+            for (int op = 0; op < OPS_PER_SEED; op++) {
+                int pack = random.nextInt(prices.length);
+                Line line = lines.get(pack);
+                switch (random.nextInt(6)) {
+                    case 0, 1 -> {
+                        int quantity = 1 + random.nextInt(5);
+                        if (line == null) {
+                            line = new Line(nextId++, pack, 0, CartPricingEngine.toPaise(prices[pack]));
+                            lines.put(pack, line);
+                        }
+                        move(cart, line, quantity);
+                    }
+                    case 2 -> {
+                        if (line != null) {
+                            move(cart, line, 1 + random.nextInt(9) - line.quantity);
+                        }
+                    }
+                    case 3 -> {
+                        if (line != null) {
+                            move(cart, line, -line.quantity);
+                            lines.remove(pack);
+                        }
+                    }
+                    case 4 -> prices[pack] = randomPrice(random);
+                    default -> {
+                        // a line priced before unit prices were stored
+                        if (line != null && random.nextInt(4) == 0) {
+                            line.unitPricePaise = null;
+                        }
+                    }
+                }
+
+                List<CartLineView> view = view(lines, prices);
+                for (CartLineView stale : engine.reconcile(cart, view)) {
+                    lines.values().stream().filter(l -> l.id == stale.itemId()).findFirst()
+                            .ifPresent(l -> l.unitPricePaise = CartPricingEngine.toPaise(stale.price()));
+                }
+
+                long expected = CartPricingEngine.fullSubtotal(view);
+                assertThat(cart.getSubtotalPaise()).as("seed %d op %d", seed, op).isEqualTo(expected);
+                assertThat(cart.getSubtotal()).isEqualByComparingTo(CartPricingEngine.toRupees(expected));
+                assertThat(cart.getShippingCost()).isEqualByComparingTo(expected >= 50_000 ? "0" : "50");
+                assertThat(cart.getTotal()).isEqualByComparingTo(cart.getSubtotal().add(cart.getShippingCost()));
+            }
+        }
+    }
+
+    @Test
+    void shippingUsesHighestMatchingTier() {
+        when(ruleRepository.findByActiveTrueOrderByMinSubtotalPaiseDesc()).thenReturn(List.of(
+                ShippingRule.builder().minSubtotalPaise(100_000L).feePaise(0L).build(),
+                ShippingRule.builder().minSubtotalPaise(30_000L).feePaise(2_500L).build(),
+                ShippingRule.builder().minSubtotalPaise(0L).feePaise(6_000L).build()));
+        ShippingRuleService rules = new ShippingRuleService(ruleRepository, new ConcurrentMapCacheManager());
+
+        assertThat(rules.shippingFor(0)).isEqualTo(6_000);
+        assertThat(rules.shippingFor(29_999)).isEqualTo(6_000);
+        assertThat(rules.shippingFor(30_000)).isEqualTo(2_500);
+        assertThat(rules.shippingFor(100_000)).isZero();
+        // the tiers are read once and then served from the cache
+        verify(ruleRepository, times(1)).findByActiveTrueOrderByMinSubtotalPaiseDesc();
+    }
+
+    @Test
+    void convertsRupeesToPaiseHalfUp() {
+        assertThat(CartPricingEngine.toPaise(new BigDecimal("49.995"))).isEqualTo(5_000);
+        assertThat(CartPricingEngine.toPaise(new BigDecimal("120"))).isEqualTo(12_000);
+        assertThat(CartPricingEngine.toRupees(12_345)).isEqualByComparingTo("123.45");
+    }
+
+    // Mirrors CartService: move the subtotal by the line delta, or invalidate for unpriced lines
+    private void move(Cart cart, Line line, int quantityDelta) {
+        if (line.unitPricePaise == null) {
+            engine.invalidate(cart);
+        } else {
+            engine.applyDelta(cart, CartPricingEngine.lineTotal(line.unitPricePaise, quantityDelta));
+        }
+        line.quantity += quantityDelta;
+    }
+
+    private static List<CartLineView> view(Map<Integer, Line> lines, BigDecimal[] prices) {
+        List<CartLineView> view = new ArrayList<>();
+        for (Line line : lines.values()) {
+            view.add(new CartLineView(line.id, (long) line.pack, "Spice " + line.pack, "Class 1", 100,
+                    prices[line.pack], line.quantity, null, line.unitPricePaise));
+        }
+        return view;
+    }
+
+    private static BigDecimal randomPrice(Random random) {
+        return BigDecimal.valueOf(100 + random.nextInt(40_000), 2);
+    }
+}
@@ -0,0 +1,371 @@
+package com.spiceshop.services;
+
+import com.spiceshop.config.CacheConfig;
+import com.spiceshop.dto.AddToCartRequest;
+import com.spiceshop.dto.CartDTO;
+import com.spiceshop.dto.CartItemDTO;
+import com.spiceshop.dto.UpdateCartItemRequest;
+import com.spiceshop.exceptions.InsufficientStockException;
+import com.spiceshop.exceptions.NotFoundException;
+import com.spiceshop.models.Spice;
+import com.spiceshop.models.SpiceImage;
+import com.spiceshop.models.SpicePack;
+import com.spiceshop.models.SpiceVariant;
+import com.spiceshop.models.User;
+import com.spiceshop.repositorys.CartRepository;
+import com.spiceshop.repositorys.SpiceRepository;
+import com.spiceshop.repositorys.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.transaction.TestTransaction;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * A cart read costs the same number of statements however many lines it holds, and a
+ * mutation hands back the updated cart without a second load.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({CartService.class, CartPricingEngine.class, ShippingRuleService.class, GuestCartTokenService.class, CacheConfig.class})
+class CartServiceTest {
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private SpiceRepository spiceRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long userId;
+    private final List<Long> packIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        User user = new User();
+        user.setFirstName("Asha");
+        user.setLastName("Menon");
+        user.setEmail("asha@example.com");
+        user.setPassword("password123");
+        userId = userRepository.save(user).getId();
+
+        for (int i = 0; i < 12; i++) {
+            Spice spice = new Spice();
+            spice.setName("Spice " + i);
+            SpiceVariant variant = new SpiceVariant();
+            variant.setQualityClass("Class 1");
+            variant.setSpice(spice);
+            SpicePack pack = new SpicePack();
+            pack.setPackWeightInGrams(100);
+            pack.setPrice(new BigDecimal("40"));
+            pack.setStockQuantity(5);
+            pack.setVariant(variant);
+            variant.getPacks().add(pack);
+            spice.getVariants().add(variant);
+            for (int img = 0; img < 2; img++) {
+                SpiceImage image = new SpiceImage("https://cdn.example.com/" + i + "-" + img + ".jpg");
+                image.setSpice(spice);
+                spice.getImages().add(image);
+            }
+            spiceRepository.save(spice);
+            packIds.add(pack.getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void cartReadIsConstantInLineCount() {
+        add(0, 1);
+        long oneLine = countStatements(() -> cartService.getCartDetails(userId));
+
+        for (int i = 1; i < 12; i++) {
+            add(i, 1);
+        }
+        long twelveLines = countStatements(() -> cartService.getCartDetails(userId));
+
+        // cart row + projected lines
+        assertThat(oneLine).isEqualTo(2);
+        assertThat(twelveLines).isEqualTo(oneLine);
+    }
+
+    @Test
+    void mutationsReturnTheUpdatedCart() {
+        CartDTO afterAdd = add(0, 2);
+        assertThat(afterAdd.getItems()).singleElement().satisfies(line -> {
+            assertThat(line.getSpiceName()).isEqualTo("Spice 0");
+            assertThat(line.getQualityClass()).isEqualTo("Class 1");
+            assertThat(line.getImageUrl()).isEqualTo("https://cdn.example.com/0-0.jpg");
+            assertThat(line.getTotalPrice()).isEqualByComparingTo("80");
+        });
+        assertThat(afterAdd.getShippingCost()).isEqualByComparingTo("50");
+
+        Long itemId = afterAdd.getItems().get(0).getId();
+        add(0, 1);
+        CartDTO afterUpdate = cartService.updateCartItemQuantity(userId, itemId, quantity(5));
+        for (int i = 1; i <= 3; i++) {
+            afterUpdate = add(i, 1);
+        }
+        assertThat(afterUpdate.getSubtotal()).isEqualByComparingTo("320");
+
+        CartDTO afterRemove = cartService.removeItemFromCart(userId, itemId);
+        assertThat(afterRemove.getItems()).hasSize(3);
+        assertThat(afterRemove.getTotal()).isEqualByComparingTo("170");
+        assertThat(cartService.getCartItemCount(userId)).isEqualTo(3);
+
+        entityManager.flush();
+        entityManager.clear();
+        assertThat(cartService.getOrCreateCart(userId).getTotal()).isEqualByComparingTo("170");
+    }
+
+    @Test
+    void shippingRulesAreReadOncePerCacheLifetime() {
+        cacheManager.getCache(CacheConfig.SHIPPING_RULES).invalidate();
+        statistics.clear();
+
+        for (int i = 0; i < 3; i++) {
+            add(i, 1);
+        }
+
+        long ruleQueries = Arrays.stream(statistics.getQueries())
+                .filter(query -> query.contains("shipping_rules"))
+                .mapToLong(query -> statistics.getQueryStatistics(query).getExecutionCount())
+                .sum();
+        assertThat(ruleQueries).isEqualTo(1);
+    }
+
+    @Test
+    void updateBeyondStockIsRejectedAndZeroRemoves() {
+        Long itemId = add(0, 1).getItems().get(0).getId();
+
+        assertThatThrownBy(() -> cartService.updateCartItemQuantity(userId, itemId, quantity(6)))
+                .isInstanceOf(InsufficientStockException.class);
+        assertThat(cartService.updateCartItemQuantity(userId, itemId, quantity(0)).getItems()).isEmpty();
+    }
+
+    @Test
+    void priceChangeTriggersFullRecompute() {
+        add(0, 2);
+        add(1, 1);
+        entityManager.flush();
+        entityManager.clear();
+
+        SpicePack pack = entityManager.find(SpicePack.class, packIds.get(0));
+        pack.setPrice(new BigDecimal("300"));
+        entityManager.flush();
+        entityManager.clear();
+
+        CartDTO repriced = cartService.getCartDetails(userId);
+        assertThat(repriced.getSubtotal()).isEqualByComparingTo("640");
+        assertThat(repriced.getShippingCost()).isEqualByComparingTo("0");
+
+        // later deltas build on the new unit price
+        assertThat(add(0, 1).getSubtotal()).isEqualByComparingTo("940");
+    }
+
+    @Test
+    void countIsCachedUntilTheCartChanges() {
+        Long itemId = add(0, 1).getItems().get(0).getId();
+        add(1, 1);
+        // the cache proxy only writes after commit, so run the rest outside the test transaction
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+
+        try {
+            statistics.clear();
+            assertThat(cartService.getCartItemCount(userId)).isEqualTo(2);
+            assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+            assertThat(cartService.getCartItemCount(userId)).isEqualTo(2);
+            assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+            cartService.removeItemFromCart(userId, itemId);
+            assertThat(cartService.getCartItemCount(userId)).isEqualTo(1);
+
+            // no cart row is created just to answer a count
+            assertThat(cartService.getCartItemCount(userId + 1000)).isZero();
+            assertThat(cartRepository.count()).isEqualTo(1);
+        } finally {
+            TestTransaction.start();
+            cartRepository.deleteAll();
+            spiceRepository.deleteAll();
+            userRepository.deleteAll();
+            TestTransaction.flagForCommit();
+            TestTransaction.end();
+        }
+    }
+
+    @Test
+    void viewingAnEmptyCartDoesNotCreateOne() {
+        CartDTO cart = cartService.getCartDetails(userId);
+
+        assertThat(cart.getItems()).isEmpty();
+        assertThat(cart.getTotal()).isEqualByComparingTo("50");
+        assertThat(cartRepository.count()).isZero();
+    }
+
+    @Test
+    void mutationForADeletedUserIsNotFound() {
+        AddToCartRequest request = new AddToCartRequest();
+        request.setSpicePackId(packIds.get(0));
+        request.setQuantity(1);
+
+        assertThatThrownBy(() -> cartService.addItemToCart(999_999L, request))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessage("User not found");
+    }
+
+    @Test
+    void guestCartIsPricedWithOneReadAndNoWrites() {
+        Map<Long, Integer> lines = new LinkedHashMap<>();
+        lines.put(packIds.get(3), 2);
+        lines.put(999_999L, 1);
+        lines.put(packIds.get(1), 1);
+
+        CartDTO cart = cartService.getGuestCart(lines);
+        long statements = countStatements(() -> cartService.getGuestCart(lines));
+
+        // just the pack lines once the shipping tiers are cached
+        assertThat(statements).isEqualTo(1);
+        assertThat(statistics.getEntityInsertCount() + statistics.getEntityUpdateCount()).isZero();
+        // token order is kept and the unknown pack drops out
+        assertThat(cart.getItems()).extracting(CartItemDTO::getSpicePackId)
+                .containsExactly(packIds.get(3), packIds.get(1));
+        assertThat(cart.getItems().get(0).getId()).isEqualTo(packIds.get(3));
+        assertThat(cart.getSubtotal()).isEqualByComparingTo("120");
+        assertThat(cart.getTotal()).isEqualByComparingTo("170");
+        assertThat(cartRepository.count()).isZero();
+    }
+
+    @Test
+    void guestMutationsWorkOnTheTokenLines() {
+        Map<Long, Integer> lines = new LinkedHashMap<>();
+        AddToCartRequest request = new AddToCartRequest();
+        request.setSpicePackId(packIds.get(0));
+        request.setQuantity(2);
+        cartService.addGuestItem(lines, request);
+        CartDTO cart = cartService.addGuestItem(lines, request);
+        assertThat(cart.getItems()).singleElement().satisfies(line -> assertThat(line.getQuantity()).isEqualTo(4));
+
+        assertThatThrownBy(() -> cartService.updateGuestItem(lines, packIds.get(0), quantity(6)))
+                .isInstanceOf(InsufficientStockException.class);
+        assertThat(cartService.updateGuestItem(lines, packIds.get(0), quantity(1)).getSubtotal()).isEqualByComparingTo("40");
+        assertThat(cartService.removeGuestItem(lines, packIds.get(0)).getItems()).isEmpty();
+
+        request.setSpicePackId(999_999L);
+        assertThatThrownBy(() -> cartService.addGuestItem(lines, request))
+                .isInstanceOf(NotFoundException.class);
+        assertThat(cartRepository.count()).isZero();
+    }
+
+    @Test
+    void guestCartMergesAtLoginWithoutPerLineEntityWork() {
+        add(0, 2);
+        entityManager.flush();
+        entityManager.clear();
+
+        Map<Long, Integer> guest = new LinkedHashMap<>();
+        guest.put(packIds.get(0), 3);
+        for (int i = 2; i < 12; i++) {
+            guest.put(packIds.get(i), 1);
+        }
+        guest.put(999_999L, 4);
+
+        statistics.clear();
+        cartService.mergeGuestCart(userId, guest);
+        entityManager.flush();
+        // through Hibernate only the cart lookup and its invalidated subtotal; the lines go as two JDBC batches
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        entityManager.clear();
+
+        CartDTO merged = cartService.getCartDetails(userId);
+        assertThat(merged.getItems()).hasSize(11);
+        assertThat(merged.getItems().get(0).getQuantity()).isEqualTo(5);
+        assertThat(merged.getSubtotal()).isEqualByComparingTo("600");
+
+        // merged lines were stamped with their unit price on that read, so deltas work again
+        assertThat(add(2, 1).getSubtotal()).isEqualByComparingTo("640");
+    }
+
+    @Test
+    void mergeCreatesTheCartForAFirstTimeBuyer() {
+        cartService.mergeGuestCart(userId, new LinkedHashMap<>(Map.of(packIds.get(4), 2)));
+        entityManager.flush();
+        entityManager.clear();
+
+        CartDTO merged = cartService.getCartDetails(userId);
+        assertThat(merged.getItems()).singleElement().satisfies(line -> assertThat(line.getQuantity()).isEqualTo(2));
+        assertThat(merged.getTotal()).isEqualByComparingTo("130");
+    }
+
+    @Test
+    void clearCartDropsTheCartWithoutLoadingIt() {
+        for (int i = 0; i < 5; i++) {
+            add(i, 1);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics.clear();
+        cartService.clearCart(userId);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(cartRepository.count()).isZero();
+    }
+
+    private CartDTO add(int pack, int qty) {
+        AddToCartRequest request = new AddToCartRequest();
+        request.setSpicePackId(packIds.get(pack));
+        request.setQuantity(qty);
+        return cartService.addItemToCart(userId, request);
+    }
+
+    private static UpdateCartItemRequest quantity(int qty) {
+        UpdateCartItemRequest request = new UpdateCartItemRequest();
+        request.setQuantity(qty);
+        return request;
+    }
+
+    private long countStatements(Supplier<CartDTO> read) {
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+        read.get();
+        return statistics.getPrepareStatementCount();
+    }
+}
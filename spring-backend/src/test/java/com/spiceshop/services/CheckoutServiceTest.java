@@ -0,0 +1,226 @@
+package com.spiceshop.services;
+
+import com.spiceshop.config.CacheConfig;
+import com.spiceshop.dto.AuthenticatedUser;
+import com.spiceshop.dto.OrderRequest;
+import com.spiceshop.dto.OrderResponse;
+import com.spiceshop.exceptions.CustomException;
+import com.spiceshop.exceptions.PaymentGatewayException;
+import com.spiceshop.models.*;
+import com.spiceshop.repositorys.CartRepository;
+import com.spiceshop.repositorys.OrderRepository;
+import com.spiceshop.repositorys.SpiceRepository;
+import com.spiceshop.repositorys.StockReservationRepository;
+import com.spiceshop.repositorys.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * The gateway is called with no transaction open and only after the PENDING order has been
+ * committed; a failed call cancels the order and returns the held stock.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "razorpay.key_id=test",
+        "razorpay.key_secret=test"
+})
+@Import({CheckoutService.class, OrderService.class, ShippingRuleService.class, StockLedgerService.class,
+        StockReservationService.class, CheckoutServiceTest.StubGatewayConfig.class, CacheConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CheckoutServiceTest {
+
+    @MockitoBean
+    private EmailService emailService;
+
+    @MockitoBean
+    private CartService cartService;
+
+    @MockitoBean
+    private SpiceService spiceService;
+
+    @Autowired
+    private CheckoutService checkoutService;
+
+    @Autowired
+    private StubGateway gateway;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private StockReservationRepository reservationRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private SpiceRepository spiceRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+    private SpicePack pack;
+
+    @BeforeEach
+    void setUp() {
+        Spice spice = new Spice();
+        spice.setName("Cardamom");
+        SpiceVariant variant = new SpiceVariant();
+        variant.setQualityClass("Class 1");
+        variant.setSpice(spice);
+        pack = new SpicePack();
+        pack.setPackWeightInGrams(100);
+        pack.setPrice(new BigDecimal("120"));
+        pack.setStockQuantity(10);
+        pack.setVariant(variant);
+        variant.getPacks().add(pack);
+        spice.getVariants().add(variant);
+        spiceRepository.save(spice);
+
+        user = new User();
+        user.setFirstName("Asha");
+        user.setLastName("Menon");
+        user.setEmail("asha@example.com");
+        user.setPassword("password123");
+        userRepository.save(user);
+
+        Cart cart = new Cart();
+        cart.setUser(user);
+        CartItem item = new CartItem();
+        item.setCart(cart);
+        item.setSpicePack(pack);
+        item.setQuantity(3);
+        cart.getItems().add(item);
+        cartRepository.save(cart);
+        gateway.reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reservationRepository.deleteAll();
+        orderRepository.deleteAll();
+        cartRepository.deleteAll();
+        spiceRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void gatewayIsCalledOutsideAnyTransactionAfterTheOrderCommits() {
+        OrderResponse response = checkoutService.placeOrder(razorpayRequest(), principal(user));
+
+        assertThat(gateway.transactionActiveDuringCall).isFalse();
+        assertThat(gateway.committedPendingOrdersDuringCall).isEqualTo(1);
+        assertThat(gateway.lastAmountPaise).isEqualTo(41_000);
+        assertThat(response.getRazorpayOrderId()).isEqualTo("order_stub_1");
+
+        String gatewayIds = jdbcTemplate.queryForObject(
+                "SELECT o.razorpay_order_id || '/' || p.gateway_order_id FROM orders o JOIN payments p ON p.order_id = o.id WHERE o.id = ?",
+                String.class, response.getOrderId());
+        assertThat(gatewayIds).isEqualTo("order_stub_1/order_stub_1");
+        assertThat(stock()).isEqualTo(7);
+    }
+
+    @Test
+    void failedGatewayCallCancelsTheOrderAndReleasesStock() {
+        gateway.failWith = new PaymentGatewayException("Payment gateway timed out");
+
+        assertThatThrownBy(() -> checkoutService.placeOrder(razorpayRequest(), principal(user)))
+                .isInstanceOf(CustomException.class);
+
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+                "SELECT o.order_status, o.payment_status, p.failure_reason FROM orders o JOIN payments p ON p.order_id = o.id");
+        assertThat(row.get("ORDER_STATUS")).isEqualTo("CANCELLED");
+        assertThat(row.get("PAYMENT_STATUS")).isEqualTo("FAILED");
+        assertThat(row.get("FAILURE_REASON")).isEqualTo("Payment gateway timed out");
+        assertThat(stock()).isEqualTo(10);
+    }
+
+    private int stock() {
+        return jdbcTemplate.queryForObject("SELECT stock_quantity FROM spice_pack WHERE id = ?", Integer.class, pack.getId());
+    }
+
+    private static OrderRequest razorpayRequest() {
+        return OrderRequest.builder()
+                .paymentMethod("razorpay")
+                .shippingAddress(OrderRequest.AddressDto.builder()
+                        .firstName("Asha").lastName("Menon").addressLine1("12 Market Road")
+                        .city("Kochi").state("Kerala").pinCode("682001").phone("9876543210")
+                        .build())
+                .build();
+    }
+
+    // Local stand-in for Razorpay that records what the world looked like when it was called
+    static class StubGateway implements PaymentGateway {
+
+        private final JdbcTemplate jdbcTemplate;
+        private int calls;
+        boolean transactionActiveDuringCall;
+        long committedPendingOrdersDuringCall;
+        long lastAmountPaise;
+        PaymentGatewayException failWith;
+
+        StubGateway(JdbcTemplate jdbcTemplate) {
+            this.jdbcTemplate = jdbcTemplate;
+        }
+
+        void reset() {
+            calls = 0;
+            failWith = null;
+        }
+
+        @Override
+        public String createOrder(long amountPaise, String currency, String receipt, Map<String, Object> notes) {
+            transactionActiveDuringCall = TransactionSynchronizationManager.isActualTransactionActive();
+            committedPendingOrdersDuringCall = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM orders WHERE order_status = 'PENDING' AND order_number = ?", Long.class, receipt);
+            lastAmountPaise = amountPaise;
+            if (failWith != null) {
+                throw failWith;
+            }
+            return "order_stub_" + (++calls);
+        }
+
+        @Override
+        public boolean verifyPaymentSignature(String gatewayOrderId, String paymentId, String signature) {
+            return false;
+        }
+
+        @Override
+        public boolean verifyWebhookSignature(String payload, String signature) {
+            return false;
+        }
+    }
+
+    @TestConfiguration
+    static class StubGatewayConfig {
+        @Bean
+        StubGateway stubGateway(JdbcTemplate jdbcTemplate) {
+            return new StubGateway(jdbcTemplate);
+        }
+    }
+
+    private static AuthenticatedUser principal(User user) {
+        return new AuthenticatedUser(user.getId(), user.getEmail(), user.getFirstName(), user.getLastName(), null);
+    }
+}
@@ -0,0 +1,57 @@
+package com.spiceshop.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+    private final CircuitBreaker breaker = new CircuitBreaker(3, Duration.ofSeconds(30), new Clock() {
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    });
+
+    @Test
+    void opensAfterConsecutiveFailuresAndLetsOneTrialThrough() {
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onFailure();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        now = now.plusSeconds(31);
+        assertThat(breaker.tryAcquire()).isTrue();
+        // only one trial while half open
+        assertThat(breaker.tryAcquire()).isFalse();
+        breaker.onFailure();
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        now = now.plusSeconds(31);
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onSuccess();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+}
@@ -0,0 +1,178 @@
+package com.spiceshop.services;
+
+import com.spiceshop.models.EmailOutbox;
+import com.spiceshop.repositorys.EmailOutboxRepository;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.mail.username=shop@example.com",
+        "mail.outbox.batch-size=10",
+        "mail.outbox.workers=2",
+        "mail.outbox.max-attempts=2",
+        "mail.outbox.poll-interval=PT1H",
+        "mail.outbox.send-timeout=PT2S"
+})
+@Import({EmailDispatcher.class, EmailOutboxService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class EmailDispatcherTest {
+
+    @MockitoBean
+    private JavaMailSender mailSender;
+
+    @Autowired
+    private EmailDispatcher dispatcher;
+
+    @Autowired
+    private EmailOutboxService outboxService;
+
+    @Autowired
+    private EmailOutboxRepository outboxRepository;
+
+    @BeforeEach
+    void setUp() {
+        when(mailSender.createMimeMessage()).thenAnswer(inv -> new MimeMessage(Session.getInstance(new Properties())));
+    }
+
+    @AfterEach
+    void tearDown() {
+        outboxRepository.deleteAll();
+    }
+
+    @Test
+    void sendsEachWorkerShareInOneCall() {
+        for (int i = 0; i < 25; i++) {
+            outboxService.enqueue("user" + i + "@example.com", "Order " + i, "<p>hi</p>");
+        }
+
+        dispatcher.dispatch();
+
+        assertThat(outboxRepository.countByStatus(EmailOutbox.Status.SENT)).isEqualTo(25);
+        // 3 batches of at most 10, two workers each
+        verify(mailSender, atMost(6)).send(any(MimeMessage[].class));
+    }
+
+    @Test
+    void failedMessagesAreRetriedThenParked() {
+        EmailOutbox good = outboxService.enqueue("good@example.com", "Hello", "<p>ok</p>");
+        EmailOutbox bad = outboxService.enqueue("bad@example.com", "Hello", "<p>nope</p>");
+
+        // reject only the message addressed to bad@example.com
+        doAnswer(inv -> {
+            for (Object arg : inv.getArguments()) {
+                MimeMessage message = (MimeMessage) arg;
+                if (message.getAllRecipients()[0].toString().equals("bad@example.com")) {
+                    throw new MailSendException(Map.of(message, new Exception("550 mailbox unavailable")));
+                }
+            }
+            return null;
+        }).when(mailSender).send(any(MimeMessage[].class));
+
+        dispatcher.dispatch();
+
+        EmailOutbox retried = outboxRepository.findById(bad.getId()).orElseThrow();
+        assertThat(outboxRepository.findById(good.getId()).orElseThrow().getStatus()).isEqualTo(EmailOutbox.Status.SENT);
+        assertThat(retried.getStatus()).isEqualTo(EmailOutbox.Status.PENDING);
+        assertThat(retried.getAttempts()).isEqualTo(1);
+        assertThat(retried.getNextAttemptAt()).isAfter(LocalDateTime.now());
+        assertThat(retried.getLastError()).contains("550");
+
+        // not due yet: nothing is claimed
+        assertThat(dispatcher.dispatchBatch()).isZero();
+
+        retried.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+        outboxRepository.save(retried);
+        dispatcher.dispatch();
+
+        EmailOutbox dead = outboxRepository.findById(bad.getId()).orElseThrow();
+        assertThat(dead.getStatus()).isEqualTo(EmailOutbox.Status.DEAD);
+        assertThat(dead.getAttempts()).isEqualTo(2);
+    }
+
+    @Test
+    void hungConnectionIsGivenUpAfterTheSendTimeout() {
+        EmailOutbox mail = outboxService.enqueue("slow@example.com", "Hello", "<p>slow</p>");
+        doAnswer(inv -> {
+            Thread.sleep(60_000);
+            return null;
+        }).when(mailSender).send(any(MimeMessage[].class));
+
+        long started = System.nanoTime();
+        dispatcher.dispatch();
+
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(10));
+        // still claimed, so the claim timeout hands it to a later poll
+        assertThat(outboxRepository.findById(mail.getId()).orElseThrow().getStatus()).isEqualTo(EmailOutbox.Status.SENDING);
+    }
+
+    @Test
+    void mailThatHangsEveryTimeIsParkedAtTheAttemptLimit() {
+        EmailOutbox mail = outboxService.enqueue("slow@example.com", "Hello", "<p>slow</p>");
+        doAnswer(inv -> {
+            Thread.sleep(60_000);
+            return null;
+        }).when(mailSender).send(any(MimeMessage[].class));
+
+        dispatcher.dispatch();
+        expireClaim(mail.getId());
+        dispatcher.dispatch();
+
+        EmailOutbox reclaimed = outboxRepository.findById(mail.getId()).orElseThrow();
+        assertThat(reclaimed.getStatus()).isEqualTo(EmailOutbox.Status.SENDING);
+        assertThat(reclaimed.getAttempts()).isEqualTo(1);
+
+        expireClaim(mail.getId());
+        dispatcher.dispatch();
+
+        EmailOutbox dead = outboxRepository.findById(mail.getId()).orElseThrow();
+        assertThat(dead.getStatus()).isEqualTo(EmailOutbox.Status.DEAD);
+        assertThat(dead.getAttempts()).isEqualTo(2);
+        assertThat(dead.getLastError()).contains("claim timeout");
+        verify(mailSender, times(2)).send(any(MimeMessage[].class));
+    }
+
+    @Test
+    void connectionFailureRetriesWholeBatch() {
+        outboxService.enqueue("a@example.com", "Hello", "<p>a</p>");
+        outboxService.enqueue("b@example.com", "Hello", "<p>b</p>");
+        doThrow(new org.springframework.mail.MailAuthenticationException("auth failed"))
+                .when(mailSender).send(any(MimeMessage[].class));
+
+        dispatcher.dispatch();
+
+        assertThat(outboxRepository.countByStatus(EmailOutbox.Status.PENDING)).isEqualTo(2);
+        assertThat(outboxRepository.countByStatus(EmailOutbox.Status.SENDING)).isZero();
+    }
+
+    private void expireClaim(Long id) {
+        EmailOutbox mail = outboxRepository.findById(id).orElseThrow();
+        mail.setClaimedAt(LocalDateTime.now().minusHours(1));
+        outboxRepository.save(mail);
+    }
+}
@@ -0,0 +1,64 @@
+package com.spiceshop.services;
+
+import com.spiceshop.dto.OrderConfirmationEmailModel;
+import com.spiceshop.dto.OtpEmailModel;
+import com.spiceshop.dto.WelcomeEmailModel;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EmailTemplatesTest {
+
+    private final EmailTemplates templates = new EmailTemplates("https://shop.example.com");
+
+    @Test
+    void escapesDoubleBracesAndFoldsConstants() {
+        EmailTemplate template = EmailTemplate.compile("<a href=\"{{base}}/{{path}}\">{{{label}}}</a>",
+                Map.of("base", "https://x.test"), "path", "label");
+
+        assertThat(template.render("a&b", "<b>hi</b>")).isEqualTo("<a href=\"https://x.test/a&amp;b\"><b>hi</b></a>");
+    }
+
+    @Test
+    void rejectsUnknownVariablesAtCompileTime() {
+        assertThatThrownBy(() -> EmailTemplate.compile("Hi {{name}}", Map.of()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("name");
+        assertThatThrownBy(() -> EmailTemplate.compile("Hi {{name", Map.of(), "name"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rendersOtpAndWelcomeInsideLayout() {
+        String otp = templates.otp(new OtpEmailModel("482913"));
+        String welcome = templates.welcome(new WelcomeEmailModel("<script>", "a@example.com"));
+
+        assertThat(otp).startsWith("<!DOCTYPE html>")
+                .contains("<div class=\"otp-code\">482913</div>")
+                .contains("100% Organic Certified Spices")
+                .contains("mailto:support@aroglinspicefarms.com")
+                .doesNotContain("{{");
+        assertThat(welcome).contains("Welcome to the Spice Family, &lt;script&gt;!")
+                .contains("href=\"https://shop.example.com/my-profile\"")
+                .doesNotContain("<script>");
+    }
+
+    @Test
+    void rendersOrderRowsAndTotals() {
+        OrderConfirmationEmailModel model = new OrderConfirmationEmailModel(7L, "PENDING", List.of(
+                new OrderConfirmationEmailModel.Line("Cardamom", "Class 1", "100g", 2, new BigDecimal("240")),
+                new OrderConfirmationEmailModel.Line("Pepper", "Standard", "250g", 1, null)),
+                new BigDecimal("240"), new BigDecimal("60.005"), new BigDecimal("300.005"));
+
+        String html = templates.orderConfirmation(model);
+
+        assertThat(html).contains("<strong>Cardamom</strong>", "Class 1 • 100g", "₹240.00", "₹0.00",
+                "₹60.01", "₹300.01", "/my-profile/order-details/7", "<strong>Order Status:</strong> PENDING");
+        assertThat(html.split("<tr>", -1)).hasSize(4);
+    }
+}
@@ -0,0 +1,24 @@
+package com.spiceshop.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FakePaymentGatewayTest {
+
+    private final FakePaymentGateway gateway = new FakePaymentGateway();
+
+    @Test
+    void signsAndVerifiesPaymentsForItsOwnOrders() {
+        String orderId = gateway.createOrder(41_000, "INR", "ORD-1", Map.of("order_id", 7L));
+        String signature = gateway.signPayment(orderId, "pay_1");
+
+        assertThat(gateway.order(orderId).amountPaise()).isEqualTo(41_000);
+        assertThat(gateway.verifyPaymentSignature(orderId, "pay_1", signature)).isTrue();
+        assertThat(gateway.verifyPaymentSignature(orderId, "pay_2", signature)).isFalse();
+        assertThat(gateway.verifyPaymentSignature("order_unknown", "pay_1", gateway.signPayment("order_unknown", "pay_1"))).isFalse();
+        assertThat(gateway.verifyPaymentSignature(orderId, "pay_1", null)).isFalse();
+    }
+}
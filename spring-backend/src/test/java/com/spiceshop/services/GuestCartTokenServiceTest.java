@@ -0,0 +1,58 @@
+package com.spiceshop.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GuestCartTokenServiceTest {
+
+    private final GuestCartTokenService tokens = new GuestCartTokenService("test-secret", 3, 10, Duration.ofDays(30));
+
+    @Test
+    void roundTripsLinesInOrder() {
+        Map<Long, Integer> lines = new LinkedHashMap<>();
+        lines.put(42L, 2);
+        lines.put(7L, 1);
+
+        assertThat(tokens.decode(tokens.encode(lines))).containsExactly(Map.entry(42L, 2), Map.entry(7L, 1));
+        assertThat(tokens.decode(tokens.encode(Map.of()))).isEmpty();
+    }
+
+    @Test
+    void tamperedOrForeignTokensReadAsEmpty() {
+        String token = tokens.encode(Map.of(42L, 2));
+        String forged = Base64.getUrlEncoder().withoutPadding().encodeToString("42:9".getBytes())
+                + token.substring(token.indexOf('.'));
+
+        assertThat(tokens.decode(forged)).isEmpty();
+        assertThat(tokens.decode(new GuestCartTokenService("other", 3, 10, Duration.ofDays(30)).encode(Map.of(42L, 2)))).isEmpty();
+        assertThat(tokens.decode("not-a-token")).isEmpty();
+        assertThat(tokens.decode("%%%.%%%")).isEmpty();
+        assertThat(tokens.decode(null)).isEmpty();
+    }
+
+    @Test
+    void capsLinesAndQuantities() {
+        Map<Long, Integer> lines = new LinkedHashMap<>();
+        for (long id = 1; id <= 5; id++) {
+            lines.put(id, 50);
+        }
+        lines.put(6L, 0);
+
+        Map<Long, Integer> decoded = tokens.decode(tokens.encode(lines));
+        assertThat(decoded).hasSize(3).containsValues(10);
+        assertThat(decoded.keySet()).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void emptyCartClearsTheCookie() {
+        assertThat(tokens.cookie(Map.of(), false).getMaxAge()).isZero();
+        assertThat(tokens.cookie(Map.of(1L, 1), true).toString())
+                .contains("HttpOnly", "Secure", "SameSite=Lax", "Max-Age=2592000");
+    }
+}
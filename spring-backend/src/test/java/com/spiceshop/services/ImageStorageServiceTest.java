@@ -0,0 +1,118 @@
+package com.spiceshop.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageStorageServiceTest {
+
+    private static final String BASE_URL = "https://cdn.example.com/images";
+
+    @TempDir
+    private Path dir;
+
+    private final ImageRenditionService renditionService = new ImageRenditionService(1, 10, 0.8f);
+
+    @AfterEach
+    void tearDown() {
+        renditionService.shutdown();
+    }
+
+    @Test
+    void uploadIsStoredOnceUnderItsHashAndRendered() throws Exception {
+        ImageStorageService storage = new ImageStorageService(dir.toString(), BASE_URL + "/", 40_000_000, renditionService);
+        byte[] png = png(2000, 1000);
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(png));
+
+        String url = storage.store(new ByteArrayInputStream(png));
+        assertThat(url).isEqualTo(BASE_URL + "/" + hash + ".png");
+        assertThat(storage.store(new ByteArrayInputStream(png))).isEqualTo(url);
+
+        Path original = dir.resolve(hash + ".png");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!renditionService.isComplete(original, hash) && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        BufferedImage thumbnail = ImageIO.read(dir.resolve(hash + "-320.jpg").toFile());
+        BufferedImage full = ImageIO.read(dir.resolve(hash + "-1280.jpg").toFile());
+        assertThat(thumbnail.getWidth()).isEqualTo(320);
+        assertThat(thumbnail.getHeight()).isEqualTo(160);
+        assertThat(full.getWidth()).isEqualTo(1280);
+
+        // original plus two renditions, no temporary files left behind
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files.count()).isEqualTo(3);
+        }
+        assertThat(ImageUrls.thumbnail(url)).isEqualTo(BASE_URL + "/" + hash + "-320.jpg");
+        assertThat(ImageUrls.full(url)).isEqualTo(BASE_URL + "/" + hash + "-1280.jpg");
+        assertThat(storage.resolve(hash + "-320.jpg").orElseThrow().fallback()).isFalse();
+    }
+
+    @Test
+    void nonImagesAndOversizedImagesAreRefused() throws IOException {
+        ImageStorageService storage = new ImageStorageService(dir.toString(), BASE_URL, 1_000_000, renditionService);
+
+        assertThatThrownBy(() -> storage.store(new ByteArrayInputStream("<svg/>".getBytes(StandardCharsets.UTF_8))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> storage.store(new ByteArrayInputStream(png(1001, 1000))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("1001x1000");
+
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files.count()).isZero();
+        }
+    }
+
+    @Test
+    void missingRenditionFallsBackToTheOriginal() throws IOException {
+        // Renditions never run: the queue refuses everything
+        ImageRenditionService idle = new ImageRenditionService(1, 1, 0.8f);
+        idle.shutdown();
+        ImageStorageService storage = new ImageStorageService(dir.toString(), BASE_URL, 40_000_000, idle);
+        String url = storage.store(new ByteArrayInputStream(png(40, 20)));
+        String hash = url.substring(url.lastIndexOf('/') + 1, url.lastIndexOf('.'));
+
+        ImageStorageService.StoredImage image = storage.resolve(hash + "-320.jpg").orElseThrow();
+        assertThat(image.fallback()).isTrue();
+        assertThat(image.path()).isEqualTo(dir.resolve(hash + ".png"));
+        assertThat(image.contentType()).isEqualTo("image/png");
+
+        assertThat(storage.resolve("../" + hash + ".png")).isEmpty();
+        assertThat(storage.resolve(hash + ".svg")).isEmpty();
+        assertThat(storage.resolve("0".repeat(64) + "-320.jpg")).isEmpty();
+        // only the widths ImageUrls links to, and only as jpg
+        assertThat(storage.resolve(hash + "-321.jpg")).isEmpty();
+        assertThat(storage.resolve(hash + "-320.png")).isEmpty();
+        assertThat(storage.resolve(hash + "-1280.jpg")).isPresent();
+    }
+
+    @Test
+    void linksThatAreNotUploadsHaveNoRenditions() {
+        assertThat(ImageUrls.thumbnail("https://example.com/pepper.jpg")).isEqualTo("https://example.com/pepper.jpg");
+        assertThat(ImageUrls.thumbnail(null)).isNull();
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, 0x80FF0000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
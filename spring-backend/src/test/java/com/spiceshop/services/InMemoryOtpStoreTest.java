@@ -0,0 +1,101 @@
+package com.spiceshop.services;
+
+import com.spiceshop.exceptions.TooManyOtpRequestsException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InMemoryOtpStoreTest {
+
+    private static final Duration WINDOW = Duration.ofMinutes(15);
+
+    @Test
+    void hundredThousandConcurrentRequestsCountExactly() throws InterruptedException {
+        InMemoryOtpStore store = new InMemoryOtpStore(100_000);
+        OTPService otpService = new OTPService(store);
+        int emails = 20_000;
+        int requestsPerEmail = 6;   // one over the limit for every address
+        AtomicInteger issued = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ConcurrentHashMap<String, String> lastCode = new ConcurrentHashMap<>();
+        CountDownLatch start = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < emails * requestsPerEmail; i++) {
+                String email = "user" + (i % emails) + "@example.com";
+                executor.submit(() -> {
+                    start.await();
+                    try {
+                        lastCode.put(email, otpService.generateOTP(email));
+                        issued.incrementAndGet();
+                    } catch (TooManyOtpRequestsException e) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+        }
+
+        assertThat(issued.get()).isEqualTo(emails * 5);
+        assertThat(rejected.get()).isEqualTo(emails);
+        assertThat(otpService.isOTPRequestBlocked("user0@example.com")).isTrue();
+        assertThat(otpService.isOTPRequestBlocked("someone-else@example.com")).isFalse();
+        assertThat(store.size()).isEqualTo(emails * 2);
+    }
+
+    @Test
+    void wrongGuessesBurnTheCode() {
+        InMemoryOtpStore store = new InMemoryOtpStore(10);
+        Instant now = Instant.now();
+        store.saveCode("a@example.com", "123456", now.plusSeconds(300));
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(store.verifyCode("a@example.com", "000000", now, 5)).isFalse();
+        }
+        assertThat(store.verifyCode("a@example.com", "123456", now, 5)).isTrue();
+        assertThat(store.verifyCode("a@example.com", "000000", now, 5)).isFalse();
+        // fifth strike removed it, so the right code no longer works either
+        assertThat(store.verifyCode("a@example.com", "123456", now, 5)).isFalse();
+    }
+
+    @Test
+    void expiredEntriesAreSweptAndWindowsRestart() {
+        InMemoryOtpStore store = new InMemoryOtpStore(10);
+        Instant now = Instant.now();
+        store.saveCode("a@example.com", "123456", now.plusSeconds(300));
+        store.recordRequest("a@example.com", now, WINDOW);
+        store.recordRequest("a@example.com", now, WINDOW);
+
+        assertThat(store.verifyCode("a@example.com", "123456", now.plusSeconds(301), 5)).isFalse();
+        assertThat(store.recordRequest("a@example.com", now.plus(WINDOW), WINDOW)).isEqualTo(1);
+        assertThat(store.purgeExpired(now.plus(WINDOW).plus(WINDOW), WINDOW)).isEqualTo(1);
+        assertThat(store.size()).isZero();
+    }
+
+    @Test
+    void refusesNewKeysWhenFull() {
+        InMemoryOtpStore store = new InMemoryOtpStore(2);
+        Instant now = Instant.now();
+        store.recordRequest("a@example.com", now, WINDOW);
+        store.recordRequest("b@example.com", now, WINDOW);
+
+        assertThat(store.recordRequest("a@example.com", now, WINDOW)).isEqualTo(2);
+        assertThatThrownBy(() -> store.recordRequest("c@example.com", now, WINDOW))
+                .isInstanceOf(TooManyOtpRequestsException.class);
+        // a closed window frees its slot
+        assertThat(store.recordRequest("c@example.com", now.plus(WINDOW), WINDOW)).isEqualTo(1);
+    }
+}
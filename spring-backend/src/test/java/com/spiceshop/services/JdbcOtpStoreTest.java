@@ -0,0 +1,95 @@
+package com.spiceshop.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "otp.store=jdbc"
+})
+@Import(JdbcOtpStore.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class JdbcOtpStoreTest {
+
+    private static final Duration WINDOW = Duration.ofMinutes(15);
+
+    @Autowired
+    private JdbcOtpStore store;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM otp_codes");
+        jdbcTemplate.update("DELETE FROM otp_request_windows");
+    }
+
+    @Test
+    void concurrentRequestsForOneEmailGetDistinctCounts() throws InterruptedException {
+        int requests = 200;
+        Instant now = Instant.now();
+        ConcurrentLinkedQueue<Integer> counts = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(16)) {
+            for (int i = 0; i < requests; i++) {
+                executor.submit(() -> {
+                    start.await();
+                    counts.add(store.recordRequest("a@example.com", now, WINDOW));
+                    return null;
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+        }
+
+        assertThat(counts).hasSize(requests).doesNotHaveDuplicates();
+        assertThat(store.requestCount("a@example.com", now, WINDOW)).isEqualTo(requests);
+        assertThat(store.recordRequest("a@example.com", now.plus(WINDOW), WINDOW)).isEqualTo(1);
+    }
+
+    @Test
+    void verifyCountsFailuresAndReplacesCodes() {
+        Instant now = Instant.now();
+        store.saveCode("a@example.com", "111111", now.plusSeconds(300));
+        store.saveCode("a@example.com", "123456", now.plusSeconds(300));
+
+        assertThat(store.verifyCode("a@example.com", "111111", now, 3)).isFalse();
+        assertThat(store.verifyCode("a@example.com", "123456", now, 3)).isTrue();
+        assertThat(store.verifyCode("a@example.com", "123456", now.plusSeconds(301), 3)).isFalse();
+        assertThat(store.verifyCode("a@example.com", "000000", now, 3)).isFalse();
+        assertThat(store.verifyCode("a@example.com", "000000", now, 3)).isFalse();
+        // third strike deletes the row
+        assertThat(store.verifyCode("a@example.com", "123456", now, 3)).isFalse();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM otp_codes", Integer.class)).isZero();
+    }
+
+    @Test
+    void purgeDropsExpiredRows() {
+        Instant now = Instant.now();
+        store.saveCode("a@example.com", "123456", now.plusSeconds(300));
+        store.saveCode("b@example.com", "123456", now.plusSeconds(900));
+        store.recordRequest("a@example.com", now, WINDOW);
+
+        assertThat(store.purgeExpired(now.plusSeconds(600), WINDOW)).isEqualTo(1);
+        assertThat(store.purgeExpired(now.plus(WINDOW).plusSeconds(1), WINDOW)).isEqualTo(2);
+    }
+}
@@ -0,0 +1,154 @@
+package com.spiceshop.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The JDBC session repository behind the coalescing wrapper, on H2 with Spring Session's own
+ * schema: reads stop writing, attributes are small, and expired rows go in batches.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class JdbcSessionStoreTest {
+
+    private static final Duration TIMEOUT = Duration.ofMinutes(60);
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final AtomicInteger sessionUpdates = new AtomicInteger();
+    private JdbcTemplate jdbcTemplate;
+    private CoalescingSessionRepository<?> repository;
+
+    @BeforeEach
+    void setUp() {
+        new ResourceDatabasePopulator(new ClassPathResource("org/springframework/session/jdbc/schema-h2.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource) {
+            @Override
+            public int update(String sql, PreparedStatementSetter pss) {
+                if (sql.startsWith("UPDATE")) {
+                    sessionUpdates.incrementAndGet();
+                }
+                return super.update(sql, pss);
+            }
+        };
+        JdbcIndexedSessionRepository jdbcRepository = new JdbcIndexedSessionRepository(jdbcTemplate, new TransactionTemplate(transactionManager));
+        jdbcRepository.setDefaultMaxInactiveInterval(TIMEOUT);
+        jdbcRepository.setConversionService(SessionAttributeCodec.conversionService(getClass().getClassLoader()));
+        repository = new CoalescingSessionRepository<>(jdbcRepository, 0.1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        new ResourceDatabasePopulator(new ClassPathResource("org/springframework/session/jdbc/schema-drop-h2.sql")).execute(dataSource);
+    }
+
+    @Test
+    void readOnlyRequestsWriteTheAccessTimeOncePerFlushWindow() {
+        Instant start = Instant.now();
+        String id = login(start);
+
+        sessionUpdates.set(0);
+        for (int minute = 1; minute < 6; minute++) {
+            touch(id, start.plus(Duration.ofMinutes(minute)));
+        }
+        assertThat(sessionUpdates).hasValue(0);
+        assertThat(storedAccessTime(id)).isEqualTo(start.toEpochMilli());
+
+        // 6 minutes is 10% of the timeout
+        touch(id, start.plus(Duration.ofMinutes(6)));
+        assertThat(sessionUpdates).hasValue(1);
+        assertThat(storedAccessTime(id)).isEqualTo(start.plus(Duration.ofMinutes(6)).toEpochMilli());
+    }
+
+    @Test
+    void aChangedSessionCarriesTheAccessTimeAlong() {
+        Instant start = Instant.now();
+        String id = login(start);
+
+        var session = repository.findById(id);
+        session.setLastAccessedTime(start.plus(Duration.ofMinutes(1)));
+        session.setAttribute("adminEmail", "admin@example.com");
+        save(session);
+
+        assertThat(storedAccessTime(id)).isEqualTo(start.plus(Duration.ofMinutes(1)).toEpochMilli());
+        assertThat(repository.findById(id).<String>getAttribute("adminEmail")).isEqualTo("admin@example.com");
+    }
+
+    @Test
+    void storesTheUserIdCompactlyAndStillReadsJavaSerializedRows() {
+        String id = login(Instant.now());
+
+        byte[] userId = jdbcTemplate.queryForObject(
+                "SELECT ATTRIBUTE_BYTES FROM SPRING_SESSION_ATTRIBUTES WHERE ATTRIBUTE_NAME = 'userId'", byte[].class);
+        assertThat(userId).hasSize(9);
+
+        // a row written before the codec
+        jdbcTemplate.update("UPDATE SPRING_SESSION_ATTRIBUTES SET ATTRIBUTE_BYTES = ? WHERE ATTRIBUTE_NAME = 'userId'",
+                (Object) new SerializingConverter().convert(7L));
+        assertThat(repository.findById(id).<Long>getAttribute("userId")).isEqualTo(7L);
+    }
+
+    @Test
+    void sweeperPurgesExpiredSessionsInBatches() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(login(Instant.now()));
+        }
+        jdbcTemplate.update("UPDATE SPRING_SESSION SET EXPIRY_TIME = 0 WHERE SESSION_ID IN (?, ?, ?)",
+                ids.get(0), ids.get(1), ids.get(2));
+
+        assertThat(new ExpiredSessionSweeper(jdbcTemplate, "SPRING_SESSION", 2).purgeExpired()).isEqualTo(3);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM SPRING_SESSION", Integer.class)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM SPRING_SESSION_ATTRIBUTES", Integer.class)).isEqualTo(2);
+    }
+
+    private String login(Instant at) {
+        var session = repository.createSession();
+        session.setLastAccessedTime(at);
+        session.setAttribute(AuthenticatedUserResolver.SESSION_USER_ID, 42L);
+        save(session);
+        return session.getId();
+    }
+
+    // What SessionRepositoryFilter does for a request that only reads the session
+    private void touch(String id, Instant at) {
+        var session = repository.findById(id);
+        session.setLastAccessedTime(at);
+        save(session);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void save(CoalescingSessionRepository.CoalescedSession session) {
+        ((CoalescingSessionRepository) repository).save(session);
+    }
+
+    private long storedAccessTime(String id) {
+        return jdbcTemplate.queryForObject("SELECT LAST_ACCESS_TIME FROM SPRING_SESSION WHERE SESSION_ID = ?", Long.class, id);
+    }
+}
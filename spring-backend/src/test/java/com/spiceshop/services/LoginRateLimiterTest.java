@@ -0,0 +1,59 @@
+package com.spiceshop.services;
+
+import com.spiceshop.exceptions.TooManyLoginAttemptsException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LoginRateLimiterTest {
+
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+
+    // 4 attempts per address, one back every second; 2 per account, one back every 10 seconds
+    private final LoginRateLimiter limiter = new LoginRateLimiter(4, Duration.ofSeconds(1), 2, Duration.ofSeconds(10), 100);
+
+    @Test
+    void accountBucketEmptiesAndRefillsOverTime() {
+        long now = 0;
+        limiter.acquire("10.0.0.1", "asha@example.com", now);
+        limiter.acquire("10.0.0.2", "Asha@Example.com ", now);
+
+        assertThatThrownBy(() -> limiter.acquire("10.0.0.3", "asha@example.com", 0))
+                .isInstanceOf(TooManyLoginAttemptsException.class)
+                .extracting(e -> ((TooManyLoginAttemptsException) e).getRetryAfterSeconds())
+                .isEqualTo(10L);
+
+        assertThatCode(() -> limiter.acquire("10.0.0.3", "asha@example.com", 10 * SECOND)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void throttledAddressDoesNotDrainAccountBuckets() {
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire("10.0.0.1", "user" + i + "@example.com", 0);
+        }
+        assertThatThrownBy(() -> limiter.acquire("10.0.0.1", "asha@example.com", 0))
+                .isInstanceOf(TooManyLoginAttemptsException.class)
+                .extracting(e -> ((TooManyLoginAttemptsException) e).getRetryAfterSeconds())
+                .isEqualTo(1L);
+
+        // The rejected attempt above took nothing from asha's bucket
+        limiter.acquire("10.0.0.2", "asha@example.com", 0);
+        limiter.acquire("10.0.0.3", "asha@example.com", 0);
+    }
+
+    @Test
+    void fullBucketsAreTrimmedWhenTheMapReachesItsCap() {
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire("10.0.1." + i, null, 0);
+        }
+        assertThat(limiter.size()).isEqualTo(100);
+
+        // Every bucket has refilled by then, so they are dropped to make room
+        limiter.acquire("10.0.2.1", null, 10 * SECOND);
+        assertThat(limiter.size()).isEqualTo(1);
+    }
+}
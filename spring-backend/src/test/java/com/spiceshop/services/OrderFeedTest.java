@@ -0,0 +1,220 @@
+package com.spiceshop.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spiceshop.config.CacheConfig;
+import com.spiceshop.dto.OrderFeedFilter;
+import com.spiceshop.dto.OrderHistoryDto;
+import com.spiceshop.models.*;
+import com.spiceshop.repositorys.OrderRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Admin order feed: filters, a fixed statement count per page, and the streamed export.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "razorpay.key_id=test",
+        "razorpay.key_secret=test"
+})
+@Import({OrderService.class, ShippingRuleService.class, CacheConfig.class})
+class OrderFeedTest {
+
+    // count + id page + orders/users/items/packs/variants/spices + images
+    private static final long MAX_STATEMENTS_PER_PAGE = 4;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    @MockitoBean
+    private CartService cartService;
+
+    @MockitoBean
+    private SpiceService spiceService;
+
+    @MockitoBean
+    private StockLedgerService stockLedgerService;
+
+    @MockitoBean
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        seed(30);
+    }
+
+    @Test
+    void feedPageUsesConstantNumberOfStatements() {
+        long small = countStatements(() -> orderService.getOrderFeed(new OrderFeedFilter(), 2, 5));
+        long large = countStatements(() -> orderService.getOrderFeed(new OrderFeedFilter(), 1, 25));
+
+        assertThat(small).isLessThanOrEqualTo(MAX_STATEMENTS_PER_PAGE);
+        assertThat(large).isEqualTo(small);
+    }
+
+    @Test
+    void feedAppliesFiltersNewestFirst() {
+        OrderFeedFilter filter = OrderFeedFilter.builder()
+                .orderStatus(Order.OrderStatus.SHIPPED)
+                .email("CUSTOMER1")
+                .from(LocalDate.now().minusDays(1))
+                .to(LocalDate.now())
+                .build();
+
+        Page<OrderHistoryDto> page = orderService.getOrderFeed(filter, 1, 50);
+
+        assertThat(page.getContent()).isNotEmpty()
+                .allSatisfy(order -> {
+                    assertThat(order.getOrderStatus()).isEqualTo(Order.OrderStatus.SHIPPED);
+                    assertThat(order.getCustomerEmail()).isEqualTo("customer1@example.com");
+                });
+        assertThat(page.getContent()).extracting(OrderHistoryDto::getId)
+                .isSortedAccordingTo((a, b) -> Long.compare(b, a));
+
+        OrderFeedFilter tomorrow = OrderFeedFilter.builder().from(LocalDate.now().plusDays(1)).build();
+        assertThat(orderService.getOrderFeed(tomorrow, 1, 10).getTotalElements()).isZero();
+
+        OrderFeedFilter byNumber = OrderFeedFilter.builder().query("ord-0007").build();
+        assertThat(orderService.getOrderFeed(byNumber, 1, 10).getContent())
+                .extracting(OrderHistoryDto::getOrderNumber).containsExactly("ORD-0007");
+    }
+
+    @Test
+    void exportWritesOneLinePerMatchingOrder() {
+        OrderExportService exportService = new OrderExportService(orderRepository, new ObjectMapper().findAndRegisterModules());
+        OrderFeedFilter filter = OrderFeedFilter.builder().paymentStatus(Order.PaymentStatus.COMPLETED).build();
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        long rows = exportService.export(filter, OrderExportService.Format.CSV, csv);
+        List<String> lines = csv.toString(StandardCharsets.UTF_8).lines().toList();
+
+        assertThat(rows).isEqualTo(15);
+        assertThat(lines).hasSize(16);
+        assertThat(lines.get(0)).startsWith("id,orderNumber,");
+        assertThat(lines).anySatisfy(line -> assertThat(line).contains(",\"Customer Doe, Jr\",customer0@example.com,"));
+
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        exportService.export(filter, OrderExportService.Format.NDJSON, ndjson);
+        assertThat(ndjson.toString(StandardCharsets.UTF_8).lines())
+                .hasSize(15)
+                .allSatisfy(line -> assertThat(line).startsWith("{").contains("\"paymentStatus\":\"COMPLETED\""));
+    }
+
+    @Test
+    void csvCellsAreQuotedAndFormulaSafe() {
+        assertThat(OrderExportService.csv("plain")).isEqualTo("plain");
+        assertThat(OrderExportService.csv("a \"b\", c")).isEqualTo("\"a \"\"b\"\", c\"");
+        assertThat(OrderExportService.csv("=SUM(A1)")).isEqualTo("'=SUM(A1)");
+        assertThat(OrderExportService.csv(null)).isEmpty();
+    }
+
+    private long countStatements(Supplier<Page<OrderHistoryDto>> feed) {
+        entityManager.clear();
+        statistics.clear();
+
+        Page<OrderHistoryDto> page = feed.get();
+        assertThat(page.getContent()).allSatisfy(order -> assertThat(order.getItems())
+                .hasSize(2)
+                .allSatisfy(item -> assertThat(item.getImageUrl()).isNotNull()));
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void seed(int orders) {
+        Spice spice = new Spice();
+        spice.setName("Cardamom");
+        spice.setOrigin("Kerala");
+        SpiceVariant variant = new SpiceVariant();
+        variant.setQualityClass("Class 1");
+        variant.setSpice(spice);
+        SpicePack pack = new SpicePack();
+        pack.setPackWeightInGrams(100);
+        pack.setPrice(new BigDecimal("120"));
+        pack.setStockQuantity(100);
+        pack.setVariant(variant);
+        variant.getPacks().add(pack);
+        spice.getVariants().add(variant);
+        SpiceImage image = new SpiceImage("https://cdn.example.com/cardamom.jpg");
+        image.setSpice(spice);
+        spice.getImages().add(image);
+        entityManager.persist(spice);
+
+        User[] users = new User[3];
+        for (int u = 0; u < users.length; u++) {
+            User user = new User();
+            user.setFirstName("Customer");
+            user.setLastName(u == 0 ? "Doe, Jr" : "No" + u);
+            user.setEmail("customer" + u + "@example.com");
+            user.setPassword("password-hash");
+            entityManager.persist(user);
+            users[u] = user;
+        }
+
+        for (int i = 0; i < orders; i++) {
+            Order order = Order.builder()
+                    .orderNumber(String.format("ORD-%04d", i))
+                    .user(users[i % users.length])
+                    .subtotal(new BigDecimal("240"))
+                    .shippingCost(new BigDecimal("50"))
+                    .total(new BigDecimal("290"))
+                    .orderStatus(i % 2 == 0 ? Order.OrderStatus.SHIPPED : Order.OrderStatus.PENDING)
+                    .paymentStatus(i % 2 == 0 ? Order.PaymentStatus.COMPLETED : Order.PaymentStatus.PENDING)
+                    .paymentMethod(Order.PaymentMethod.COD)
+                    .shippingFirstName("Customer")
+                    .shippingLastName("Doe")
+                    .shippingAddressLine1("1 Spice Road")
+                    .shippingCity("Kochi")
+                    .shippingState("Kerala")
+                    .shippingPinCode("682001")
+                    .shippingPhone("9999999999")
+                    .build();
+            for (int line = 0; line < 2; line++) {
+                order.getItems().add(OrderItem.builder()
+                        .order(order)
+                        .spiceName("Cardamom")
+                        .qualityClass("Class 1")
+                        .packWeightInGrams(100)
+                        .unitPrice(new BigDecimal("120"))
+                        .quantity(1)
+                        .spicePack(pack)
+                        .build());
+            }
+            entityManager.persist(order);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+}
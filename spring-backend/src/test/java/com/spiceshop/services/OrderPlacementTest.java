@@ -0,0 +1,180 @@
+package com.spiceshop.services;
+
+import com.spiceshop.config.CacheConfig;
+import com.spiceshop.dto.AuthenticatedUser;
+import com.spiceshop.dto.OrderRequest;
+import com.spiceshop.dto.OrderResponse;
+import com.spiceshop.models.*;
+import com.spiceshop.repositorys.CartRepository;
+import com.spiceshop.repositorys.OrderRepository;
+import com.spiceshop.repositorys.SpiceRepository;
+import com.spiceshop.repositorys.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Placing an order costs the same number of statements however many lines the cart has:
+ * packs are read in one query, stock moves in one batch and the order lines are batch inserted.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.jpa.properties.hibernate.order_inserts=true",
+        "razorpay.key_id=test",
+        "razorpay.key_secret=test"
+})
+@Import({OrderService.class, ShippingRuleService.class, StockLedgerService.class, CacheConfig.class})
+class OrderPlacementTest {
+
+    @MockitoBean
+    private EmailService emailService;
+
+    @MockitoBean
+    private CartService cartService;
+
+    @MockitoBean
+    private SpiceService spiceService;
+
+    @MockitoBean
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private SpiceRepository spiceRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private final List<SpicePack> packs = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        for (int i = 0; i < 10; i++) {
+            Spice spice = new Spice();
+            spice.setName("Spice " + i);
+            SpiceVariant variant = new SpiceVariant();
+            variant.setQualityClass("Class 1");
+            variant.setSpice(spice);
+            SpicePack pack = new SpicePack();
+            pack.setPackWeightInGrams(100);
+            pack.setPrice(new BigDecimal("40"));
+            pack.setStockQuantity(20);
+            pack.setVariant(variant);
+            variant.getPacks().add(pack);
+            spice.getVariants().add(variant);
+            spiceRepository.save(spice);
+            packs.add(pack);
+        }
+    }
+
+    @Test
+    void statementCountDoesNotGrowWithCartLines() throws Exception {
+        User small = userWithCart("small@example.com", 2);
+        User large = userWithCart("large@example.com", 10);
+
+        long twoLines = placeAndCount(small);
+        long tenLines = placeAndCount(large);
+
+        assertThat(tenLines).isEqualTo(twoLines);
+        // order, payment and one row per line
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(12);
+    }
+
+    @Test
+    void codOrderSnapshotsLinesAndTakesStock() throws Exception {
+        User user = userWithCart("buyer@example.com", 3);
+
+        OrderResponse response = orderService.placeOrder(request(), principal(user));
+        entityManager.flush();
+        entityManager.clear();
+
+        Order order = orderRepository.findById(response.getOrderId()).orElseThrow();
+        assertThat(order.getItems()).hasSize(3).allSatisfy(item -> {
+            assertThat(item.getId()).isNotNull();
+            assertThat(item.getSpiceName()).startsWith("Spice ");
+            assertThat(item.getQualityClass()).isEqualTo("Class 1");
+            assertThat(item.getQuantity()).isEqualTo(2);
+        });
+        assertThat(order.getPayments()).singleElement()
+                .satisfies(payment -> assertThat(payment.getAmount()).isEqualByComparingTo("290"));
+        assertThat(order.getTotal()).isEqualByComparingTo("290");
+        assertThat(entityManager.find(SpicePack.class, packs.get(0).getId()).getStockQuantity()).isEqualTo(18);
+        verify(cartService).clearCart(user.getId());
+    }
+
+    private long placeAndCount(User user) throws Exception {
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+        orderService.placeOrder(request(), principal(user));
+        entityManager.flush();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private User userWithCart(String email, int lines) {
+        User user = new User();
+        user.setFirstName("Asha");
+        user.setLastName("Menon");
+        user.setEmail(email);
+        user.setPassword("password123");
+        userRepository.save(user);
+
+        Cart cart = new Cart();
+        cart.setUser(user);
+        for (int i = 0; i < lines; i++) {
+            CartItem item = new CartItem();
+            item.setCart(cart);
+            item.setSpicePack(packs.get(i));
+            item.setQuantity(2);
+            cart.getItems().add(item);
+        }
+        cartRepository.save(cart);
+        return user;
+    }
+
+    private static OrderRequest request() {
+        return OrderRequest.builder()
+                .paymentMethod("cod")
+                .shippingAddress(OrderRequest.AddressDto.builder()
+                        .firstName("Asha").lastName("Menon").addressLine1("12 Market Road")
+                        .city("Kochi").state("Kerala").pinCode("682001").phone("9876543210")
+                        .build())
+                .build();
+    }
+
+    private static AuthenticatedUser principal(User user) {
+        return new AuthenticatedUser(user.getId(), user.getEmail(), user.getFirstName(), user.getLastName(), null);
+    }
+}
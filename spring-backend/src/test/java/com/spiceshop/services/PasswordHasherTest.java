@@ -0,0 +1,88 @@
+package com.spiceshop.services;
+
+import com.spiceshop.exceptions.PasswordHashingBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PasswordHasherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void correctPasswordAtAnOlderCostIsHandedBackRehashed() {
+        String stored = new BCryptPasswordEncoder(4).encode("Secret#123");
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(5);
+        PasswordHasher hasher = new PasswordHasher(encoder, 1, 4, Duration.ofSeconds(5), meterRegistry);
+
+        PasswordHasher.Verification result = hasher.verify("Secret#123", stored);
+        assertThat(result.matches()).isTrue();
+        assertThat(result.upgradedHash()).startsWith("$2a$05$");
+        assertThat(encoder.matches("Secret#123", result.upgradedHash())).isTrue();
+
+        assertThat(hasher.verify("Secret#123", result.upgradedHash()).upgradedHash()).isNull();
+        assertThat(hasher.verify("wrong", stored)).isEqualTo(new PasswordHasher.Verification(false, null));
+        hasher.shutdown();
+    }
+
+    @Test
+    void unknownAccountIsCheckedAgainstTheDummyHash() {
+        int[] checks = {0};
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(4) {
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                checks[0]++;
+                return super.matches(rawPassword, encodedPassword);
+            }
+        };
+        PasswordHasher hasher = new PasswordHasher(encoder, 1, 4, Duration.ofSeconds(5), meterRegistry);
+
+        assertThat(hasher.verify("Secret#123", null).matches()).isFalse();
+        assertThat(checks[0]).isEqualTo(1);
+        hasher.shutdown();
+    }
+
+    @Test
+    void fullQueueRejectsInsteadOfWaiting() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(4) {
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.matches(rawPassword, encodedPassword);
+            }
+        };
+        PasswordHasher hasher = new PasswordHasher(encoder, 1, 1, Duration.ofSeconds(5), meterRegistry);
+        String stored = encoder.encode("Secret#123");
+
+        // One check on the only thread, one in the only queue slot
+        CompletableFuture<PasswordHasher.Verification> first = CompletableFuture.supplyAsync(() -> hasher.verify("Secret#123", stored));
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<PasswordHasher.Verification> second = CompletableFuture.supplyAsync(() -> hasher.verify("Secret#123", stored));
+        while (hasher.queued() == 0) {
+            Thread.onSpinWait();
+        }
+
+        assertThatThrownBy(() -> hasher.verify("Secret#123", stored)).isInstanceOf(PasswordHashingBusyException.class);
+        assertThat(meterRegistry.get(PasswordHasher.METRIC).tag("outcome", "rejected").timer().count()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS).matches()).isTrue();
+        assertThat(second.get(5, TimeUnit.SECONDS).matches()).isTrue();
+        hasher.shutdown();
+    }
+}
@@ -0,0 +1,258 @@
+package com.spiceshop.services;
+
+import com.spiceshop.config.CacheConfig;
+import com.spiceshop.dto.PaymentVerificationRequest;
+import com.spiceshop.dto.PaymentVerificationResponse;
+import com.spiceshop.exceptions.PaymentConflictException;
+import com.spiceshop.models.Order;
+import com.spiceshop.models.Payment;
+import com.spiceshop.models.User;
+import com.spiceshop.repositorys.OrderRepository;
+import com.spiceshop.repositorys.PaymentRepository;
+import com.spiceshop.repositorys.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verification settles a payment once; every repeat is answered without touching stock,
+ * the cart or email. Runs without a test transaction so the verification cache sees commits.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "payment.gateway=fake"
+})
+@Import({PaymentService.class, FakePaymentGateway.class, CacheConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PaymentVerificationTest {
+
+    @MockitoBean
+    private StockLedgerService stockLedgerService;
+
+    @MockitoBean
+    private StockReservationService stockReservationService;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    @MockitoBean
+    private SpiceService spiceService;
+
+    @MockitoBean
+    private CartService cartService;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private FakePaymentGateway gateway;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Order order;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        when(stockReservationService.convert(anyLong())).thenReturn(true);
+        order = pendingOrder("ORD-1");
+    }
+
+    @AfterEach
+    void tearDown() {
+        orderRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void settlesOnceAndAnswersRepeatsFromTheCache() {
+        PaymentVerificationResponse first = paymentService.verifyRazorpayPayment(request("pay_1"), null);
+
+        statistics.clear();
+        PaymentVerificationResponse repeat = paymentService.verifyRazorpayPayment(request("pay_1"), null);
+
+        assertThat(first.isSuccess()).isTrue();
+        assertThat(repeat).isEqualTo(first);
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        verify(stockReservationService, times(1)).convert(order.getId());
+        verify(cartService, times(1)).clearCart(any());
+        verify(emailService, times(1)).sendOrderConfirmationEmail(any());
+
+        Payment payment = paymentRepository.findByGatewayOrderId(order.getRazorpayOrderId()).orElseThrow();
+        assertThat(payment.getStatus()).isEqualTo(Order.PaymentStatus.COMPLETED);
+        assertThat(payment.getTransactionId()).isEqualTo("pay_1");
+        assertThat(payment.getIdempotencyKey()).isEqualTo("pay_1");
+        assertThat(orderRepository.findById(order.getId()).orElseThrow().getOrderStatus())
+                .isEqualTo(Order.OrderStatus.PROCESSING);
+    }
+
+    @Test
+    void repeatUnderANewKeyReadsTheSettledStateInOneStatement() {
+        paymentService.verifyRazorpayPayment(request("pay_1"), "click-1");
+
+        statistics.clear();
+        PaymentVerificationResponse repeat = paymentService.verifyRazorpayPayment(request("pay_1"), "click-2");
+
+        assertThat(repeat.isSuccess()).isTrue();
+        assertThat(repeat.getPaymentStatus()).isEqualTo("COMPLETED");
+        // payment and order fetched together; nothing written
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        verify(stockReservationService, times(1)).convert(order.getId());
+        verify(emailService, times(1)).sendOrderConfirmationEmail(any());
+    }
+
+    @Test
+    void badSignatureAfterSettlementLeavesTheOrderAlone() {
+        paymentService.verifyRazorpayPayment(request("pay_1"), null);
+
+        PaymentVerificationRequest forged = request("pay_1");
+        forged.setRazorpaySignature("forged");
+        PaymentVerificationResponse response = paymentService.verifyRazorpayPayment(forged, "other-key");
+
+        assertThat(response.isSuccess()).isFalse();
+        assertThat(orderRepository.findById(order.getId()).orElseThrow().getPaymentStatus())
+                .isEqualTo(Order.PaymentStatus.COMPLETED);
+        verify(stockReservationService, never()).release(anyLong());
+    }
+
+    @Test
+    void badSignatureOnAPendingPaymentLeavesItPayable() {
+        PaymentVerificationRequest forged = request("pay_1");
+        forged.setRazorpaySignature("forged");
+
+        PaymentVerificationResponse rejected = paymentService.verifyRazorpayPayment(forged, null);
+
+        assertThat(rejected.isSuccess()).isFalse();
+        assertThat(rejected.getPaymentStatus()).isEqualTo("PENDING");
+        Payment payment = paymentRepository.findByGatewayOrderId(order.getRazorpayOrderId()).orElseThrow();
+        assertThat(payment.getStatus()).isEqualTo(Order.PaymentStatus.PENDING);
+        assertThat(payment.getFailureCode()).isEqualTo("SIGNATURE_MISMATCH");
+        verify(stockReservationService, never()).release(anyLong());
+
+        // the buyer's own verification still goes through
+        assertThat(paymentService.verifyRazorpayPayment(request("pay_1"), null).isSuccess()).isTrue();
+        assertThat(orderRepository.findById(order.getId()).orElseThrow().getOrderStatus())
+                .isEqualTo(Order.OrderStatus.PROCESSING);
+    }
+
+    @Test
+    void onePaymentIdCannotSettleTwoOrders() {
+        paymentService.verifyRazorpayPayment(request("pay_1"), null);
+        Order other = pendingOrder("ORD-2");
+
+        Payment payment = paymentRepository.findByGatewayOrderId(other.getRazorpayOrderId()).orElseThrow();
+        payment.setTransactionId("pay_1");
+        assertThatThrownBy(() -> paymentRepository.saveAndFlush(payment))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(orderRepository.findById(other.getId()).orElseThrow().getPaymentStatus())
+                .isEqualTo(Order.PaymentStatus.PENDING);
+    }
+
+    @Test
+    void aPaymentIdAlreadyUsedElsewhereIsAConflict() {
+        paymentService.verifyRazorpayPayment(request("pay_1"), null);
+        Order other = pendingOrder("ORD-2");
+
+        assertThatThrownBy(() -> paymentService.verifyRazorpayPayment(request(other, "pay_1"), null))
+                .isInstanceOf(PaymentConflictException.class);
+        assertThat(orderRepository.findById(other.getId()).orElseThrow().getPaymentStatus())
+                .isEqualTo(Order.PaymentStatus.PENDING);
+    }
+
+    @Test
+    void anIdempotencyKeyIsScopedToItsOrder() {
+        PaymentVerificationResponse first = paymentService.verifyRazorpayPayment(request("pay_1"), "checkout");
+        Order other = pendingOrder("ORD-2");
+
+        PaymentVerificationResponse second = paymentService.verifyRazorpayPayment(request(other, "pay_2"), "checkout");
+
+        assertThat(first.getOrderId()).isEqualTo(order.getId());
+        assertThat(second.isSuccess()).isTrue();
+        assertThat(second.getOrderId()).isEqualTo(other.getId());
+        assertThat(paymentRepository.findByGatewayOrderId(other.getRazorpayOrderId()).orElseThrow().getIdempotencyKey())
+                .isEqualTo("checkout");
+    }
+
+    private PaymentVerificationRequest request(String paymentId) {
+        return request(order, paymentId);
+    }
+
+    private PaymentVerificationRequest request(Order order, String paymentId) {
+        String gatewayOrderId = order.getRazorpayOrderId();
+        return PaymentVerificationRequest.builder()
+                .orderId(order.getId())
+                .razorpayOrderId(gatewayOrderId)
+                .razorpayPaymentId(paymentId)
+                .razorpaySignature(gateway.signPayment(gatewayOrderId, paymentId))
+                .build();
+    }
+
+    private Order pendingOrder(String orderNumber) {
+        String gatewayOrderId = gateway.createOrder(12_000, "INR", orderNumber, Map.of());
+        User user = new User();
+        user.setFirstName("Asha");
+        user.setLastName("Menon");
+        user.setEmail(orderNumber + "@example.com");
+        user.setPassword("password123");
+        userRepository.save(user);
+
+        Order pending = Order.builder()
+                .orderNumber(orderNumber)
+                .user(user)
+                .subtotal(new BigDecimal("120"))
+                .shippingCost(BigDecimal.ZERO)
+                .total(new BigDecimal("120"))
+                .orderStatus(Order.OrderStatus.PENDING)
+                .paymentStatus(Order.PaymentStatus.PENDING)
+                .paymentMethod(Order.PaymentMethod.RAZORPAY)
+                .razorpayOrderId(gatewayOrderId)
+                .shippingFirstName("Asha").shippingLastName("Menon")
+                .shippingAddressLine1("12 Market Road").shippingCity("Kochi").shippingState("Kerala")
+                .shippingPinCode("682001").shippingPhone("9876543210")
+                .build();
+        pending.setPayments(new ArrayList<>(List.of(Payment.builder()
+                .order(pending)
+                .paymentMethod(Order.PaymentMethod.RAZORPAY)
+                .amount(new BigDecimal("120"))
+                .status(Order.PaymentStatus.PENDING)
+                .gatewayOrderId(gatewayOrderId)
+                .build())));
+        return orderRepository.save(pending);
+    }
+}
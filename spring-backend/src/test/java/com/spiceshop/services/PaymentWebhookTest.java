@@ -0,0 +1,239 @@
+package com.spiceshop.services;
+
+import com.spiceshop.config.CacheConfig;
+import com.spiceshop.dto.PaymentVerificationRequest;
+import com.spiceshop.models.Order;
+import com.spiceshop.models.Payment;
+import com.spiceshop.models.PaymentWebhookEvent;
+import com.spiceshop.models.User;
+import com.spiceshop.repositorys.OrderRepository;
+import com.spiceshop.repositorys.PaymentRepository;
+import com.spiceshop.repositorys.PaymentWebhookEventRepository;
+import com.spiceshop.repositorys.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Recorded Razorpay deliveries through the inbox: stored once, then applied per order in
+ * arrival order through the same settlement as browser verification.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "payment.gateway=fake",
+        "payment.webhook.max-attempts=2",
+        "payment.webhook.poll-interval=PT1H"
+})
+@Import({PaymentWebhookService.class, PaymentWebhookProcessor.class, PaymentService.class, FakePaymentGateway.class,
+        CacheConfig.class, JacksonAutoConfiguration.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PaymentWebhookTest {
+
+    @MockitoBean
+    private StockLedgerService stockLedgerService;
+
+    @MockitoBean
+    private StockReservationService stockReservationService;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    @MockitoBean
+    private SpiceService spiceService;
+
+    @MockitoBean
+    private CartService cartService;
+
+    @Autowired
+    private PaymentWebhookService webhookService;
+
+    @Autowired
+    private PaymentWebhookProcessor processor;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private FakePaymentGateway gateway;
+
+    @Autowired
+    private PaymentWebhookEventRepository eventRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private Order order;
+
+    @BeforeEach
+    void setUp() {
+        when(stockReservationService.convert(anyLong())).thenReturn(true);
+        order = pendingOrder();
+    }
+
+    @AfterEach
+    void tearDown() {
+        eventRepository.deleteAll();
+        orderRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void storesEachSignedDeliveryOnce() throws IOException {
+        String payload = recorded("payment_captured");
+
+        assertThat(deliver(payload, "evt_1")).isEqualTo(PaymentWebhookService.Outcome.ACCEPTED);
+        assertThat(deliver(payload, "evt_1")).isEqualTo(PaymentWebhookService.Outcome.DUPLICATE);
+        assertThat(webhookService.receive(payload, "forged", "evt_2")).isEqualTo(PaymentWebhookService.Outcome.REJECTED);
+        assertThat(deliver(payload.replace("payment.captured", "refund.created"), "evt_3"))
+                .isEqualTo(PaymentWebhookService.Outcome.IGNORED);
+
+        assertThat(eventRepository.findAll()).singleElement().satisfies(event -> {
+            assertThat(event.getGatewayOrderId()).isEqualTo(order.getRazorpayOrderId());
+            assertThat(event.getPaymentId()).isEqualTo("pay_DESlfW9H8K9uqM");
+            assertThat(event.getStatus()).isEqualTo(PaymentWebhookEvent.Status.RECEIVED);
+        });
+    }
+
+    @Test
+    void capturedEventSettlesThePaymentAndTheBrowserVerificationChangesNothing() throws IOException {
+        deliver(recorded("payment_captured"), "evt_1");
+
+        assertThat(processor.processBatch()).isEqualTo(1);
+
+        Payment payment = paymentRepository.findByGatewayOrderId(order.getRazorpayOrderId()).orElseThrow();
+        assertThat(payment.getStatus()).isEqualTo(Order.PaymentStatus.COMPLETED);
+        assertThat(payment.getTransactionId()).isEqualTo("pay_DESlfW9H8K9uqM");
+        assertThat(orderRepository.findById(order.getId()).orElseThrow().getOrderStatus())
+                .isEqualTo(Order.OrderStatus.PROCESSING);
+        assertThat(eventRepository.findAll()).singleElement()
+                .satisfies(event -> assertThat(event.getStatus()).isEqualTo(PaymentWebhookEvent.Status.PROCESSED));
+
+        // the tab that was left open finally calls verify
+        String gatewayOrderId = order.getRazorpayOrderId();
+        assertThat(paymentService.verifyRazorpayPayment(PaymentVerificationRequest.builder()
+                .orderId(order.getId())
+                .razorpayOrderId(gatewayOrderId)
+                .razorpayPaymentId("pay_DESlfW9H8K9uqM")
+                .razorpaySignature(gateway.signPayment(gatewayOrderId, "pay_DESlfW9H8K9uqM"))
+                .build(), null).isSuccess()).isTrue();
+        verify(stockReservationService, times(1)).convert(order.getId());
+        verify(emailService, times(1)).sendOrderConfirmationEmail(any());
+    }
+
+    @Test
+    void eventsOfOneOrderAreAppliedInArrivalOrder() throws IOException {
+        deliver(recorded("payment_failed"), "evt_1");
+        deliver(recorded("payment_captured"), "evt_2");
+
+        // only the oldest unfinished event of an order is claimable
+        assertThat(processor.processBatch()).isEqualTo(1);
+        Payment afterFailure = paymentRepository.findByGatewayOrderId(order.getRazorpayOrderId()).orElseThrow();
+        assertThat(afterFailure.getStatus()).isEqualTo(Order.PaymentStatus.PENDING);
+        assertThat(afterFailure.getFailureCode()).isEqualTo("BAD_REQUEST_ERROR");
+
+        assertThat(processor.processBatch()).isEqualTo(1);
+        assertThat(paymentRepository.findByGatewayOrderId(order.getRazorpayOrderId()).orElseThrow().getStatus())
+                .isEqualTo(Order.PaymentStatus.COMPLETED);
+        assertThat(processor.processBatch()).isZero();
+    }
+
+    @Test
+    void failingEventBacksOffAndCanBeReplayedOnceDead() throws IOException {
+        when(stockReservationService.convert(anyLong())).thenThrow(new IllegalStateException("ledger unavailable"));
+        deliver(recorded("payment_captured"), "evt_1");
+
+        assertThat(processor.processBatch()).isEqualTo(1);
+        assertThat(processor.processBatch()).isZero();
+        assertThat(eventRepository.findAll()).singleElement().satisfies(event -> {
+            assertThat(event.getStatus()).isEqualTo(PaymentWebhookEvent.Status.RECEIVED);
+            assertThat(event.getLastError()).isEqualTo("ledger unavailable");
+        });
+
+        PaymentWebhookEvent event = eventRepository.findAll().get(0);
+        event.setNextAttemptAt(event.getNextAttemptAt().minusHours(1));
+        eventRepository.save(event);
+        assertThat(processor.processBatch()).isEqualTo(1);
+        assertThat(eventRepository.countByStatus(PaymentWebhookEvent.Status.DEAD)).isEqualTo(1);
+
+        doReturn(true).when(stockReservationService).convert(anyLong());
+        assertThat(webhookService.replayDead()).isEqualTo(1);
+        assertThat(processor.processBatch()).isEqualTo(1);
+        assertThat(eventRepository.countByStatus(PaymentWebhookEvent.Status.PROCESSED)).isEqualTo(1);
+        assertThat(paymentRepository.findByGatewayOrderId(order.getRazorpayOrderId()).orElseThrow().getStatus())
+                .isEqualTo(Order.PaymentStatus.COMPLETED);
+    }
+
+    private PaymentWebhookService.Outcome deliver(String payload, String eventId) {
+        return webhookService.receive(payload, gateway.signWebhook(payload), eventId);
+    }
+
+    // Recorded deliveries, pointed at this test's gateway order
+    private String recorded(String name) throws IOException {
+        try (InputStream in = getClass().getResourceAsStream("/webhooks/" + name + ".json")) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8)
+                    .replace("order_DESlLckIVRkHWj", order.getRazorpayOrderId());
+        }
+    }
+
+    private Order pendingOrder() {
+        User user = new User();
+        user.setFirstName("Asha");
+        user.setLastName("Menon");
+        user.setEmail("asha@example.com");
+        user.setPassword("password123");
+        userRepository.save(user);
+
+        String gatewayOrderId = gateway.createOrder(41_000, "INR", "ORD-1", Map.of());
+        Order pending = Order.builder()
+                .orderNumber("ORD-1")
+                .user(user)
+                .subtotal(new BigDecimal("410"))
+                .shippingCost(BigDecimal.ZERO)
+                .total(new BigDecimal("410"))
+                .orderStatus(Order.OrderStatus.PENDING)
+                .paymentStatus(Order.PaymentStatus.PENDING)
+                .paymentMethod(Order.PaymentMethod.RAZORPAY)
+                .razorpayOrderId(gatewayOrderId)
+                .shippingFirstName("Asha").shippingLastName("Menon")
+                .shippingAddressLine1("12 Market Road").shippingCity("Kochi").shippingState("Kerala")
+                .shippingPinCode("682001").shippingPhone("9876543210")
+                .build();
+        pending.setPayments(new ArrayList<>(List.of(Payment.builder()
+                .order(pending)
+                .paymentMethod(Order.PaymentMethod.RAZORPAY)
+                .amount(new BigDecimal("410"))
+                .status(Order.PaymentStatus.PENDING)
+                .gatewayOrderId(gatewayOrderId)
+                .build())));
+        return orderRepository.save(pending);
+    }
+}
@@ -0,0 +1,145 @@
+package com.spiceshop.services;
+
+import com.spiceshop.exceptions.PaymentGatewayException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the Razorpay gateway against a local HTTP server standing in for api.razorpay.com.
+ */
+class RazorpayPaymentGatewayTest {
+
+    private HttpServer server;
+    private final Deque<Integer> statuses = new ArrayDeque<>();
+    private final List<Integer> clientPorts = new ArrayList<>();
+    private final List<String> requests = new ArrayList<>();
+    private volatile long delayMillis;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RazorpayPaymentGateway gateway;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/v1/orders", this::handle);
+        server.start();
+        gateway = gateway(5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        gateway.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void createsOrdersOverOneKeptAliveConnection() {
+        assertThat(gateway.createOrder(41_000, "INR", "ORD-1", Map.of("order_id", 7))).isEqualTo("order_1");
+        assertThat(gateway.createOrder(500, "INR", "ORD-2", Map.of("order_id", 8))).isEqualTo("order_2");
+
+        assertThat(requests.get(0))
+                .startsWith("Basic " + Base64.getEncoder().encodeToString("key:secret".getBytes()))
+                .contains("\"amount\":41000", "\"receipt\":\"ORD-1\"", "\"order_id\":7");
+        assertThat(clientPorts).hasSize(2);
+        assertThat(clientPorts.get(1)).isEqualTo(clientPorts.get(0));
+        assertThat(meterRegistry.get(RazorpayPaymentGateway.METRIC).tag("operation", "orders.create")
+                .tag("outcome", "success").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void retriesWhenRazorpayAsksToComeBack() {
+        statuses.add(503);
+        statuses.add(429);
+
+        assertThat(gateway.createOrder(100, "INR", "ORD-1", Map.of())).isEqualTo("order_3");
+        assertThat(requests).hasSize(3);
+    }
+
+    @Test
+    void readTimeoutFailsWithoutRetrying() {
+        delayMillis = 2_000;
+
+        assertThatThrownBy(() -> gateway.createOrder(100, "INR", "ORD-1", Map.of()))
+                .isInstanceOf(PaymentGatewayException.class);
+        assertThat(requests).hasSize(1);
+        assertThat(meterRegistry.get(RazorpayPaymentGateway.METRIC).tag("outcome", "io_error").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void circuitOpensAfterRepeatedFailures() {
+        gateway.shutdown();
+        gateway = gateway(2);
+        for (int i = 0; i < 2; i++) {
+            statuses.add(500);
+            assertThatThrownBy(() -> gateway.createOrder(100, "INR", "ORD-1", Map.of()))
+                    .isInstanceOf(PaymentGatewayException.class);
+        }
+
+        assertThatThrownBy(() -> gateway.createOrder(100, "INR", "ORD-1", Map.of()))
+                .isInstanceOf(PaymentGatewayException.class)
+                .hasMessageContaining("circuit open");
+        assertThat(requests).hasSize(2);
+        assertThat(meterRegistry.get(RazorpayPaymentGateway.METRIC).tag("outcome", "short_circuited").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void clientErrorsAreRejectedWithoutTrippingTheCircuit() {
+        gateway.shutdown();
+        gateway = gateway(1);
+        statuses.add(400);
+        assertThatThrownBy(() -> gateway.createOrder(100, "INR", "ORD-1", Map.of()))
+                .isInstanceOf(PaymentGatewayException.class);
+
+        assertThat(gateway.createOrder(100, "INR", "ORD-2", Map.of())).isEqualTo("order_2");
+    }
+
+    private RazorpayPaymentGateway gateway(int failureThreshold) {
+        return new RazorpayPaymentGateway("key", "secret",
+                "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/v1",
+                Duration.ofSeconds(1), Duration.ofMillis(800), 2, Duration.ofMillis(10),
+                failureThreshold, Duration.ofMinutes(1), meterRegistry);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        int status;
+        synchronized (this) {
+            requests.add(exchange.getRequestHeaders().getFirst("Authorization") + " " + body);
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            status = statuses.isEmpty() ? 200 : statuses.poll();
+        }
+        if (delayMillis > 0) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        byte[] response = (status == 200 ? "{\"id\":\"order_" + requests.size() + "\",\"status\":\"created\"}"
+                : "{\"error\":{\"code\":\"SERVER_ERROR\"}}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, response.length);
+        exchange.getResponseBody().write(response);
+        exchange.close();
+    }
+}
@@ -0,0 +1,122 @@
+package com.spiceshop.services;
+
+import com.spiceshop.config.CacheConfig;
+import com.spiceshop.dto.SpiceDto;
+import com.spiceshop.models.Spice;
+import com.spiceshop.models.SpicePack;
+import com.spiceshop.models.SpiceVariant;
+import com.spiceshop.repositorys.SpiceRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs without a test transaction so cache evictions see real commits.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({SpiceService.class, SpiceSearchIndex.class, SpiceFacetService.class, CacheConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SpiceCatalogCacheTest {
+
+    @Autowired
+    private SpiceService spiceService;
+
+    @Autowired
+    private SpiceRepository spiceRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        spiceRepository.findAll().forEach(spice -> spiceService.deleteSpice(spice.getId()));
+    }
+
+    @Test
+    void repeatedReadsAreServedFromCache() {
+        Long id = spiceService.createSpice(spice("Cardamom")).getId();
+
+        spiceService.getSpiceDtoById(id);
+        spiceService.getAllSpiceDtos();
+        statistics.clear();
+        SpiceDto cached = spiceService.getSpiceDtoById(id);
+        List<SpiceDto> all = spiceService.getAllSpiceDtos();
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(cached.getName()).isEqualTo("Cardamom");
+        assertThat(all).extracting(SpiceDto::getId).containsExactly(id);
+        assertThatThrownBy(() -> cached.getVariants().clear()).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void writesEvictTheAffectedSnapshots() {
+        Long id = spiceService.createSpice(spice("Clove")).getId();
+        assertThat(spiceService.getSpiceDtoById(id).getIsAvailable()).isTrue();
+        assertThat(spiceService.getAllSpiceDtos()).hasSize(1);
+
+        spiceService.updateAvailability(id, false);
+        spiceService.createSpice(spice("Nutmeg"));
+
+        assertThat(spiceService.getSpiceDtoById(id).getIsAvailable()).isFalse();
+        assertThat(spiceService.getAllSpiceDtos()).hasSize(2);
+    }
+
+    @Test
+    void stockChangesEvictOnlyTheTouchedSpice() {
+        Long clove = spiceService.createSpice(spice("Clove")).getId();
+        Long pepper = spiceService.createSpice(spice("Pepper")).getId();
+        spiceService.getSpiceDtoById(clove);
+        spiceService.getSpiceDtoById(pepper);
+
+        // nothing to write: facet rows hold no stock
+        statistics.clear();
+        spiceService.onStockChanged(List.of(clove));
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+
+        spiceService.getSpiceDtoById(pepper);
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+
+        spiceService.getSpiceDtoById(clove);
+        assertThat(statistics.getPrepareStatementCount()).isPositive();
+    }
+
+    private Spice spice(String name) {
+        Spice spice = new Spice();
+        spice.setName(name);
+        spice.setOrigin("Kerala");
+        spice.setAvailable(true);
+        SpiceVariant variant = new SpiceVariant();
+        variant.setQualityClass("Class 1");
+        SpicePack pack = new SpicePack();
+        pack.setPackWeightInGrams(100);
+        pack.setPrice(new BigDecimal("120"));
+        pack.setStockQuantity(5);
+        variant.getPacks().add(pack);
+        spice.getVariants().add(variant);
+        return spice;
+    }
+}
@@ -0,0 +1,114 @@
+package com.spiceshop.services;
+
+import com.spiceshop.repositorys.SpiceRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SpiceSearchIndexTest {
+
+    private SpiceSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new SpiceSearchIndex(mock(SpiceRepository.class));
+        ReflectionTestUtils.setField(index, "maxResults", 500);
+        index.put(1L, "Black Pepper", "Bold Malabar peppercorns, sun dried");
+        index.put(2L, "Green Cardamom", "Aromatic pods from Idukki, pairs well with pepper");
+        index.put(3L, "Cinnamon Bark", "True Ceylon cinnamon quills");
+        index.put(4L, "Clove", "Hand picked buds");
+    }
+
+    @Test
+    void nameMatchesRankAboveDescriptionMatches() {
+        assertThat(index.search("pepper")).extracting(SpiceSearchIndex.Hit::spiceId).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void matchesPrefixesAndTypos() {
+        assertThat(index.search("cinna")).extracting(SpiceSearchIndex.Hit::spiceId).containsExactly(3L);
+        assertThat(index.search("cardamon")).extracting(SpiceSearchIndex.Hit::spiceId).containsExactly(2L);
+        assertThat(index.search("peper")).extracting(SpiceSearchIndex.Hit::spiceId).contains(1L);
+    }
+
+    @Test
+    void everyQueryTermMustMatch() {
+        assertThat(index.search("pepper idukki")).extracting(SpiceSearchIndex.Hit::spiceId).containsExactly(2L);
+        assertThat(index.search("pepper clove")).isEmpty();
+    }
+
+    @Test
+    void updatesAndRemovalsAreVisibleImmediately() {
+        index.put(4L, "Clove Buds", "Zanzibar cloves");
+        index.remove(1L);
+
+        assertThat(index.search("zanzibar")).extracting(SpiceSearchIndex.Hit::spiceId).containsExactly(4L);
+        assertThat(index.search("hand")).isEmpty();
+        assertThat(index.search("pepper")).extracting(SpiceSearchIndex.Hit::spiceId).containsExactly(2L);
+    }
+
+    @Test
+    void typoMatchingFollowsUpdates() {
+        index.put(4L, "Clove", "Hand picked buds from Zanzibar");
+        assertThat(index.search("zanzibra")).extracting(SpiceSearchIndex.Hit::spiceId).containsExactly(4L);
+
+        index.put(4L, "Clove", "Hand picked buds");
+        assertThat(index.search("zanzibra")).isEmpty();
+        assertThat(index.search("cinamon")).extracting(SpiceSearchIndex.Hit::spiceId).containsExactly(3L);
+    }
+
+    @Test
+    void updatesMadeWhileARebuildReadsTheCatalogSurviveTheSwap() {
+        SpiceRepository repository = mock(SpiceRepository.class);
+        SpiceSearchIndex rebuilding = new SpiceSearchIndex(repository);
+        ReflectionTestUtils.setField(rebuilding, "maxResults", 500);
+        rebuilding.put(1L, "Black Pepper", "Bold Malabar peppercorns");
+        rebuilding.put(2L, "Clove", "Hand picked buds");
+        when(repository.findAllSearchRows()).thenAnswer(invocation -> {
+            // committed after the read: the rows below still show the old state
+            rebuilding.put(3L, "Star Anise", "Whole pods");
+            rebuilding.remove(2L);
+            return List.of(row(1L, "Black Pepper", "Bold Malabar peppercorns"), row(2L, "Clove", "Hand picked buds"));
+        });
+
+        rebuilding.rebuild();
+
+        assertThat(rebuilding.search("anise")).extracting(SpiceSearchIndex.Hit::spiceId).containsExactly(3L);
+        assertThat(rebuilding.search("clove")).isEmpty();
+        assertThat(rebuilding.search("pepper")).extracting(SpiceSearchIndex.Hit::spiceId).containsExactly(1L);
+    }
+
+    @Test
+    void highlightsMatchedWordsAndEscapesTheRest() {
+        index.put(5L, "Chilli <Hot>", "Kashmiri chillies");
+
+        assertThat(index.highlight(5L, "chilli"))
+                .containsEntry("name", "<mark>Chilli</mark> &lt;Hot&gt;")
+                .containsEntry("description", "Kashmiri <mark>chillies</mark>");
+    }
+
+    private static SpiceRepository.SearchRow row(Long id, String name, String description) {
+        return new SpiceRepository.SearchRow() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public String getDescription() {
+                return description;
+            }
+        };
+    }
+}
@@ -0,0 +1,183 @@
+package com.spiceshop.services;
+
+import com.spiceshop.config.CacheConfig;
+import com.spiceshop.dto.CursorPage;
+import com.spiceshop.dto.SpiceDto;
+import com.spiceshop.models.Spice;
+import com.spiceshop.models.SpiceImage;
+import com.spiceshop.models.SpicePack;
+import com.spiceshop.models.SpiceVariant;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Guards the catalog fetch plan: a listing must cost a fixed number of statements
+ * regardless of how many spices, variants and packs it contains.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({SpiceService.class, SpiceSearchIndex.class, SpiceFacetService.class, CacheConfig.class})
+class SpiceServiceQueryCountTest {
+
+    // count + facet page + spices/images + variants + packs
+    private static final long MAX_STATEMENTS_PER_PAGE = 5;
+
+    @Autowired
+    private SpiceService spiceService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void filteredPageUsesConstantNumberOfStatements() {
+        seed(30);
+
+        long small = countStatements(() -> spiceService.getFilteredSpices(1, 5, null, null, null, null, null, null));
+        long large = countStatements(() -> spiceService.getFilteredSpices(1, 25, null, null, null, null, null, null));
+
+        assertThat(small).isLessThanOrEqualTo(MAX_STATEMENTS_PER_PAGE);
+        assertThat(large).isEqualTo(small);
+    }
+
+    @Test
+    void filteredPageWithJoinsKeepsPageOrderAndTotals() {
+        seed(30);
+
+        Page<Spice> page = spiceService.getFilteredSpices(2, 10, null, new BigDecimal("10"), null, null, List.of("Class 1"), true);
+
+        assertThat(page.getTotalElements()).isEqualTo(30);
+        assertThat(page.getContent()).hasSize(10);
+        assertThat(page.getContent()).extracting(Spice::getName).isSorted();
+    }
+
+    @Test
+    void facetFiltersFollowSpiceWrites() {
+        seed(4);
+        Long first = spiceService.getFilteredSpices(1, 10, null, null, null, null, null, null).getContent().get(0).getId();
+
+        spiceService.updateAvailability(first, false);
+        entityManager.flush();
+
+        assertThat(spiceService.getFilteredSpices(1, 10, null, null, null, null, null, true).getTotalElements()).isEqualTo(3);
+        // packs cost 50, 100 and 150: a range has to hold one of them, not just overlap 50..150
+        assertThat(spiceService.getFilteredSpices(1, 10, null, new BigDecimal("120"), new BigDecimal("500"), null, null, null).getTotalElements()).isEqualTo(4);
+        assertThat(spiceService.getFilteredSpices(1, 10, null, new BigDecimal("60"), new BigDecimal("90"), null, null, null).getTotalElements()).isZero();
+        assertThat(spiceService.getFilteredSpices(1, 10, null, new BigDecimal("151"), null, null, null, null).getTotalElements()).isZero();
+        assertThat(spiceService.getFilteredSpices(1, 10, null, null, null, List.of("Kerala"), List.of(" class 2 "), null).getTotalElements()).isEqualTo(2);
+        assertThat(spiceService.getFilteredSpices(1, 10, null, null, null, null, List.of("Class 4"), null).getTotalElements()).isZero();
+        // wildcards are plain characters, not patterns
+        assertThat(spiceService.getFilteredSpices(1, 10, null, null, null, null, List.of("class %"), null).getTotalElements()).isZero();
+
+        spiceService.deleteSpice(first);
+        entityManager.flush();
+
+        assertThat(spiceService.getFilteredSpices(1, 10, null, null, null, null, null, null).getTotalElements()).isEqualTo(3);
+    }
+
+    @Test
+    void cursorWindowsWalkTheCatalogWithoutCounting() {
+        seed(30);
+        List<String> expected = spiceService.getFilteredSpices(1, 30, null, null, null, null, null, null)
+                .getContent().stream().map(Spice::getName).toList();
+
+        List<String> walked = new ArrayList<>();
+        String cursor = "";
+        boolean hasMore = true;
+        while (hasMore) {
+            String after = cursor;
+            long statements = countStatements(() -> {
+                CursorPage<Spice> window = spiceService.getFilteredSpicesAfter(after, 7, false, null, null, null, null, null, null);
+                window.getItems().forEach(spice -> walked.add(spice.getName()));
+                assertThat(window.getTotalElements()).isNull();
+                return window.getItems();
+            });
+            // facet window + spices/images + variants + packs, no count
+            assertThat(statements).isLessThanOrEqualTo(MAX_STATEMENTS_PER_PAGE - 1);
+
+            CursorPage<Spice> window = spiceService.getFilteredSpicesAfter(after, 7, true, null, null, null, null, null, null);
+            assertThat(window.getTotalElements()).isEqualTo(30);
+            hasMore = window.isHasMore();
+            cursor = window.getNextCursor();
+        }
+
+        assertThat(walked).isEqualTo(expected);
+    }
+
+    @Test
+    void fullCatalogUsesConstantNumberOfStatements() {
+        seed(40);
+
+        long statements = countStatements(() -> spiceService.getAllSpices());
+
+        assertThat(statements).isLessThanOrEqualTo(MAX_STATEMENTS_PER_PAGE);
+    }
+
+    private long countStatements(Supplier<?> listing) {
+        entityManager.clear();
+        statistics.clear();
+
+        Object result = listing.get();
+        Iterable<?> spices = result instanceof Page<?> page ? page.getContent() : (Iterable<?>) result;
+        for (Object spice : spices) {
+            SpiceDto dto = spiceService.toDto((Spice) spice);
+            assertThat(dto.getVariants()).allSatisfy(variant -> assertThat(variant.getPacks()).hasSize(3));
+        }
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void seed(int spices) {
+        for (int i = 0; i < spices; i++) {
+            Spice spice = new Spice();
+            spice.setName(String.format("Spice %03d", i));
+            spice.setDescription("Synthetic spice " + i);
+            spice.setOrigin(i % 2 == 0 ? "Kerala" : "Karnataka");
+            spice.setAvailable(true);
+
+            for (int v = 1; v <= 3; v++) {
+                SpiceVariant variant = new SpiceVariant();
+                variant.setQualityClass("Class " + v);
+                for (int p = 1; p <= 3; p++) {
+                    SpicePack pack = new SpicePack();
+                    pack.setPackWeightInGrams(p * 100);
+                    pack.setPrice(BigDecimal.valueOf(p * 50L));
+                    pack.setStockQuantity(10);
+                    variant.getPacks().add(pack);
+                }
+                spice.getVariants().add(variant);
+            }
+            for (int img = 0; img < 2; img++) {
+                spice.getImages().add(new SpiceImage("https://cdn.example.com/spice-" + i + "-" + img + ".jpg"));
+            }
+            spiceService.createSpice(spice);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+}
@@ -0,0 +1,139 @@
+package com.spiceshop.services;
+
+import com.spiceshop.exceptions.InsufficientStockException;
+import com.spiceshop.models.Spice;
+import com.spiceshop.models.SpicePack;
+import com.spiceshop.models.SpiceVariant;
+import com.spiceshop.repositorys.SpicePackRepository;
+import com.spiceshop.repositorys.SpiceRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Conditional decrements must never oversell, however many checkouts race for the same pack.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import(StockLedgerService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StockLedgerServiceTest {
+
+    private static final int CHECKOUTS = 500;
+    private static final int STOCK = 120;
+
+    @Autowired
+    private StockLedgerService stockLedgerService;
+
+    @Autowired
+    private SpiceRepository spiceRepository;
+
+    @Autowired
+    private SpicePackRepository spicePackRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void tearDown() {
+        spiceRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentCheckoutsOnOneSkuNeverOversell() throws Exception {
+        Long packId = seedPacks(STOCK).get(0);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(CHECKOUTS);
+        try {
+            List<Future<?>> checkouts = new ArrayList<>();
+            for (int i = 0; i < CHECKOUTS; i++) {
+                checkouts.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        tx.executeWithoutResult(status -> stockLedgerService.decrement(Map.of(packId, 1)));
+                        sold.incrementAndGet();
+                    } catch (InsufficientStockException e) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> checkout : checkouts) {
+                checkout.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertThat(sold.get()).isEqualTo(STOCK);
+        assertThat(rejected.get()).isEqualTo(CHECKOUTS - STOCK);
+        assertThat(spicePackRepository.findById(packId).orElseThrow().getStockQuantity()).isZero();
+    }
+
+    @Test
+    void shortLineRollsBackTheWholeOrder() {
+        List<Long> packs = seedPacks(5, 1);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        assertThatThrownBy(() -> tx.executeWithoutResult(status ->
+                stockLedgerService.decrement(Map.of(packs.get(0), 3, packs.get(1), 2))))
+                .isInstanceOf(InsufficientStockException.class)
+                .satisfies(e -> assertThat(((InsufficientStockException) e).getPackId()).isEqualTo(packs.get(1)));
+
+        assertThat(spicePackRepository.findById(packs.get(0)).orElseThrow().getStockQuantity()).isEqualTo(5);
+        assertThat(spicePackRepository.findById(packs.get(1)).orElseThrow().getStockQuantity()).isEqualTo(1);
+
+        tx.executeWithoutResult(status -> stockLedgerService.decrement(Map.of(packs.get(0), 3, packs.get(1), 1)));
+        assertThat(spicePackRepository.findById(packs.get(0)).orElseThrow().getStockQuantity()).isEqualTo(2);
+        assertThat(spicePackRepository.findById(packs.get(1)).orElseThrow().getStockQuantity()).isZero();
+    }
+
+    @Test
+    void decrementRequiresAnOpenTransaction() {
+        assertThatThrownBy(() -> stockLedgerService.decrement(Map.of(1L, 1)))
+                .isInstanceOf(IllegalTransactionStateException.class);
+    }
+
+    private List<Long> seedPacks(int... stocks) {
+        Spice spice = new Spice();
+        spice.setName("Cardamom");
+        SpiceVariant variant = new SpiceVariant();
+        variant.setQualityClass("Class 1");
+        variant.setSpice(spice);
+        for (int stock : stocks) {
+            SpicePack pack = new SpicePack();
+            pack.setPackWeightInGrams(100);
+            pack.setPrice(new BigDecimal("120"));
+            pack.setStockQuantity(stock);
+            pack.setVariant(variant);
+            variant.getPacks().add(pack);
+        }
+        spice.getVariants().add(variant);
+        spiceRepository.save(spice);
+        return variant.getPacks().stream().map(SpicePack::getId).toList();
+    }
+}
@@ -0,0 +1,216 @@
+package com.spiceshop.services;
+
+import com.spiceshop.exceptions.InsufficientStockException;
+import com.spiceshop.models.Order;
+import com.spiceshop.models.OrderItem;
+import com.spiceshop.models.Payment;
+import com.spiceshop.models.Spice;
+import com.spiceshop.models.SpicePack;
+import com.spiceshop.models.SpiceVariant;
+import com.spiceshop.models.StockReservation;
+import com.spiceshop.models.User;
+import com.spiceshop.repositorys.OrderRepository;
+import com.spiceshop.repositorys.PaymentRepository;
+import com.spiceshop.repositorys.SpiceRepository;
+import com.spiceshop.repositorys.StockReservationRepository;
+import com.spiceshop.repositorys.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({StockReservationService.class, StockLedgerService.class})
+class StockReservationServiceTest {
+
+    @MockitoBean
+    private SpiceService spiceService;
+
+    @Autowired
+    private StockReservationService reservationService;
+
+    @Autowired
+    private StockReservationRepository reservationRepository;
+
+    @Autowired
+    private SpiceRepository spiceRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private SpicePack pack;
+
+    @BeforeEach
+    void setUp() {
+        Spice spice = new Spice();
+        spice.setName("Cardamom");
+        SpiceVariant variant = new SpiceVariant();
+        variant.setQualityClass("Class 1");
+        variant.setSpice(spice);
+        pack = new SpicePack();
+        pack.setPackWeightInGrams(100);
+        pack.setPrice(new BigDecimal("120"));
+        pack.setStockQuantity(5);
+        pack.setVariant(variant);
+        variant.getPacks().add(pack);
+        spice.getVariants().add(variant);
+        spiceRepository.saveAndFlush(spice);
+    }
+
+    @Test
+    void holdTakesStockAndConversionKeepsIt() {
+        reservationService.hold(order(1L, 3));
+
+        assertThat(stock()).isEqualTo(2);
+        assertThat(reservationService.convert(1L)).isTrue();
+        // already converted: neither a second conversion nor a release touches stock
+        assertThat(reservationService.convert(1L)).isFalse();
+        assertThat(reservationService.release(1L)).isFalse();
+        assertThat(stock()).isEqualTo(2);
+    }
+
+    @Test
+    void holdFailsWhenStockIsShort() {
+        reservationService.hold(order(1L, 4));
+
+        assertThatThrownBy(() -> reservationService.hold(order(2L, 2)))
+                .isInstanceOf(InsufficientStockException.class);
+    }
+
+    @Test
+    void releaseGivesUnitsBackOnce() {
+        reservationService.hold(order(1L, 3));
+
+        assertThat(reservationService.release(1L)).isTrue();
+        assertThat(reservationService.release(1L)).isFalse();
+        assertThat(stock()).isEqualTo(5);
+        // a payment arriving after the release finds nothing held and must take stock itself
+        assertThat(reservationService.convert(1L)).isFalse();
+    }
+
+    @Test
+    void sweeperReleasesOnlyExpiredHolds() {
+        reservationService.hold(order(1L, 2));
+        reservationService.hold(order(2L, 2));
+        jdbcTemplate.update("UPDATE stock_reservations SET expires_at = ? WHERE order_id = 1", LocalDateTime.now().minusMinutes(1));
+
+        reservationService.releaseExpired();
+
+        assertThat(stock()).isEqualTo(3);
+        assertThat(reservationRepository.findByOrderIdAndStatus(1L, StockReservation.Status.RELEASED)).hasSize(1);
+        assertThat(reservationRepository.findByOrderIdAndStatus(2L, StockReservation.Status.HELD)).hasSize(1);
+    }
+
+    @Test
+    void sweeperCancelsTheUnpaidOrderOfAnExpiredHold() {
+        Order pending = pendingOrder();
+        reservationService.hold(order(pending.getId(), 2));
+        expireAll();
+
+        reservationService.releaseExpired();
+        entityManager.clear();
+
+        assertThat(stock()).isEqualTo(5);
+        Order cancelled = orderRepository.findById(pending.getId()).orElseThrow();
+        assertThat(cancelled.getOrderStatus()).isEqualTo(Order.OrderStatus.CANCELLED);
+        assertThat(cancelled.getPaymentStatus()).isEqualTo(Order.PaymentStatus.FAILED);
+        Payment payment = paymentRepository.findByGatewayOrderId("order_expired").orElseThrow();
+        assertThat(payment.getStatus()).isEqualTo(Order.PaymentStatus.FAILED);
+        assertThat(payment.getFailureReason()).isEqualTo("Checkout expired before payment.");
+    }
+
+    @Test
+    void sweeperMovesPastAnOrderThatFails() {
+        reservationService.hold(order(1L, 2));
+        reservationService.hold(order(2L, 2));
+        expireAll();
+        clearInvocations(spiceService);
+        doThrow(new IllegalStateException("boom")).doNothing().when(spiceService).onStockChanged(any());
+
+        reservationService.releaseExpired();
+
+        // order 1 fails first (ids in order), order 2 is still released
+        verify(spiceService, times(2)).onStockChanged(any());
+        assertThat(reservationRepository.findByOrderIdAndStatus(2L, StockReservation.Status.RELEASED)).hasSize(1);
+    }
+
+    private void expireAll() {
+        jdbcTemplate.update("UPDATE stock_reservations SET expires_at = ?", LocalDateTime.now().minusMinutes(1));
+    }
+
+    private Order pendingOrder() {
+        User user = new User();
+        user.setFirstName("Asha");
+        user.setLastName("Menon");
+        user.setEmail("asha@example.com");
+        user.setPassword("password123");
+        userRepository.save(user);
+
+        Order pending = Order.builder()
+                .orderNumber("ORD-EXPIRED")
+                .user(user)
+                .subtotal(new BigDecimal("240"))
+                .shippingCost(BigDecimal.ZERO)
+                .total(new BigDecimal("240"))
+                .orderStatus(Order.OrderStatus.PENDING)
+                .paymentStatus(Order.PaymentStatus.PENDING)
+                .paymentMethod(Order.PaymentMethod.RAZORPAY)
+                .razorpayOrderId("order_expired")
+                .shippingFirstName("Asha").shippingLastName("Menon")
+                .shippingAddressLine1("12 Market Road").shippingCity("Kochi").shippingState("Kerala")
+                .shippingPinCode("682001").shippingPhone("9876543210")
+                .build();
+        pending.setPayments(new ArrayList<>(List.of(Payment.builder()
+                .order(pending)
+                .paymentMethod(Order.PaymentMethod.RAZORPAY)
+                .amount(new BigDecimal("240"))
+                .status(Order.PaymentStatus.PENDING)
+                .gatewayOrderId("order_expired")
+                .build())));
+        return orderRepository.saveAndFlush(pending);
+    }
+
+    private Order order(Long id, int quantity) {
+        Order order = new Order();
+        order.setId(id);
+        order.getItems().add(OrderItem.builder()
+                .order(order)
+                .spicePack(pack)
+                .quantity(quantity)
+                .build());
+        return order;
+    }
+
+    private int stock() {
+        return jdbcTemplate.queryForObject("SELECT stock_quantity FROM spice_pack WHERE id = ?", Integer.class, pack.getId());
+    }
+}
@@ -0,0 +1,154 @@
+package com.spiceshop.services;
+
+import com.spiceshop.config.AccessTokenFilter;
+import com.spiceshop.models.RefreshToken;
+import com.spiceshop.repositorys.RefreshTokenRepository;
+import com.spiceshop.repositorys.RevokedAccessTokenRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * Stateless token mode: access tokens verify by key alone, refresh tokens rotate and a replayed
+ * one takes its family down, logout withdraws the access token before it expires.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "auth.token.enabled=true",
+        "auth.token.secret=test-secret",
+        "auth.token.revocation-sync-interval=PT1H"
+})
+@Import({AccessTokenService.class, AccessTokenRevocationList.class, RefreshTokenService.class, JacksonAutoConfiguration.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TokenAuthTest {
+
+    @Autowired
+    private AccessTokenService accessTokenService;
+
+    @Autowired
+    private AccessTokenRevocationList revocationList;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private RevokedAccessTokenRepository revokedAccessTokenRepository;
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        refreshTokenRepository.deleteAll();
+        revokedAccessTokenRepository.deleteAll();
+    }
+
+    @Test
+    void accessTokenVerifiesUntilExpiryAndNotOnceTampered() {
+        Instant now = Instant.now();
+        String token = accessTokenService.issue(RefreshToken.Role.USER, "42", now);
+
+        Optional<AccessTokenService.Claims> claims = accessTokenService.verify(token, now);
+        assertThat(claims).isPresent();
+        assertThat(claims.get().userId()).isEqualTo(42L);
+        assertThat(claims.get().role()).isEqualTo(RefreshToken.Role.USER);
+
+        assertThat(accessTokenService.verify(token, now.plus(accessTokenService.getTtl()))).isEmpty();
+
+        String forged = accessTokenService.issue(RefreshToken.Role.ADMIN, "42", now);
+        String spliced = token.substring(0, token.lastIndexOf('.')) + forged.substring(forged.lastIndexOf('.'));
+        assertThat(accessTokenService.verify(spliced, now)).isEmpty();
+        assertThat(accessTokenService.verify("not-a-token", now)).isEmpty();
+    }
+
+    @Test
+    void refreshRotatesAndReplayRevokesTheFamily() {
+        RefreshTokenService.TokenPair first = refreshTokenService.login(RefreshToken.Role.USER, "42");
+
+        RefreshTokenService.TokenPair second = refreshTokenService.refresh(first.refreshToken()).orElseThrow();
+        assertThat(second.refreshToken()).isNotEqualTo(first.refreshToken());
+        assertThat(accessTokenService.verify(second.accessToken())).isPresent();
+
+        // The spent token comes back: neither it nor the token it was exchanged for works any more
+        assertThat(refreshTokenService.refresh(first.refreshToken())).isEmpty();
+        assertThat(refreshTokenService.refresh(second.refreshToken())).isEmpty();
+    }
+
+    @Test
+    void logoutRevokesAccessTokenAndRefreshFamily() {
+        RefreshTokenService.TokenPair pair = refreshTokenService.login(RefreshToken.Role.USER, "42");
+        AccessTokenService.Claims claims = accessTokenService.verify(pair.accessToken()).orElseThrow();
+
+        refreshTokenService.logout(claims, pair.refreshToken());
+
+        assertThat(revocationList.isRevoked(claims.jti())).isTrue();
+        assertThat(revokedAccessTokenRepository.existsById(claims.jti())).isTrue();
+        assertThat(refreshTokenService.refresh(pair.refreshToken())).isEmpty();
+    }
+
+    @Test
+    void revokeAllEndsEveryLoginOfTheSubjectOnly() {
+        RefreshTokenService.TokenPair phone = refreshTokenService.login(RefreshToken.Role.USER, "42");
+        RefreshTokenService.TokenPair laptop = refreshTokenService.login(RefreshToken.Role.USER, "42");
+        RefreshTokenService.TokenPair rotated = refreshTokenService.refresh(laptop.refreshToken()).orElseThrow();
+        RefreshTokenService.TokenPair other = refreshTokenService.login(RefreshToken.Role.USER, "43");
+
+        refreshTokenService.revokeAll(RefreshToken.Role.USER, "42");
+
+        for (RefreshTokenService.TokenPair pair : List.of(phone, laptop, rotated)) {
+            assertThat(revocationList.isRevoked(accessTokenService.verify(pair.accessToken()).orElseThrow().jti())).isTrue();
+        }
+        assertThat(refreshTokenService.refresh(phone.refreshToken())).isEmpty();
+        assertThat(refreshTokenService.refresh(rotated.refreshToken())).isEmpty();
+        assertThat(revocationList.isRevoked(accessTokenService.verify(other.accessToken()).orElseThrow().jti())).isFalse();
+        assertThat(refreshTokenService.refresh(other.refreshToken())).isPresent();
+    }
+
+    @Test
+    void revocationListDoesNotPollWithoutTokenMode() {
+        RevokedAccessTokenRepository repository = mock(RevokedAccessTokenRepository.class);
+
+        new AccessTokenRevocationList(repository, false).sync();
+
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void filterAuthenticatesValidTokensAndRejectsRevokedOnes() throws Exception {
+        AccessTokenFilter filter = new AccessTokenFilter(accessTokenService, revocationList);
+        RefreshTokenService.TokenPair pair = refreshTokenService.login(RefreshToken.Role.USER, "42");
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/orders/history");
+        request.addHeader("Authorization", "Bearer " + pair.accessToken());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(AuthenticatedUserResolver.currentUserId(request)).isEqualTo(42L);
+
+        refreshTokenService.logout(accessTokenService.verify(pair.accessToken()).orElseThrow(), null);
+
+        MockHttpServletRequest revoked = new MockHttpServletRequest("GET", "/api/orders/history");
+        revoked.addHeader("Authorization", "Bearer " + pair.accessToken());
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        filter.doFilter(revoked, rejected, new MockFilterChain());
+        assertThat(rejected.getStatus()).isEqualTo(401);
+    }
+}